@@ -0,0 +1,709 @@
+package ca.siva.ch05_collections;
+
+import java.util.*;
+
+/*
+NOTE:
+1) Skeleton for NavigableMap implementations, in the spirit of AbstractMap. A subclass implements get/put/remove/size/clear,
+firstEntry/lastEntry and findEntry(key, relation); everything else (lowerKey, ceilingEntry, pollFirstEntry, subMap, headMap,
+tailMap, descendingMap, navigableKeySet, ...) is derived from those.
+2) subMap/headMap/tailMap/descendingMap return live views, exactly like TreeMap: they read through to the backing map and
+put() outside the view's range throws IllegalArgumentException.
+3) Entries returned by the navigation methods and iterators are immutable snapshots (AbstractMap.SimpleImmutableEntry), so
+Entry.setValue() is not supported; use put() instead.
+4) The default entryIterator() takes one findEntry() per element. Subclasses with a linked leaf level override it.
+ */
+public abstract class AbstractNavigableMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    protected enum Relation {LOWER, FLOOR, CEILING, HIGHER}
+
+    private final Comparator<? super K> comparator;
+
+    protected AbstractNavigableMap(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * The entry whose key has the given relation to key (e.g. the greatest key <= key for FLOOR), or null.
+     */
+    protected abstract Entry<K, V> findEntry(K key, Relation relation);
+
+    @Override
+    public abstract Entry<K, V> firstEntry();
+
+    @Override
+    public abstract Entry<K, V> lastEntry();
+
+    @Override
+    public abstract V put(K key, V value);
+
+    /**
+     * Iterator that starts at first (null for an empty iteration) and stops before the first key beyond fence.
+     * A null fence means no bound. remove() must be supported.
+     */
+    protected Iterator<Entry<K, V>> entryIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+        return new StepIterator(first, descending, fence, fenceInclusive);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected final int compare(Object a, Object b) {
+        return comparator == null ? ((Comparable<Object>) a).compareTo(b) : comparator.compare((K) a, (K) b);
+    }
+
+    /**
+     * True if key is past fence in the direction of iteration.
+     */
+    protected final boolean beyond(K key, K fence, boolean fenceInclusive, boolean descending) {
+        if (fence == null) {
+            return false;
+        }
+        int c = compare(key, fence);
+        return descending ? c < 0 || (c == 0 && !fenceInclusive) : c > 0 || (c == 0 && !fenceInclusive);
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Entry<K, V> lowerEntry(K key) {
+        return findEntry(key, Relation.LOWER);
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyOrNull(lowerEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> floorEntry(K key) {
+        return findEntry(key, Relation.FLOOR);
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyOrNull(floorEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> ceilingEntry(K key) {
+        return findEntry(key, Relation.CEILING);
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        return keyOrNull(ceilingEntry(key));
+    }
+
+    @Override
+    public Entry<K, V> higherEntry(K key) {
+        return findEntry(key, Relation.HIGHER);
+    }
+
+    @Override
+    public K higherKey(K key) {
+        return keyOrNull(higherEntry(key));
+    }
+
+    @Override
+    public K firstKey() {
+        return keyOrThrow(firstEntry());
+    }
+
+    @Override
+    public K lastKey() {
+        return keyOrThrow(lastEntry());
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        Entry<K, V> entry = firstEntry();
+        if (entry != null) {
+            remove(entry.getKey());
+        }
+        return entry;
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        Entry<K, V> entry = lastEntry();
+        if (entry != null) {
+            remove(entry.getKey());
+        }
+        return entry;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return firstEntry() == null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return entryIterator(firstEntry(), false, null, false);
+            }
+
+            @Override
+            public int size() {
+                return AbstractNavigableMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                AbstractNavigableMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return new SubMap(true, null, true, true, null, true, true);
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        compare(toKey, toKey); // Type and null check, like TreeMap
+        return new SubMap(true, null, true, false, toKey, inclusive, false);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        compare(fromKey, fromKey);
+        return new SubMap(false, fromKey, inclusive, true, null, true, false);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    protected static <K, V> Entry<K, V> snapshot(K key, V value) {
+        return new SimpleImmutableEntry<>(key, value);
+    }
+
+    static <K> K keyOrNull(Entry<K, ?> entry) {
+        return entry == null ? null : entry.getKey();
+    }
+
+    static <K> K keyOrThrow(Entry<K, ?> entry) {
+        if (entry == null) {
+            throw new NoSuchElementException();
+        }
+        return entry.getKey();
+    }
+
+    /**
+     * Default iterator: every step is a findEntry(HIGHER/LOWER) from the last key, which also makes remove() trivially safe.
+     */
+    private final class StepIterator implements Iterator<Entry<K, V>> {
+        private final boolean descending;
+        private final K fence;
+        private final boolean fenceInclusive;
+        private Entry<K, V> next;
+        private Entry<K, V> lastReturned;
+
+        StepIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+            this.descending = descending;
+            this.fence = fence;
+            this.fenceInclusive = fenceInclusive;
+            this.next = first == null || beyond(first.getKey(), fence, fenceInclusive, descending) ? null : first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = next;
+            next = findEntry(lastReturned.getKey(), descending ? Relation.LOWER : Relation.HIGHER);
+            if (next != null && beyond(next.getKey(), fence, fenceInclusive, descending)) {
+                next = null;
+            }
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            AbstractNavigableMap.this.remove(lastReturned.getKey());
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Range and/or descending view. lo/hi are always in the backing map's (ascending) order; descending only flips the
+     * direction of the navigation methods and iterators.
+     */
+    private final class SubMap extends AbstractMap<K, V> implements NavigableMap<K, V> {
+        private final boolean fromStart;
+        private final K lo;
+        private final boolean loInclusive;
+        private final boolean toEnd;
+        private final K hi;
+        private final boolean hiInclusive;
+        private final boolean descending;
+
+        SubMap(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private boolean tooLow(Object key) {
+            if (fromStart) {
+                return false;
+            }
+            int c = compare(key, lo);
+            return c < 0 || (c == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(Object key) {
+            if (toEnd) {
+                return false;
+            }
+            int c = compare(key, hi);
+            return c > 0 || (c == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(Object key) {
+            return !tooLow(key) && !tooHigh(key);
+        }
+
+        private boolean inClosedRange(Object key) {
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(hi, key) >= 0);
+        }
+
+        private boolean inRange(Object key, boolean inclusive) {
+            return inclusive ? inRange(key) : inClosedRange(key);
+        }
+
+        private Entry<K, V> checkHigh(Entry<K, V> entry) {
+            return entry == null || tooHigh(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<K, V> checkLow(Entry<K, V> entry) {
+            return entry == null || tooLow(entry.getKey()) ? null : entry;
+        }
+
+        private Entry<K, V> absLowest() {
+            return checkHigh(fromStart ? AbstractNavigableMap.this.firstEntry()
+                    : findEntry(lo, loInclusive ? Relation.CEILING : Relation.HIGHER));
+        }
+
+        private Entry<K, V> absHighest() {
+            return checkLow(toEnd ? AbstractNavigableMap.this.lastEntry()
+                    : findEntry(hi, hiInclusive ? Relation.FLOOR : Relation.LOWER));
+        }
+
+        private Entry<K, V> absCeiling(K key) {
+            return tooLow(key) ? absLowest() : checkHigh(findEntry(key, Relation.CEILING));
+        }
+
+        private Entry<K, V> absHigher(K key) {
+            return tooLow(key) ? absLowest() : checkHigh(findEntry(key, Relation.HIGHER));
+        }
+
+        private Entry<K, V> absFloor(K key) {
+            return tooHigh(key) ? absHighest() : checkLow(findEntry(key, Relation.FLOOR));
+        }
+
+        private Entry<K, V> absLower(K key) {
+            return tooHigh(key) ? absHighest() : checkLow(findEntry(key, Relation.LOWER));
+        }
+
+        @Override
+        public Entry<K, V> lowerEntry(K key) {
+            return descending ? absHigher(key) : absLower(key);
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyOrNull(lowerEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> floorEntry(K key) {
+            return descending ? absCeiling(key) : absFloor(key);
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyOrNull(floorEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> ceilingEntry(K key) {
+            return descending ? absFloor(key) : absCeiling(key);
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyOrNull(ceilingEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> higherEntry(K key) {
+            return descending ? absLower(key) : absHigher(key);
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyOrNull(higherEntry(key));
+        }
+
+        @Override
+        public Entry<K, V> firstEntry() {
+            return descending ? absHighest() : absLowest();
+        }
+
+        @Override
+        public Entry<K, V> lastEntry() {
+            return descending ? absLowest() : absHighest();
+        }
+
+        @Override
+        public K firstKey() {
+            return keyOrThrow(firstEntry());
+        }
+
+        @Override
+        public K lastKey() {
+            return keyOrThrow(lastEntry());
+        }
+
+        @Override
+        public Entry<K, V> pollFirstEntry() {
+            Entry<K, V> entry = firstEntry();
+            if (entry != null) {
+                AbstractNavigableMap.this.remove(entry.getKey());
+            }
+            return entry;
+        }
+
+        @Override
+        public Entry<K, V> pollLastEntry() {
+            Entry<K, V> entry = lastEntry();
+            if (entry != null) {
+                AbstractNavigableMap.this.remove(entry.getKey());
+            }
+            return entry;
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? AbstractNavigableMap.this.get(key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && AbstractNavigableMap.this.containsKey(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("key out of range");
+            }
+            return AbstractNavigableMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? AbstractNavigableMap.this.remove(key) : null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return firstEntry() == null;
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return descending
+                            ? entryIterator(absHighest(), true, fromStart ? null : lo, loInclusive)
+                            : entryIterator(absLowest(), false, toEnd ? null : hi, hiInclusive);
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Iterator<Entry<K, V>> it = iterator(); it.hasNext(); it.next()) {
+                        size++;
+                    }
+                    return size;
+                }
+            };
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            Comparator<? super K> base = AbstractNavigableMap.this.comparator();
+            return descending ? Collections.reverseOrder(base) : base;
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new SubMap(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet<>(this);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return descendingMap().navigableKeySet();
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            if (!inRange(fromKey, fromInclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            if (!inRange(toKey, toInclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return descending
+                    ? new SubMap(false, toKey, toInclusive, false, fromKey, fromInclusive, true)
+                    : new SubMap(false, fromKey, fromInclusive, false, toKey, toInclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            if (!inRange(toKey, inclusive)) {
+                throw new IllegalArgumentException("toKey out of range");
+            }
+            return descending
+                    ? new SubMap(false, toKey, inclusive, toEnd, hi, hiInclusive, true)
+                    : new SubMap(fromStart, lo, loInclusive, false, toKey, inclusive, false);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            if (!inRange(fromKey, inclusive)) {
+                throw new IllegalArgumentException("fromKey out of range");
+            }
+            return descending
+                    ? new SubMap(fromStart, lo, loInclusive, false, fromKey, inclusive, true)
+                    : new SubMap(false, fromKey, inclusive, toEnd, hi, hiInclusive, false);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+    }
+
+    /**
+     * NavigableSet view of the keys of any NavigableMap, used for navigableKeySet() of the map and of its views.
+     */
+    static final class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+        private final NavigableMap<K, ?> map;
+
+        KeySet(NavigableMap<K, ?> map) {
+            this.map = map;
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            Iterator<? extends Entry<K, ?>> entries = map.entrySet().iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return entries.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return map.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!map.containsKey(o)) {
+                return false;
+            }
+            map.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public K lower(K k) {
+            return map.lowerKey(k);
+        }
+
+        @Override
+        public K floor(K k) {
+            return map.floorKey(k);
+        }
+
+        @Override
+        public K ceiling(K k) {
+            return map.ceilingKey(k);
+        }
+
+        @Override
+        public K higher(K k) {
+            return map.higherKey(k);
+        }
+
+        @Override
+        public K first() {
+            return map.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return map.lastKey();
+        }
+
+        @Override
+        public K pollFirst() {
+            return keyOrNull(map.pollFirstEntry());
+        }
+
+        @Override
+        public K pollLast() {
+            return keyOrNull(map.pollLastEntry());
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return map.comparator();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet<>(map.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return new KeySet<>(map.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return new KeySet<>(map.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return new KeySet<>(map.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import java.util.Deque;
   NOTE:
   1) In ArrayDeque, Push operation inserts element at the beginning of the queue.
   2) addFirst() and addLast() are part of Deque interface but not in queue.
+  3) ArrayDeque is not thread safe. For handing elements between threads, see the bounded ring buffers in
+  ch08_threads_and_concurrency (SpscRingBuffer, MpscRingBuffer, MpmcRingBuffer) and RingBufferExamples.
  */
 @Slf4j
 public class ArrayDequeExamples {
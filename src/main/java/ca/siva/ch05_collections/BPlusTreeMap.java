@@ -0,0 +1,473 @@
+package ca.siva.ch05_collections;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/*
+NOTE:
+1) TreeMap is a red-black tree: one node per entry, so a lookup in a 50M-entry map follows ~26 pointers to nodes scattered
+over the heap, and an in-order scan follows another pointer per entry. Each of those is a potential cache miss.
+2) A B+tree keeps up to "order" keys per node in plain arrays. A lookup touches only log_order(n) nodes (4 levels for 50M
+entries with order 64) and binary searches inside each array, which is a cache-friendly linear memory access.
+3) All entries live in the leaves and the leaves are linked in key order, so headMap/tailMap/subMap iteration walks the arrays
+of one leaf after another instead of walking the tree.
+4) remove() deletes empty leaves but does not merge half-empty ones. Lookups stay O(log n); a map that shrinks a lot and
+stays small can be rebuilt with new BPlusTreeMap<>(map).
+5) Like TreeMap, null keys are not allowed, null values are. The map is not thread safe, see ConcurrentBPlusTreeMap.
+ */
+public class BPlusTreeMap<K, V> extends AbstractNavigableMap<K, V> {
+    public static final int DEFAULT_ORDER = 64;
+
+    private final int order;
+    private Node root;
+    private Leaf head;
+    private Leaf tail;
+    private int height;
+    private int size;
+    private int modCount;
+    // Reused descent path for put/remove, one slot per inner level.
+    private Inner[] pathNodes = new Inner[8];
+    private int[] pathSlots = new int[8];
+
+    public BPlusTreeMap() {
+        this(DEFAULT_ORDER, null);
+    }
+
+    public BPlusTreeMap(Comparator<? super K> comparator) {
+        this(DEFAULT_ORDER, comparator);
+    }
+
+    public BPlusTreeMap(Map<? extends K, ? extends V> map) {
+        this(DEFAULT_ORDER, map instanceof SortedMap<?, ?> sorted ? castComparator(sorted.comparator()) : null);
+        putAll(map);
+    }
+
+    /**
+     * order is the maximum number of keys per node. Wider nodes mean a shallower tree and longer sequential scans.
+     */
+    public BPlusTreeMap(int order, Comparator<? super K> comparator) {
+        super(comparator);
+        if (order < 4) {
+            throw new IllegalArgumentException("order must be at least 4: " + order);
+        }
+        this.order = order;
+        clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Comparator<? super K> castComparator(Comparator<?> comparator) {
+        return (Comparator<? super K>) comparator;
+    }
+
+    // Nodes are allocated with room for one extra key, so an insert can overflow a node first and split it afterwards.
+    private abstract static class Node {
+        final Object[] keys;
+        int count;
+
+        Node(int capacity) {
+            keys = new Object[capacity];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] values;
+        Leaf next;
+        Leaf prev;
+
+        Leaf(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+    }
+
+    // children[i] holds the keys k with keys[i - 1] <= k < keys[i].
+    private static final class Inner extends Node {
+        final Node[] children;
+
+        Inner(int capacity) {
+            super(capacity);
+            children = new Node[capacity + 1];
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Leaf leaf = new Leaf(order + 1);
+        root = leaf;
+        head = leaf;
+        tail = leaf;
+        height = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public V get(Object key) {
+        Leaf leaf = leafFor(key);
+        int i = search(leaf, key);
+        return i >= 0 ? value(leaf, i) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return search(leafFor(key), key) >= 0;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Node node = root;
+        int depth = 0;
+        while (node instanceof Inner inner) {
+            int slot = childIndex(inner, key);
+            pathNodes[depth] = inner;
+            pathSlots[depth] = slot;
+            depth++;
+            node = inner.children[slot];
+        }
+        Leaf leaf = (Leaf) node;
+        int i = search(leaf, key);
+        if (i >= 0) {
+            V previous = value(leaf, i);
+            leaf.values[i] = value;
+            return previous;
+        }
+        insertAt(leaf, -i - 1, key, value);
+        size++;
+        modCount++;
+        if (leaf.count > order) {
+            splitLeaf(leaf, depth);
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Node node = root;
+        int depth = 0;
+        while (node instanceof Inner inner) {
+            int slot = childIndex(inner, key);
+            pathNodes[depth] = inner;
+            pathSlots[depth] = slot;
+            depth++;
+            node = inner.children[slot];
+        }
+        Leaf leaf = (Leaf) node;
+        int i = search(leaf, key);
+        if (i < 0) {
+            return null;
+        }
+        V previous = value(leaf, i);
+        removeAt(leaf, i);
+        size--;
+        modCount++;
+        if (size == 0) {
+            clear();
+        } else if (leaf.count == 0) {
+            unlinkLeaf(leaf, depth);
+        }
+        return previous;
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return head.count == 0 ? null : entry(head, 0);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return tail.count == 0 ? null : entry(tail, tail.count - 1);
+    }
+
+    @Override
+    protected Entry<K, V> findEntry(K key, Relation relation) {
+        Leaf leaf = leafFor(key);
+        int i = search(leaf, key);
+        int index;
+        switch (relation) {
+            case LOWER -> index = (i >= 0 ? i : -i - 1) - 1;
+            case FLOOR -> index = i >= 0 ? i : -i - 2;
+            case CEILING -> index = i >= 0 ? i : -i - 1;
+            default -> index = i >= 0 ? i + 1 : -i - 1;
+        }
+        // The neighbour leaves are never empty, only a lone root leaf can be.
+        if (index < 0) {
+            return leaf.prev == null ? null : entry(leaf.prev, leaf.prev.count - 1);
+        }
+        if (index >= leaf.count) {
+            return leaf.next == null ? null : entry(leaf.next, 0);
+        }
+        return entry(leaf, index);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                action.accept((K) leaf.keys[i], (V) leaf.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Calls action for every entry with fromKey <= key < toKey, in key order, straight off the leaf arrays. This is the
+     * allocation-free equivalent of subMap(fromKey, toKey).forEach(action).
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInRange(K fromKey, K toKey, BiConsumer<? super K, ? super V> action) {
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        Leaf leaf = leafFor(fromKey);
+        int i = search(leaf, fromKey);
+        i = i >= 0 ? i : -i - 1;
+        for (; leaf != null; leaf = leaf.next, i = 0) {
+            for (; i < leaf.count; i++) {
+                if (compare(leaf.keys[i], toKey) >= 0) {
+                    return;
+                }
+                action.accept((K) leaf.keys[i], (V) leaf.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Number of levels, 1 for a tree that is a single leaf.
+     */
+    public int height() {
+        return height + 1;
+    }
+
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+        return new LeafIterator(first, descending, fence, fenceInclusive);
+    }
+
+    private Leaf leafFor(Object key) {
+        Node node = root;
+        while (node instanceof Inner inner) {
+            node = inner.children[childIndex(inner, key)];
+        }
+        return (Leaf) node;
+    }
+
+    private int search(Node node, Object key) {
+        int low = 0;
+        int high = node.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(node.keys[mid], key);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int childIndex(Inner inner, Object key) {
+        int i = search(inner, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private static void insertAt(Leaf leaf, int index, Object key, Object value) {
+        int moved = leaf.count - index;
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, moved);
+        System.arraycopy(leaf.values, index, leaf.values, index + 1, moved);
+        leaf.keys[index] = key;
+        leaf.values[index] = value;
+        leaf.count++;
+    }
+
+    private static void removeAt(Leaf leaf, int index) {
+        int moved = leaf.count - index - 1;
+        System.arraycopy(leaf.keys, index + 1, leaf.keys, index, moved);
+        System.arraycopy(leaf.values, index + 1, leaf.values, index, moved);
+        leaf.count--;
+        leaf.keys[leaf.count] = null;
+        leaf.values[leaf.count] = null;
+    }
+
+    private void splitLeaf(Leaf leaf, int depth) {
+        Leaf right = new Leaf(order + 1);
+        int mid = leaf.count / 2;
+        right.count = leaf.count - mid;
+        System.arraycopy(leaf.keys, mid, right.keys, 0, right.count);
+        System.arraycopy(leaf.values, mid, right.values, 0, right.count);
+        Arrays.fill(leaf.keys, mid, leaf.count, null);
+        Arrays.fill(leaf.values, mid, leaf.count, null);
+        leaf.count = mid;
+
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null) {
+            leaf.next.prev = right;
+        } else {
+            tail = right;
+        }
+        leaf.next = right;
+        insertIntoParent(right.keys[0], right, depth);
+    }
+
+    private void insertIntoParent(Object separator, Node right, int depth) {
+        while (depth > 0) {
+            depth--;
+            Inner parent = pathNodes[depth];
+            int slot = pathSlots[depth];
+            System.arraycopy(parent.keys, slot, parent.keys, slot + 1, parent.count - slot);
+            System.arraycopy(parent.children, slot + 1, parent.children, slot + 2, parent.count - slot);
+            parent.keys[slot] = separator;
+            parent.children[slot + 1] = right;
+            parent.count++;
+            if (parent.count <= order) {
+                return;
+            }
+            // Split the inner node: the middle key moves up, it is not copied.
+            Inner sibling = new Inner(order + 1);
+            int mid = parent.count / 2;
+            separator = parent.keys[mid];
+            sibling.count = parent.count - mid - 1;
+            System.arraycopy(parent.keys, mid + 1, sibling.keys, 0, sibling.count);
+            System.arraycopy(parent.children, mid + 1, sibling.children, 0, sibling.count + 1);
+            Arrays.fill(parent.keys, mid, parent.count, null);
+            Arrays.fill(parent.children, mid + 1, parent.count + 1, null);
+            parent.count = mid;
+            right = sibling;
+        }
+        Inner newRoot = new Inner(order + 1);
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = root;
+        newRoot.children[1] = right;
+        newRoot.count = 1;
+        root = newRoot;
+        height++;
+        if (pathNodes.length <= height) {
+            pathNodes = Arrays.copyOf(pathNodes, height * 2);
+            pathSlots = Arrays.copyOf(pathSlots, height * 2);
+        }
+    }
+
+    private void unlinkLeaf(Leaf leaf, int depth) {
+        if (leaf.prev != null) {
+            leaf.prev.next = leaf.next;
+        } else {
+            head = leaf.next;
+        }
+        if (leaf.next != null) {
+            leaf.next.prev = leaf.prev;
+        } else {
+            tail = leaf.prev;
+        }
+        // Remove the child pointer; an inner node left without children is removed from its own parent in turn.
+        while (depth > 0) {
+            depth--;
+            Inner parent = pathNodes[depth];
+            int slot = pathSlots[depth];
+            if (parent.count == 0) {
+                parent.children[0] = null;
+                continue;
+            }
+            int keySlot = slot == 0 ? 0 : slot - 1;
+            System.arraycopy(parent.keys, keySlot + 1, parent.keys, keySlot, parent.count - keySlot - 1);
+            System.arraycopy(parent.children, slot + 1, parent.children, slot, parent.count - slot);
+            parent.count--;
+            parent.keys[parent.count] = null;
+            parent.children[parent.count + 1] = null;
+            break;
+        }
+        while (root instanceof Inner inner && inner.count == 0) {
+            root = inner.children[0];
+            height--;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Leaf leaf, int index) {
+        return (V) leaf.values[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> entry(Leaf leaf, int index) {
+        return snapshot((K) leaf.keys[index], (V) leaf.values[index]);
+    }
+
+    /**
+     * Walks the leaf chain. remove() deletes through the map and then re-seeks, since a delete can drop the current leaf.
+     */
+    private final class LeafIterator implements Iterator<Entry<K, V>> {
+        private final boolean descending;
+        private final K fence;
+        private final boolean fenceInclusive;
+        private Leaf leaf;
+        private int index;
+        private K lastKey;
+        private int expectedModCount = modCount;
+
+        LeafIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+            this.descending = descending;
+            this.fence = fence;
+            this.fenceInclusive = fenceInclusive;
+            seek(first);
+        }
+
+        private void seek(Entry<K, V> entry) {
+            if (entry == null) {
+                leaf = null;
+                return;
+            }
+            leaf = leafFor(entry.getKey());
+            index = search(leaf, entry.getKey());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean hasNext() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            return leaf != null && !beyond((K) leaf.keys[index], fence, fenceInclusive, descending);
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> entry = entry(leaf, index);
+            lastKey = entry.getKey();
+            if (descending) {
+                if (--index < 0) {
+                    leaf = leaf.prev;
+                    index = leaf == null ? 0 : leaf.count - 1;
+                }
+            } else if (++index >= leaf.count) {
+                leaf = leaf.next;
+                index = 0;
+            }
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            BPlusTreeMap.this.remove(lastKey);
+            expectedModCount = modCount;
+            seek(findEntry(lastKey, descending ? Relation.LOWER : Relation.HIGHER));
+            lastKey = null;
+        }
+    }
+}
@@ -0,0 +1,981 @@
+package ca.siva.ch05_collections;
+
+import ca.siva.ch08_threads_and_concurrency.MpscRingBuffer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/*
+NOTE:
+1) A LinkedHashMap in access order with removeEldestEntry() is an LRU cache, but a single scan of one-off keys flushes it and
+every get() reorders a shared list, so it needs a global lock. BoundedCache keeps its entries in a ConcurrentHashMap and
+decides what to keep with W-TinyLFU:
+   - new entries go to a small LRU "window" (1% of the capacity), so bursts of new keys get a chance to prove themselves
+   - entries leaving the window compete with the LRU entry of the main space; a FrequencySketch estimates how often each
+     key was used recently and the less popular of the two is evicted
+   - the main space is a segmented LRU: entries used again move from "probation" to "protected" (80% of the main space)
+2) Reads never block: get() reads the ConcurrentHashMap and records the access in a lossy striped buffer (MpscRingBuffer).
+The policy (LRU lists, sketch, timer wheel) is only touched by the thread holding the eviction lock, which replays the buffered
+reads and the queued writes in batches. Dropped read events only make the popularity estimate slightly less precise. Writes are
+never dropped and do not wait for the lock either, unless 128 of them are already queued.
+3) Limits are either a number of entries (maximumSize) or a total weight computed by a Weigher (maximumWeight).
+4) expireAfterWrite / expireAfterAccess are checked on every read, so an expired value is never returned; a TimerWheel removes
+the expired entries in O(1) each during maintenance. refreshAfterWrite reloads an entry asynchronously when it is read after
+the refresh interval and keeps serving the old value until the new one is there.
+5) Loads run inside ConcurrentHashMap.compute(), so concurrent get() calls for the same missing key load it only once.
+6) asMap() exposes the cache through the Map API (get/put/remove/containsKey/...) shown in HashMapExamples.
+ */
+public final class BoundedCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final int PENDING = 0;
+    private static final int ALIVE = 1;
+    private static final int DEAD = 2;
+
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+    private static final int WRITE_BUFFER_MAX = 128;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final long maximum;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long refreshAfterWriteNanos;
+    private final Loader<? super K, V> loader;
+    private final Executor executor;
+    private final LongSupplier ticker;
+    private final long tickerOrigin;
+
+    private final MpscRingBuffer<Node<K, V>>[] readBuffers;
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    // Tasks in writeBuffer, kept apart because ConcurrentLinkedQueue.size() walks the queue
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    // Guarded by evictionLock
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedQueue = new AccessOrder<>();
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long windowWeight;
+    private long protectedWeight;
+    private long weightedSize;
+    private final FrequencySketch sketch;
+    private final TimerWheel<K, V> timerWheel;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+
+    private BoundedCache(Builder<K, V> builder, Loader<? super K, V> loader) {
+        this.maximum = builder.maximum;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.loader = loader;
+        this.executor = builder.executor;
+        this.ticker = builder.ticker;
+        this.tickerOrigin = ticker.getAsLong();
+        this.data = new ConcurrentHashMap<>((int) Math.min(builder.weigher == null ? maximum : 16, 1 << 20));
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8);
+        // Bounded by weight, the entry count is unknown: maintenance grows the sketch with the map
+        this.sketch = new FrequencySketch(builder.weigher == null ? maximum : 16);
+        this.timerWheel = expireAfterWriteNanos > 0 || expireAfterAccessNanos > 0 ? new TimerWheel<>() : null;
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        @SuppressWarnings("unchecked")
+        MpscRingBuffer<Node<K, V>>[] buffers = (MpscRingBuffer<Node<K, V>>[]) new MpscRingBuffer<?>[stripes];
+        this.readBuffers = buffers;
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new MpscRingBuffer<>(READ_BUFFER_SIZE);
+        }
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    public static final class Builder<K, V> {
+        private long maximum = -1;
+        private Weigher<? super K, ? super V> weigher;
+        private long expireAfterWriteNanos;
+        private long expireAfterAccessNanos;
+        private long refreshAfterWriteNanos;
+        private Executor executor = ForkJoinPool.commonPool();
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        public Builder<K, V> maximumSize(long maximumSize) {
+            checkMaximumNotSet();
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+            }
+            this.maximum = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bounds the sum of weigher.weigh(key, value) over all entries instead of their number.
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            checkMaximumNotSet();
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("maximumWeight must be positive: " + maximumWeight);
+            }
+            this.maximum = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher);
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            this.expireAfterWriteNanos = positiveNanos(duration);
+            return this;
+        }
+
+        public Builder<K, V> expireAfterAccess(Duration duration) {
+            this.expireAfterAccessNanos = positiveNanos(duration);
+            return this;
+        }
+
+        /**
+         * Reloads an entry in the background when it is read more than duration after it was written. Needs a loader.
+         */
+        public Builder<K, V> refreshAfterWrite(Duration duration) {
+            this.refreshAfterWriteNanos = positiveNanos(duration);
+            return this;
+        }
+
+        /**
+         * Executor for refreshes, ForkJoinPool.commonPool() by default.
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * Source of nanosecond time, System::nanoTime by default; a manual clock makes expiration testable.
+         */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        public BoundedCache<K, V> build() {
+            if (refreshAfterWriteNanos > 0) {
+                throw new IllegalStateException("refreshAfterWrite requires a loader, use build(loader)");
+            }
+            return create(null);
+        }
+
+        /**
+         * A read-through cache: get(key) loads missing entries with loader.
+         */
+        public BoundedCache<K, V> build(Loader<? super K, V> loader) {
+            return create(Objects.requireNonNull(loader));
+        }
+
+        private BoundedCache<K, V> create(Loader<? super K, V> loader) {
+            if (maximum < 0) {
+                throw new IllegalStateException("maximumSize or maximumWeight must be set");
+            }
+            return new BoundedCache<>(this, loader);
+        }
+
+        private void checkMaximumNotSet() {
+            if (maximum >= 0) {
+                throw new IllegalStateException("maximumSize and maximumWeight can only be set once, and not both");
+            }
+        }
+
+        private static long positiveNanos(Duration duration) {
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("duration must be positive: " + duration);
+            }
+            return duration.toNanos();
+        }
+    }
+
+    /**
+     * The cached value, or null if the key is absent or expired. Counts a hit or a miss.
+     */
+    public V getIfPresent(K key) {
+        return getIfPresent(key, true);
+    }
+
+    /**
+     * The cached value, loading it with the cache's loader on a miss. A checked exception from the loader is rethrown
+     * wrapped in a CompletionException. Returns null (and caches nothing) if the loader returns null.
+     */
+    public V get(K key) {
+        if (loader == null) {
+            throw new IllegalStateException("no loader, build the cache with build(loader) or use get(key, mappingFunction)");
+        }
+        return get(key, this::load);
+    }
+
+    /**
+     * The cached value, computing it with mappingFunction on a miss. Other threads asking for the same key wait for
+     * this computation instead of starting their own.
+     */
+    public V get(K key, Function<? super K, ? extends V> mappingFunction) {
+        Objects.requireNonNull(mappingFunction);
+        long now = now();
+        Node<K, V> node = data.get(key);
+        if (node != null && !hasExpired(node, now)) {
+            hits.increment();
+            afterRead(node, now);
+            return node.value;
+        }
+        misses.increment();
+        List<Runnable> tasks = new ArrayList<>(2);
+        Node<K, V> result = data.compute(key, (k, current) -> {
+            if (current != null && !hasExpired(current, now)) {
+                return current;
+            }
+            if (current != null) {
+                tasks.add(new RemovalTask(current));
+            }
+            long start = ticker.getAsLong();
+            V value;
+            try {
+                value = mappingFunction.apply(k);
+            } catch (RuntimeException | Error e) {
+                loadFailures.increment();
+                totalLoadNanos.add(ticker.getAsLong() - start);
+                throw e;
+            }
+            totalLoadNanos.add(ticker.getAsLong() - start);
+            if (value == null) {
+                loadFailures.increment();
+                return null;
+            }
+            loadSuccesses.increment();
+            Node<K, V> created = new Node<>(k, value, weigh(k, value), now);
+            tasks.add(new AddTask(created));
+            return created;
+        });
+        if (!tasks.isEmpty()) {
+            afterWrite(tasks);
+        }
+        return result == null ? null : result.value;
+    }
+
+    public void put(K key, V value) {
+        doPut(key, value);
+    }
+
+    public void putAll(Map<? extends K, ? extends V> map) {
+        map.forEach(this::doPut);
+    }
+
+    public void invalidate(K key) {
+        doRemove(key);
+    }
+
+    public void invalidateAll() {
+        for (K key : data.keySet()) {
+            doRemove(key);
+        }
+    }
+
+    /**
+     * Loads the key again in the background and replaces the cached value when done.
+     */
+    public CompletableFuture<V> refresh(K key) {
+        Objects.requireNonNull(key);
+        if (loader == null) {
+            throw new IllegalStateException("refresh requires a loader");
+        }
+        return CompletableFuture.supplyAsync(() -> timedLoad(key), executor).thenApply(value -> {
+            if (value != null) {
+                doPut(key, value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Number of entries, including expired ones that have not been removed yet.
+     */
+    public long estimatedSize() {
+        return data.mappingCount();
+    }
+
+    /**
+     * Total weight of the entries known to the eviction policy (the entry count when bounded by maximumSize).
+     */
+    public long weightedSize() {
+        long size;
+        evictionLock.lock();
+        try {
+            size = weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+        if (!writeBuffer.isEmpty()) {
+            tryMaintenance();
+        }
+        return size;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadNanos.sum(),
+                evictions.sum(), evictionWeight.sum());
+    }
+
+    /**
+     * Runs pending maintenance now: replays buffered reads and writes, removes expired entries and evicts down to the limit.
+     * Normally this happens as a side effect of reads and writes.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+        if (!writeBuffer.isEmpty()) {
+            tryMaintenance();
+        }
+    }
+
+    /**
+     * Live Map view of the cache. Reads through the view do not count in the stats.
+     */
+    public Map<K, V> asMap() {
+        return new AbstractMap<>() {
+            @Override
+            public int size() {
+                return (int) Math.min(data.mappingCount(), Integer.MAX_VALUE);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V get(Object key) {
+                return getIfPresent((K) key, false);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public V put(K key, V value) {
+                return doPut(key, value);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V remove(Object key) {
+                return doRemove((K) key);
+            }
+
+            @Override
+            public void clear() {
+                invalidateAll();
+            }
+
+            @Override
+            public Set<Entry<K, V>> entrySet() {
+                return new AbstractSet<>() {
+                    @Override
+                    public int size() {
+                        return (int) Math.min(data.mappingCount(), Integer.MAX_VALUE);
+                    }
+
+                    @Override
+                    public Iterator<Entry<K, V>> iterator() {
+                        Iterator<Node<K, V>> nodes = data.values().iterator();
+                        long now = now();
+                        return new Iterator<>() {
+                            private Node<K, V> next = advance();
+                            private Node<K, V> last;
+
+                            private Node<K, V> advance() {
+                                while (nodes.hasNext()) {
+                                    Node<K, V> node = nodes.next();
+                                    if (!hasExpired(node, now)) {
+                                        return node;
+                                    }
+                                }
+                                return null;
+                            }
+
+                            @Override
+                            public boolean hasNext() {
+                                return next != null;
+                            }
+
+                            @Override
+                            public Entry<K, V> next() {
+                                if (next == null) {
+                                    throw new NoSuchElementException();
+                                }
+                                last = next;
+                                next = advance();
+                                return new SimpleImmutableEntry<>(last.key, last.value);
+                            }
+
+                            @Override
+                            public void remove() {
+                                if (last == null) {
+                                    throw new IllegalStateException();
+                                }
+                                if (data.remove(last.key, last)) {
+                                    afterWrite(List.of(new RemovalTask(last)));
+                                }
+                                last = null;
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    // ---- read and write paths ----
+
+    private V getIfPresent(K key, boolean recordStats) {
+        Objects.requireNonNull(key);
+        long now = now();
+        Node<K, V> node = data.get(key);
+        if (node == null || hasExpired(node, now)) {
+            if (recordStats) {
+                misses.increment();
+            }
+            if (node != null) {
+                tryMaintenance();
+            }
+            return null;
+        }
+        if (recordStats) {
+            hits.increment();
+        }
+        afterRead(node, now);
+        return node.value;
+    }
+
+    private V doPut(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        long now = now();
+        int weight = weigh(key, value);
+        List<Runnable> tasks = new ArrayList<>(2);
+        Object[] previous = new Object[1];
+        data.compute(key, (k, current) -> {
+            if (current == null || hasExpired(current, now)) {
+                if (current != null) {
+                    tasks.add(new RemovalTask(current));
+                }
+                Node<K, V> created = new Node<>(k, value, weight, now);
+                tasks.add(new AddTask(created));
+                return created;
+            }
+            previous[0] = current.value;
+            current.value = value;
+            current.writeTime = now;
+            current.accessTime = now;
+            tasks.add(new UpdateTask(current, weight));
+            return current;
+        });
+        afterWrite(tasks);
+        @SuppressWarnings("unchecked")
+        V old = (V) previous[0];
+        return old;
+    }
+
+    private V doRemove(K key) {
+        Objects.requireNonNull(key);
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        afterWrite(List.of(new RemovalTask(node)));
+        return hasExpired(node, now()) ? null : node.value;
+    }
+
+    private void afterRead(Node<K, V> node, long now) {
+        if (expireAfterAccessNanos > 0) {
+            node.accessTime = now;
+        }
+        MpscRingBuffer<Node<K, V>> buffer = readBuffers[stripe()];
+        if (!buffer.offer(node) || buffer.size() >= READ_BUFFER_DRAIN_THRESHOLD) {
+            tryMaintenance();
+        }
+        if (refreshAfterWriteNanos > 0 && now - node.writeTime >= refreshAfterWriteNanos) {
+            refreshAsync(node);
+        }
+    }
+
+    // Writes are never dropped: queue them and run maintenance if the lock is free. A writer only waits for the lock when
+    // WRITE_BUFFER_MAX writes are pending, which also bounds how far the cache can go over its limit.
+    private void afterWrite(List<Runnable> tasks) {
+        writeBuffer.addAll(tasks);
+        if (pendingWrites.addAndGet(tasks.size()) < WRITE_BUFFER_MAX) {
+            tryMaintenance();
+            return;
+        }
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+        if (!writeBuffer.isEmpty()) {
+            tryMaintenance();
+        }
+    }
+
+    // Tries again while writes are queued: a writer that failed tryLock relies on the thread holding the lock to apply them
+    private void tryMaintenance() {
+        do {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    private void refreshAsync(Node<K, V> node) {
+        if (!REFRESHING.compareAndSet(node, false, true)) {
+            return;
+        }
+        long writeTime = node.writeTime;
+        // The flag is set before the task is submitted: clear it if the executor refuses the task, or no refresh would run again
+        try {
+            CompletableFuture.supplyAsync(() -> timedLoad(node.key), executor).whenComplete((value, failure) -> {
+                try {
+                    if (failure != null || value == null) {
+                        return;
+                    }
+                    int weight = weigh(node.key, value);
+                    long now = now();
+                    boolean[] replaced = new boolean[1];
+                    // Only replace the node that was read: it may have been written, removed or evicted in the meantime
+                    data.computeIfPresent(node.key, (k, current) -> {
+                        if (current == node && node.writeTime == writeTime) {
+                            node.value = value;
+                            node.writeTime = now;
+                            replaced[0] = true;
+                        }
+                        return current;
+                    });
+                    if (replaced[0]) {
+                        afterWrite(List.of(new UpdateTask(node, weight)));
+                    }
+                } finally {
+                    node.refreshing = false;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            node.refreshing = false;
+        }
+    }
+
+    private V load(K key) {
+        try {
+            return loader.load(key);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // Load outside of get(): records the same stats that get() records for its loads
+    private V timedLoad(K key) {
+        long start = ticker.getAsLong();
+        try {
+            V value = load(key);
+            (value == null ? loadFailures : loadSuccesses).increment();
+            return value;
+        } catch (RuntimeException e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            totalLoadNanos.add(ticker.getAsLong() - start);
+        }
+    }
+
+    private int weigh(K key, V value) {
+        if (weigher == null) {
+            return 1;
+        }
+        int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("negative weight " + weight + " for key " + key);
+        }
+        return weight;
+    }
+
+    private long now() {
+        return ticker.getAsLong() - tickerOrigin;
+    }
+
+    private boolean hasExpired(Node<K, V> node, long now) {
+        return (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos)
+                || (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    private long expirationTime(Node<K, V> node) {
+        long time = Long.MAX_VALUE;
+        if (expireAfterWriteNanos > 0) {
+            time = node.writeTime + expireAfterWriteNanos;
+        }
+        if (expireAfterAccessNanos > 0) {
+            time = Math.min(time, node.accessTime + expireAfterAccessNanos);
+        }
+        return time;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (readBuffers.length - 1);
+    }
+
+    // ---- policy, always called with evictionLock held ----
+
+    private void maintenance() {
+        for (MpscRingBuffer<Node<K, V>> buffer : readBuffers) {
+            buffer.drain(this::onAccess, READ_BUFFER_SIZE);
+        }
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        if (weigher != null) {
+            sketch.ensureCapacity(data.mappingCount());
+        }
+        if (timerWheel != null) {
+            long now = now();
+            timerWheel.advance(now, node -> expire(node, now));
+        }
+        evictEntries();
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.policyState != ALIVE) {
+            return;
+        }
+        sketch.increment(node.key);
+        reorder(node);
+        if (timerWheel != null && expireAfterAccessNanos > 0) {
+            timerWheel.schedule(node, expirationTime(node));
+        }
+    }
+
+    private void reorder(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                // Used again while on probation: promote, and demote protected entries that no longer fit
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.policyWeight;
+                while (protectedWeight > protectedMaximum) {
+                    Node<K, V> demoted = protectedQueue.first;
+                    if (demoted == null) {
+                        break;
+                    }
+                    protectedQueue.remove(demoted);
+                    protectedWeight -= demoted.policyWeight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            default -> protectedQueue.moveToLast(node);
+        }
+    }
+
+    private final class AddTask implements Runnable {
+        private final Node<K, V> node;
+
+        AddTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            if (node.policyState != PENDING) {
+                return;
+            }
+            node.policyState = ALIVE;
+            node.policyWeight = node.weight;
+            node.queue = WINDOW;
+            window.addLast(node);
+            windowWeight += node.policyWeight;
+            weightedSize += node.policyWeight;
+            sketch.increment(node.key);
+            if (timerWheel != null) {
+                timerWheel.schedule(node, expirationTime(node));
+            }
+        }
+    }
+
+    private final class UpdateTask implements Runnable {
+        private final Node<K, V> node;
+        private final int weight;
+
+        UpdateTask(Node<K, V> node, int weight) {
+            this.node = node;
+            this.weight = weight;
+        }
+
+        @Override
+        public void run() {
+            node.weight = weight;
+            if (node.policyState != ALIVE) {
+                return;
+            }
+            int delta = weight - node.policyWeight;
+            node.policyWeight = weight;
+            weightedSize += delta;
+            if (node.queue == WINDOW) {
+                windowWeight += delta;
+            } else if (node.queue == PROTECTED) {
+                protectedWeight += delta;
+            }
+            sketch.increment(node.key);
+            reorder(node);
+            if (timerWheel != null) {
+                timerWheel.schedule(node, expirationTime(node));
+            }
+        }
+    }
+
+    private final class RemovalTask implements Runnable {
+        private final Node<K, V> node;
+
+        RemovalTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            unlink(node);
+        }
+    }
+
+    // Called by the timer wheel for a node whose deadline has passed
+    private boolean expire(Node<K, V> node, long now) {
+        if (!hasExpired(node, now)) {
+            node.timerTime = expirationTime(node);
+            return false;
+        }
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+            evictionWeight.add(node.policyWeight);
+        }
+        unlink(node);
+        return true;
+    }
+
+    private void evictEntries() {
+        // Entries leaving the window become admission candidates at the MRU end of probation
+        Node<K, V> candidate = null;
+        while (windowWeight > windowMaximum && window.first != null) {
+            Node<K, V> node = window.first;
+            window.remove(node);
+            windowWeight -= node.policyWeight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        // Each candidate duels with the LRU entry of probation (the victim); the less frequently used one is evicted
+        Node<K, V> victim = probation.first;
+        while (weightedSize > maximum) {
+            if (victim == null) {
+                Node<K, V> fallback = protectedQueue.first != null ? protectedQueue.first : window.first;
+                if (fallback == null) {
+                    break;
+                }
+                evict(fallback);
+            } else if (candidate == null) {
+                Node<K, V> next = victim.next;
+                evict(victim);
+                victim = next;
+            } else if (victim == candidate) {
+                Node<K, V> next = candidate.next;
+                evict(candidate);
+                victim = next;
+                candidate = next;
+            } else if (admit(candidate, victim)) {
+                Node<K, V> next = victim.next;
+                evict(victim);
+                victim = next;
+                candidate = candidate.next;
+            } else {
+                Node<K, V> next = candidate.next;
+                evict(candidate);
+                candidate = next;
+            }
+        }
+    }
+
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        int victimFrequency = sketch.frequency(victim.key);
+        int candidateFrequency = sketch.frequency(candidate.key);
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+        if (candidateFrequency <= 5) {
+            return false;
+        }
+        // A popular key may be used to keep a victim artificially hot (hash flooding); admit a warm candidate now and then
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evict(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            evictions.increment();
+            evictionWeight.add(node.policyWeight);
+        }
+        unlink(node);
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.policyState == ALIVE) {
+            switch (node.queue) {
+                case WINDOW -> {
+                    window.remove(node);
+                    windowWeight -= node.policyWeight;
+                }
+                case PROBATION -> probation.remove(node);
+                default -> {
+                    protectedQueue.remove(node);
+                    protectedWeight -= node.policyWeight;
+                }
+            }
+            weightedSize -= node.policyWeight;
+            if (timerWheel != null) {
+                timerWheel.deschedule(node);
+            }
+        }
+        node.policyState = DEAD;
+    }
+
+    /**
+     * A cache entry. The value and times are written under the ConcurrentHashMap bin lock and read without locks; the
+     * fields after policyState belong to the eviction policy and are only used with the eviction lock held.
+     */
+    static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile int weight;
+        volatile long writeTime;
+        volatile long accessTime;
+        volatile boolean refreshing;
+
+        int policyState;
+        int policyWeight;
+        int queue;
+        Node<K, V> prev;
+        Node<K, V> next;
+        long timerTime;
+        Node<K, V> timerPrev;
+        Node<K, V> timerNext;
+
+        Node(K key, V value, int weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    private static final VarHandle REFRESHING;
+
+    static {
+        try {
+            REFRESHING = MethodHandles.lookup().findVarHandle(Node.class, "refreshing", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Doubly linked list through Node.prev/next, least recently used first.
+     */
+    private static final class AccessOrder<K, V> {
+        Node<K, V> first;
+        Node<K, V> last;
+
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,697 @@
+package ca.siva.ch05_collections;
+
+import java.util.*;
+
+/*
+NOTE:
+1) LinkedList allocates a 24-byte node per element (plus the element itself) and every step of an iteration is a pointer hop
+to wherever that node was allocated. An unrolled list stores elements in array chunks (128 by default), so iteration is
+mostly a sequential array scan and the per-element overhead is one array slot.
+2) Each chunk keeps a used range [offset, offset + count). addFirst fills a chunk from its end, addLast from its start, so
+both ends of the list are O(1) like ArrayDeque and LinkedList.
+3) add(index, e) and remove(index) only shift elements inside one chunk, at most chunkCapacity / 2 of them. A full chunk is
+split in two, nearly empty neighbours are merged back. Inserting through a ListIterator (an editor's cursor) never searches.
+4) get(index) binary searches the per-chunk element counts, which are recomputed lazily after chunks change size, so
+index access is O(log n) instead of LinkedList's O(n).
+5) clone() copies only the array of chunk references and marks the chunks as shared. Whichever list writes to a shared chunk
+first copies that chunk (copy-on-write), so a clone costs O(n / chunkCapacity) and both lists stay independent.
+6) Not thread safe; iterators are fail-fast like LinkedList's.
+ */
+public class ChunkedList<E> extends AbstractList<E> implements Deque<E>, Cloneable {
+    public static final int DEFAULT_CHUNK_CAPACITY = 128;
+
+    private final int chunkCapacity;
+    // Chunks in use are chunks[first .. first + chunkCount), with free slots on both sides for cheap growth at either end.
+    private Chunk[] chunks = new Chunk[8];
+    private int first = 4;
+    private int chunkCount;
+    private int size;
+    // before[k] = number of elements in chunks 1 .. k - 1, valid for k < validCount. Chunk 0 is left out so deque
+    // operations on the first chunk never invalidate it.
+    private int[] before = new int[8];
+    private int validCount;
+
+    public ChunkedList() {
+        this(DEFAULT_CHUNK_CAPACITY);
+    }
+
+    public ChunkedList(int chunkCapacity) {
+        if (chunkCapacity < 4) {
+            throw new IllegalArgumentException("chunkCapacity must be at least 4: " + chunkCapacity);
+        }
+        this.chunkCapacity = chunkCapacity;
+    }
+
+    public ChunkedList(Collection<? extends E> elements) {
+        this(DEFAULT_CHUNK_CAPACITY);
+        addAll(elements);
+    }
+
+    private static final class Chunk {
+        final Object[] items;
+        int offset;
+        int count;
+        boolean shared;
+
+        Chunk(int capacity, int offset) {
+            this.items = new Object[capacity];
+            this.offset = offset;
+        }
+
+        Chunk(Chunk source) {
+            this.items = source.items.clone();
+            this.offset = source.offset;
+            this.count = source.count;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        chunks = new Chunk[8];
+        first = 4;
+        chunkCount = 0;
+        size = 0;
+        validCount = 0;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        int k = chunkIndexOf(index);
+        Chunk chunk = chunk(k);
+        return (E) chunk.items[chunk.offset + index - startOf(k)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        Objects.checkIndex(index, size);
+        int k = chunkIndexOf(index);
+        Chunk chunk = writable(k);
+        int at = chunk.offset + index - startOf(k);
+        E previous = (E) chunk.items[at];
+        chunk.items[at] = element;
+        return previous;
+    }
+
+    @Override
+    public boolean add(E element) {
+        addLast(element);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        Objects.checkIndex(index, size + 1);
+        if (index == size) {
+            addLast(element);
+        } else if (index == 0) {
+            addFirst(element);
+        } else {
+            int k = chunkIndexOf(index);
+            insertAt(k, index - startOf(k), element);
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        Objects.checkIndex(index, size);
+        int k = chunkIndexOf(index);
+        Chunk chunk = chunk(k);
+        @SuppressWarnings("unchecked")
+        E removed = (E) chunk.items[chunk.offset + index - startOf(k)];
+        removeAt(k, index - startOf(k));
+        return removed;
+    }
+
+    @Override
+    public void addFirst(E element) {
+        if (chunkCount == 0 || chunk(0).offset == 0) {
+            insertChunk(0, new Chunk(chunkCapacity, chunkCapacity));
+        }
+        Chunk chunk = writable(0);
+        chunk.items[--chunk.offset] = element;
+        chunk.count++;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void addLast(E element) {
+        if (chunkCount == 0 || endOf(chunk(chunkCount - 1)) == chunkCapacity) {
+            insertChunk(chunkCount, new Chunk(chunkCapacity, 0));
+        }
+        int k = chunkCount - 1;
+        Chunk chunk = writable(k);
+        chunk.items[chunk.offset + chunk.count++] = element;
+        size++;
+        modCount++;
+        countChanged(k);
+    }
+
+    @Override
+    public boolean offerFirst(E element) {
+        addFirst(element);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(E element) {
+        addLast(element);
+        return true;
+    }
+
+    @Override
+    public E removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return remove(0);
+    }
+
+    @Override
+    public E removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return remove(size - 1);
+    }
+
+    @Override
+    public E pollFirst() {
+        return size == 0 ? null : remove(0);
+    }
+
+    @Override
+    public E pollLast() {
+        return size == 0 ? null : remove(size - 1);
+    }
+
+    @Override
+    public E getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return peekFirst();
+    }
+
+    @Override
+    public E getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return peekLast();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peekFirst() {
+        if (size == 0) {
+            return null;
+        }
+        Chunk chunk = chunk(0);
+        return (E) chunk.items[chunk.offset];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peekLast() {
+        if (size == 0) {
+            return null;
+        }
+        Chunk chunk = chunk(chunkCount - 1);
+        return (E) chunk.items[endOf(chunk) - 1];
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        return remove(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        ListIterator<E> iterator = listIterator(size);
+        while (iterator.hasPrevious()) {
+            if (Objects.equals(o, iterator.previous())) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        return offerLast(element);
+    }
+
+    @Override
+    public E remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public E element() {
+        return getFirst();
+    }
+
+    @Override
+    public E peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(E element) {
+        addFirst(element);
+    }
+
+    @Override
+    public E pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        ListIterator<E> iterator = listIterator(size);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasPrevious();
+            }
+
+            @Override
+            public E next() {
+                return iterator.previous();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        Objects.checkIndex(index, size + 1);
+        return new ChunkIterator(index);
+    }
+
+    /**
+     * Shallow copy in O(n / chunkCapacity): the chunks are shared and copied by whichever list modifies them first.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public ChunkedList<E> clone() {
+        try {
+            ChunkedList<E> copy = (ChunkedList<E>) super.clone();
+            copy.chunks = chunks.clone();
+            copy.before = before.clone();
+            copy.modCount = 0;
+            for (int k = 0; k < chunkCount; k++) {
+                chunk(k).shared = true;
+            }
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e);
+        }
+    }
+
+    private Chunk chunk(int k) {
+        return chunks[first + k];
+    }
+
+    private Chunk writable(int k) {
+        Chunk chunk = chunks[first + k];
+        if (chunk.shared) {
+            chunk = new Chunk(chunk);
+            chunks[first + k] = chunk;
+        }
+        return chunk;
+    }
+
+    private static int endOf(Chunk chunk) {
+        return chunk.offset + chunk.count;
+    }
+
+    private int startOf(int k) {
+        return k == 0 ? 0 : chunk(0).count + before[k];
+    }
+
+    private int chunkIndexOf(int index) {
+        int firstCount = chunk(0).count;
+        if (index < firstCount) {
+            return 0;
+        }
+        if (index >= size - chunk(chunkCount - 1).count) {
+            validateCounts();
+            return chunkCount - 1;
+        }
+        validateCounts();
+        // Largest k >= 1 with before[k] <= index - firstCount; before[] is strictly increasing since no chunk is empty.
+        int target = index - firstCount;
+        int low = 1;
+        int high = chunkCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (before[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void validateCounts() {
+        if (validCount >= chunkCount) {
+            return;
+        }
+        if (before.length < chunkCount) {
+            before = Arrays.copyOf(before, Math.max(chunkCount, before.length * 2));
+        }
+        int k = Math.max(validCount, 2);
+        before[0] = 0;
+        if (chunkCount > 1) {
+            before[1] = 0;
+        }
+        for (; k < chunkCount; k++) {
+            before[k] = before[k - 1] + chunk(k - 1).count;
+        }
+        validCount = chunkCount;
+    }
+
+    private void countChanged(int k) {
+        if (k >= 1) {
+            validCount = Math.min(validCount, k + 1);
+        }
+    }
+
+    private void chunksShifted(int k) {
+        validCount = Math.min(validCount, Math.max(k + 1, 2));
+    }
+
+    private void insertChunk(int k, Chunk chunk) {
+        if (k == 0 && first > 0) {
+            first--;
+        } else {
+            if (first + chunkCount == chunks.length || (k == 0 && first == 0)) {
+                // Re-center in a larger array, leaving free slots on both sides.
+                Chunk[] grown = new Chunk[Math.max(8, chunkCount * 2 + 2)];
+                int newFirst = (grown.length - chunkCount) / 2;
+                System.arraycopy(chunks, first, grown, newFirst, chunkCount);
+                chunks = grown;
+                first = newFirst;
+            }
+            if (k == 0) {
+                first--;
+            } else {
+                System.arraycopy(chunks, first + k, chunks, first + k + 1, chunkCount - k);
+            }
+        }
+        chunks[first + k] = chunk;
+        chunkCount++;
+        chunksShifted(k);
+    }
+
+    private void removeChunk(int k) {
+        if (k == 0) {
+            chunks[first] = null;
+            first++;
+        } else {
+            System.arraycopy(chunks, first + k + 1, chunks, first + k, chunkCount - k - 1);
+            chunks[first + chunkCount - 1] = null;
+        }
+        chunkCount--;
+        chunksShifted(k);
+        if (chunkCount == 0) {
+            first = chunks.length / 2;
+        }
+    }
+
+    /**
+     * Inserts at position inner of chunk k, splitting the chunk if it is full. Returns the packed (chunk, position) where
+     * the element ended up.
+     */
+    private long insertAt(int k, int inner, E element) {
+        if (inner == 0 && k > 0 && endOf(chunk(k - 1)) < chunkCapacity) {
+            // At a chunk boundary with room at the end of the previous chunk: append there, nothing to shift.
+            k--;
+            inner = chunk(k).count;
+        }
+        Chunk chunk = writable(k);
+        if (chunk.count == chunkCapacity) {
+            int moved = chunk.count / 2;
+            Chunk right = new Chunk(chunkCapacity, 0);
+            System.arraycopy(chunk.items, endOf(chunk) - moved, right.items, 0, moved);
+            Arrays.fill(chunk.items, endOf(chunk) - moved, endOf(chunk), null);
+            right.count = moved;
+            chunk.count -= moved;
+            insertChunk(k + 1, right);
+            countChanged(k);
+            if (inner > chunk.count) {
+                inner -= chunk.count;
+                k++;
+                chunk = right;
+            }
+        }
+        if (endOf(chunk) < chunkCapacity && (chunk.offset == 0 || inner >= chunk.count / 2)) {
+            int at = chunk.offset + inner;
+            System.arraycopy(chunk.items, at, chunk.items, at + 1, chunk.count - inner);
+        } else {
+            System.arraycopy(chunk.items, chunk.offset, chunk.items, chunk.offset - 1, inner);
+            chunk.offset--;
+        }
+        chunk.items[chunk.offset + inner] = element;
+        chunk.count++;
+        size++;
+        modCount++;
+        countChanged(k);
+        return pack(k, inner);
+    }
+
+    /**
+     * Removes position inner of chunk k. Returns the packed position of the element that followed it, which may be the end
+     * of a chunk.
+     */
+    private long removeAt(int k, int inner) {
+        Chunk chunk = writable(k);
+        if (inner < chunk.count / 2) {
+            System.arraycopy(chunk.items, chunk.offset, chunk.items, chunk.offset + 1, inner);
+            chunk.items[chunk.offset] = null;
+            chunk.offset++;
+        } else {
+            int at = chunk.offset + inner;
+            System.arraycopy(chunk.items, at + 1, chunk.items, at, chunk.count - inner - 1);
+            chunk.items[endOf(chunk) - 1] = null;
+        }
+        chunk.count--;
+        size--;
+        modCount++;
+        if (chunk.count == 0) {
+            removeChunk(k);
+            if (k < chunkCount) {
+                return pack(k, 0);
+            }
+            return k == 0 ? pack(0, 0) : pack(k - 1, chunk(k - 1).count);
+        }
+        countChanged(k);
+        return mergeIfSparse(k, inner);
+    }
+
+    /**
+     * Merges chunk k with a neighbour when together they fill at most half a chunk, so deletes cannot leave a long trail of
+     * nearly empty chunks.
+     */
+    private long mergeIfSparse(int k, int inner) {
+        int limit = chunkCapacity / 2;
+        if (chunk(k).count > chunkCapacity / 4) {
+            return pack(k, inner);
+        }
+        if (k + 1 < chunkCount && chunk(k).count + chunk(k + 1).count <= limit) {
+            appendChunk(k, chunk(k + 1));
+            removeChunk(k + 1);
+            return pack(k, inner);
+        }
+        if (k > 0 && chunk(k - 1).count + chunk(k).count <= limit) {
+            int previousCount = chunk(k - 1).count;
+            appendChunk(k - 1, chunk(k));
+            removeChunk(k);
+            return pack(k - 1, previousCount + inner);
+        }
+        return pack(k, inner);
+    }
+
+    private void appendChunk(int k, Chunk source) {
+        Chunk target = writable(k);
+        if (endOf(target) + source.count > chunkCapacity) {
+            System.arraycopy(target.items, target.offset, target.items, 0, target.count);
+            Arrays.fill(target.items, target.count, endOf(target), null);
+            target.offset = 0;
+        }
+        System.arraycopy(source.items, source.offset, target.items, endOf(target), source.count);
+        target.count += source.count;
+        countChanged(k);
+    }
+
+    private static long pack(int k, int inner) {
+        return ((long) k << 32) | (inner & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Keeps its position as (chunk, index in chunk), so next/previous/add/remove at the cursor never search the list.
+     */
+    private final class ChunkIterator implements ListIterator<E> {
+        private int cursor;
+        private int k;
+        private int inner;
+        private int lastK = -1;
+        private int lastInner;
+        private boolean lastWasNext;
+        private int expectedModCount = modCount;
+
+        ChunkIterator(int index) {
+            cursor = index;
+            if (chunkCount == 0) {
+                return;
+            }
+            if (index == size) {
+                k = chunkCount - 1;
+                inner = chunk(k).count;
+            } else {
+                k = chunkIndexOf(index);
+                inner = index - startOf(k);
+            }
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            checkForComodification();
+            if (cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            if (inner == chunk(k).count) {
+                k++;
+                inner = 0;
+            }
+            Chunk chunk = chunk(k);
+            lastK = k;
+            lastInner = inner;
+            lastWasNext = true;
+            inner++;
+            cursor++;
+            return (E) chunk.items[chunk.offset + lastInner];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E previous() {
+            checkForComodification();
+            if (cursor <= 0) {
+                throw new NoSuchElementException();
+            }
+            if (inner == 0) {
+                k--;
+                inner = chunk(k).count;
+            }
+            inner--;
+            cursor--;
+            lastK = k;
+            lastInner = inner;
+            lastWasNext = false;
+            Chunk chunk = chunk(k);
+            return (E) chunk.items[chunk.offset + inner];
+        }
+
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastK < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            long position = removeAt(lastK, lastInner);
+            k = (int) (position >>> 32);
+            inner = (int) position;
+            if (lastWasNext) {
+                cursor--;
+            }
+            lastK = -1;
+            expectedModCount = modCount;
+        }
+
+        @Override
+        public void set(E element) {
+            if (lastK < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            Chunk chunk = writable(lastK);
+            chunk.items[chunk.offset + lastInner] = element;
+        }
+
+        @Override
+        public void add(E element) {
+            checkForComodification();
+            if (chunkCount == 0 || cursor == 0) {
+                addFirst(element);
+                k = 0;
+                inner = 1;
+            } else if (cursor == size) {
+                addLast(element);
+                k = chunkCount - 1;
+                inner = chunk(k).count;
+            } else {
+                long position = insertAt(k, inner, element);
+                k = (int) (position >>> 32);
+                inner = (int) position + 1;
+            }
+            cursor++;
+            lastK = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
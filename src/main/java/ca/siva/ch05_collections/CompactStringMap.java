@@ -0,0 +1,545 @@
+package ca.siva.ch05_collections;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/*
+NOTE:
+1) A HashMap<String, V> entry costs a HashMap.Node (32 bytes), a String (24 bytes) and its byte[] (16 bytes + the characters),
+plus a slot in the table: about 80 bytes before the characters. Here the key characters are appended to a shared byte arena
+and the table is three parallel arrays (arena address, hash, value) probed with open addressing: about 20 bytes per entry
+plus the characters.
+2) Keys that only contain chars up to 0xFF are stored as Latin-1 (1 byte per char), others as UTF-8. Surrogate pairs are
+stored as two 3-byte sequences (CESU-8), so any char sequence round-trips unchanged.
+3) get, containsKey and remove accept any CharSequence (StringBuilder, CharBuffer, a slice of a parsed line) and compare it
+against the arena bytes directly, without creating a String. Keys are compared by content, so a StringBuilder finds the
+entry stored under the String with the same characters.
+4) The arena is append-only: removing a key leaves its bytes behind. They are reclaimed once they outweigh the live keys
+(on remove, or when the table grows), or by an explicit compact(). Iterators create the key Strings on demand; their
+remove() never compacts, so removeIf and retainAll on the views can run over the whole map.
+5) Not thread-safe, like HashMap.
+ */
+public class CompactStringMap<V> extends AbstractMap<String, V> {
+    private static final int MIN_CAPACITY = 16;
+    private static final int FIRST_PAGE_SIZE = 256;
+    private static final int MAX_PAGE_SIZE = 1 << 20;
+    private static final int MAX_KEY_BYTES = Integer.MAX_VALUE >> 1;
+
+    // Slot i is empty when addresses[i] == 0, otherwise the key starts at arena address addresses[i] - 1
+    private long[] addresses;
+    private int[] hashes;
+    private Object[] values;
+    private int shift;
+    private int size;
+    private int threshold;
+    private int modCount;
+
+    // Arena address = page index << 32 | offset in the page; a key never spans two pages
+    private byte[][] pages = new byte[4][];
+    private int pageCount;
+    private int pageUsed;
+    private long arenaBytes;
+    private long garbageBytes;
+
+    public CompactStringMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of keys the map can hold before the table is resized
+     */
+    public CompactStringMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+        }
+        allocateTable(tableSizeFor(expectedSize));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public V get(Object key) {
+        int slot = key instanceof CharSequence chars ? find(chars, hash(chars)) : -1;
+        return slot < 0 ? null : value(slot);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof CharSequence chars && find(chars, hash(chars)) >= 0;
+    }
+
+    @Override
+    public V put(String key, V value) {
+        return put((CharSequence) key, value);
+    }
+
+    /**
+     * Same as put(String, V); the characters are copied into the arena, so the key object may be reused afterwards.
+     */
+    public V put(CharSequence key, V value) {
+        Objects.requireNonNull(key);
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            V old = value(slot);
+            values[slot] = value;
+            return old;
+        }
+        if (size >= threshold) {
+            resize(addresses.length << 1);
+        }
+        slot = homeSlot(hash);
+        while (addresses[slot] != 0) {
+            slot = (slot + 1) & (addresses.length - 1);
+        }
+        addresses[slot] = store(key) + 1;
+        hashes[slot] = hash;
+        values[slot] = value;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        if (!(key instanceof CharSequence chars)) {
+            return null;
+        }
+        int slot = find(chars, hash(chars));
+        if (slot < 0) {
+            return null;
+        }
+        V old = value(slot);
+        removeSlot(slot, null);
+        if (garbageBytes > FIRST_PAGE_SIZE && mostlyGarbage()) {
+            compact();
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        allocateTable(MIN_CAPACITY);
+        pages = new byte[4][];
+        pageCount = 0;
+        pageUsed = 0;
+        arenaBytes = 0;
+        garbageBytes = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super V> action) {
+        Objects.requireNonNull(action);
+        int expectedModCount = modCount;
+        for (int slot = 0; slot < addresses.length; slot++) {
+            if (addresses[slot] != 0) {
+                action.accept(decode(addresses[slot] - 1), value(slot));
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Bytes taken by the key arena, including the bytes of removed keys that have not been reclaimed yet.
+     */
+    public long arenaBytes() {
+        return arenaBytes;
+    }
+
+    /**
+     * Copies the live keys into a new arena, releasing the bytes left behind by removed keys.
+     */
+    public void compact() {
+        rebuild(addresses.length, true);
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new SlotIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private final class SlotIterator implements Iterator<Entry<String, V>> {
+        private int expectedModCount = modCount;
+        // Addresses of returned entries that a removal moved to a slot not visited yet; initialized before slot
+        private long[] visitedMoved = new long[0];
+        private int slot = nextSlot(0);
+        private int last = -1;
+
+        private int nextSlot(int from) {
+            while (from < addresses.length && (addresses[from] == 0 || skip(addresses[from]))) {
+                from++;
+            }
+            return from;
+        }
+
+        private boolean skip(long address) {
+            for (int i = 0; i < visitedMoved.length; i++) {
+                if (visitedMoved[i] == address) {
+                    visitedMoved[i] = visitedMoved[visitedMoved.length - 1];
+                    visitedMoved = Arrays.copyOf(visitedMoved, visitedMoved.length - 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return slot < addresses.length;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<String, V> entry = new SlotEntry(slot);
+            last = slot;
+            slot = nextSlot(slot + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            removeSlot(last, this);
+            last = -1;
+            slot = nextSlot(slot);
+            expectedModCount = modCount;
+        }
+
+        // Slots below slot have been visited. An entry moved from an unvisited slot into that range is visited again from
+        // there; an entry moved the other way (wrapping around the end of the table) is remembered and skipped.
+        void moved(int from, int to) {
+            boolean fromVisited = from < slot;
+            boolean toVisited = to < slot;
+            if (!fromVisited && toVisited) {
+                slot = to;
+            } else if (fromVisited && !toVisited) {
+                visitedMoved = Arrays.copyOf(visitedMoved, visitedMoved.length + 1);
+                visitedMoved[visitedMoved.length - 1] = addresses[to];
+            }
+        }
+    }
+
+    private final class SlotEntry extends SimpleEntry<String, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int slot;
+        private final long address;
+
+        SlotEntry(int slot) {
+            super(decode(addresses[slot] - 1), value(slot));
+            this.slot = slot;
+            this.address = addresses[slot];
+        }
+
+        // A removal through the iterator may have moved the entry to another slot
+        @Override
+        public V setValue(V value) {
+            int current = addresses[slot] == address ? slot : find(getKey(), hash(getKey()));
+            if (current >= 0) {
+                values[current] = value;
+            }
+            return super.setValue(value);
+        }
+    }
+
+    // String caches its hash code; for other sequences the same formula is computed so both find the same slot
+    private static int hash(CharSequence key) {
+        if (key instanceof String string) {
+            return string.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        return hash;
+    }
+
+    // Fibonacci hashing spreads the high bits of String.hashCode over the table
+    private int homeSlot(int hash) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    private int find(CharSequence key, int hash) {
+        int mask = addresses.length - 1;
+        for (int slot = homeSlot(hash); ; slot = (slot + 1) & mask) {
+            long address = addresses[slot];
+            if (address == 0) {
+                return -1;
+            }
+            if (hashes[slot] == hash && keyEquals(address - 1, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void removeSlot(int slot, SlotIterator iterator) {
+        garbageBytes += storedSize(addresses[slot] - 1);
+        deleteSlot(slot, iterator);
+        size--;
+        modCount++;
+    }
+
+    // Backward-shift deletion: entries after the hole move up when that keeps them reachable from their home slot.
+    // Each move is reported to the iterator removing the entry, if any.
+    private void deleteSlot(int hole, SlotIterator iterator) {
+        int mask = addresses.length - 1;
+        for (int slot = (hole + 1) & mask; addresses[slot] != 0; slot = (slot + 1) & mask) {
+            int home = homeSlot(hashes[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                addresses[hole] = addresses[slot];
+                hashes[hole] = hashes[slot];
+                values[hole] = values[slot];
+                if (iterator != null) {
+                    iterator.moved(slot, hole);
+                }
+                hole = slot;
+            }
+        }
+        addresses[hole] = 0;
+        values[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        rebuild(capacity, mostlyGarbage());
+    }
+
+    // Copying the live keys costs no more than the removals that left the garbage behind
+    private boolean mostlyGarbage() {
+        return garbageBytes > arenaBytes - garbageBytes;
+    }
+
+    private void rebuild(int capacity, boolean compactArena) {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        byte[][] oldPages = pages;
+        if (compactArena) {
+            pages = new byte[4][];
+            pageCount = 0;
+            pageUsed = 0;
+            arenaBytes = 0;
+            garbageBytes = 0;
+        }
+        allocateTable(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] == 0) {
+                continue;
+            }
+            long address = oldAddresses[i] - 1;
+            if (compactArena) {
+                byte[] page = oldPages[(int) (address >>> 32)];
+                int offset = (int) address;
+                int length = storedSize(page, offset);
+                address = allocate(length);
+                System.arraycopy(page, offset, pages[pageCount - 1], (int) address, length);
+            }
+            int slot = homeSlot(oldHashes[i]);
+            while (addresses[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            addresses[slot] = address + 1;
+            hashes[slot] = oldHashes[i];
+            values[slot] = oldValues[i];
+        }
+        modCount++;
+    }
+
+    private void allocateTable(int capacity) {
+        addresses = new long[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        threshold = (int) (capacity * 0.75f);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(expectedSize / 0.75);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("expectedSize too large: " + expectedSize);
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) Math.max(1, needed - 1)) << 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) values[slot];
+    }
+
+    // Key layout in the arena: varint header (byte length << 1 | 1 if UTF-8), then the bytes
+    private long store(CharSequence key) {
+        int length = key.length();
+        boolean latin1 = true;
+        long utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            latin1 &= c <= 0xFF;
+            utf8Length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        long byteLength = latin1 ? length : utf8Length;
+        if (byteLength > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("key too long: " + length + " chars");
+        }
+        int header = (int) byteLength << 1 | (latin1 ? 0 : 1);
+        long address = allocate(varintSize(header) + (int) byteLength);
+        byte[] page = pages[pageCount - 1];
+        int p = (int) address;
+        while ((header & ~0x7F) != 0) {
+            page[p++] = (byte) (header | 0x80);
+            header >>>= 7;
+        }
+        page[p++] = (byte) header;
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            if (latin1 || c < 0x80) {
+                page[p++] = (byte) c;
+            } else if (c < 0x800) {
+                page[p++] = (byte) (0xC0 | c >> 6);
+                page[p++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                page[p++] = (byte) (0xE0 | c >> 12);
+                page[p++] = (byte) (0x80 | c >> 6 & 0x3F);
+                page[p++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return address;
+    }
+
+    private long allocate(int bytes) {
+        byte[] current = pageCount == 0 ? null : pages[pageCount - 1];
+        if (current == null || current.length - pageUsed < bytes) {
+            // Pages double up to 1 MiB so small maps stay small; a key larger than that gets a page of its own
+            int pageSize = current == null ? FIRST_PAGE_SIZE : Math.min(MAX_PAGE_SIZE, current.length << 1);
+            if (pageCount == pages.length) {
+                pages = Arrays.copyOf(pages, pageCount << 1);
+            }
+            pages[pageCount++] = new byte[Math.max(pageSize, bytes)];
+            pageUsed = 0;
+            arenaBytes += pages[pageCount - 1].length;
+        }
+        long address = (long) (pageCount - 1) << 32 | pageUsed;
+        pageUsed += bytes;
+        return address;
+    }
+
+    private static int varintSize(int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    private int storedSize(long address) {
+        return storedSize(pages[(int) (address >>> 32)], (int) address);
+    }
+
+    private static int storedSize(byte[] page, int offset) {
+        int header = readHeader(page, offset);
+        return varintSize(header) + (header >>> 1);
+    }
+
+    private static int readHeader(byte[] page, int p) {
+        int header = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = page[p++];
+            header |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return header;
+            }
+        }
+    }
+
+    private boolean keyEquals(long address, CharSequence key) {
+        byte[] page = pages[(int) (address >>> 32)];
+        int p = (int) address;
+        int header = readHeader(page, p);
+        p += varintSize(header);
+        int byteLength = header >>> 1;
+        int length = key.length();
+        if ((header & 1) == 0) {
+            if (byteLength != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if ((page[p + i] & 0xFF) != key.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (byteLength < length || byteLength > 3L * length) {
+            return false;
+        }
+        int end = p + byteLength;
+        int i = 0;
+        while (p < end) {
+            if (i == length) {
+                return false;
+            }
+            int b = page[p++] & 0xFF;
+            char c;
+            if (b < 0x80) {
+                c = (char) b;
+            } else if (b < 0xE0) {
+                c = (char) ((b & 0x1F) << 6 | page[p++] & 0x3F);
+            } else {
+                c = (char) ((b & 0x0F) << 12 | (page[p++] & 0x3F) << 6 | page[p++] & 0x3F);
+            }
+            if (c != key.charAt(i++)) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private String decode(long address) {
+        byte[] page = pages[(int) (address >>> 32)];
+        int p = (int) address;
+        int header = readHeader(page, p);
+        p += varintSize(header);
+        int byteLength = header >>> 1;
+        if ((header & 1) == 0) {
+            return new String(page, p, byteLength, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[byteLength];
+        int end = p + byteLength;
+        int n = 0;
+        while (p < end) {
+            int b = page[p++] & 0xFF;
+            if (b < 0x80) {
+                chars[n++] = (char) b;
+            } else if (b < 0xE0) {
+                chars[n++] = (char) ((b & 0x1F) << 6 | page[p++] & 0x3F);
+            } else {
+                chars[n++] = (char) ((b & 0x0F) << 12 | (page[p++] & 0x3F) << 6 | page[p++] & 0x3F);
+            }
+        }
+        return new String(chars, 0, n);
+    }
+}
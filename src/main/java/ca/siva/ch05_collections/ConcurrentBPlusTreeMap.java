@@ -0,0 +1,694 @@
+package ca.siva.ch05_collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/*
+NOTE:
+1) Thread safe B+tree using optimistic lock coupling (OLC). Every node has a version word; the lowest bit means "locked".
+Readers take no locks at all: they remember a node's version, read the node, and check the version is unchanged afterwards.
+If a writer got in between, the reader restarts the operation from the root.
+2) Going down the tree a reader reads the child's version and then re-checks the parent's version, so the child pointer it
+followed was valid ("lock coupling" without locks). Readers never write shared memory, so they do not bounce cache lines
+between cores the way read-write locks do.
+3) Writers lock only the node they change, by a CAS on its version. Full nodes are split on the way down, so a split only
+ever locks a node and its parent.
+4) Deletes are lazy: the key is removed from its leaf, but empty leaves stay in the tree. No node is ever unlinked, which is
+what lets range scans follow the leaf chain without locks. Use this map for data that mostly grows or gets overwritten, like an
+order book keyed by price.
+5) Range scans (iterators, subMap views, forEachInRange) copy one leaf at a time into a buffer, validate, then hand the
+entries out. They are weakly consistent, like ConcurrentSkipListMap: never a ConcurrentModificationException, and every
+entry present for the whole scan is seen exactly once.
+6) Null keys and null values are not allowed. putIfAbsent, replace(key, old, new), remove(key, value) and merge are atomic,
+clear() is not atomic with respect to concurrent writers.
+ */
+public class ConcurrentBPlusTreeMap<K, V> extends AbstractNavigableMap<K, V> {
+    private static final VarHandle VERSION;
+    private static final Restart RESTART = new Restart();
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(Node.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int order;
+    private final LongAdder size = new LongAdder();
+    private volatile Node root;
+
+    public ConcurrentBPlusTreeMap() {
+        this(BPlusTreeMap.DEFAULT_ORDER, null);
+    }
+
+    public ConcurrentBPlusTreeMap(Comparator<? super K> comparator) {
+        this(BPlusTreeMap.DEFAULT_ORDER, comparator);
+    }
+
+    public ConcurrentBPlusTreeMap(int order, Comparator<? super K> comparator) {
+        super(comparator);
+        if (order < 4) {
+            throw new IllegalArgumentException("order must be at least 4: " + order);
+        }
+        this.order = order;
+        this.root = new Leaf(order);
+    }
+
+    /**
+     * Thrown when an optimistic read saw a concurrent change. Preallocated and without a stack trace, it is only control flow.
+     */
+    private static final class Restart extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Restart() {
+            super(null, null, false, false);
+        }
+    }
+
+    // Optimistic readers may see keys/children/next that are being changed; everything they read is validated before use.
+    // Key slots are never cleared, so a racy read sees either a current or a stale key, and a null only in a fresh node.
+    private abstract static class Node {
+        volatile long version;
+        final Object[] keys;
+        int count;
+
+        Node(int order) {
+            keys = new Object[order];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] values;
+        Leaf next;
+
+        Leaf(int order) {
+            super(order);
+            values = new Object[order];
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children;
+
+        Inner(int order) {
+            super(order);
+            children = new Node[order + 1];
+        }
+    }
+
+    private static long readLock(Node node) {
+        long version = node.version;
+        if ((version & 1) != 0) {
+            Thread.onSpinWait();
+            throw RESTART;
+        }
+        return version;
+    }
+
+    private static void validate(Node node, long version) {
+        // Orders the plain reads of the node before the second version read, as in StampedLock.validate().
+        VarHandle.acquireFence();
+        if (node.version != version) {
+            throw RESTART;
+        }
+    }
+
+    private static void upgrade(Node node, long version) {
+        if (!VERSION.compareAndSet(node, version, version + 1)) {
+            throw RESTART;
+        }
+    }
+
+    private static void unlock(Node node) {
+        node.version = node.version + 1;
+    }
+
+    @Override
+    public int size() {
+        long sum = size.sum();
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, sum);
+    }
+
+    @Override
+    public void clear() {
+        root = new Leaf(order);
+        size.reset();
+    }
+
+    @Override
+    public V get(Object key) {
+        Objects.requireNonNull(key);
+        long[] version = new long[1];
+        while (true) {
+            try {
+                Leaf leaf = descend(key, version);
+                int i = search(leaf, key);
+                Object value = i >= 0 ? leaf.values[i] : null;
+                validate(leaf, version[0]);
+                return cast(value);
+            } catch (Restart restart) {
+                // retry from the root
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return doPut(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return doPut(key, value, true);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return doRemove(key, null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return value != null && doRemove(key, value) != null;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(oldValue);
+        Objects.requireNonNull(newValue);
+        long[] version = new long[1];
+        while (true) {
+            try {
+                Leaf leaf = descend(key, version);
+                upgrade(leaf, version[0]);
+                try {
+                    int i = search(leaf, key);
+                    if (i < 0 || !oldValue.equals(leaf.values[i])) {
+                        return false;
+                    }
+                    leaf.values[i] = newValue;
+                    return true;
+                } finally {
+                    unlock(leaf);
+                }
+            } catch (Restart restart) {
+                // retry from the root
+            }
+        }
+    }
+
+    /**
+     * Atomic, built on putIfAbsent/replace/remove(key, value) the same way ConcurrentMap.merge is.
+     */
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Objects.requireNonNull(value);
+        while (true) {
+            V oldValue = get(key);
+            if (oldValue == null) {
+                if (putIfAbsent(key, value) == null) {
+                    return value;
+                }
+                continue;
+            }
+            V newValue = remappingFunction.apply(oldValue, value);
+            if (newValue == null ? remove(key, oldValue) : replace(key, oldValue, newValue)) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        return locate(null, Relation.CEILING);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        return locate(null, Relation.FLOOR);
+    }
+
+    @Override
+    public Entry<K, V> pollFirstEntry() {
+        Entry<K, V> entry;
+        do {
+            entry = firstEntry();
+        } while (entry != null && !remove(entry.getKey(), entry.getValue()));
+        return entry;
+    }
+
+    @Override
+    public Entry<K, V> pollLastEntry() {
+        Entry<K, V> entry;
+        do {
+            entry = lastEntry();
+        } while (entry != null && !remove(entry.getKey(), entry.getValue()));
+        return entry;
+    }
+
+    @Override
+    protected Entry<K, V> findEntry(K key, Relation relation) {
+        return locate(Objects.requireNonNull(key), relation);
+    }
+
+    /**
+     * Calls action for every entry with fromKey <= key < toKey, in key order, one validated leaf at a time.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInRange(K fromKey, K toKey, BiConsumer<? super K, ? super V> action) {
+        if (compare(fromKey, toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        Scanner scanner = new Scanner(fromKey);
+        do {
+            for (int i = 0; i < scanner.count; i++) {
+                if (compare(scanner.keys[i], toKey) >= 0) {
+                    return;
+                }
+                action.accept((K) scanner.keys[i], (V) scanner.values[i]);
+            }
+        } while (scanner.advance());
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Entry<K, V> first = firstEntry();
+        if (first == null) {
+            return;
+        }
+        Scanner scanner = new Scanner(first.getKey());
+        do {
+            for (int i = 0; i < scanner.count; i++) {
+                action.accept(cast(scanner.keys[i]), cast(scanner.values[i]));
+            }
+        } while (scanner.advance());
+    }
+
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+        // There are no back links to scan, so descending views step with lowerEntry(), one descent per element.
+        return descending ? super.entryIterator(first, true, fence, fenceInclusive) : new ScanIterator(first, fence, fenceInclusive);
+    }
+
+    /**
+     * Optimistic descent to the leaf that covers key; version[0] receives the leaf's version.
+     */
+    private Leaf descend(Object key, long[] version) {
+        Node node = root;
+        long v = readLock(node);
+        if (node != root) {
+            // The root was split after we read it: the old root now covers only part of the keys.
+            throw RESTART;
+        }
+        while (node instanceof Inner inner) {
+            Node child = childAt(inner, childIndex(inner, key));
+            long childVersion = readLock(child);
+            validate(inner, v);
+            node = child;
+            v = childVersion;
+        }
+        version[0] = v;
+        return (Leaf) node;
+    }
+
+    private V doPut(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        while (true) {
+            try {
+                Node node = root;
+                long v = readLock(node);
+                if (node != root) {
+                    throw RESTART;
+                }
+                Inner parent = null;
+                long parentVersion = 0;
+                while (true) {
+                    if (node.count == order) {
+                        splitAndRestart(node, v, parent, parentVersion);
+                    }
+                    if (node instanceof Leaf leaf) {
+                        upgrade(leaf, v);
+                        try {
+                            return insertIntoLeaf(leaf, key, value, onlyIfAbsent);
+                        } finally {
+                            unlock(leaf);
+                        }
+                    }
+                    Inner inner = (Inner) node;
+                    Node child = childAt(inner, childIndex(inner, key));
+                    long childVersion = readLock(child);
+                    validate(inner, v);
+                    parent = inner;
+                    parentVersion = v;
+                    node = child;
+                    v = childVersion;
+                }
+            } catch (Restart restart) {
+                // retry from the root
+            }
+        }
+    }
+
+    private V insertIntoLeaf(Leaf leaf, K key, V value, boolean onlyIfAbsent) {
+        int i = search(leaf, key);
+        if (i >= 0) {
+            V previous = cast(leaf.values[i]);
+            if (!onlyIfAbsent) {
+                leaf.values[i] = value;
+            }
+            return previous;
+        }
+        int index = -i - 1;
+        int moved = leaf.count - index;
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, moved);
+        System.arraycopy(leaf.values, index, leaf.values, index + 1, moved);
+        leaf.keys[index] = key;
+        leaf.values[index] = value;
+        leaf.count++;
+        size.increment();
+        return null;
+    }
+
+    /**
+     * Splits a full node while holding its lock and its parent's lock, then restarts the insert from the root.
+     */
+    private void splitAndRestart(Node node, long version, Inner parent, long parentVersion) {
+        if (parent != null) {
+            upgrade(parent, parentVersion);
+        }
+        try {
+            upgrade(node, version);
+        } catch (Restart restart) {
+            if (parent != null) {
+                unlock(parent);
+            }
+            throw restart;
+        }
+        try {
+            if (parent == null && node != root) {
+                throw RESTART;
+            }
+            Object separator;
+            Node right;
+            int mid = node.count / 2;
+            if (node instanceof Leaf leaf) {
+                Leaf sibling = new Leaf(order);
+                sibling.count = leaf.count - mid;
+                System.arraycopy(leaf.keys, mid, sibling.keys, 0, sibling.count);
+                System.arraycopy(leaf.values, mid, sibling.values, 0, sibling.count);
+                sibling.next = leaf.next;
+                separator = sibling.keys[0];
+                right = sibling;
+                leaf.next = sibling;
+                leaf.count = mid;
+                Arrays.fill(leaf.values, mid, order, null);
+            } else {
+                Inner inner = (Inner) node;
+                Inner sibling = new Inner(order);
+                separator = inner.keys[mid];
+                sibling.count = inner.count - mid - 1;
+                System.arraycopy(inner.keys, mid + 1, sibling.keys, 0, sibling.count);
+                System.arraycopy(inner.children, mid + 1, sibling.children, 0, sibling.count + 1);
+                right = sibling;
+                inner.count = mid;
+            }
+            if (parent == null) {
+                Inner newRoot = new Inner(order);
+                newRoot.keys[0] = separator;
+                newRoot.children[0] = node;
+                newRoot.children[1] = right;
+                newRoot.count = 1;
+                root = newRoot;
+            } else {
+                // The parent had room when we passed it and the CAS above proved it has not changed since.
+                int slot = childIndex(parent, separator);
+                System.arraycopy(parent.keys, slot, parent.keys, slot + 1, parent.count - slot);
+                System.arraycopy(parent.children, slot + 1, parent.children, slot + 2, parent.count - slot);
+                parent.keys[slot] = separator;
+                parent.children[slot + 1] = right;
+                parent.count++;
+            }
+        } finally {
+            unlock(node);
+            if (parent != null) {
+                unlock(parent);
+            }
+        }
+        throw RESTART;
+    }
+
+    private V doRemove(Object key, Object expectedValue) {
+        Objects.requireNonNull(key);
+        long[] version = new long[1];
+        while (true) {
+            try {
+                Leaf leaf = descend(key, version);
+                upgrade(leaf, version[0]);
+                try {
+                    int i = search(leaf, key);
+                    if (i < 0 || (expectedValue != null && !expectedValue.equals(leaf.values[i]))) {
+                        return null;
+                    }
+                    V previous = cast(leaf.values[i]);
+                    int moved = leaf.count - i - 1;
+                    System.arraycopy(leaf.keys, i + 1, leaf.keys, i, moved);
+                    System.arraycopy(leaf.values, i + 1, leaf.values, i, moved);
+                    leaf.count--;
+                    leaf.values[leaf.count] = null;
+                    size.decrement();
+                    return previous;
+                } finally {
+                    unlock(leaf);
+                }
+            } catch (Restart restart) {
+                // retry from the root
+            }
+        }
+    }
+
+    /**
+     * Entry with the given relation to key; a null key means "from the very end" (FLOOR) or "from the very start" (CEILING).
+     */
+    private Entry<K, V> locate(Object key, Relation relation) {
+        while (true) {
+            try {
+                Node node = root;
+                long v = readLock(node);
+                if (node != root) {
+                    throw RESTART;
+                }
+                return locate(node, v, key, relation);
+            } catch (Restart restart) {
+                // retry from the root
+            }
+        }
+    }
+
+    // Recursive because lazily deleted leaves can be empty: if a subtree has no match we back up and try its sibling.
+    private Entry<K, V> locate(Node node, long version, Object key, Relation relation) {
+        boolean downwards = relation == Relation.LOWER || relation == Relation.FLOOR;
+        int count = node.count;
+        if (node instanceof Leaf leaf) {
+            int index;
+            if (key == null) {
+                index = downwards ? count - 1 : 0;
+            } else {
+                int i = search(leaf, key);
+                index = switch (relation) {
+                    case LOWER -> (i >= 0 ? i : -i - 1) - 1;
+                    case FLOOR -> i >= 0 ? i : -i - 2;
+                    case CEILING -> i >= 0 ? i : -i - 1;
+                    case HIGHER -> i >= 0 ? i + 1 : -i - 1;
+                };
+            }
+            Entry<K, V> entry = null;
+            if (index >= 0 && index < count) {
+                Object value = leaf.values[index];
+                if (value == null) {
+                    throw RESTART;
+                }
+                entry = snapshot(cast(keyAt(leaf, index)), cast(value));
+            }
+            validate(leaf, version);
+            return entry;
+        }
+        Inner inner = (Inner) node;
+        int start = key == null ? (downwards ? count : 0) : childIndex(inner, key);
+        for (int i = start; downwards ? i >= 0 : i <= count; i += downwards ? -1 : 1) {
+            Node child = childAt(inner, i);
+            long childVersion = readLock(child);
+            validate(inner, version);
+            Entry<K, V> entry = locate(child, childVersion, key, relation);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private int search(Node node, Object key) {
+        int low = 0;
+        int high = node.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(keyAt(node, mid), key);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int childIndex(Inner inner, Object key) {
+        int i = search(inner, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private static Object keyAt(Node node, int index) {
+        Object key = node.keys[index];
+        if (key == null) {
+            throw RESTART;
+        }
+        return key;
+    }
+
+    private static Node childAt(Inner inner, int index) {
+        Node child = inner.children[index];
+        if (child == null) {
+            throw RESTART;
+        }
+        return child;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    /**
+     * Copies the entries of one leaf at a time. advance() continues with the next leaf, re-descending from the last copied
+     * key if that leaf is being written to.
+     */
+    private final class Scanner {
+        final Object[] keys = new Object[order];
+        final Object[] values = new Object[order];
+        int count;
+        private Leaf nextLeaf;
+
+        Scanner(Object fromKey) {
+            fill(fromKey, true, null);
+        }
+
+        boolean advance() {
+            if (nextLeaf == null || count == 0) {
+                count = 0;
+                return false;
+            }
+            fill(keys[count - 1], false, nextLeaf);
+            return count > 0;
+        }
+
+        private void fill(Object fromKey, boolean inclusive, Leaf start) {
+            long[] version = new long[1];
+            while (true) {
+                try {
+                    Leaf leaf;
+                    if (start != null) {
+                        leaf = start;
+                        version[0] = readLock(leaf);
+                    } else {
+                        leaf = descend(fromKey, version);
+                    }
+                    while (true) {
+                        int i = search(leaf, fromKey);
+                        i = i >= 0 ? (inclusive ? i : i + 1) : -i - 1;
+                        int n = 0;
+                        for (int end = leaf.count; i < end; i++, n++) {
+                            keys[n] = keyAt(leaf, i);
+                            values[n] = leaf.values[i];
+                            if (values[n] == null) {
+                                throw RESTART;
+                            }
+                        }
+                        Leaf next = leaf.next;
+                        validate(leaf, version[0]);
+                        count = n;
+                        nextLeaf = next;
+                        if (n > 0 || next == null) {
+                            return;
+                        }
+                        // Empty (or already consumed) leaf: keep walking the chain.
+                        leaf = next;
+                        version[0] = readLock(leaf);
+                    }
+                } catch (Restart restart) {
+                    start = null;
+                }
+            }
+        }
+    }
+
+    private final class ScanIterator implements Iterator<Entry<K, V>> {
+        private final Scanner scanner;
+        private final K fence;
+        private final boolean fenceInclusive;
+        private int position;
+        private K lastKey;
+
+        ScanIterator(Entry<K, V> first, K fence, boolean fenceInclusive) {
+            this.scanner = first == null ? null : new Scanner(first.getKey());
+            this.fence = fence;
+            this.fenceInclusive = fenceInclusive;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (scanner == null) {
+                return false;
+            }
+            if (position >= scanner.count) {
+                if (!scanner.advance()) {
+                    return false;
+                }
+                position = 0;
+            }
+            return !beyond(cast(scanner.keys[position]), fence, fenceInclusive, false);
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> entry = snapshot(cast(scanner.keys[position]), cast(scanner.values[position]));
+            position++;
+            lastKey = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if (lastKey == null) {
+                throw new IllegalStateException();
+            }
+            ConcurrentBPlusTreeMap.this.remove(lastKey);
+            lastKey = null;
+        }
+    }
+}
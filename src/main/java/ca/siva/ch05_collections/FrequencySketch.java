@@ -0,0 +1,106 @@
+package ca.siva.ch05_collections;
+
+/**
+ * Popularity estimate used by BoundedCache to decide admissions (the "TinyLFU" part of W-TinyLFU).
+ * A Count-Min sketch (see ch06 CountMinSketch) with 4-bit counters, 16 of them packed per long, and four counters per key.
+ * After 10 * maximumSize increments every counter is halved, so the sketch forgets old popularity and follows the workload.
+ * ensureCapacity() grows the table for caches whose entry count is not known up front (bounded by weight); growing starts
+ * over with empty counters.
+ * Not thread-safe: BoundedCache only calls it while holding its eviction lock.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch(long maximumSize) {
+        allocate(tableLength(maximumSize));
+    }
+
+    /**
+     * Grows the table to about one long per entry when the cache holds more entries than it was sized for.
+     */
+    void ensureCapacity(long maximumSize) {
+        int length = tableLength(maximumSize);
+        if (length > table.length) {
+            allocate(length);
+        }
+    }
+
+    private void allocate(int length) {
+        table = new long[length];
+        tableMask = length - 1;
+        sampleSize = (int) Math.min(10L * length, Integer.MAX_VALUE);
+        size = 0;
+    }
+
+    private static int tableLength(long maximumSize) {
+        int capacity = (int) Math.min(Math.max(maximumSize, 16), 1 << 30);
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Estimated number of recent occurrences of the key, 0 to 15.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    // Counter j of the 16 in table[i], saturating at 15
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xFL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    // Halves every counter; the odd counters lose their low bit, which the size correction accounts for
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += hash >>> 32;
+        return (int) hash & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -1,8 +1,23 @@
 package ca.siva.ch05_collections;
 
 import lombok.extern.slf4j.Slf4j;
+import java.nio.CharBuffer;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+NOTE:
+1) Each HashMap entry with a String key is a Node, a String and a byte[]: roughly 80 bytes plus the characters. For maps with
+millions of string keys CompactStringMap stores the key characters in a shared byte arena instead (about 20 bytes plus the
+characters per entry) and looks keys up by any CharSequence without creating a String.
+2) A LinkedHashMap with accessOrder = true and removeEldestEntry() is the classic LRU cache. BoundedCache is the concurrent,
+frequency-aware alternative (W-TinyLFU admission, expiry, refresh, stats) with a Map view through asMap().
+ */
 
 @Slf4j
 public class HashMapExamples {
@@ -16,6 +31,10 @@ public class HashMapExamples {
         examples.exampleCheckKeyOrValue();
         examples.exampleGetValues();
         examples.exampleReplaceElement();
+        examples.exampleCompactStringMap();
+        examples.exampleCompactStringMapMemory();
+        examples.exampleLruVsBoundedCacheHitRate();
+        examples.exampleBoundedCacheExpiryAndStats();
     }
 
     // Example of adding elements to a HashMap
@@ -96,4 +115,135 @@ public class HashMapExamples {
         hashMap.replace("banana", 5);
         log.info("HashMap after replacing 'banana' value: {}", hashMap);
     }
+
+    // Example of looking up a CompactStringMap with slices of a line, no String created per lookup
+    // Output: Prices for 'apple,cherry,kiwi': apple=1, cherry=3, kiwi=null
+    public void exampleCompactStringMap() {
+        CompactStringMap<Integer> prices = new CompactStringMap<>();
+        prices.put("apple", 1);
+        prices.put("banana", 2);
+        prices.put("cherry", 3);
+
+        String line = "apple,cherry,kiwi";
+        StringBuilder result = new StringBuilder();
+        int start = 0;
+        while (start <= line.length()) {
+            int end = line.indexOf(',', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            CharBuffer fruit = CharBuffer.wrap(line, start, end); // a view of the line, the characters are not copied
+            result.append(result.length() == 0 ? "" : ", ").append(fruit).append('=').append(prices.get(fruit));
+            start = end + 1;
+        }
+        log.info("Prices for '{}': {}", line, result);
+    }
+
+    // Example of the heap used by 1M string keys in a HashMap and in a CompactStringMap
+    // Output (varies by JVM): HashMap about 95 MB, CompactStringMap about 45 MB
+    public void exampleCompactStringMapMemory() {
+        int count = 1_000_000;
+        long before = usedHeap();
+        Map<String, Integer> hashMap = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            hashMap.put("word-" + i, i & 127); // small Integers are cached, so only the keys and entries are measured
+        }
+        long hashMapBytes = usedHeap() - before;
+
+        before = usedHeap();
+        CompactStringMap<Integer> compactMap = new CompactStringMap<>();
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            key.setLength(0);
+            key.append("word-").append(i);
+            compactMap.put(key, i & 127); // the builder is reused, its characters are copied into the arena
+        }
+        long compactMapBytes = usedHeap() - before;
+
+        log.info("{} keys: HashMap {} MB, CompactStringMap {} MB (arena {} MB), same lookups: {}", count,
+                hashMapBytes >> 20, compactMapBytes >> 20, compactMap.arenaBytes() >> 20,
+                hashMap.get("word-4242").equals(compactMap.get("word-4242")));
+    }
+
+    // Example of the hit rate of a LinkedHashMap LRU and a BoundedCache of the same size on a skewed workload with scans:
+    // 80% of the requests follow a Zipf distribution over 200k keys, 20% are one-off keys (e.g. a crawler or a report)
+    // Output (varies with the random seed): LRU hit rate: 35%, BoundedCache (W-TinyLFU) hit rate: 45%
+    public void exampleLruVsBoundedCacheHitRate() {
+        int capacity = 1_000;
+        Map<Integer, Integer> lru = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+        BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder().maximumSize(capacity).build();
+
+        int keys = 200_000;
+        double[] zipf = new double[keys]; // cumulative probabilities, P(key k) proportional to 1 / (k + 1)
+        double sum = 0;
+        for (int k = 0; k < keys; k++) {
+            sum += 1.0 / (k + 1);
+            zipf[k] = sum;
+        }
+        Random random = new Random(1);
+        int oneOffKey = keys;
+        long lruHits = 0;
+        int requests = 1_000_000;
+        for (int i = 0; i < requests; i++) {
+            int key;
+            if (random.nextInt(100) < 20) {
+                key = oneOffKey++;
+            } else {
+                int slot = Arrays.binarySearch(zipf, random.nextDouble() * sum);
+                key = slot >= 0 ? slot : -slot - 1;
+            }
+            if (lru.get(key) != null) {
+                lruHits++;
+            } else {
+                lru.put(key, key);
+            }
+            cache.get(key, k -> k);
+        }
+        log.info("LRU hit rate: {}%, BoundedCache (W-TinyLFU) hit rate: {}%",
+                Math.round(100.0 * lruHits / requests), Math.round(100 * cache.stats().hitRate()));
+    }
+
+    // Example of expiry, the Map view and the stats of a BoundedCache, driven by a manual clock instead of sleeping
+    // Output: After 90s: apple=1, banana=null (expired 1 minute after its last access)
+    // After 5 minutes: {} (expired 5 minutes after being written), stats: 6 hits, 2 misses, 3 evictions
+    public void exampleBoundedCacheExpiryAndStats() {
+        AtomicLong clock = new AtomicLong();
+        BoundedCache<String, Integer> cache = BoundedCache.<String, Integer>builder()
+                .maximumSize(100)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .ticker(clock::get)
+                .build();
+        Map<String, Integer> map = cache.asMap();
+        map.put("apple", 1);
+        map.put("banana", 2);
+        map.put("cherry", 3);
+
+        clock.addAndGet(Duration.ofSeconds(45).toNanos());
+        cache.getIfPresent("apple");
+        clock.addAndGet(Duration.ofSeconds(45).toNanos());
+        log.info("After 90s: apple={}, banana={}", cache.getIfPresent("apple"), cache.getIfPresent("banana"));
+
+        for (int i = 0; i < 5; i++) {
+            clock.addAndGet(Duration.ofSeconds(50).toNanos());
+            cache.getIfPresent("apple"); // keeps apple fresh for expireAfterAccess, but not for expireAfterWrite
+        }
+        cache.cleanUp();
+        CacheStats stats = cache.stats();
+        log.info("After 5 minutes: {}, stats: {} hits, {} misses, {} evictions", map,
+                stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
@@ -1,13 +1,20 @@
 package ca.siva.ch05_collections;
 
+import ca.siva.ch06_streams_and_lambda.CuckooFilter;
 import lombok.extern.slf4j.Slf4j;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 /*
  NOTE:
  1) Set.of(xx) or Set.copyOf(xx) creates an immutable set where add/remove/update operations are not allowed.
  2) Where in HashSet elements can be used to perform add/remove/update.
+ 3) A HashSet<Integer> spends about 48 bytes per element (node + boxed Integer). For large sets of int IDs RoaringIntSet
+ stores 2 bytes per ID in sparse regions and 1 bit per ID in dense ones, and intersects/unions whole sets word by word.
+ 4) When the set lives somewhere expensive (a database, a remote service) and most contains() calls miss, a CuckooFilter
+ or BlockedBloomFilter (ch06) kept in memory answers the misses: "definitely absent" needs no lookup at all. A cuckoo
+ filter also supports remove(), so it can follow deletions from the set.
 
  */
 @Slf4j
@@ -20,8 +27,11 @@ public class HashSetExamples {
         examples.exampleRemoveElements();
         examples.exampleIterateHashSet();
         examples.exampleCheckContains();
+        examples.exampleCheckContainsWithCuckooFilter();
         examples.exampleGetSize();
         examples.exampleClearHashSet();
+        examples.exampleRoaringIntSetSegments();
+        examples.exampleRoaringIntSetMemory();
     }
 
     // Example of adding elements to a HashSet
@@ -75,6 +85,36 @@ public class HashSetExamples {
         log.info("Does HashSet contain 'banana'? {}", containsBanana);
     }
 
+    // Example of a CuckooFilter in front of contains() on a set that is expensive to query. 90% of the lookups are misses.
+    // Output: Set lookups with the filter: 100857 of 1000000 (100000 hits)
+    // Output: Filter after removing 'user-42': mightContain=false, size=99999
+    public void exampleCheckContainsWithCuckooFilter() {
+        Set<String> expensiveSet = new HashSet<>();
+        CuckooFilter filter = CuckooFilter.create(100_000, 0.001);
+        for (int i = 0; i < 100_000; i++) {
+            expensiveSet.add("user-" + i);
+            filter.add("user-" + i);
+        }
+
+        int lookups = 0;
+        int hits = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            String key = "user-" + (i % 10 == 0 ? i / 10 : 100_000 + i);
+            if (filter.mightContain(key)) {
+                lookups++;
+                if (expensiveSet.contains(key)) {
+                    hits++;
+                }
+            }
+        }
+        log.info("Set lookups with the filter: {} of 1000000 ({} hits)", lookups, hits);
+
+        // Deletions go to both, so the filter keeps short-circuiting lookups of removed users
+        expensiveSet.remove("user-42");
+        filter.remove("user-42");
+        log.info("Filter after removing 'user-42': mightContain={}, size={}", filter.mightContain("user-42"), filter.size());
+    }
+
     // Example of getting the size of a HashSet
     // Output: Size of HashSet: 3
     public void exampleGetSize() {
@@ -98,4 +138,56 @@ public class HashSetExamples {
         hashSet.clear();
         log.info("HashSet after clearing: {}", hashSet);
     }
+
+    // Example of audience segments as RoaringIntSets combined with and/or/andNot
+    // Output: Active: 500000, premium: 50000, active premium: 25000, active or premium: 525000, active non-premium: 475000
+    public void exampleRoaringIntSetSegments() {
+        RoaringIntSet active = new RoaringIntSet();
+        active.addRange(0, 500_000); // user IDs 0..499999 stored as runs
+        RoaringIntSet premium = new RoaringIntSet();
+        for (int id = 0; id < 1_000_000; id += 20) {
+            premium.add(id);
+        }
+
+        log.info("Active: {}, premium: {}, active premium: {}, active or premium: {}, active non-premium: {}",
+                active.cardinality(), premium.cardinality(),
+                RoaringIntSet.and(active, premium).cardinality(),
+                RoaringIntSet.or(active, premium).cardinality(),
+                RoaringIntSet.andNot(active, premium).cardinality());
+    }
+
+    // Example of the heap needed for 2M random draws from 10M IDs in a HashSet<Integer> and a RoaringIntSet
+    // Output (varies by JVM): HashSet about 100 MB, RoaringIntSet about 1 MB
+    public void exampleRoaringIntSetMemory() {
+        Random random = new Random(42);
+        int[] ids = new int[2_000_000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextInt(10_000_000);
+        }
+
+        long before = usedHeap();
+        Set<Integer> hashSet = new HashSet<>();
+        for (int id : ids) {
+            hashSet.add(id);
+        }
+        long hashSetBytes = usedHeap() - before;
+
+        before = usedHeap();
+        RoaringIntSet roaringSet = new RoaringIntSet();
+        for (int id : ids) {
+            roaringSet.add(id); // primitive overload, no boxing
+        }
+        long roaringSetBytes = usedHeap() - before;
+
+        log.info("{} IDs: HashSet {} MB, RoaringIntSet {} MB (estimated {} KB), same content: {}", hashSet.size(),
+                hashSetBytes >> 20, roaringSetBytes >> 20, roaringSet.sizeInBytes() >> 10, roaringSet.equals(hashSet));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
 }
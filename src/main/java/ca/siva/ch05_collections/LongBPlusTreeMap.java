@@ -0,0 +1,359 @@
+package ca.siva.ch05_collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+
+/*
+NOTE:
+1) BPlusTreeMap specialised for long keys. Keys are stored in long[] arrays instead of Object[] of Long, so a node's keys are
+one contiguous block of memory and a binary search compares longs instead of calling compareTo on boxed Longs.
+2) With Long keys a 50M-entry map also carries 50M Long objects (16 bytes each plus a reference); here a key costs 8 bytes.
+3) Same structure as BPlusTreeMap: wide nodes, linked leaves, empty leaves removed on delete without merging half-empty ones.
+4) The API is primitive on purpose (no NavigableMap), navigation methods return OptionalLong instead of a nullable Long.
+ */
+public class LongBPlusTreeMap<V> {
+
+    @FunctionalInterface
+    public interface LongObjConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private final int order;
+    private Node root;
+    private Leaf head;
+    private Leaf tail;
+    private int height;
+    private int size;
+    private Inner[] pathNodes = new Inner[8];
+    private int[] pathSlots = new int[8];
+
+    public LongBPlusTreeMap() {
+        this(BPlusTreeMap.DEFAULT_ORDER);
+    }
+
+    public LongBPlusTreeMap(int order) {
+        if (order < 4) {
+            throw new IllegalArgumentException("order must be at least 4: " + order);
+        }
+        this.order = order;
+        clear();
+    }
+
+    private abstract static class Node {
+        final long[] keys;
+        int count;
+
+        Node(int capacity) {
+            keys = new long[capacity];
+        }
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] values;
+        Leaf next;
+        Leaf prev;
+
+        Leaf(int capacity) {
+            super(capacity);
+            values = new Object[capacity];
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children;
+
+        Inner(int capacity) {
+            super(capacity);
+            children = new Node[capacity + 1];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int height() {
+        return height + 1;
+    }
+
+    public void clear() {
+        Leaf leaf = new Leaf(order + 1);
+        root = leaf;
+        head = leaf;
+        tail = leaf;
+        height = 0;
+        size = 0;
+    }
+
+    public V get(long key) {
+        Leaf leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        return i >= 0 ? value(leaf, i) : null;
+    }
+
+    public boolean containsKey(long key) {
+        Leaf leaf = leafFor(key);
+        return Arrays.binarySearch(leaf.keys, 0, leaf.count, key) >= 0;
+    }
+
+    public V put(long key, V value) {
+        Node node = root;
+        int depth = 0;
+        while (node instanceof Inner inner) {
+            int slot = childIndex(inner, key);
+            pathNodes[depth] = inner;
+            pathSlots[depth] = slot;
+            depth++;
+            node = inner.children[slot];
+        }
+        Leaf leaf = (Leaf) node;
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        if (i >= 0) {
+            V previous = value(leaf, i);
+            leaf.values[i] = value;
+            return previous;
+        }
+        int index = -i - 1;
+        int moved = leaf.count - index;
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, moved);
+        System.arraycopy(leaf.values, index, leaf.values, index + 1, moved);
+        leaf.keys[index] = key;
+        leaf.values[index] = value;
+        leaf.count++;
+        size++;
+        if (leaf.count > order) {
+            splitLeaf(leaf, depth);
+        }
+        return null;
+    }
+
+    public V remove(long key) {
+        Node node = root;
+        int depth = 0;
+        while (node instanceof Inner inner) {
+            int slot = childIndex(inner, key);
+            pathNodes[depth] = inner;
+            pathSlots[depth] = slot;
+            depth++;
+            node = inner.children[slot];
+        }
+        Leaf leaf = (Leaf) node;
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        if (i < 0) {
+            return null;
+        }
+        V previous = value(leaf, i);
+        int moved = leaf.count - i - 1;
+        System.arraycopy(leaf.keys, i + 1, leaf.keys, i, moved);
+        System.arraycopy(leaf.values, i + 1, leaf.values, i, moved);
+        leaf.count--;
+        leaf.values[leaf.count] = null;
+        size--;
+        if (size == 0) {
+            clear();
+        } else if (leaf.count == 0) {
+            unlinkLeaf(leaf, depth);
+        }
+        return previous;
+    }
+
+    public long firstKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return head.keys[0];
+    }
+
+    public long lastKey() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return tail.keys[tail.count - 1];
+    }
+
+    public OptionalLong lowerKey(long key) {
+        Leaf leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        return keyAt(leaf, (i >= 0 ? i : -i - 1) - 1);
+    }
+
+    public OptionalLong floorKey(long key) {
+        Leaf leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        return keyAt(leaf, i >= 0 ? i : -i - 2);
+    }
+
+    public OptionalLong ceilingKey(long key) {
+        Leaf leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        return keyAt(leaf, i >= 0 ? i : -i - 1);
+    }
+
+    public OptionalLong higherKey(long key) {
+        Leaf leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        return keyAt(leaf, i >= 0 ? i + 1 : -i - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjConsumer<? super V> action) {
+        for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.count; i++) {
+                action.accept(leaf.keys[i], (V) leaf.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Calls action for every entry with fromKey <= key < toKey, in key order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachInRange(long fromKey, long toKey, LongObjConsumer<? super V> action) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("fromKey > toKey: " + fromKey + " > " + toKey);
+        }
+        Leaf leaf = leafFor(fromKey);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, fromKey);
+        i = i >= 0 ? i : -i - 1;
+        for (; leaf != null; leaf = leaf.next, i = 0) {
+            for (; i < leaf.count; i++) {
+                if (leaf.keys[i] >= toKey) {
+                    return;
+                }
+                action.accept(leaf.keys[i], (V) leaf.values[i]);
+            }
+        }
+    }
+
+    private OptionalLong keyAt(Leaf leaf, int index) {
+        if (index < 0) {
+            return leaf.prev == null ? OptionalLong.empty() : OptionalLong.of(leaf.prev.keys[leaf.prev.count - 1]);
+        }
+        if (index >= leaf.count) {
+            return leaf.next == null ? OptionalLong.empty() : OptionalLong.of(leaf.next.keys[0]);
+        }
+        return OptionalLong.of(leaf.keys[index]);
+    }
+
+    private Leaf leafFor(long key) {
+        Node node = root;
+        while (node instanceof Inner inner) {
+            node = inner.children[childIndex(inner, key)];
+        }
+        return (Leaf) node;
+    }
+
+    private static int childIndex(Inner inner, long key) {
+        int i = Arrays.binarySearch(inner.keys, 0, inner.count, key);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    private void splitLeaf(Leaf leaf, int depth) {
+        Leaf right = new Leaf(order + 1);
+        int mid = leaf.count / 2;
+        right.count = leaf.count - mid;
+        System.arraycopy(leaf.keys, mid, right.keys, 0, right.count);
+        System.arraycopy(leaf.values, mid, right.values, 0, right.count);
+        Arrays.fill(leaf.values, mid, leaf.count, null);
+        leaf.count = mid;
+
+        right.next = leaf.next;
+        right.prev = leaf;
+        if (leaf.next != null) {
+            leaf.next.prev = right;
+        } else {
+            tail = right;
+        }
+        leaf.next = right;
+
+        long separator = right.keys[0];
+        Node newChild = right;
+        while (depth > 0) {
+            depth--;
+            Inner parent = pathNodes[depth];
+            int slot = pathSlots[depth];
+            System.arraycopy(parent.keys, slot, parent.keys, slot + 1, parent.count - slot);
+            System.arraycopy(parent.children, slot + 1, parent.children, slot + 2, parent.count - slot);
+            parent.keys[slot] = separator;
+            parent.children[slot + 1] = newChild;
+            parent.count++;
+            if (parent.count <= order) {
+                return;
+            }
+            Inner sibling = new Inner(order + 1);
+            int middle = parent.count / 2;
+            separator = parent.keys[middle];
+            sibling.count = parent.count - middle - 1;
+            System.arraycopy(parent.keys, middle + 1, sibling.keys, 0, sibling.count);
+            System.arraycopy(parent.children, middle + 1, sibling.children, 0, sibling.count + 1);
+            Arrays.fill(parent.children, middle + 1, parent.count + 1, null);
+            parent.count = middle;
+            newChild = sibling;
+        }
+        Inner newRoot = new Inner(order + 1);
+        newRoot.keys[0] = separator;
+        newRoot.children[0] = root;
+        newRoot.children[1] = newChild;
+        newRoot.count = 1;
+        root = newRoot;
+        height++;
+        if (pathNodes.length <= height) {
+            pathNodes = Arrays.copyOf(pathNodes, height * 2);
+            pathSlots = Arrays.copyOf(pathSlots, height * 2);
+        }
+    }
+
+    private void unlinkLeaf(Leaf leaf, int depth) {
+        if (leaf.prev != null) {
+            leaf.prev.next = leaf.next;
+        } else {
+            head = leaf.next;
+        }
+        if (leaf.next != null) {
+            leaf.next.prev = leaf.prev;
+        } else {
+            tail = leaf.prev;
+        }
+        while (depth > 0) {
+            depth--;
+            Inner parent = pathNodes[depth];
+            int slot = pathSlots[depth];
+            if (parent.count == 0) {
+                parent.children[0] = null;
+                continue;
+            }
+            int keySlot = slot == 0 ? 0 : slot - 1;
+            System.arraycopy(parent.keys, keySlot + 1, parent.keys, keySlot, parent.count - keySlot - 1);
+            System.arraycopy(parent.children, slot + 1, parent.children, slot, parent.count - slot);
+            parent.count--;
+            parent.children[parent.count + 1] = null;
+            break;
+        }
+        while (root instanceof Inner inner && inner.count == 0) {
+            root = inner.children[0];
+            height--;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Leaf leaf, int index) {
+        return (V) leaf.values[index];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,1256 @@
+package ca.siva.ch05_collections;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/*
+NOTE:
+1) Compressed bitmap set of ints (Roaring bitmap). An int is split into its high 16 bits, which select a container, and its
+low 16 bits, which are stored in that container. Each container picks the cheapest of three layouts:
+   - array:  sorted char[] of the low bits, for up to 4096 values (2 bytes per value)
+   - bitmap: long[1024], one bit per possible value (8 KB, whatever the count)
+   - run:    sorted (start, length - 1) pairs, for long stretches of consecutive values (4 bytes per run)
+2) A TreeSet<Integer> needs about 56 bytes per element (node + Integer); 300M member IDs would take 16 GB. Here dense ranges
+cost 1 bit per ID and sparse ones 2 bytes.
+3) and/or/xor/andNot work container by container: two arrays are merged, anything involving a bitmap or a run is computed
+a 64-bit word at a time. Run containers are created by addRange() and runOptimize(); add/remove on a run container first
+converts it back to array or bitmap.
+4) Implements NavigableSet<Integer> with the usual signed int ordering (the high bits are stored with their sign bit flipped),
+next to primitive methods (add(int), contains(int), forEachInt(IntConsumer), intIterator(), rank, select) that do not box.
+rank and select binary-search a cumulative count per container, rebuilt on the first call after a change.
+5) Not thread-safe.
+ */
+public class RoaringIntSet extends AbstractSet<Integer> implements NavigableSet<Integer> {
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+    private static final long NONE = Long.MIN_VALUE;
+
+    // Which part of a Venn diagram a binary operation keeps
+    private static final int ONLY_A = 1;
+    private static final int ONLY_B = 2;
+    private static final int BOTH = 4;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int containerCount;
+    private long cardinality;
+    private int modCount;
+    // countBefore[i]: number of elements in containers 0..i-1; valid while rankIndexModCount == modCount
+    private long[] countBefore;
+    private int rankIndexModCount;
+
+    public RoaringIntSet() {
+    }
+
+    public static RoaringIntSet of(int... values) {
+        RoaringIntSet set = new RoaringIntSet();
+        for (int value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public static RoaringIntSet and(RoaringIntSet a, RoaringIntSet b) {
+        return combine(a, b, BOTH);
+    }
+
+    public static RoaringIntSet or(RoaringIntSet a, RoaringIntSet b) {
+        return combine(a, b, ONLY_A | ONLY_B | BOTH);
+    }
+
+    public static RoaringIntSet xor(RoaringIntSet a, RoaringIntSet b) {
+        return combine(a, b, ONLY_A | ONLY_B);
+    }
+
+    public static RoaringIntSet andNot(RoaringIntSet a, RoaringIntSet b) {
+        return combine(a, b, ONLY_A);
+    }
+
+    // ---- primitive API ----
+
+    public boolean contains(int value) {
+        int i = indexOf(high(value));
+        return i >= 0 && containers[i].contains(value & 0xFFFF);
+    }
+
+    public boolean add(int value) {
+        char high = high(value);
+        int low = value & 0xFFFF;
+        int i = indexOf(high);
+        if (i >= 0) {
+            Container container = containers[i];
+            if (container.contains(low)) {
+                return false;
+            }
+            containers[i] = container.add(low);
+        } else {
+            char[] values = new char[4];
+            values[0] = (char) low;
+            insertContainer(-i - 1, high, new ArrayContainer(values, 1));
+        }
+        cardinality++;
+        modCount++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int low = value & 0xFFFF;
+        int i = indexOf(high(value));
+        if (i < 0 || !containers[i].contains(low)) {
+            return false;
+        }
+        Container container = containers[i].remove(low);
+        if (container.cardinality() == 0) {
+            removeContainer(i);
+        } else {
+            containers[i] = container;
+        }
+        cardinality--;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Adds every int in [fromInclusive, toExclusive). Each container touched is or-ed with a single run, so a range of
+     * millions of values costs a few operations per 65536 values.
+     */
+    public void addRange(long fromInclusive, long toExclusive) {
+        if (fromInclusive < Integer.MIN_VALUE || toExclusive > Integer.MAX_VALUE + 1L || fromInclusive > toExclusive) {
+            throw new IllegalArgumentException("invalid range [" + fromInclusive + ", " + toExclusive + ")");
+        }
+        for (long start = fromInclusive; start < toExclusive; ) {
+            int value = (int) start;
+            long chunkEnd = Math.min(toExclusive, (start | 0xFFFF) + 1);
+            int low = value & 0xFFFF;
+            int length = (int) (chunkEnd - start);
+            RunContainer run = new RunContainer(new char[]{(char) low, (char) (length - 1)}, 1, length);
+            char high = high(value);
+            int i = indexOf(high);
+            if (i >= 0) {
+                Container merged = combine(containers[i], run, ONLY_A | ONLY_B | BOTH);
+                cardinality += merged.cardinality() - containers[i].cardinality();
+                containers[i] = merged;
+            } else {
+                insertContainer(-i - 1, high, run);
+                cardinality += length;
+            }
+            start = chunkEnd;
+        }
+        modCount++;
+    }
+
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public int firstInt() {
+        if (containerCount == 0) {
+            throw new NoSuchElementException();
+        }
+        return compose(keys[0], containers[0].first());
+    }
+
+    public int lastInt() {
+        if (containerCount == 0) {
+            throw new NoSuchElementException();
+        }
+        return compose(keys[containerCount - 1], containers[containerCount - 1].last());
+    }
+
+    public OptionalInt lowerInt(int value) {
+        return optional(value == Integer.MIN_VALUE ? NONE : floorValue(value - 1));
+    }
+
+    public OptionalInt floorInt(int value) {
+        return optional(floorValue(value));
+    }
+
+    public OptionalInt ceilingInt(int value) {
+        return optional(ceilingValue(value));
+    }
+
+    public OptionalInt higherInt(int value) {
+        return optional(value == Integer.MAX_VALUE ? NONE : ceilingValue(value + 1));
+    }
+
+    /**
+     * Number of elements less than or equal to value.
+     */
+    public long rank(int value) {
+        int i = indexOf(high(value));
+        long[] before = rankIndex();
+        if (i >= 0) {
+            return before[i] + containers[i].rank(value & 0xFFFF);
+        }
+        return before[-i - 1];
+    }
+
+    /**
+     * The element with the given zero-based position in ascending order, so select(rank(x) - 1) == x for every element x.
+     */
+    public int select(long index) {
+        if (index < 0 || index >= cardinality) {
+            throw new IllegalArgumentException("index " + index + " out of range for cardinality " + cardinality);
+        }
+        long[] before = rankIndex();
+        // Last container with countBefore <= index
+        int low = 0;
+        int high = containerCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (before[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return compose(keys[low], containers[low].select((int) (index - before[low])));
+    }
+
+    // countBefore for the current containers, with countBefore[containerCount] == cardinality
+    private long[] rankIndex() {
+        if (countBefore == null || rankIndexModCount != modCount || countBefore.length <= containerCount) {
+            long[] before = countBefore != null && countBefore.length > containerCount ? countBefore
+                    : new long[containerCount + 1];
+            for (int i = 0; i < containerCount; i++) {
+                before[i + 1] = before[i] + containers[i].cardinality();
+            }
+            countBefore = before;
+            rankIndexModCount = modCount;
+        }
+        return countBefore;
+    }
+
+    public void forEachInt(IntConsumer action) {
+        Objects.requireNonNull(action);
+        int[] buffer = new int[0];
+        for (int i = 0; i < containerCount; i++) {
+            Container container = containers[i];
+            if (buffer.length < container.cardinality()) {
+                buffer = new int[Math.max(container.cardinality(), Math.min(2 * buffer.length, 1 << 16))];
+            }
+            int count = container.toArray(buffer);
+            int base = (keys[i] ^ 0x8000) << 16;
+            for (int j = 0; j < count; j++) {
+                action.accept(base | buffer[j]);
+            }
+        }
+    }
+
+    public PrimitiveIterator.OfInt intIterator() {
+        return new ValueIterator(containerCount == 0 ? NONE : firstInt(), false);
+    }
+
+    public PrimitiveIterator.OfInt descendingIntIterator() {
+        return new ValueIterator(containerCount == 0 ? NONE : lastInt(), true);
+    }
+
+    /**
+     * Switches each container to a run container where that is smaller. Worth calling once after bulk loading sets
+     * with long stretches of consecutive values.
+     */
+    public void runOptimize() {
+        int[] buffer = new int[1 << 16];
+        for (int i = 0; i < containerCount; i++) {
+            containers[i] = containers[i].runOptimize(buffer);
+        }
+        modCount++;
+    }
+
+    /**
+     * Approximate heap footprint of the containers and the key index.
+     */
+    public long sizeInBytes() {
+        long bytes = 16L + 2L * keys.length + 4L * containers.length;
+        for (int i = 0; i < containerCount; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // ---- Set / NavigableSet ----
+
+    @Override
+    public int size() {
+        return (int) Math.min(cardinality, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer value && contains(value.intValue());
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer value && remove(value.intValue());
+    }
+
+    @Override
+    public void clear() {
+        keys = new char[4];
+        containers = new Container[4];
+        containerCount = 0;
+        cardinality = 0;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Integer> c) {
+        if (c instanceof RoaringIntSet other) {
+            return assign(or(this, other));
+        }
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if (c instanceof RoaringIntSet other) {
+            return assign(and(this, other));
+        }
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (c instanceof RoaringIntSet other) {
+            return assign(andNot(this, other));
+        }
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof RoaringIntSet other) {
+            return cardinality == other.cardinality && xor(this, other).isEmpty();
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (PrimitiveIterator.OfInt it = intIterator(); it.hasNext(); ) {
+            hash += it.nextInt();
+        }
+        return hash;
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return intIterator();
+    }
+
+    @Override
+    public Iterator<Integer> descendingIterator() {
+        return descendingIntIterator();
+    }
+
+    @Override
+    public Integer lower(Integer e) {
+        return boxed(e == Integer.MIN_VALUE ? NONE : floorValue(e - 1));
+    }
+
+    @Override
+    public Integer floor(Integer e) {
+        return boxed(floorValue(e));
+    }
+
+    @Override
+    public Integer ceiling(Integer e) {
+        return boxed(ceilingValue(e));
+    }
+
+    @Override
+    public Integer higher(Integer e) {
+        return boxed(e == Integer.MAX_VALUE ? NONE : ceilingValue(e + 1));
+    }
+
+    @Override
+    public Integer pollFirst() {
+        if (containerCount == 0) {
+            return null;
+        }
+        int first = firstInt();
+        remove(first);
+        return first;
+    }
+
+    @Override
+    public Integer pollLast() {
+        if (containerCount == 0) {
+            return null;
+        }
+        int last = lastInt();
+        remove(last);
+        return last;
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return null;
+    }
+
+    @Override
+    public Integer first() {
+        return firstInt();
+    }
+
+    @Override
+    public Integer last() {
+        return lastInt();
+    }
+
+    @Override
+    public NavigableSet<Integer> descendingSet() {
+        return view().descendingSet();
+    }
+
+    @Override
+    public NavigableSet<Integer> subSet(Integer fromElement, boolean fromInclusive, Integer toElement, boolean toInclusive) {
+        return view().subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<Integer> headSet(Integer toElement, boolean inclusive) {
+        return view().headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<Integer> tailSet(Integer fromElement, boolean inclusive) {
+        return view().tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<Integer> subSet(Integer fromElement, Integer toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<Integer> headSet(Integer toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<Integer> tailSet(Integer fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    // The range and descending views reuse the TreeMap-compatible views of AbstractNavigableMap over this set
+    private NavigableSet<Integer> view() {
+        return new AbstractNavigableMap.KeySet<>(new MapView());
+    }
+
+    private final class MapView extends AbstractNavigableMap<Integer, Boolean> {
+        MapView() {
+            super(null);
+        }
+
+        @Override
+        public int size() {
+            return RoaringIntSet.this.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return RoaringIntSet.this.contains(key);
+        }
+
+        @Override
+        public Boolean get(Object key) {
+            return RoaringIntSet.this.contains(key) ? Boolean.TRUE : null;
+        }
+
+        @Override
+        public Boolean put(Integer key, Boolean value) {
+            return add(key.intValue()) ? null : Boolean.TRUE;
+        }
+
+        @Override
+        public Boolean remove(Object key) {
+            return RoaringIntSet.this.remove(key) ? Boolean.TRUE : null;
+        }
+
+        @Override
+        public void clear() {
+            RoaringIntSet.this.clear();
+        }
+
+        @Override
+        public Entry<Integer, Boolean> firstEntry() {
+            return containerCount == 0 ? null : snapshot(firstInt(), Boolean.TRUE);
+        }
+
+        @Override
+        public Entry<Integer, Boolean> lastEntry() {
+            return containerCount == 0 ? null : snapshot(lastInt(), Boolean.TRUE);
+        }
+
+        @Override
+        protected Entry<Integer, Boolean> findEntry(Integer key, Relation relation) {
+            Integer found = switch (relation) {
+                case LOWER -> lower(key);
+                case FLOOR -> floor(key);
+                case CEILING -> ceiling(key);
+                case HIGHER -> higher(key);
+            };
+            return found == null ? null : snapshot(found, Boolean.TRUE);
+        }
+
+        @Override
+        protected Iterator<Entry<Integer, Boolean>> entryIterator(Entry<Integer, Boolean> first, boolean descending,
+                                                                  Integer fence, boolean fenceInclusive) {
+            ValueIterator values = new ValueIterator(first == null ? NONE : first.getKey(), descending);
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return values.hasNext() && !beyond(values.peek(), fence, fenceInclusive, descending);
+                }
+
+                @Override
+                public Entry<Integer, Boolean> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return snapshot(values.nextInt(), Boolean.TRUE);
+                }
+
+                @Override
+                public void remove() {
+                    values.remove();
+                }
+            };
+        }
+    }
+
+    /**
+     * Decodes one container at a time into an int buffer. Finds the next container by key rather than by index, so removing
+     * the last returned value (which may drop an emptied container) does not disturb the iteration.
+     */
+    private final class ValueIterator implements PrimitiveIterator.OfInt {
+        private final boolean descending;
+        private int[] buffer = new int[0];
+        private int count;
+        private int position;
+        private int high = -1;
+        private long lastReturned = NONE;
+        private int expectedModCount = modCount;
+
+        ValueIterator(long start, boolean descending) {
+            this.descending = descending;
+            if (start != NONE) {
+                int value = (int) start;
+                load(indexOf(high(value)));
+                int slot = Arrays.binarySearch(buffer, 0, count, value & 0xFFFF);
+                position = slot >= 0 ? slot : descending ? -slot - 2 : -slot - 1;
+            }
+        }
+
+        private void load(int index) {
+            Container container = containers[index];
+            if (buffer.length < container.cardinality()) {
+                buffer = new int[Math.max(container.cardinality(), Math.min(2 * buffer.length, 1 << 16))];
+            }
+            count = container.toArray(buffer);
+            high = keys[index];
+            position = descending ? count - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position >= 0 && position < count) {
+                return true;
+            }
+            if (high < 0) {
+                return false;
+            }
+            int index = indexOf((char) high);
+            int next = index >= 0 ? (descending ? index - 1 : index + 1) : (descending ? -index - 2 : -index - 1);
+            if (next < 0 || next >= containerCount) {
+                return false;
+            }
+            load(next);
+            return true;
+        }
+
+        int peek() {
+            return compose((char) high, buffer[position]);
+        }
+
+        @Override
+        public int nextInt() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int value = peek();
+            position += descending ? -1 : 1;
+            lastReturned = value;
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == NONE) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            RoaringIntSet.this.remove((int) lastReturned);
+            lastReturned = NONE;
+            expectedModCount = modCount;
+        }
+    }
+
+    // ---- internals ----
+
+    // Flipping the sign bit makes the unsigned order of the high bits match the signed order of the ints
+    private static char high(int value) {
+        return (char) ((value >>> 16) ^ 0x8000);
+    }
+
+    private static int compose(char high, int low) {
+        return (high ^ 0x8000) << 16 | low;
+    }
+
+    private static OptionalInt optional(long value) {
+        return value == NONE ? OptionalInt.empty() : OptionalInt.of((int) value);
+    }
+
+    private static Integer boxed(long value) {
+        return value == NONE ? null : (int) value;
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, containerCount, high);
+    }
+
+    private long ceilingValue(int value) {
+        char high = high(value);
+        int i = indexOf(high);
+        if (i >= 0) {
+            int low = containers[i].ceiling(value & 0xFFFF);
+            if (low >= 0) {
+                return compose(high, low);
+            }
+            i++;
+        } else {
+            i = -i - 1;
+        }
+        return i < containerCount ? compose(keys[i], containers[i].first()) : NONE;
+    }
+
+    private long floorValue(int value) {
+        char high = high(value);
+        int i = indexOf(high);
+        if (i >= 0) {
+            int low = containers[i].floor(value & 0xFFFF);
+            if (low >= 0) {
+                return compose(high, low);
+            }
+            i--;
+        } else {
+            i = -i - 2;
+        }
+        return i >= 0 ? compose(keys[i], containers[i].last()) : NONE;
+    }
+
+    private void insertContainer(int index, char high, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = high;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, containerCount - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, containerCount - index - 1);
+        containers[--containerCount] = null;
+    }
+
+    private void append(char high, Container container) {
+        insertContainer(containerCount, high, container);
+        cardinality += container.cardinality();
+    }
+
+    // Only used for or/and/andNot, whose result contains or is contained in this set: a change shows in the cardinality
+    private boolean assign(RoaringIntSet result) {
+        boolean changed = cardinality != result.cardinality;
+        keys = result.keys;
+        containers = result.containers;
+        containerCount = result.containerCount;
+        cardinality = result.cardinality;
+        modCount++;
+        return changed;
+    }
+
+    private static RoaringIntSet combine(RoaringIntSet a, RoaringIntSet b, int op) {
+        RoaringIntSet result = new RoaringIntSet();
+        int i = 0;
+        int j = 0;
+        while (i < a.containerCount || j < b.containerCount) {
+            int keyA = i < a.containerCount ? a.keys[i] : Integer.MAX_VALUE;
+            int keyB = j < b.containerCount ? b.keys[j] : Integer.MAX_VALUE;
+            if (keyA < keyB) {
+                if ((op & ONLY_A) != 0) {
+                    result.append((char) keyA, a.containers[i].copy());
+                }
+                i++;
+            } else if (keyB < keyA) {
+                if ((op & ONLY_B) != 0) {
+                    result.append((char) keyB, b.containers[j].copy());
+                }
+                j++;
+            } else {
+                Container container = combine(a.containers[i], b.containers[j], op);
+                if (container != null) {
+                    result.append((char) keyA, container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * New container with the op applied to two containers of the same key, or null if the result is empty.
+     */
+    private static Container combine(Container a, Container b, int op) {
+        if (a instanceof ArrayContainer x && b instanceof ArrayContainer y) {
+            return mergeArrays(x, y, op);
+        }
+        if (a instanceof ArrayContainer x && (op == BOTH || op == ONLY_A)) {
+            return filter(x, b, op == BOTH);
+        }
+        if (b instanceof ArrayContainer y && op == BOTH) {
+            return filter(y, a, true);
+        }
+        long[] wordsA = new long[WORDS];
+        long[] wordsB = new long[WORDS];
+        a.toBitmap(wordsA);
+        b.toBitmap(wordsB);
+        int count = 0;
+        for (int i = 0; i < WORDS; i++) {
+            long x = wordsA[i];
+            long y = wordsB[i];
+            long word = ((op & ONLY_A) != 0 ? x & ~y : 0) | ((op & ONLY_B) != 0 ? y & ~x : 0) | ((op & BOTH) != 0 ? x & y : 0);
+            wordsA[i] = word;
+            count += Long.bitCount(word);
+        }
+        return count == 0 ? null : fromWords(wordsA, count);
+    }
+
+    private static Container mergeArrays(ArrayContainer a, ArrayContainer b, int op) {
+        char[] out = new char[a.cardinality + b.cardinality];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.cardinality || j < b.cardinality) {
+            int x = i < a.cardinality ? a.values[i] : Integer.MAX_VALUE;
+            int y = j < b.cardinality ? b.values[j] : Integer.MAX_VALUE;
+            if (x < y) {
+                if ((op & ONLY_A) != 0) {
+                    out[n++] = (char) x;
+                }
+                i++;
+            } else if (y < x) {
+                if ((op & ONLY_B) != 0) {
+                    out[n++] = (char) y;
+                }
+                j++;
+            } else {
+                if ((op & BOTH) != 0) {
+                    out[n++] = (char) x;
+                }
+                i++;
+                j++;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        if (n <= ARRAY_MAX) {
+            return new ArrayContainer(out, n);
+        }
+        long[] words = new long[WORDS];
+        for (int k = 0; k < n; k++) {
+            words[out[k] >>> 6] |= 1L << out[k];
+        }
+        return new BitmapContainer(words, n);
+    }
+
+    private static Container filter(ArrayContainer a, Container b, boolean keepShared) {
+        char[] out = new char[a.cardinality];
+        int n = 0;
+        for (int i = 0; i < a.cardinality; i++) {
+            if (b.contains(a.values[i]) == keepShared) {
+                out[n++] = a.values[i];
+            }
+        }
+        return n == 0 ? null : new ArrayContainer(out, n);
+    }
+
+    private static Container fromWords(long[] words, int count) {
+        if (count > ARRAY_MAX) {
+            return new BitmapContainer(words, count);
+        }
+        char[] values = new char[count];
+        int n = 0;
+        for (int i = 0; i < WORDS; i++) {
+            for (long word = words[i]; word != 0; word &= word - 1) {
+                values[n++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+            }
+        }
+        return new ArrayContainer(values, count);
+    }
+
+    private static void setRange(long[] words, int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        if (firstWord == lastWord) {
+            words[firstWord] |= (-1L << from) & (-1L >>> -to);
+            return;
+        }
+        words[firstWord] |= -1L << from;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            words[i] = -1L;
+        }
+        words[lastWord] |= -1L >>> -to;
+    }
+
+    /**
+     * Holds the low 16 bits (0..65535) of the values that share one high part. Never empty while in the set.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /** Adds a value that is not present, returns the container to use from now on. */
+        abstract Container add(int low);
+
+        /** Removes a value that is present, returns the container to use from now on. */
+        abstract Container remove(int low);
+
+        /** Number of values <= low. */
+        abstract int rank(int low);
+
+        abstract int select(int index);
+
+        /** Smallest value >= low, or -1. */
+        abstract int ceiling(int low);
+
+        /** Greatest value <= low, or -1. */
+        abstract int floor(int low);
+
+        /** Writes the values in ascending order, returns their count. */
+        abstract int toArray(int[] out);
+
+        /** Sets the bits of the values in words (long[1024]). */
+        abstract void toBitmap(long[] words);
+
+        abstract int sizeInBytes();
+
+        abstract Container copy();
+
+        int first() {
+            return ceiling(0);
+        }
+
+        int last() {
+            return floor(0xFFFF);
+        }
+
+        Container runOptimize(int[] buffer) {
+            int count = toArray(buffer);
+            int runs = 1;
+            for (int i = 1; i < count; i++) {
+                if (buffer[i] != buffer[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            int runBytes = 4 * runs;
+            int otherBytes = count <= ARRAY_MAX ? 2 * count : 8 * WORDS;
+            if (runBytes < otherBytes) {
+                if (this instanceof RunContainer) {
+                    return this;
+                }
+                char[] pairs = new char[2 * runs];
+                int r = -1;
+                for (int i = 0; i < count; i++) {
+                    if (i == 0 || buffer[i] != buffer[i - 1] + 1) {
+                        pairs[2 * ++r] = (char) buffer[i];
+                    } else {
+                        pairs[2 * r + 1]++;
+                    }
+                }
+                return new RunContainer(pairs, runs, count);
+            }
+            if (this instanceof RunContainer run) {
+                return run.toArrayOrBitmap();
+            }
+            return this;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        private int search(int low) {
+            return Arrays.binarySearch(values, 0, cardinality, (char) low);
+        }
+
+        @Override
+        boolean contains(int low) {
+            return search(low) >= 0;
+        }
+
+        @Override
+        Container add(int low) {
+            if (cardinality == ARRAY_MAX) {
+                long[] words = new long[WORDS];
+                toBitmap(words);
+                return new BitmapContainer(words, cardinality).add(low);
+            }
+            int i = -search(low) - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = (char) low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            int i = search(low);
+            System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        int rank(int low) {
+            int i = search(low);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        @Override
+        int select(int index) {
+            return values[index];
+        }
+
+        @Override
+        int ceiling(int low) {
+            int i = search(low);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < cardinality ? values[i] : -1;
+        }
+
+        @Override
+        int floor(int low) {
+            int i = search(low);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            return i >= 0 ? values[i] : -1;
+        }
+
+        @Override
+        int toArray(int[] out) {
+            for (int i = 0; i < cardinality; i++) {
+                out[i] = values[i];
+            }
+            return cardinality;
+        }
+
+        @Override
+        void toBitmap(long[] words) {
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 32 + 2 * values.length;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(cardinality, 1)), cardinality);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        Container add(int low) {
+            words[low >>> 6] |= 1L << low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(int low) {
+            words[low >>> 6] &= ~(1L << low);
+            cardinality--;
+            return cardinality <= ARRAY_MAX ? fromWords(words, cardinality) : this;
+        }
+
+        @Override
+        int rank(int low) {
+            int rank = 0;
+            int word = low >>> 6;
+            for (int i = 0; i < word; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            return rank + Long.bitCount(words[word] & -1L >>> (63 - (low & 63)));
+        }
+
+        @Override
+        int select(int index) {
+            for (int i = 0; ; i++) {
+                long word = words[i];
+                int count = Long.bitCount(word);
+                if (index < count) {
+                    for (int k = 0; k < index; k++) {
+                        word &= word - 1;
+                    }
+                    return i << 6 | Long.numberOfTrailingZeros(word);
+                }
+                index -= count;
+            }
+        }
+
+        @Override
+        int ceiling(int low) {
+            int i = low >>> 6;
+            long word = words[i] & -1L << low;
+            while (word == 0) {
+                if (++i == WORDS) {
+                    return -1;
+                }
+                word = words[i];
+            }
+            return i << 6 | Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int floor(int low) {
+            int i = low >>> 6;
+            long word = words[i] & -1L >>> (63 - (low & 63));
+            while (word == 0) {
+                if (--i < 0) {
+                    return -1;
+                }
+                word = words[i];
+            }
+            return i << 6 | 63 - Long.numberOfLeadingZeros(word);
+        }
+
+        @Override
+        int toArray(int[] out) {
+            int n = 0;
+            for (int i = 0; i < WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    out[n++] = i << 6 | Long.numberOfTrailingZeros(word);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        void toBitmap(long[] target) {
+            for (int i = 0; i < WORDS; i++) {
+                target[i] |= words[i];
+            }
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 32 + 8 * WORDS;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+    }
+
+    private static final class RunContainer extends Container {
+        // runs[2 * i] is the first value of run i, runs[2 * i + 1] its length minus one
+        private final char[] runs;
+        private final int runCount;
+        private final int cardinality;
+
+        RunContainer(char[] runs, int runCount, int cardinality) {
+            this.runs = runs;
+            this.runCount = runCount;
+            this.cardinality = cardinality;
+        }
+
+        private int start(int run) {
+            return runs[2 * run];
+        }
+
+        private int end(int run) {
+            return runs[2 * run] + runs[2 * run + 1];
+        }
+
+        // Index of the last run starting at or before low, or -1
+        private int runIndex(int low) {
+            int lo = 0;
+            int hi = runCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start(mid) <= low) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        Container toArrayOrBitmap() {
+            long[] words = new long[WORDS];
+            toBitmap(words);
+            return fromWords(words, cardinality);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            int run = runIndex(low);
+            return run >= 0 && low <= end(run);
+        }
+
+        @Override
+        Container add(int low) {
+            return toArrayOrBitmap().add(low);
+        }
+
+        @Override
+        Container remove(int low) {
+            return toArrayOrBitmap().remove(low);
+        }
+
+        @Override
+        int rank(int low) {
+            int rank = 0;
+            for (int run = 0; run < runCount && start(run) <= low; run++) {
+                rank += Math.min(low, end(run)) - start(run) + 1;
+            }
+            return rank;
+        }
+
+        @Override
+        int select(int index) {
+            for (int run = 0; ; run++) {
+                int length = runs[2 * run + 1] + 1;
+                if (index < length) {
+                    return start(run) + index;
+                }
+                index -= length;
+            }
+        }
+
+        @Override
+        int ceiling(int low) {
+            int run = runIndex(low);
+            if (run >= 0 && low <= end(run)) {
+                return low;
+            }
+            return run + 1 < runCount ? start(run + 1) : -1;
+        }
+
+        @Override
+        int floor(int low) {
+            int run = runIndex(low);
+            return run < 0 ? -1 : Math.min(low, end(run));
+        }
+
+        @Override
+        int toArray(int[] out) {
+            int n = 0;
+            for (int run = 0; run < runCount; run++) {
+                for (int value = start(run), end = end(run); value <= end; value++) {
+                    out[n++] = value;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        void toBitmap(long[] words) {
+            for (int run = 0; run < runCount; run++) {
+                setRange(words, start(run), end(run) + 1);
+            }
+        }
+
+        @Override
+        int sizeInBytes() {
+            return 32 + 4 * runCount;
+        }
+
+        @Override
+        Container copy() {
+            // Never modified in place, so it can be shared
+            return this;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ca.siva.ch05_collections;
+
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timer wheel that expires BoundedCache entries in O(1) per entry instead of scanning the whole cache.
+ * Level 0 has 64 buckets of about 1 second, level 1 64 buckets of about 1 minute, level 2 32 buckets of about 1 hour,
+ * level 3 4 buckets of about 1.6 days and level 4 a single bucket for everything further away. When time advances, the
+ * buckets that were passed are emptied: entries that are due are handed to the evictor, the others are scheduled again
+ * and so cascade down to a finer level. Times are the cache's own nanosecond clock, which starts at 0.
+ * Not thread-safe: only used while holding the cache's eviction lock.
+ */
+final class TimerWheel<K, V> {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    private static final long[] SPANS = {
+            1L << 30, // 1.07s
+            1L << 36, // 1.14m
+            1L << 42, // 1.22h
+            1L << 47, // 1.63d
+            1L << 49, // 6.5d
+    };
+    private static final int[] SHIFTS = {30, 36, 42, 47, 49};
+
+    private final BoundedCache.Node<K, V>[][] wheel;
+    private long nanos;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel() {
+        wheel = (BoundedCache.Node<K, V>[][]) new BoundedCache.Node<?, ?>[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = (BoundedCache.Node<K, V>[]) new BoundedCache.Node<?, ?>[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                BoundedCache.Node<K, V> sentinel = new BoundedCache.Node<>(null, null, 0, 0);
+                sentinel.timerPrev = sentinel;
+                sentinel.timerNext = sentinel;
+                wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    void schedule(BoundedCache.Node<K, V> node, long time) {
+        if (node.timerNext != null) {
+            unlink(node);
+        }
+        node.timerTime = time;
+        BoundedCache.Node<K, V> sentinel = findBucket(time);
+        node.timerPrev = sentinel.timerPrev;
+        node.timerNext = sentinel;
+        sentinel.timerPrev.timerNext = node;
+        sentinel.timerPrev = node;
+    }
+
+    void deschedule(BoundedCache.Node<K, V> node) {
+        if (node.timerNext != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Moves the wheel to currentTime. Each entry whose time has passed goes to evictor; if it returns false (the entry was
+     * accessed or written since it was scheduled) it must have set node.timerTime to the new deadline, and the entry is
+     * scheduled again.
+     */
+    void advance(long currentTime, Predicate<BoundedCache.Node<K, V>> evictor) {
+        long previous = nanos;
+        nanos = currentTime;
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previous >>> SHIFTS[level];
+            long delta = (currentTime >>> SHIFTS[level]) - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(level, previousTicks, delta, evictor);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, Predicate<BoundedCache.Node<K, V>> evictor) {
+        BoundedCache.Node<K, V>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            BoundedCache.Node<K, V> sentinel = buckets[i & mask];
+            BoundedCache.Node<K, V> node = sentinel.timerNext;
+            sentinel.timerPrev = sentinel;
+            sentinel.timerNext = sentinel;
+            while (node != sentinel) {
+                BoundedCache.Node<K, V> next = node.timerNext;
+                node.timerPrev = null;
+                node.timerNext = null;
+                if (node.timerTime - nanos > 0 || !evictor.test(node)) {
+                    schedule(node, node.timerTime);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private BoundedCache.Node<K, V> findBucket(long time) {
+        long duration = time - nanos;
+        int last = wheel.length - 1;
+        for (int level = 0; level < last; level++) {
+            if (duration < SPANS[level + 1]) {
+                long ticks = time >>> SHIFTS[level];
+                return wheel[level][(int) (ticks & (wheel[level].length - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private static <K, V> void unlink(BoundedCache.Node<K, V> node) {
+        node.timerPrev.timerNext = node.timerNext;
+        node.timerNext.timerPrev = node.timerPrev;
+        node.timerPrev = null;
+        node.timerNext = null;
+    }
+}
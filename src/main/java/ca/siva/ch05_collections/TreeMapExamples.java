@@ -2,12 +2,21 @@ package ca.siva.ch05_collections;
 
 import lombok.extern.slf4j.Slf4j;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
 NOTE:
 1) TreeMap cannot allow null value as a key, but can have null values for any given key
 2) Maintains a sorted order of all the keys. In contrast, hashmap won't preserve the order and allows null value of a key.
+3) TreeMap is a red-black tree with one node per entry, so lookups and range scans chase a pointer per step. For large maps
+BPlusTreeMap (wide array nodes, linked leaves) offers the same NavigableMap API, LongBPlusTreeMap avoids boxing long keys and
+ConcurrentBPlusTreeMap allows lock-free reads and range scans while other threads write.
  */
 @Slf4j
 public class TreeMapExamples {
@@ -21,6 +30,10 @@ public class TreeMapExamples {
         examples.exampleGetFirstLastEntry();
         examples.exampleHeadMapTailMapSubMap();
         examples.exampleNavigableKeySet();
+        examples.exampleBPlusTreeHeadMapTailMapSubMap();
+        examples.exampleLongBPlusTreeMap();
+        examples.exampleConcurrentOrderBookRangeScan();
+        examples.exampleRangeScanTreeMapVsBPlusTree();
     }
 
     // Example of adding elements to a TreeMap
@@ -103,4 +116,102 @@ public class TreeMapExamples {
             log.info("Key: {}", key);
         }
     }
+
+    // Example of the same navigable queries on a BPlusTreeMap, including views of views
+    public void exampleBPlusTreeHeadMapTailMapSubMap() {
+        BPlusTreeMap<String, Integer> bPlusTreeMap = new BPlusTreeMap<>();
+        bPlusTreeMap.put("apple", 1);
+        bPlusTreeMap.put("banana", 2);
+        bPlusTreeMap.put("cherry", 3);
+        bPlusTreeMap.put("date", 4);
+        bPlusTreeMap.put("fig", 5);
+
+        log.info("B+tree HeadMap (elements less than 'cherry'): {}", bPlusTreeMap.headMap("cherry"));
+        log.info("B+tree TailMap (elements from 'cherry' onwards): {}", bPlusTreeMap.tailMap("cherry"));
+        log.info("B+tree SubMap (elements between 'banana' and 'fig'): {}", bPlusTreeMap.subMap("banana", "fig"));
+        // Views are live and can be narrowed further or reversed, exactly like TreeMap's
+        NavigableMap<String, Integer> descending = bPlusTreeMap.subMap("banana", true, "fig", true).descendingMap();
+        log.info("B+tree descending SubMap: {}, its headMap('cherry'): {}", descending, descending.headMap("cherry"));
+        log.info("B+tree navigable key set: {}, descending: {}", bPlusTreeMap.navigableKeySet(), bPlusTreeMap.descendingKeySet());
+    }
+
+    // Example of a B+tree with primitive long keys, e.g. timestamps, without boxing every key into a Long
+    public void exampleLongBPlusTreeMap() {
+        LongBPlusTreeMap<String> events = new LongBPlusTreeMap<>();
+        for (long timestamp = 1_000; timestamp <= 100_000; timestamp += 1_000) {
+            events.put(timestamp, "event@" + timestamp);
+        }
+        log.info("size: {}, height: {}", events.size(), events.height());
+        log.info("floorKey(42_500): {}, ceilingKey(42_500): {}", events.floorKey(42_500), events.ceilingKey(42_500));
+        StringBuilder range = new StringBuilder();
+        events.forEachInRange(10_000, 15_000, (timestamp, event) -> range.append(event).append(' '));
+        log.info("events in [10000, 15000): {}", range.toString().trim());
+    }
+
+    // Example of an order book (price level -> quantity) updated by several threads while another one scans the best levels
+    // without taking a lock, which a TreeMap could only do behind an external lock.
+    public void exampleConcurrentOrderBookRangeScan() {
+        ConcurrentBPlusTreeMap<Long, Long> orderBook = new ConcurrentBPlusTreeMap<>();
+        AtomicLong scans = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int writer = 0; writer < 3; writer++) {
+                int seed = writer;
+                executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 200_000; i++) {
+                        // prices in cents between 100.00 and 110.00
+                        long price = 10_000 + random.nextInt(1_000);
+                        orderBook.merge(price, 1L, Long::sum);
+                    }
+                });
+            }
+            executor.submit(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    long[] depth = new long[1];
+                    orderBook.forEachInRange(10_000L, 10_010L, (price, quantity) -> depth[0] += quantity);
+                    scans.incrementAndGet();
+                }
+            });
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while waiting for the order book writers", e);
+            return;
+        }
+        log.info("price levels: {}, lowest: {}, highest: {}", orderBook.size(), orderBook.firstKey(), orderBook.lastKey());
+        log.info("levels in [100.00, 100.10): {}, range scans done while writing: {}",
+                orderBook.subMap(10_000L, 10_010L), scans.get());
+    }
+
+    // Example comparing a full range scan on TreeMap and BPlusTreeMap holding the same 1M entries
+    // Output (varies by machine): the B+tree scan is faster once warmed up, it reads arrays instead of chasing nodes
+    public void exampleRangeScanTreeMapVsBPlusTree() {
+        int n = 1_000_000;
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        BPlusTreeMap<Integer, Integer> bPlusTreeMap = new BPlusTreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            int key = random.nextInt();
+            treeMap.put(key, i);
+            bPlusTreeMap.put(key, i);
+        }
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long treeMapSum = 0;
+            for (int value : treeMap.subMap(-1_000_000_000, 1_000_000_000).values()) {
+                treeMapSum += value;
+            }
+            long treeMapNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            long[] bPlusTreeSum = new long[1];
+            bPlusTreeMap.forEachInRange(-1_000_000_000, 1_000_000_000, (key, value) -> bPlusTreeSum[0] += value);
+            long bPlusTreeNanos = System.nanoTime() - start;
+
+            log.info("round {}: TreeMap {} ms, BPlusTreeMap {} ms (height {}), same result: {}", round,
+                    treeMapNanos / 1_000_000, bPlusTreeNanos / 1_000_000, bPlusTreeMap.height(), treeMapSum == bPlusTreeSum[0]);
+        }
+    }
 }
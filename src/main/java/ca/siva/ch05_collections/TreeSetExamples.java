@@ -3,6 +3,7 @@ package ca.siva.ch05_collections;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Comparator;
+import java.util.NavigableSet;
 import java.util.TreeSet;
 
 @Slf4j
@@ -17,9 +18,11 @@ public class TreeSetExamples {
         examples.exampleHeadSetTailSetSubSet();
         examples.exampleFirstLast();
         examples.exampleHigherLower();
+        examples.exampleHigherLowerOnBPlusTree();
         examples.exampleNavigableSet();
         examples.exampleNaturalOrdering();
         examples.exampleCustomOrdering();
+        examples.exampleRoaringIntSetNavigation();
     }
 
     // Example of adding elements to a TreeSet
@@ -111,6 +114,23 @@ public class TreeSetExamples {
         log.info("Element lower than 'cherry': {}", treeSet.lower("cherry"));
     }
 
+    // Example of higher/lower on the key set of a BPlusTreeMap, a NavigableSet backed by the map like TreeSet is backed by TreeMap
+    // Output: B+tree element higher than 'banana': cherry
+    // B+tree element lower than 'cherry': banana
+    public void exampleHigherLowerOnBPlusTree() {
+        BPlusTreeMap<String, Boolean> map = new BPlusTreeMap<>();
+        map.put("apple", Boolean.TRUE);
+        map.put("banana", Boolean.TRUE);
+        map.put("cherry", Boolean.TRUE);
+        map.put("date", Boolean.TRUE);
+        map.put("fig", Boolean.TRUE);
+
+        NavigableSet<String> keys = map.navigableKeySet();
+
+        log.info("B+tree element higher than 'banana': {}", keys.higher("banana"));
+        log.info("B+tree element lower than 'cherry': {}", keys.lower("cherry"));
+    }
+
     // Example of getting a navigable set from a TreeSet
     // Output: Navigable Set in descending order:
     // Element: fig
@@ -159,4 +179,20 @@ public class TreeSetExamples {
 
         log.info("TreeSet with custom ordering (by length): {}", treeSet);
     }
+
+    // Example of TreeSet-style navigation, range views and rank/select on a RoaringIntSet
+    // Output: Ceiling of 1000: 1024, floor of 1000: 768, IDs in [5000, 6000): [5120, 5376, 5632, 5888]
+    // Rank of 2560: 11, 11th smallest: 2560, median: 128000
+    public void exampleRoaringIntSetNavigation() {
+        RoaringIntSet ids = new RoaringIntSet();
+        for (int id = 0; id < 256_000; id += 256) {
+            ids.add(id);
+        }
+
+        log.info("Ceiling of 1000: {}, floor of 1000: {}, IDs in [5000, 6000): {}",
+                ids.ceiling(1000), ids.floor(1000), ids.subSet(5000, 6000));
+        // rank(x) = number of elements <= x, select(i) = i-th smallest (0-based), the inverse of rank
+        log.info("Rank of 2560: {}, 11th smallest: {}, median: {}",
+                ids.rank(2560), ids.select(10), ids.select(ids.cardinality() / 2));
+    }
 }
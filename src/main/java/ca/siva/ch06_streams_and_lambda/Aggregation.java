@@ -0,0 +1,45 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Objects;
+
+/**
+ * One aggregate of ColumnTable.groupBy/aggregate: the operation, the column it reads (none for COUNT) and the name of the
+ * result column. As in SQL, SUM/MIN/MAX/AVG skip null values and are null for a group without any non-null value.
+ */
+public record Aggregation(Operation operation, String column, String alias) {
+
+    public enum Operation {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    public Aggregation {
+        Objects.requireNonNull(operation, "operation");
+        Objects.requireNonNull(alias, "alias");
+        if (operation != Operation.COUNT && column == null) {
+            throw new IllegalArgumentException(operation + " needs a column");
+        }
+    }
+
+    /**
+     * Number of rows in the group.
+     */
+    public static Aggregation count(String alias) {
+        return new Aggregation(Operation.COUNT, null, alias);
+    }
+
+    public static Aggregation sum(String column, String alias) {
+        return new Aggregation(Operation.SUM, column, alias);
+    }
+
+    public static Aggregation min(String column, String alias) {
+        return new Aggregation(Operation.MIN, column, alias);
+    }
+
+    public static Aggregation max(String column, String alias) {
+        return new Aggregation(Operation.MAX, column, alias);
+    }
+
+    public static Aggregation avg(String column, String alias) {
+        return new Aggregation(Operation.AVG, column, alias);
+    }
+}
@@ -0,0 +1,155 @@
+package ca.siva.ch06_streams_and_lambda;
+
+/*
+NOTE:
+1) The Vector API (jdk.incubator.vector) lets Java code use the CPU's SIMD registers explicitly: an IntVector of the
+preferred species holds 8 ints on AVX2 and 16 on AVX-512, and one add() is one instruction on all lanes. The JIT already
+auto-vectorizes simple counted loops, but not reductions over floats (reordering the additions changes the result), not
+loops that exit early (mismatch, indexOf) and not loops whose output position depends on the data (filter).
+2) The module is incubating, so both javac and java need --add-modules jdk.incubator.vector (build.gradle adds it).
+Without it at run time these methods fall back to plain scalar loops; vectorized() tells which one is in use.
+The system property ca.siva.kernels.scalar=true forces the fallback, e.g. to compare the two.
+3) float sum and dot add the lanes in a different order than a sequential loop, so the result can differ in the last bits
+(it is usually closer to the exact sum). Integer results are identical; sum(int[]) wraps on overflow like IntStream.sum().
+ */
+public final class ArrayKernels {
+    private static final boolean VECTORIZED = !Boolean.getBoolean("ca.siva.kernels.scalar")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private ArrayKernels() {
+    }
+
+    public static boolean vectorized() {
+        return VECTORIZED;
+    }
+
+    public static int sum(int[] array) {
+        return VECTORIZED ? VectorKernels.sum(array) : ScalarKernels.sum(array);
+    }
+
+    public static float sum(float[] array) {
+        return VECTORIZED ? VectorKernels.sum(array) : ScalarKernels.sum(array);
+    }
+
+    public static int min(int[] array) {
+        requireNonEmpty(array.length);
+        return VECTORIZED ? VectorKernels.min(array) : ScalarKernels.min(array);
+    }
+
+    public static int max(int[] array) {
+        requireNonEmpty(array.length);
+        return VECTORIZED ? VectorKernels.max(array) : ScalarKernels.max(array);
+    }
+
+    /**
+     * Smallest element, with Math.min semantics: NaN if any element is NaN.
+     */
+    public static float min(float[] array) {
+        requireNonEmpty(array.length);
+        return VECTORIZED ? VectorKernels.min(array) : ScalarKernels.min(array);
+    }
+
+    public static float max(float[] array) {
+        requireNonEmpty(array.length);
+        return VECTORIZED ? VectorKernels.max(array) : ScalarKernels.max(array);
+    }
+
+    /**
+     * Copies the elements greater than threshold to the start of destination, in order, and returns how many there are.
+     * Equivalent to IntStream.of(source).filter(n -> n > threshold).toArray() without the intermediate buffers.
+     */
+    public static int filterGreaterThan(int[] source, int threshold, int[] destination) {
+        if (destination.length < source.length) {
+            throw new IllegalArgumentException("destination is shorter than source: " + destination.length + " < " + source.length);
+        }
+        return VECTORIZED ? VectorKernels.filterGreaterThan(source, threshold, destination)
+                : ScalarKernels.filterGreaterThan(source, threshold, destination);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("arrays have different lengths: " + a.length + ", " + b.length);
+        }
+        return VECTORIZED ? VectorKernels.dot(a, b) : ScalarKernels.dot(a, b);
+    }
+
+    /**
+     * Same result as Arrays.mismatch: the first index where the arrays differ, the shorter length if one is a prefix of
+     * the other, or -1 if they are equal.
+     */
+    public static int mismatch(int[] a, int[] b) {
+        return VECTORIZED ? VectorKernels.mismatch(a, b) : ScalarKernels.mismatch(a, b);
+    }
+
+    public static int mismatch(byte[] a, byte[] b) {
+        return VECTORIZED ? VectorKernels.mismatch(a, b) : ScalarKernels.mismatch(a, b);
+    }
+
+    /**
+     * Same result as Arrays.compare: lexicographic comparison based on mismatch.
+     */
+    public static int compare(int[] a, int[] b) {
+        int index = mismatch(a, b);
+        if (index < 0) {
+            return 0;
+        }
+        return index < Math.min(a.length, b.length) ? Integer.compare(a[index], b[index]) : a.length - b.length;
+    }
+
+    /**
+     * Index of the first occurrence of value, or -1.
+     */
+    public static int indexOf(byte[] array, byte value) {
+        return VECTORIZED ? VectorKernels.indexOf(array, value) : ScalarKernels.indexOf(array, value);
+    }
+
+    /**
+     * Writes one bit per element of values[0, length) into bits: set if min <= value <= max. Every word of bits that covers
+     * [0, length) is overwritten, bits past length are cleared. This is the scan behind ColumnTable filters: =, <, > and
+     * BETWEEN on an int column are all ranges.
+     */
+    public static void inRange(int[] values, int length, int min, int max, long[] bits) {
+        checkBitmap(values.length, length, bits);
+        if (VECTORIZED) {
+            VectorKernels.inRange(values, length, min, max, bits);
+        } else {
+            ScalarKernels.inRange(values, length, min, max, bits);
+        }
+    }
+
+    public static void inRange(long[] values, int length, long min, long max, long[] bits) {
+        checkBitmap(values.length, length, bits);
+        if (VECTORIZED) {
+            VectorKernels.inRange(values, length, min, max, bits);
+        } else {
+            ScalarKernels.inRange(values, length, min, max, bits);
+        }
+    }
+
+    /**
+     * Like inRange(int[], ...); NaN is never in range.
+     */
+    public static void inRange(double[] values, int length, double min, double max, long[] bits) {
+        checkBitmap(values.length, length, bits);
+        if (VECTORIZED) {
+            VectorKernels.inRange(values, length, min, max, bits);
+        } else {
+            ScalarKernels.inRange(values, length, min, max, bits);
+        }
+    }
+
+    private static void checkBitmap(int capacity, int length, long[] bits) {
+        if (length < 0 || length > capacity) {
+            throw new IllegalArgumentException("length must be in [0, " + capacity + "]: " + length);
+        }
+        if ((long) bits.length * Long.SIZE < length) {
+            throw new IllegalArgumentException("bits holds fewer than " + length + " bits");
+        }
+    }
+
+    private static void requireNonEmpty(int length) {
+        if (length == 0) {
+            throw new IllegalArgumentException("array must not be empty");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+NOTE:
+1) A Bloom filter answers "definitely not present" or "probably present". An element sets k bits; a lookup that finds any
+of its k bits clear is a guaranteed miss, so a negative lookup never needs to reach the real store.
+2) A classic Bloom filter spreads the k bits over the whole array, which costs k cache misses per lookup. The blocked
+variant first picks one 512-bit block (a single 64-byte cache line) and sets all k bits inside it, so a lookup touches one
+cache line. The price is a higher false positive rate because some blocks get more than their share of elements; create()
+pays for it with 10% (at fpp 1%) to 30% (at fpp 0.01%) more bits than a classic filter.
+3) Elements cannot be removed (clearing a bit could clear it for another element); use CuckooFilter when deletions are needed.
+4) Filters with the same dimensions merge with a bitwise OR, e.g. one filter per partition combined into one.
+ */
+public class BlockedBloomFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x424C4246; // "BLBF"
+    private static final int BLOCK_LONGS = 8;
+    private static final int BLOCK_BITS = BLOCK_LONGS * Long.SIZE;
+
+    private final long[] bits;
+    private final int blocks;
+    private final int hashCount;
+
+    public BlockedBloomFilter(int blocks, int hashCount) {
+        if (blocks <= 0 || blocks > Integer.MAX_VALUE / BLOCK_LONGS) {
+            throw new IllegalArgumentException("blocks must be in [1, " + Integer.MAX_VALUE / BLOCK_LONGS + "]: " + blocks);
+        }
+        if (hashCount < 1 || hashCount > 16) {
+            throw new IllegalArgumentException("hashCount must be in [1, 16]: " + hashCount);
+        }
+        this.blocks = blocks;
+        this.hashCount = hashCount;
+        this.bits = new long[blocks * BLOCK_LONGS];
+    }
+
+    /**
+     * Sizes the filter so that, after expectedInsertions distinct elements, a lookup of an absent element returns true
+     * with probability of about fpp.
+     */
+    public static BlockedBloomFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        // Start from the classic Bloom filter size and grow until the blocked false positive rate reaches the target
+        double bitsPerElement = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+        int hashCount = bestHashCount(bitsPerElement);
+        while (blockedFpp(bitsPerElement, hashCount) > fpp) {
+            bitsPerElement *= 1.02;
+            hashCount = bestHashCount(bitsPerElement);
+        }
+        long blocks = (long) Math.ceil(expectedInsertions * bitsPerElement / BLOCK_BITS);
+        return new BlockedBloomFilter((int) Math.min(blocks, Integer.MAX_VALUE / BLOCK_LONGS), hashCount);
+    }
+
+    private static int bestHashCount(double bitsPerElement) {
+        int best = 1;
+        for (int k = 2; k <= 16; k++) {
+            if (blockedFpp(bitsPerElement, k) < blockedFpp(bitsPerElement, best)) {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The number of elements landing in a block is Poisson distributed with mean BLOCK_BITS / bitsPerElement; the false
+     * positive rate is the classic one for a single block, averaged over that distribution. Overfull blocks dominate it.
+     */
+    private static double blockedFpp(double bitsPerElement, int hashCount) {
+        double mean = BLOCK_BITS / bitsPerElement;
+        double probability = Math.exp(-mean);
+        double fpp = 0;
+        int limit = (int) (mean + 10 * Math.sqrt(mean) + 10);
+        for (int load = 0; load <= limit; load++) {
+            if (load > 0) {
+                probability *= mean / load;
+            }
+            fpp += probability * Math.pow(1 - Math.pow(1 - 1.0 / BLOCK_BITS, (double) hashCount * load), hashCount);
+        }
+        return fpp;
+    }
+
+    /**
+     * Returns true if the filter changed, i.e. the element was definitely not added before.
+     */
+    public boolean put(CharSequence element) {
+        return putHash(Hashing.hash64(element));
+    }
+
+    public boolean put(long element) {
+        return putHash(Hashing.mix64(element));
+    }
+
+    public boolean putHash(long hash) {
+        int offset = blockOffset(hash);
+        long h = hash;
+        long changed = 0;
+        for (int i = 0; i < hashCount; i++) {
+            h = nextBits(h);
+            int bit = (int) (h >>> 55);
+            int index = offset + (bit >>> 6);
+            long mask = 1L << bit;
+            changed |= ~bits[index] & mask;
+            bits[index] |= mask;
+        }
+        return changed != 0;
+    }
+
+    public boolean mightContain(CharSequence element) {
+        return mightContainHash(Hashing.hash64(element));
+    }
+
+    public boolean mightContain(long element) {
+        return mightContainHash(Hashing.mix64(element));
+    }
+
+    public boolean mightContainHash(long hash) {
+        int offset = blockOffset(hash);
+        long h = hash;
+        for (int i = 0; i < hashCount; i++) {
+            h = nextBits(h);
+            int bit = (int) (h >>> 55);
+            if ((bits[offset + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public BlockedBloomFilter merge(BlockedBloomFilter other) {
+        if (other.blocks != blocks || other.hashCount != hashCount) {
+            throw new IllegalArgumentException("Cannot merge filters of different dimensions");
+        }
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+        return this;
+    }
+
+    public long bitSize() {
+        return (long) bits.length * Long.SIZE;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Estimated number of distinct elements added, derived from the fraction of bits still clear.
+     */
+    public long approximateElementCount() {
+        long set = 0;
+        for (long word : bits) {
+            set += Long.bitCount(word);
+        }
+        double clear = 1 - (double) set / bitSize();
+        return clear <= 0 ? Long.MAX_VALUE : Math.round(-Math.log(clear) * bitSize() / hashCount);
+    }
+
+    /**
+     * Writes the filter in a compact binary form (a header and the raw bit array) that readFrom accepts.
+     * Unlike Java serialization the format does not depend on the class layout, so it suits files kept across releases.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(blocks);
+        data.writeInt(hashCount);
+        for (long word : bits) {
+            data.writeLong(word);
+        }
+        data.flush();
+    }
+
+    public void writeTo(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            writeTo(out);
+        }
+    }
+
+    public static BlockedBloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a BlockedBloomFilter stream");
+        }
+        BlockedBloomFilter filter;
+        try {
+            filter = new BlockedBloomFilter(data.readInt(), data.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt BlockedBloomFilter header", e);
+        }
+        for (int i = 0; i < filter.bits.length; i++) {
+            filter.bits[i] = data.readLong();
+        }
+        return filter;
+    }
+
+    public static BlockedBloomFilter readFrom(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return readFrom(in);
+        }
+    }
+
+    // Multiply-shift maps the high 32 bits onto [0, blocks) without a division
+    private int blockOffset(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+
+    /*
+     * Bit positions in the block are the top 9 bits of successive LCG steps. Kirsch-Mitzenmacher (h1 + i * h2, as in
+     * CountMinSketch) has too few distinct patterns modulo 512 and measurably doubles the false positive rate here.
+     */
+    private static long nextBits(long h) {
+        return h * 0x5851F42D4C957F2DL + 0x14057B7EF767814FL;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockedBloomFilter{bits=" + bitSize() + ", hashCount=" + hashCount + '}';
+    }
+}
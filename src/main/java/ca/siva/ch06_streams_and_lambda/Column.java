@@ -0,0 +1,92 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+
+/**
+ * One column of a ColumnTable: all values of one field, stored in a primitive array, plus a bitmap of the rows that are
+ * null (only allocated once the first null is appended). Columns are filled while the table is loaded and read-only after.
+ */
+public abstract sealed class Column permits IntColumn, LongColumn, DoubleColumn, StringColumn {
+    private final String name;
+    int size;
+    long[] nulls;
+
+    Column(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasNulls() {
+        return nulls != null;
+    }
+
+    public boolean isNull(int row) {
+        checkRow(row);
+        // nulls only grows up to the word of the last null row
+        return nulls != null && row >>> 6 < nulls.length && (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public Selection isNull() {
+        long[] bits = new long[Selection.words(size)];
+        if (nulls != null) {
+            System.arraycopy(nulls, 0, bits, 0, Math.min(nulls.length, bits.length));
+        }
+        return new Selection(bits, size);
+    }
+
+    public Selection isNotNull() {
+        return isNull().not();
+    }
+
+    /**
+     * The value of the row, boxed; null for a null row. Meant for printing, not for scans.
+     */
+    public abstract Object get(int row);
+
+    abstract void appendNull();
+
+    abstract void reserve(int capacity);
+
+    abstract void trimToSize();
+
+    void markNull(int row) {
+        if (nulls == null) {
+            nulls = new long[Math.max(1, Selection.words(row + 1))];
+        } else if (nulls.length <= row >>> 6) {
+            nulls = Arrays.copyOf(nulls, Math.max(nulls.length * 2, (row >>> 6) + 1));
+        }
+        nulls[row >>> 6] |= 1L << row;
+    }
+
+    // A filter never selects a null row, as in SQL where NULL > 5 is not true
+    Selection withoutNulls(long[] bits) {
+        if (nulls != null) {
+            for (int i = 0; i < Math.min(bits.length, nulls.length); i++) {
+                bits[i] &= ~nulls[i];
+            }
+        }
+        return new Selection(bits, size);
+    }
+
+    void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+    }
+
+    static int grow(int capacity) {
+        return Math.max(16, capacity + (capacity >> 1));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{name=" + name + ", size=" + size + '}';
+    }
+}
@@ -0,0 +1,616 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/*
+NOTE:
+1) A List<Person> is row oriented: every row is an object with a header, and a report that reads two fields still pulls
+every object through the cache. A column store keeps one primitive array per field, so a filter on age scans 4 bytes per
+row and group-by reads just the key and value arrays.
+2) Queries run column at a time: a filter turns one column into a Selection (one bit per row, built 64 rows per word by
+ArrayKernels.inRange) and Selections combine with and/or/not. groupBy then walks the selected rows in batches of 1024:
+it computes the group of each row in the batch and then runs each aggregate over the whole batch in a tight loop.
+3) Grouping by a StringColumn uses its dictionary codes as group indexes, so there is no hashing per row. Grouping by an
+IntColumn maps each key to a group index through an IntLongHashMap.
+4) Tables are built once (mapping().load(rows) or fromResultSet) and are read-only afterwards; reads are thread-safe.
+ */
+public final class ColumnTable {
+    private static final int BATCH_SIZE = 1024;
+
+    private final Map<String, Column> columns;
+    private final int rowCount;
+
+    private ColumnTable(List<Column> columns, int rowCount) {
+        Map<String, Column> byName = new LinkedHashMap<>();
+        for (Column column : columns) {
+            column.trimToSize();
+            if (byName.put(column.name(), column) != null) {
+                throw new IllegalArgumentException("Duplicate column: " + column.name());
+            }
+        }
+        this.columns = Collections.unmodifiableMap(byName);
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Starts a mapping from objects (records, beans) to columns:
+     * <pre>
+     * ColumnTable people = ColumnTable.&lt;Person&gt;mapping()
+     *         .stringColumn("name", Person::name)
+     *         .intColumn("age", Person::age)
+     *         .load(persons);
+     * </pre>
+     */
+    public static <T> Mapping<T> mapping() {
+        return new Mapping<>();
+    }
+
+    /**
+     * Reads all remaining rows of the ResultSet. SQL integer types up to INTEGER become IntColumn (INTEGER UNSIGNED
+     * becomes LongColumn), BIGINT becomes LongColumn, and REAL, FLOAT, DOUBLE, DECIMAL and NUMERIC become DoubleColumn
+     * (DECIMAL values lose precision beyond a double's). Everything else is read with getString into a StringColumn.
+     * Column names are the column labels, so "SELECT salary AS pay" gives a column named pay.
+     */
+    public static ColumnTable fromResultSet(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Column[] columns = new Column[metaData.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            String name = metaData.getColumnLabel(i + 1);
+            columns[i] = switch (metaData.getColumnType(i + 1)) {
+                case Types.TINYINT, Types.SMALLINT -> new IntColumn(name);
+                case Types.INTEGER -> metaData.isSigned(i + 1) ? new IntColumn(name) : new LongColumn(name);
+                case Types.BIGINT -> new LongColumn(name);
+                case Types.REAL, Types.FLOAT, Types.DOUBLE, Types.DECIMAL, Types.NUMERIC -> new DoubleColumn(name);
+                default -> new StringColumn(name);
+            };
+        }
+        int rows = 0;
+        while (resultSet.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                Column column = columns[i];
+                if (column instanceof IntColumn ints) {
+                    int value = resultSet.getInt(i + 1);
+                    if (resultSet.wasNull()) {
+                        ints.appendNull();
+                    } else {
+                        ints.append(value);
+                    }
+                } else if (column instanceof LongColumn longs) {
+                    long value = resultSet.getLong(i + 1);
+                    if (resultSet.wasNull()) {
+                        longs.appendNull();
+                    } else {
+                        longs.append(value);
+                    }
+                } else if (column instanceof DoubleColumn doubles) {
+                    double value = resultSet.getDouble(i + 1);
+                    if (resultSet.wasNull()) {
+                        doubles.appendNull();
+                    } else {
+                        doubles.append(value);
+                    }
+                } else {
+                    ((StringColumn) column).append(resultSet.getString(i + 1));
+                }
+            }
+            rows++;
+        }
+        return new ColumnTable(Arrays.asList(columns), rows);
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public Set<String> columnNames() {
+        return columns.keySet();
+    }
+
+    public Column column(String name) {
+        Column column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("No column " + name + " in " + columns.keySet());
+        }
+        return column;
+    }
+
+    public IntColumn intColumn(String name) {
+        return column(name, IntColumn.class);
+    }
+
+    public LongColumn longColumn(String name) {
+        return column(name, LongColumn.class);
+    }
+
+    public DoubleColumn doubleColumn(String name) {
+        return column(name, DoubleColumn.class);
+    }
+
+    public StringColumn stringColumn(String name) {
+        return column(name, StringColumn.class);
+    }
+
+    public Selection all() {
+        return Selection.all(rowCount);
+    }
+
+    /**
+     * SELECT key, aggregations... FROM this WHERE where GROUP BY key. The key must be an IntColumn or a StringColumn; null
+     * keys form a group of their own. Groups appear in the order of their first row in the table, except that the null
+     * group of a string key comes last.
+     */
+    public ColumnTable groupBy(String keyColumn, Selection where, Aggregation... aggregations) {
+        Column key = column(keyColumn);
+        if (!(key instanceof IntColumn) && !(key instanceof StringColumn)) {
+            throw new IllegalArgumentException("Can only group by an int or string column: " + key);
+        }
+        return group(key, where, aggregations);
+    }
+
+    /**
+     * SELECT aggregations... FROM this WHERE where: a table with a single row, also when no row is selected.
+     */
+    public ColumnTable aggregate(Selection where, Aggregation... aggregations) {
+        return group(null, where, aggregations);
+    }
+
+    private ColumnTable group(Column key, Selection where, Aggregation[] aggregations) {
+        if (where.size() != rowCount) {
+            throw new IllegalArgumentException("Selection of " + where.size() + " rows for a table of " + rowCount);
+        }
+        GroupKeys keys = key == null ? new GroupKeys() : key instanceof IntColumn ints ? new IntGroupKeys(ints)
+                : new StringGroupKeys((StringColumn) key);
+        Accumulator rowCounts = new Accumulator(Aggregation.count("rows"), null);
+        Accumulator[] accumulators = new Accumulator[aggregations.length];
+        for (int i = 0; i < aggregations.length; i++) {
+            Aggregation aggregation = aggregations[i];
+            accumulators[i] = new Accumulator(aggregation, aggregation.column() == null ? null : column(aggregation.column()));
+        }
+
+        int[] rows = new int[BATCH_SIZE];
+        int[] groups = new int[BATCH_SIZE];
+        int from = 0;
+        int count;
+        while ((count = where.nextBatch(from, rows)) > 0) {
+            keys.assign(rows, count, groups);
+            rowCounts.accumulate(rows, groups, count, keys.groupCount());
+            for (Accumulator accumulator : accumulators) {
+                accumulator.accumulate(rows, groups, count, keys.groupCount());
+            }
+            from = rows[count - 1] + 1;
+        }
+
+        // Groups that received no rows (unused dictionary codes) are left out; the ungrouped aggregate always has its row
+        List<Integer> groupOrder = new ArrayList<>();
+        for (int group = 0; group < keys.groupCount(); group++) {
+            if (key == null || rowCounts.count(group) > 0) {
+                groupOrder.add(group);
+            }
+        }
+        List<Column> result = new ArrayList<>();
+        if (key != null) {
+            result.add(keys.keyColumn(key.name(), groupOrder));
+        }
+        for (Accumulator accumulator : accumulators) {
+            result.add(accumulator.result(groupOrder));
+        }
+        return new ColumnTable(result, groupOrder.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <C extends Column> C column(String name, Class<C> type) {
+        Column column = column(name);
+        if (!type.isInstance(column)) {
+            throw new IllegalArgumentException("Column " + name + " is a " + column.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        }
+        return (C) column;
+    }
+
+    /**
+     * The first maxRows rows as an aligned text table.
+     */
+    public String format(int maxRows) {
+        List<Column> list = new ArrayList<>(columns.values());
+        int shown = Math.min(maxRows, rowCount);
+        String[][] cells = new String[shown + 1][list.size()];
+        int[] widths = new int[list.size()];
+        for (int c = 0; c < list.size(); c++) {
+            cells[0][c] = list.get(c).name();
+            for (int row = 0; row < shown; row++) {
+                Object value = list.get(c).get(row);
+                cells[row + 1][c] = value instanceof Double d ? String.format("%.2f", d) : String.valueOf(value);
+            }
+            for (String[] line : cells) {
+                widths[c] = Math.max(widths[c], line[c].length());
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        for (String[] line : cells) {
+            text.append('\n');
+            for (int c = 0; c < line.length; c++) {
+                text.append(String.format("%-" + (widths[c] + 2) + "s", line[c]));
+            }
+        }
+        if (shown < rowCount) {
+            text.append("\n... ").append(rowCount - shown).append(" more rows");
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format(10);
+    }
+
+    /**
+     * Column definitions for loading objects; see ColumnTable.mapping().
+     */
+    public static final class Mapping<T> {
+        private final List<String> names = new ArrayList<>();
+        private final List<Function<String, Column>> factories = new ArrayList<>();
+        private final List<ColumnAppender<T>> appenders = new ArrayList<>();
+
+        private interface ColumnAppender<T> {
+            void append(Column column, T row);
+        }
+
+        private Mapping() {
+        }
+
+        public Mapping<T> intColumn(String name, ToIntFunction<? super T> getter) {
+            return add(name, IntColumn::new, (column, row) -> ((IntColumn) column).append(getter.applyAsInt(row)));
+        }
+
+        public Mapping<T> longColumn(String name, ToLongFunction<? super T> getter) {
+            return add(name, LongColumn::new, (column, row) -> ((LongColumn) column).append(getter.applyAsLong(row)));
+        }
+
+        public Mapping<T> doubleColumn(String name, ToDoubleFunction<? super T> getter) {
+            return add(name, DoubleColumn::new, (column, row) -> ((DoubleColumn) column).append(getter.applyAsDouble(row)));
+        }
+
+        /**
+         * A dictionary-encoded column; a null from the getter is a null row. Enums can be mapped with e -> e.name().
+         */
+        public Mapping<T> stringColumn(String name, Function<? super T, String> getter) {
+            return add(name, StringColumn::new, (column, row) -> ((StringColumn) column).append(getter.apply(row)));
+        }
+
+        private Mapping<T> add(String name, Function<String, Column> factory, ColumnAppender<T> appender) {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            names.add(name);
+            factories.add(factory);
+            appenders.add(appender);
+            return this;
+        }
+
+        public ColumnTable load(Iterable<? extends T> rows) {
+            Column[] columns = new Column[names.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = factories.get(i).apply(names.get(i));
+                if (rows instanceof Collection<?> collection) {
+                    columns[i].reserve(collection.size());
+                }
+            }
+            int count = 0;
+            for (T row : rows) {
+                for (int i = 0; i < columns.length; i++) {
+                    appenders.get(i).append(columns[i], row);
+                }
+                count++;
+            }
+            return new ColumnTable(Arrays.asList(columns), count);
+        }
+    }
+
+    // Assigns a group index to each row of a batch. The base class is the single group of an ungrouped aggregate.
+    private static class GroupKeys {
+        void assign(int[] rows, int count, int[] groups) {
+            Arrays.fill(groups, 0, count, 0);
+        }
+
+        int groupCount() {
+            return 1;
+        }
+
+        Column keyColumn(String name, List<Integer> groupOrder) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // Group index = dictionary code; null rows go to the extra group after the last code
+    private static final class StringGroupKeys extends GroupKeys {
+        private final StringColumn key;
+
+        StringGroupKeys(StringColumn key) {
+            this.key = key;
+        }
+
+        @Override
+        void assign(int[] rows, int count, int[] groups) {
+            int nullGroup = key.dictionarySize();
+            int[] codes = key.codes;
+            for (int i = 0; i < count; i++) {
+                int code = codes[rows[i]];
+                groups[i] = code < 0 ? nullGroup : code;
+            }
+        }
+
+        @Override
+        int groupCount() {
+            return key.dictionarySize() + 1;
+        }
+
+        @Override
+        Column keyColumn(String name, List<Integer> groupOrder) {
+            StringColumn column = new StringColumn(name);
+            for (int group : groupOrder) {
+                column.append(group == key.dictionarySize() ? null : key.dictionaryValue(group));
+            }
+            return column;
+        }
+    }
+
+    private static final class IntGroupKeys extends GroupKeys {
+        private final IntColumn key;
+        private final IntLongHashMap groupsByKey = new IntLongHashMap();
+        private int[] keys = new int[16];
+        private int groupCount;
+        private int nullGroup = -1;
+
+        IntGroupKeys(IntColumn key) {
+            this.key = key;
+        }
+
+        @Override
+        void assign(int[] rows, int count, int[] groups) {
+            int[] values = key.values;
+            boolean hasNulls = key.hasNulls();
+            for (int i = 0; i < count; i++) {
+                int row = rows[i];
+                if (hasNulls && key.isNull(row)) {
+                    if (nullGroup < 0) {
+                        nullGroup = newGroup(0);
+                    }
+                    groups[i] = nullGroup;
+                    continue;
+                }
+                int value = values[row];
+                long group = groupsByKey.getOrDefault(value, -1);
+                if (group < 0) {
+                    group = newGroup(value);
+                    groupsByKey.put(value, group);
+                }
+                groups[i] = (int) group;
+            }
+        }
+
+        private int newGroup(int value) {
+            if (groupCount == keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            keys[groupCount] = value;
+            return groupCount++;
+        }
+
+        @Override
+        int groupCount() {
+            return groupCount;
+        }
+
+        @Override
+        Column keyColumn(String name, List<Integer> groupOrder) {
+            IntColumn column = new IntColumn(name);
+            for (int group : groupOrder) {
+                if (group == nullGroup) {
+                    column.appendNull();
+                } else {
+                    column.append(keys[group]);
+                }
+            }
+            return column;
+        }
+    }
+
+    /*
+     * Per-group state of one aggregation. Each batch is first gathered into longs/doubles (skipping null values by giving
+     * them group -1), then folded into the per-group arrays by one loop per operation.
+     */
+    private static final class Accumulator {
+        private final Aggregation aggregation;
+        private final Column column;
+        private final boolean floating;
+        private final long[] batchLongs = new long[BATCH_SIZE];
+        private final double[] batchDoubles = new double[BATCH_SIZE];
+        private final int[] batchGroups = new int[BATCH_SIZE];
+        private long[] counts = new long[0];
+        private long[] longs = new long[0];
+        private double[] doubles = new double[0];
+
+        Accumulator(Aggregation aggregation, Column column) {
+            if (column instanceof StringColumn && aggregation.operation() != Aggregation.Operation.COUNT) {
+                throw new IllegalArgumentException(aggregation.operation() + " needs a numeric column: " + column);
+            }
+            this.aggregation = aggregation;
+            this.column = column;
+            this.floating = column instanceof DoubleColumn;
+        }
+
+        long count(int group) {
+            return group < counts.length ? counts[group] : 0;
+        }
+
+        void accumulate(int[] rows, int[] groups, int count, int groupCount) {
+            ensureGroups(groupCount);
+            Aggregation.Operation operation = aggregation.operation();
+            if (operation == Aggregation.Operation.COUNT) {
+                for (int i = 0; i < count; i++) {
+                    counts[groups[i]]++;
+                }
+                return;
+            }
+            gather(rows, groups, count);
+            if (floating) {
+                foldDoubles(operation, count);
+            } else {
+                foldLongs(operation, count);
+            }
+        }
+
+        private void gather(int[] rows, int[] groups, int count) {
+            if (column instanceof IntColumn ints) {
+                int[] values = ints.values;
+                for (int i = 0; i < count; i++) {
+                    batchLongs[i] = values[rows[i]];
+                }
+            } else if (column instanceof LongColumn longColumn) {
+                long[] values = longColumn.values;
+                for (int i = 0; i < count; i++) {
+                    batchLongs[i] = values[rows[i]];
+                }
+            } else {
+                double[] values = ((DoubleColumn) column).values;
+                for (int i = 0; i < count; i++) {
+                    batchDoubles[i] = values[rows[i]];
+                }
+            }
+            System.arraycopy(groups, 0, batchGroups, 0, count);
+            if (column.hasNulls()) {
+                for (int i = 0; i < count; i++) {
+                    if (column.isNull(rows[i])) {
+                        batchGroups[i] = -1;
+                    }
+                }
+            }
+        }
+
+        private void foldLongs(Aggregation.Operation operation, int count) {
+            switch (operation) {
+                case SUM, AVG -> {
+                    for (int i = 0; i < count; i++) {
+                        int group = batchGroups[i];
+                        if (group >= 0) {
+                            longs[group] += batchLongs[i];
+                            counts[group]++;
+                        }
+                    }
+                }
+                case MIN -> {
+                    for (int i = 0; i < count; i++) {
+                        int group = batchGroups[i];
+                        if (group >= 0) {
+                            longs[group] = counts[group]++ == 0 ? batchLongs[i] : Math.min(longs[group], batchLongs[i]);
+                        }
+                    }
+                }
+                case MAX -> {
+                    for (int i = 0; i < count; i++) {
+                        int group = batchGroups[i];
+                        if (group >= 0) {
+                            longs[group] = counts[group]++ == 0 ? batchLongs[i] : Math.max(longs[group], batchLongs[i]);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException(operation.name());
+            }
+        }
+
+        private void foldDoubles(Aggregation.Operation operation, int count) {
+            switch (operation) {
+                case SUM, AVG -> {
+                    for (int i = 0; i < count; i++) {
+                        int group = batchGroups[i];
+                        if (group >= 0) {
+                            doubles[group] += batchDoubles[i];
+                            counts[group]++;
+                        }
+                    }
+                }
+                case MIN -> {
+                    for (int i = 0; i < count; i++) {
+                        int group = batchGroups[i];
+                        if (group >= 0) {
+                            doubles[group] = counts[group]++ == 0 ? batchDoubles[i] : Math.min(doubles[group], batchDoubles[i]);
+                        }
+                    }
+                }
+                case MAX -> {
+                    for (int i = 0; i < count; i++) {
+                        int group = batchGroups[i];
+                        if (group >= 0) {
+                            doubles[group] = counts[group]++ == 0 ? batchDoubles[i] : Math.max(doubles[group], batchDoubles[i]);
+                        }
+                    }
+                }
+                default -> throw new IllegalStateException(operation.name());
+            }
+        }
+
+        private void ensureGroups(int groupCount) {
+            if (counts.length < groupCount) {
+                int capacity = Math.max(groupCount, counts.length * 2);
+                counts = Arrays.copyOf(counts, capacity);
+                if (floating) {
+                    doubles = Arrays.copyOf(doubles, capacity);
+                } else {
+                    longs = Arrays.copyOf(longs, capacity);
+                }
+            }
+        }
+
+        // COUNT and integer SUM give longs, AVG and double aggregates give doubles, MIN/MAX keep an int column's type
+        Column result(List<Integer> groupOrder) {
+            String name = aggregation.alias();
+            Aggregation.Operation operation = aggregation.operation();
+            if (operation == Aggregation.Operation.COUNT) {
+                LongColumn result = new LongColumn(name);
+                groupOrder.forEach(group -> result.append(group < counts.length ? counts[group] : 0));
+                return result;
+            }
+            if (floating || operation == Aggregation.Operation.AVG) {
+                DoubleColumn result = new DoubleColumn(name);
+                for (int group : groupOrder) {
+                    long n = group < counts.length ? counts[group] : 0;
+                    if (n == 0) {
+                        result.appendNull();
+                    } else {
+                        double value = floating ? doubles[group] : longs[group];
+                        result.append(operation == Aggregation.Operation.AVG ? value / n : value);
+                    }
+                }
+                return result;
+            }
+            if (column instanceof IntColumn && operation != Aggregation.Operation.SUM) {
+                IntColumn result = new IntColumn(name);
+                for (int group : groupOrder) {
+                    if (group < counts.length && counts[group] > 0) {
+                        result.append((int) longs[group]);
+                    } else {
+                        result.appendNull();
+                    }
+                }
+                return result;
+            }
+            LongColumn result = new LongColumn(name);
+            for (int group : groupOrder) {
+                if (group < counts.length && counts[group] > 0) {
+                    result.append(longs[group]);
+                } else {
+                    result.appendNull();
+                }
+            }
+            return result;
+        }
+    }
+}
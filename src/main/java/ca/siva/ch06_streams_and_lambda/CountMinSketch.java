@@ -0,0 +1,105 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.Serializable;
+
+/*
+NOTE:
+1) Count-Min keeps depth rows of width counters. An element increments one counter per row, chosen by a different hash per
+row, and its estimated count is the minimum of those counters. Collisions only ever add, so the estimate is never below the
+true count.
+2) With width = ceil(e / epsilon) and depth = ceil(ln(1 / delta)), the estimate exceeds the true count by more than
+epsilon * totalCount with probability at most delta. Memory is width * depth longs regardless of the number of distinct elements.
+3) Sketches with the same width and depth merge by adding counters, which makes them parallel-combinable.
+ */
+public class CountMinSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int width;
+    private final int depth;
+    private final long[] counters;
+    private long totalCount;
+
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("width and depth must be positive: " + width + ", " + depth);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new long[width * depth];
+    }
+
+    /**
+     * Sizes the sketch so that estimates are within epsilon * totalCount of the true count with probability 1 - delta.
+     */
+    public static CountMinSketch withError(double epsilon, double delta) {
+        if (epsilon <= 0 || epsilon >= 1 || delta <= 0 || delta >= 1) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1): " + epsilon + ", " + delta);
+        }
+        return new CountMinSketch((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+
+    public void add(Object element) {
+        add(element, 1);
+    }
+
+    public void add(Object element, long count) {
+        addHash(Hashing.mix64(element == null ? 0 : element.hashCode()), count);
+    }
+
+    /**
+     * Adds count occurrences of the element with the given 64-bit hash and returns the new estimate for it.
+     */
+    public long addHash(long hash, long count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        totalCount += count;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * width + bucket(hash, row);
+            counters[index] += count;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        return estimate;
+    }
+
+    public long estimate(Object element) {
+        return estimateHash(Hashing.mix64(element == null ? 0 : element.hashCode()));
+    }
+
+    public long estimateHash(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + bucket(hash, row)]);
+        }
+        return estimate;
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    public CountMinSketch merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        totalCount += other.totalCount;
+        return this;
+    }
+
+    private int bucket(long hash, int row) {
+        // Kirsch-Mitzenmacher: h1 + row * h2 behaves like independent hash functions for this purpose.
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int combined = h1 + row * h2;
+        return (combined & Integer.MAX_VALUE) % width;
+    }
+
+    @Override
+    public String toString() {
+        return "CountMinSketch{width=" + width + ", depth=" + depth + ", totalCount=" + totalCount + '}';
+    }
+}
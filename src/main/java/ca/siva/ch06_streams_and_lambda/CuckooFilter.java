@@ -0,0 +1,320 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+NOTE:
+1) A cuckoo filter stores a short fingerprint of each element in one of two buckets of 4 slots. The two buckets i1, i2
+satisfy i1 + i2 = hash(fingerprint) mod buckets, so either bucket can be computed from the other one plus the fingerprint.
+That is what allows elements to be moved (and deleted) without knowing the original element. The original paper uses
+XOR instead, which forces a power-of-two bucket count and can leave the table half empty.
+2) When both buckets are full, a random fingerprint is evicted from one of them and moved to its alternate bucket, which
+may evict another one, up to MAX_KICKS times. At about 95% occupancy inserts start to fail and add() returns false.
+3) A lookup reads two buckets, so at most two cache misses. With f-bit fingerprints the false positive rate is about
+8 / 2^f, and for rates below about 3% it uses less memory per element than a Bloom filter.
+4) remove() must only be called for elements that were added; removing an absent element can delete the fingerprint of a
+different element that shares it, causing a false negative. The same element can be added at most 8 times.
+ */
+public class CuckooFilter implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x434B4F46; // "CKOF"
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double MAX_LOAD_FACTOR = 0.95;
+
+    private final long[] table;
+    private final int buckets;
+    private final int fingerprintBits;
+    private final long fingerprintMask;
+    private long size;
+    // A fingerprint that could not be placed after MAX_KICKS moves; keeping it avoids a false negative for the element
+    private int victimFingerprint;
+    private int victimBucket;
+    private long randomState = 0x2545F4914F6CDD1DL;
+
+    /**
+     * @param buckets         number of 4-slot buckets
+     * @param fingerprintBits bits kept per element, 4 to 32
+     */
+    public CuckooFilter(int buckets, int fingerprintBits) {
+        if (buckets <= 0 || buckets > 1 << 28) {
+            throw new IllegalArgumentException("buckets must be in [1, 2^28]: " + buckets);
+        }
+        if (fingerprintBits < 4 || fingerprintBits > 32) {
+            throw new IllegalArgumentException("fingerprintBits must be in [4, 32]: " + fingerprintBits);
+        }
+        this.buckets = buckets;
+        this.fingerprintBits = fingerprintBits;
+        this.fingerprintMask = (1L << fingerprintBits) - 1;
+        // One spare long so a slot straddling the last word boundary can always read word + 1
+        this.table = new long[(int) (((long) buckets * SLOTS_PER_BUCKET * fingerprintBits + 63) / 64) + 1];
+    }
+
+    /**
+     * Sizes the filter to hold expectedInsertions elements with a false positive rate of about fpp.
+     */
+    public static CuckooFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive: " + expectedInsertions);
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1): " + fpp);
+        }
+        int fingerprintBits = (int) Math.ceil(Math.log(2.0 * SLOTS_PER_BUCKET / fpp) / Math.log(2));
+        long buckets = (long) Math.ceil(expectedInsertions / (SLOTS_PER_BUCKET * MAX_LOAD_FACTOR));
+        if (buckets > 1 << 28) {
+            throw new IllegalArgumentException("expectedInsertions is too large: " + expectedInsertions);
+        }
+        return new CuckooFilter((int) buckets, Math.max(4, Math.min(32, fingerprintBits)));
+    }
+
+    /**
+     * Returns false if the filter is full; the element is then not added (but nothing already added is lost).
+     */
+    public boolean add(CharSequence element) {
+        return addHash(Hashing.hash64(element));
+    }
+
+    public boolean add(long element) {
+        return addHash(Hashing.mix64(element));
+    }
+
+    public boolean addHash(long hash) {
+        if (victimFingerprint != 0) {
+            return false;
+        }
+        int fingerprint = fingerprint(hash);
+        int bucket = bucket(hash);
+        if (insertInto(bucket, fingerprint) || insertInto(alternate(bucket, fingerprint), fingerprint)) {
+            size++;
+            return true;
+        }
+        if ((nextRandom() & 1) != 0) {
+            bucket = alternate(bucket, fingerprint);
+        }
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = bucket * SLOTS_PER_BUCKET + (int) (nextRandom() & (SLOTS_PER_BUCKET - 1));
+            int evicted = getSlot(slot);
+            setSlot(slot, fingerprint);
+            fingerprint = evicted;
+            bucket = alternate(bucket, fingerprint);
+            if (insertInto(bucket, fingerprint)) {
+                size++;
+                return true;
+            }
+        }
+        victimFingerprint = fingerprint;
+        victimBucket = bucket;
+        size++;
+        return true;
+    }
+
+    public boolean mightContain(CharSequence element) {
+        return mightContainHash(Hashing.hash64(element));
+    }
+
+    public boolean mightContain(long element) {
+        return mightContainHash(Hashing.mix64(element));
+    }
+
+    public boolean mightContainHash(long hash) {
+        int fingerprint = fingerprint(hash);
+        int bucket = bucket(hash);
+        int other = alternate(bucket, fingerprint);
+        return findIn(bucket, fingerprint) >= 0 || findIn(other, fingerprint) >= 0
+                || (victimFingerprint == fingerprint && (victimBucket == bucket || victimBucket == other));
+    }
+
+    /**
+     * Removes one copy of a previously added element. Returns false if no matching fingerprint was found.
+     */
+    public boolean remove(CharSequence element) {
+        return removeHash(Hashing.hash64(element));
+    }
+
+    public boolean remove(long element) {
+        return removeHash(Hashing.mix64(element));
+    }
+
+    public boolean removeHash(long hash) {
+        int fingerprint = fingerprint(hash);
+        int bucket = bucket(hash);
+        int other = alternate(bucket, fingerprint);
+        int slot = findIn(bucket, fingerprint);
+        if (slot < 0) {
+            slot = findIn(other, fingerprint);
+        }
+        if (slot >= 0) {
+            setSlot(slot, 0);
+        } else if (victimFingerprint == fingerprint && (victimBucket == bucket || victimBucket == other)) {
+            victimFingerprint = 0;
+            size--;
+            return true;
+        } else {
+            return false;
+        }
+        size--;
+        // A freed slot gives the stashed victim a place to go
+        if (victimFingerprint != 0) {
+            int victim = victimFingerprint;
+            victimFingerprint = 0;
+            size--;
+            addVictim(victimBucket, victim);
+        }
+        return true;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long capacity() {
+        return (long) buckets * SLOTS_PER_BUCKET;
+    }
+
+    public double loadFactor() {
+        return (double) size / capacity();
+    }
+
+    public int fingerprintBits() {
+        return fingerprintBits;
+    }
+
+    /**
+     * Writes the filter in a compact binary form that readFrom accepts. See BlockedBloomFilter.writeTo.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(buckets);
+        data.writeInt(fingerprintBits);
+        data.writeLong(size);
+        data.writeInt(victimFingerprint);
+        data.writeInt(victimBucket);
+        for (long word : table) {
+            data.writeLong(word);
+        }
+        data.flush();
+    }
+
+    public void writeTo(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            writeTo(out);
+        }
+    }
+
+    public static CuckooFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a CuckooFilter stream");
+        }
+        CuckooFilter filter;
+        try {
+            filter = new CuckooFilter(data.readInt(), data.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt CuckooFilter header", e);
+        }
+        filter.size = data.readLong();
+        filter.victimFingerprint = data.readInt();
+        filter.victimBucket = data.readInt();
+        if (filter.victimBucket < 0 || filter.victimBucket >= filter.buckets) {
+            throw new IOException("Corrupt CuckooFilter victim bucket: " + filter.victimBucket);
+        }
+        for (int i = 0; i < filter.table.length; i++) {
+            filter.table[i] = data.readLong();
+        }
+        return filter;
+    }
+
+    public static CuckooFilter readFrom(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return readFrom(in);
+        }
+    }
+
+    private void addVictim(int bucket, int fingerprint) {
+        if (insertInto(bucket, fingerprint) || insertInto(alternate(bucket, fingerprint), fingerprint)) {
+            size++;
+        } else {
+            victimFingerprint = fingerprint;
+            victimBucket = bucket;
+            size++;
+        }
+    }
+
+    // The high 32 bits pick the fingerprint and the low bits the bucket, so the two are independent. 0 marks an empty slot.
+    private int fingerprint(long hash) {
+        int fingerprint = (int) ((hash >>> 32) & fingerprintMask);
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private int bucket(long hash) {
+        return (int) (((hash & 0xFFFFFFFFL) * buckets) >>> 32);
+    }
+
+    // (h - bucket) mod buckets, which is its own inverse
+    private int alternate(int bucket, int fingerprint) {
+        int h = (int) ((Hashing.mix64(fingerprint) >>> 1) % buckets);
+        int alternate = h - bucket;
+        return alternate < 0 ? alternate + buckets : alternate;
+    }
+
+    private boolean insertInto(int bucket, int fingerprint) {
+        int first = bucket * SLOTS_PER_BUCKET;
+        for (int slot = first; slot < first + SLOTS_PER_BUCKET; slot++) {
+            if (getSlot(slot) == 0) {
+                setSlot(slot, fingerprint);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findIn(int bucket, int fingerprint) {
+        int first = bucket * SLOTS_PER_BUCKET;
+        for (int slot = first; slot < first + SLOTS_PER_BUCKET; slot++) {
+            if (getSlot(slot) == fingerprint) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // Slots are packed back to back, fingerprintBits each, and may straddle two longs
+    private int getSlot(int slot) {
+        long bit = (long) slot * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = table[word] >>> offset;
+        if (offset + fingerprintBits > 64) {
+            value |= table[word + 1] << (64 - offset);
+        }
+        return (int) (value & fingerprintMask);
+    }
+
+    private void setSlot(int slot, int fingerprint) {
+        long bit = (long) slot * fingerprintBits;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = fingerprint & fingerprintMask;
+        table[word] = (table[word] & ~(fingerprintMask << offset)) | (value << offset);
+        if (offset + fingerprintBits > 64) {
+            int shift = 64 - offset;
+            table[word + 1] = (table[word + 1] & ~(fingerprintMask >>> shift)) | (value >>> shift);
+        }
+    }
+
+    private long nextRandom() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return randomState;
+    }
+
+    @Override
+    public String toString() {
+        return "CuckooFilter{size=" + size + ", capacity=" + capacity() + ", fingerprintBits=" + fingerprintBits + '}';
+    }
+}
@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 import java.util.stream.*;
 
@@ -22,6 +24,9 @@ public class CustomCollectorExamples {
         customConcurrentCollectorExample();
         customGroupingByConcurrentExample();
         customGroupingByConcurrentWithSupplierExample();
+        shardedGroupingByExample();
+        shardedCountingAndTopKExample();
+        shardedVsGroupingByConcurrentBenchmark();
     }
 
     /**
@@ -209,4 +214,72 @@ public class CustomCollectorExamples {
                 .collect(groupingByConcurrentCollector);
         log.info("Custom GroupingByConcurrent result: {}" ,result);
     }
+
+    /**
+     * Example of ShardedCollectors.groupingBy, a drop-in for groupingByConcurrent that accumulates into per-thread maps.
+     * Input: Stream of strings ["apple", "banana", "cherry", "apricot"]
+     * Output: Map grouped by first letter {a=[apple, apricot], b=[banana], c=[cherry]} (list order may vary)
+     */
+    public static void shardedGroupingByExample() {
+        Map<Character, List<String>> result = Stream.of("apple", "banana", "cherry", "apricot")
+                .parallel()
+                .collect(ShardedCollectors.groupingBy(str -> str.charAt(0), Collectors.toList()));
+        log.info("Sharded GroupingBy result: {}", result);
+    }
+
+    /**
+     * Example of ShardedCollectors.countingBy, topK and mostFrequent.
+     * Input: Stream of words ["to", "be", "or", "not", "to", "be", "that", "is"]
+     * Output: Counts per word, the 3 longest words and the 2 most frequent words [to=2, be=2]
+     */
+    public static void shardedCountingAndTopKExample() {
+        List<String> words = List.of("to", "be", "or", "not", "to", "be", "that", "is");
+
+        Map<String, Long> counts = words.parallelStream().collect(ShardedCollectors.countingBy(word -> word));
+        List<String> longest = words.parallelStream().collect(ShardedCollectors.topK(3, Comparator.comparingInt(String::length)));
+        List<Map.Entry<String, Long>> frequent = words.parallelStream().collect(ShardedCollectors.mostFrequent(word -> word, 2));
+        log.info("Sharded counts: {}, longest: {}, most frequent: {}", counts, longest, frequent);
+    }
+
+    /**
+     * Compares groupingByConcurrent(counting()) with ShardedCollectors.countingBy on a skewed key distribution.
+     * Input: 5,000,000 ints whose keys follow a skewed distribution (half of all elements hit 8 hot keys), run on
+     * ForkJoinPools with 1 to 64 threads
+     * Output: Logs the elapsed time of both collectors for every pool size
+     */
+    public static void shardedVsGroupingByConcurrentBenchmark() {
+        int[] keys = new int[5_000_000];
+        Random random = new Random(7);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextBoolean() ? random.nextInt(8) : random.nextInt(10_000);
+        }
+
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                long concurrentMillis = timeInPool(pool, () -> Arrays.stream(keys).boxed().parallel()
+                        .collect(Collectors.groupingByConcurrent(key -> key, Collectors.counting())).size());
+                long shardedMillis = timeInPool(pool, () -> Arrays.stream(keys).boxed().parallel()
+                        .collect(ShardedCollectors.countingBy(key -> key)).size());
+                log.info("{} threads: groupingByConcurrent {} ms, sharded {} ms", threads, concurrentMillis, shardedMillis);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static long timeInPool(ForkJoinPool pool, java.util.concurrent.Callable<Integer> task) {
+        try {
+            pool.submit(task).get(); // Warm up
+            long start = System.nanoTime();
+            pool.submit(task).get();
+            return (System.nanoTime() - start) / 1_000_000;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (ExecutionException e) {
+            log.error("Benchmark task failed", e);
+            return -1;
+        }
+    }
 }
@@ -0,0 +1,419 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/*
+NOTE:
+1) A parallel stream only scales as well as its Spliterator splits. trySplit() should hand off about half of the remaining
+elements, cheaply, and report SIZED/SUBSIZED when it can, so the framework can pre-size arrays and avoid extra splitting.
+2) LinkedList/ArrayDeque iterators are sequential. The JDK's LinkedList spliterator and Spliterators.spliteratorUnknownSize
+hand out arithmetically growing batches (1024, 2048, ...), which leaves most of the work in the last, biggest batch.
+3) balanced(...) below pays for one sequential copy into an array the first time trySplit() is called, after that every split
+is an O(1) halving of an index range. A sequential stream never calls trySplit(), so it never pays for the copy.
+4) A ResultSet can only be read by one thread. resultSetBatches(...) reads rows in fixed size batches during trySplit() and lets
+the other threads map/filter those batches in parallel, which is the best a forward-only cursor can do.
+5) mappedFileLines(...) splits a memory mapped file at the byte midpoint, then moves forward to the next '\n', so every line
+belongs to exactly one split and no thread has to scan the file up front.
+ */
+public final class CustomSpliterators {
+
+    private CustomSpliterators() {
+    }
+
+    /**
+     * Balanced spliterator over any sized collection, intended for linked structures such as LinkedList and ArrayDeque.
+     * The collection must not be modified while the stream is running.
+     */
+    public static <T> Spliterator<T> balanced(Collection<? extends T> source) {
+        return new BalancedSpliterator<>(source.iterator(), source.size(), Spliterator.ORDERED);
+    }
+
+    /**
+     * SIZED/SUBSIZED spliterator over the int range [from, to), the same contract as IntStream.range.
+     */
+    public static Spliterator.OfInt range(int from, int to) {
+        return new IntRangeSpliterator(from, Math.max(from, to));
+    }
+
+    /**
+     * SIZED/SUBSIZED spliterator that produces element(i) for every i in [from, to). Useful for random access sources
+     * that are not Lists, e.g. columns or off-heap buffers.
+     */
+    public static <T> Spliterator<T> indexed(int from, int to, IntFunction<? extends T> element) {
+        return new IndexedSpliterator<>(from, Math.max(from, to), element);
+    }
+
+    /**
+     * Spliterator over the lines of a memory mapped file. Lines end with '\n'; a trailing '\r' is removed.
+     * The file must be smaller than 2 GB, since a single MappedByteBuffer is indexed by int.
+     */
+    public static Spliterator<String> mappedFileLines(Path path, Charset charset) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File is too large to map as a single buffer: " + path);
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedLineSpliterator(buffer, 0, (int) size, charset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Spliterator<String> mappedFileLines(Path path) {
+        return mappedFileLines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Spliterator that reads a ResultSet in batches of batchSize rows. The ResultSet is only touched by the thread that
+     * calls trySplit()/tryAdvance() on this spliterator, the returned batches are plain arrays.
+     */
+    public static <T> Spliterator<T> resultSetBatches(ResultSet resultSet, RowMapper<? extends T> mapper, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        return new ResultSetSpliterator<>(resultSet, mapper, batchSize);
+    }
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    static final class BalancedSpliterator<T> implements Spliterator<T> {
+        private Iterator<? extends T> iterator;
+        private Object[] array;
+        private int index;
+        private int fence;
+        private final int characteristics;
+
+        BalancedSpliterator(Iterator<? extends T> iterator, int size, int characteristics) {
+            this.iterator = iterator;
+            this.fence = size;
+            this.characteristics = characteristics | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+
+        private BalancedSpliterator(Object[] array, int index, int fence, int characteristics) {
+            this.array = array;
+            this.index = index;
+            this.fence = fence;
+            this.characteristics = characteristics;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (array == null) {
+                // First split: drain the remaining elements once, then split by index from now on.
+                Object[] copy = new Object[fence - index];
+                int n = 0;
+                while (n < copy.length && iterator.hasNext()) {
+                    copy[n++] = iterator.next();
+                }
+                array = copy;
+                fence = n;
+                index = 0;
+                iterator = null;
+            }
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<T> prefix = new BalancedSpliterator<>(array, index, mid, characteristics);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= fence) {
+                return false;
+            }
+            if (array == null) {
+                if (!iterator.hasNext()) {
+                    index = fence;
+                    return false;
+                }
+                index++;
+                action.accept(iterator.next());
+            } else {
+                action.accept((T) array[index++]);
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (array == null) {
+                while (index < fence && iterator.hasNext()) {
+                    index++;
+                    action.accept(iterator.next());
+                }
+                index = fence;
+                return;
+            }
+            Object[] a = array;
+            int hi = fence;
+            for (int i = index; i < hi; i++) {
+                action.accept((T) a[i]);
+            }
+            index = hi;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+    }
+
+    static final class IntRangeSpliterator implements Spliterator.OfInt {
+        private int from;
+        private final int to;
+
+        IntRangeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public OfInt trySplit() {
+            int mid = (int) (((long) from + to) >>> 1);
+            if (mid <= from) {
+                return null;
+            }
+            OfInt prefix = new IntRangeSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(from++);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            int hi = to;
+            for (int i = from; i < hi; i++) {
+                action.accept(i);
+            }
+            from = hi;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL | DISTINCT | SORTED;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            return null;
+        }
+    }
+
+    static final class IndexedSpliterator<T> implements Spliterator<T> {
+        private int from;
+        private final int to;
+        private final IntFunction<? extends T> element;
+
+        IndexedSpliterator(int from, int to, IntFunction<? extends T> element) {
+            this.from = from;
+            this.to = to;
+            this.element = element;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (int) (((long) from + to) >>> 1);
+            if (mid <= from) {
+                return null;
+            }
+            Spliterator<T> prefix = new IndexedSpliterator<>(from, mid, element);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (from >= to) {
+                return false;
+            }
+            action.accept(element.apply(from++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            int hi = to;
+            for (int i = from; i < hi; i++) {
+                action.accept(element.apply(i));
+            }
+            from = hi;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+        }
+    }
+
+    static final class MappedLineSpliterator implements Spliterator<String> {
+        // Below this many bytes a split costs more than it saves.
+        private static final int MIN_SPLIT_BYTES = 64 * 1024;
+
+        private final MappedByteBuffer buffer;
+        private final Charset charset;
+        private int position;
+        private final int end;
+
+        MappedLineSpliterator(MappedByteBuffer buffer, int position, int end, Charset charset) {
+            this.buffer = buffer;
+            this.position = position;
+            this.end = end;
+            this.charset = charset;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            if (end - position < MIN_SPLIT_BYTES) {
+                return null;
+            }
+            int mid = position + ((end - position) >>> 1);
+            while (mid < end && buffer.get(mid) != '\n') {
+                mid++;
+            }
+            if (mid >= end - 1) {
+                return null;
+            }
+            // The prefix keeps the '\n' at mid, the suffix starts on the following line.
+            Spliterator<String> prefix = new MappedLineSpliterator(buffer, position, mid + 1, charset);
+            position = mid + 1;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (position >= end) {
+                return false;
+            }
+            int lineEnd = position;
+            while (lineEnd < end && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            byte[] bytes = new byte[contentEnd - position];
+            buffer.get(position, bytes);
+            position = lineEnd + 1;
+            action.accept(new String(bytes, charset));
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            // Unknown line count; bytes are a reasonable upper bound for the framework's split heuristics.
+            return end - position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    static final class ResultSetSpliterator<T> implements Spliterator<T> {
+        private final ResultSet resultSet;
+        private final RowMapper<? extends T> mapper;
+        private final int batchSize;
+        private boolean exhausted;
+
+        ResultSetSpliterator(ResultSet resultSet, RowMapper<? extends T> mapper, int batchSize) {
+            this.resultSet = resultSet;
+            this.mapper = mapper;
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Object[] batch = new Object[batchSize];
+            int n = 0;
+            while (n < batchSize && next()) {
+                batch[n++] = map();
+            }
+            return n == 0 ? null : Spliterators.spliterator(batch, 0, n, ORDERED);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!next()) {
+                return false;
+            }
+            action.accept(map());
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            return exhausted ? 0 : Long.MAX_VALUE;
+        }
+
+        // Not NONNULL: the mapper may return null, e.g. for a NULL column
+        @Override
+        public int characteristics() {
+            return ORDERED;
+        }
+
+        private boolean next() {
+            if (exhausted) {
+                return false;
+            }
+            try {
+                exhausted = !resultSet.next();
+                return !exhausted;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to advance the ResultSet", e);
+            }
+        }
+
+        private T map() {
+            try {
+                return mapper.map(resultSet);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to map a ResultSet row", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+
+/**
+ * double values, 8 bytes per row. A null row stores NaN, which no range filter selects.
+ */
+public final class DoubleColumn extends Column {
+    double[] values = new double[16];
+
+    DoubleColumn(String name) {
+        super(name);
+    }
+
+    public double getDouble(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    /**
+     * Rows with min <= value <= max. NaN values are never selected.
+     */
+    public Selection between(double min, double max) {
+        long[] bits = new long[Selection.words(size)];
+        ArrayKernels.inRange(values, size, min, max, bits);
+        return withoutNulls(bits);
+    }
+
+    public Selection greaterThan(double value) {
+        return Double.isNaN(value) || value == Double.POSITIVE_INFINITY
+                ? Selection.none(size) : between(Math.nextUp(value), Double.POSITIVE_INFINITY);
+    }
+
+    public Selection lessThan(double value) {
+        return Double.isNaN(value) || value == Double.NEGATIVE_INFINITY
+                ? Selection.none(size) : between(Double.NEGATIVE_INFINITY, Math.nextDown(value));
+    }
+
+    void append(double value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    void appendNull() {
+        markNull(size);
+        append(Double.NaN);
+    }
+
+    @Override
+    void reserve(int capacity) {
+        if (values.length < capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    @Override
+    void trimToSize() {
+        if (values.length != size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+}
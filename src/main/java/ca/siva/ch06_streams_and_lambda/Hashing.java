@@ -0,0 +1,38 @@
+package ca.siva.ch06_streams_and_lambda;
+
+/**
+ * 64-bit mixing shared by the sketches. Object.hashCode() is often poorly distributed in the high bits (Integer.hashCode()
+ * is the value itself), so every hash goes through this finalizer before a sketch uses it.
+ */
+final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * The MurmurHash3 fmix64 finalizer: a bijection on long where every input bit affects every output bit.
+     * The golden ratio offset keeps 0 from mapping to 0.
+     */
+    static long mix64(long value) {
+        value += 0x9E3779B97F4A7C15L;
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars, finished with mix64. For filters holding many millions of strings a 32-bit hashCode()
+     * would collide often enough to raise their false positive rate.
+     */
+    static long hash64(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix64(hash);
+    }
+}
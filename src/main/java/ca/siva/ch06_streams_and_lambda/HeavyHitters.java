@@ -0,0 +1,116 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.Serializable;
+import java.util.*;
+
+/*
+NOTE:
+1) Finds the k most frequent elements of a stream using a CountMinSketch for the counts and a candidate map of at most k
+elements, so memory is bounded even when the stream has billions of distinct elements.
+2) After every add the element's estimate is compared with the smallest candidate; a bigger estimate replaces it. Counts are
+Count-Min estimates, so they can be slightly too high but never too low. The smallest candidate is cached: the k candidates
+are only scanned again after it was replaced or its count went up, not on every add of a rare element.
+3) merge() merges the sketches and then re-estimates the union of both candidate sets against the merged sketch.
+4) Serializable as long as the elements are.
+ */
+public class HeavyHitters<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int k;
+    private final CountMinSketch sketch;
+    private final HashMap<T, Long> candidates;
+    // Candidate with the smallest count, valid while hasSmallest is true; recomputed after deserialization
+    private transient T smallest;
+    private transient long smallestCount;
+    private transient boolean hasSmallest;
+
+    public HeavyHitters(int k, double epsilon, double delta) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.sketch = CountMinSketch.withError(epsilon, delta);
+        this.candidates = new HashMap<>(k * 2);
+    }
+
+    public void add(T element) {
+        long estimate = sketch.addHash(hash(element), 1);
+        offer(element, estimate);
+    }
+
+    public HeavyHitters<T> merge(HeavyHitters<T> other) {
+        sketch.merge(other.sketch);
+        Set<T> union = new HashSet<>(candidates.keySet());
+        union.addAll(other.candidates.keySet());
+        candidates.clear();
+        hasSmallest = false;
+        for (T element : union) {
+            offer(element, sketch.estimateHash(hash(element)));
+        }
+        return this;
+    }
+
+    public long estimate(T element) {
+        return sketch.estimateHash(hash(element));
+    }
+
+    public long totalCount() {
+        return sketch.totalCount();
+    }
+
+    /**
+     * The candidates with their estimated counts, most frequent first.
+     */
+    public List<Map.Entry<T, Long>> top() {
+        List<Map.Entry<T, Long>> result = new ArrayList<>(candidates.entrySet());
+        result.sort(Map.Entry.<T, Long>comparingByValue().reversed());
+        return result;
+    }
+
+    private void offer(T element, long estimate) {
+        if (candidates.containsKey(element)) {
+            candidates.put(element, estimate);
+            // Counts only go up, so the minimum can only move if it belonged to this element
+            if (hasSmallest && Objects.equals(element, smallest)) {
+                hasSmallest = false;
+            }
+            return;
+        }
+        if (candidates.size() < k) {
+            candidates.put(element, estimate);
+            if (hasSmallest && estimate < smallestCount) {
+                smallest = element;
+                smallestCount = estimate;
+            }
+            return;
+        }
+        if (!hasSmallest) {
+            findSmallest();
+        }
+        if (estimate > smallestCount) {
+            candidates.remove(smallest);
+            candidates.put(element, estimate);
+            hasSmallest = false;
+        }
+    }
+
+    private void findSmallest() {
+        smallestCount = Long.MAX_VALUE;
+        for (Map.Entry<T, Long> entry : candidates.entrySet()) {
+            if (entry.getValue() < smallestCount) {
+                smallest = entry.getKey();
+                smallestCount = entry.getValue();
+            }
+        }
+        hasSmallest = true;
+    }
+
+    private static long hash(Object element) {
+        return Hashing.mix64(element == null ? 0 : element.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitters{k=" + k + ", totalCount=" + totalCount() + ", top=" + top() + '}';
+    }
+}
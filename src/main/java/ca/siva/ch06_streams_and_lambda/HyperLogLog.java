@@ -0,0 +1,109 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.Serializable;
+
+/*
+NOTE:
+1) HyperLogLog estimates the number of distinct elements with 2^precision one-byte registers, no matter how many elements
+are added. The relative standard error is about 1.04 / sqrt(2^precision), e.g. precision 14 -> 16 KB and about 0.8%.
+2) Every element is hashed to 64 bits. The first "precision" bits pick a register, the register keeps the longest run of
+leading zeros seen in the remaining bits. Adding the same element twice changes nothing, which is why it counts distinct values.
+3) Two sketches with the same precision merge by taking the register-wise maximum, so parallel streams can build one sketch
+per thread and combine them at the end with no loss of accuracy.
+4) add(Object) hashes Object.hashCode(), which has only 32 bits; beyond a few hundred million distinct values use addHash
+with a real 64-bit hash of the element.
+ */
+public class HyperLogLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public void add(Object element) {
+        addHash(Hashing.mix64(element == null ? 0 : element.hashCode()));
+    }
+
+    public void add(long value) {
+        addHash(Hashing.mix64(value));
+    }
+
+    /**
+     * Adds an element by its 64-bit hash. The hash must be well mixed in all bits.
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Shift the index bits out and set a guard bit so numberOfLeadingZeros is at most (64 - precision).
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with precision " + precision + " and " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Small range correction: linear counting is more accurate while many registers are still empty.
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Relative standard error of estimate(), about 1.04 / sqrt(2^precision).
+     */
+    public double standardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog{precision=" + precision + ", estimate=" + estimate() + '}';
+    }
+}
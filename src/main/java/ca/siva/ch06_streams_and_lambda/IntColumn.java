@@ -0,0 +1,72 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+
+/**
+ * int values, 4 bytes per row. Filters are range scans over the array (ArrayKernels.inRange). A null row stores 0.
+ */
+public final class IntColumn extends Column {
+    int[] values = new int[16];
+
+    IntColumn(String name) {
+        super(name);
+    }
+
+    public int getInt(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    /**
+     * Rows with min <= value <= max.
+     */
+    public Selection between(int min, int max) {
+        long[] bits = new long[Selection.words(size)];
+        ArrayKernels.inRange(values, size, min, max, bits);
+        return withoutNulls(bits);
+    }
+
+    public Selection equalTo(int value) {
+        return between(value, value);
+    }
+
+    public Selection greaterThan(int value) {
+        return value == Integer.MAX_VALUE ? Selection.none(size) : between(value + 1, Integer.MAX_VALUE);
+    }
+
+    public Selection lessThan(int value) {
+        return value == Integer.MIN_VALUE ? Selection.none(size) : between(Integer.MIN_VALUE, value - 1);
+    }
+
+    void append(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    void appendNull() {
+        markNull(size);
+        append(0);
+    }
+
+    @Override
+    void reserve(int capacity) {
+        if (values.length < capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    @Override
+    void trimToSize() {
+        if (values.length != size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.LongBinaryOperator;
+
+/*
+NOTE:
+1) HashMap<Integer, Long> costs an Integer key, a Long value and a Node per entry, and every update of a Long value allocates
+a new Long. This map keeps keys in an int[] and values in a long[] (open addressing, linear probing), so merge() never allocates.
+2) The table is always a power of two and is resized at 50% load, which keeps probe sequences short.
+3) Not thread safe. Parallel streams get one map per thread through the Supplier and combine them with mergeAll().
+ */
+public class IntLongHashMap {
+
+    @FunctionalInterface
+    public interface IntLongConsumer {
+        void accept(int key, long value);
+    }
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public IntLongHashMap() {
+        this(16);
+    }
+
+    public IntLongHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return used[indexOf(key)];
+    }
+
+    public long getOrDefault(int key, long defaultValue) {
+        int index = indexOf(key);
+        return used[index] ? values[index] : defaultValue;
+    }
+
+    public void put(int key, long value) {
+        int index = indexOf(key);
+        values[index] = value;
+        if (!used[index]) {
+            insertAt(index, key);
+        }
+    }
+
+    /**
+     * Stores value if the key is absent, otherwise replaces the current value with operator(current, value).
+     */
+    public void merge(int key, long value, LongBinaryOperator operator) {
+        int index = indexOf(key);
+        if (used[index]) {
+            values[index] = operator.applyAsLong(values[index], value);
+        } else {
+            values[index] = value;
+            insertAt(index, key);
+        }
+    }
+
+    /**
+     * Adds delta to the value of key, treating an absent key as 0.
+     */
+    public void addTo(int key, long delta) {
+        int index = indexOf(key);
+        if (used[index]) {
+            values[index] += delta;
+        } else {
+            values[index] = delta;
+            insertAt(index, key);
+        }
+    }
+
+    /**
+     * Merges every entry of other into this map with the given operator, e.g. Long::sum for partial sums.
+     */
+    public IntLongHashMap mergeAll(IntLongHashMap other, LongBinaryOperator operator) {
+        other.forEach((key, value) -> merge(key, value, operator));
+        return this;
+    }
+
+    public void forEach(IntLongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Boxed copy, sorted by key. Only meant for logging and for handing results to APIs that need a Map.
+     */
+    public Map<Integer, Long> toMap() {
+        int[] sortedKeys = keys();
+        Arrays.sort(sortedKeys);
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (int key : sortedKeys) {
+            result.put(key, getOrDefault(key, 0));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        toMap().forEach((key, value) -> joiner.add(key + "=" + value));
+        return joiner.toString();
+    }
+
+    private int indexOf(int key) {
+        int index = mix(key) & mask;
+        while (used[index] && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void insertAt(int index, int key) {
+        keys[index] = key;
+        used[index] = true;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+                used[index] = true;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(int key) {
+        // Fibonacci hashing spreads sequential keys (ids, chars) across the table.
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
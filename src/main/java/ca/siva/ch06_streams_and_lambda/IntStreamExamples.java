@@ -3,6 +3,8 @@ import java.util.Arrays;
 import java.util.IntSummaryStatistics;
 import java.util.OptionalDouble;
 import java.util.OptionalInt;
+import java.util.Random;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.slf4j.Logger;
@@ -34,6 +36,8 @@ public class IntStreamExamples {
         sumExample();
         minExample();
         maxExample();
+        arrayKernelsExample();
+        arrayKernelsBenchmark();
         countExample();
         averageExample();
         summaryStatisticsExample();
@@ -45,6 +49,8 @@ public class IntStreamExamples {
         asLongStreamExample();
         asDoubleStreamExample();
         boxedExample();
+        primitiveGroupingByExample();
+        primitiveToArrayExample();
     }
 
     /**
@@ -301,6 +307,86 @@ public class IntStreamExamples {
         result.ifPresent(res -> log.info("Max result: {}", res));
     }
 
+    /**
+     * Example of the ArrayKernels versions of sum, min, max and filter over an int array.
+     * Input: Array of numbers 1 to 10
+     * Output: Same results as the IntStream examples: sum 55, min 1, max 10, greater than 5 [6, 7, 8, 9, 10]
+     */
+    public static void arrayKernelsExample() {
+        int[] numbers = IntStream.rangeClosed(1, 10).toArray();
+        int[] greater = new int[numbers.length];
+        int count = ArrayKernels.filterGreaterThan(numbers, 5, greater);
+        log.info("Vectorized: {}, sum: {}, min: {}, max: {}, greater than 5: {}", ArrayKernels.vectorized(),
+                ArrayKernels.sum(numbers), ArrayKernels.min(numbers), ArrayKernels.max(numbers),
+                Arrays.toString(Arrays.copyOf(greater, count)));
+    }
+
+    /**
+     * Example comparing IntStream and plain loops with ArrayKernels on arrays of 16 K (in L1/L2 cache) and 4 M (16 MB, from
+     * memory) elements. Best of many runs each; a rough measurement, not a JMH benchmark.
+     * Input: Random ints and floats
+     * Output (AVX-512, 16 int lanes; microseconds for 16 K / 4 M elements):
+     * IntStream.sum 4.7 / 17066, kernel sum 0.7 / 597
+     * IntStream.min 8.3 / 18734, kernel min 0.8 / 598
+     * IntStream.filter 90.8 / 39179, kernel filter 20.8 / 10235
+     * float loop sum 9.1 / 2466, kernel sum 0.8 / 615
+     * float loop dot 12.8 / 3862, kernel dot 1.2 / 1244
+     * In cache the kernels are 4-12x faster. From memory the float scans still gain 3-4x: the scalar loop is bound by the
+     * latency of its single chain of float adds, not by memory bandwidth. Started without --add-modules, the scalar
+     * fallback matches the plain loops.
+     */
+    public static void arrayKernelsBenchmark() {
+        Random random = new Random(42);
+        for (int size : new int[]{16 * 1024, 4 * 1024 * 1024}) {
+            int[] ints = random.ints(size).toArray();
+            float[] floats = new float[size];
+            float[] weights = new float[size];
+            for (int i = 0; i < size; i++) {
+                floats[i] = random.nextFloat();
+                weights[i] = random.nextFloat();
+            }
+            int[] filtered = new int[size];
+            // Enough runs for the JIT to compile everything before the best time is taken (Vector API code is very slow
+            // until C2 compiles it)
+            int runs = Math.max(30, (64 << 20) / size);
+            log.info("Vectorized: {}, {} elements", ArrayKernels.vectorized(), size);
+            log.info("IntStream.sum {} us, kernel sum {} us", bestTimeMicros(runs, () -> IntStream.of(ints).sum()),
+                    bestTimeMicros(runs, () -> ArrayKernels.sum(ints)));
+            log.info("IntStream.min {} us, kernel min {} us", bestTimeMicros(runs, () -> IntStream.of(ints).min().getAsInt()),
+                    bestTimeMicros(runs, () -> ArrayKernels.min(ints)));
+            log.info("IntStream.filter {} us, kernel filter {} us",
+                    bestTimeMicros(runs, () -> IntStream.of(ints).filter(n -> n > 0).toArray().length),
+                    bestTimeMicros(runs, () -> ArrayKernels.filterGreaterThan(ints, 0, filtered)));
+            log.info("float loop sum {} us, kernel sum {} us", bestTimeMicros(runs, () -> {
+                float sum = 0;
+                for (float value : floats) {
+                    sum += value;
+                }
+                return Float.floatToIntBits(sum);
+            }), bestTimeMicros(runs, () -> Float.floatToIntBits(ArrayKernels.sum(floats))));
+            log.info("float loop dot {} us, kernel dot {} us", bestTimeMicros(runs, () -> {
+                float sum = 0;
+                for (int i = 0; i < floats.length; i++) {
+                    sum += floats[i] * weights[i];
+                }
+                return Float.floatToIntBits(sum);
+            }), bestTimeMicros(runs, () -> Float.floatToIntBits(ArrayKernels.dot(floats, weights))));
+        }
+    }
+
+    // Results are folded into a field so the JIT cannot drop the work
+    private static int sink;
+
+    private static double bestTimeMicros(int runs, IntSupplier task) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < runs; run++) {
+            long start = System.nanoTime();
+            sink += task.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.round(best / 100.0) / 10.0;
+    }
+
     /**
      * Example of count operation.
      * Input: Range of numbers 1 to 5
@@ -423,4 +509,30 @@ public class IntStreamExamples {
                 .collect(Collectors.toList());
         log.info("Boxed result: {}", result);
     }
+
+    /**
+     * Example of grouping an IntStream without boxed(): keys and sums live in an IntLongHashMap.
+     * Input: Range of numbers 1 to 10, grouped by n % 3
+     * Output: Sum, max and count per remainder {0=18, 1=22, 2=15}, {0=9, 1=10, 2=8}, {0=3, 1=4, 2=3}
+     */
+    public static void primitiveGroupingByExample() {
+        IntLongHashMap sums = PrimitiveCollectors.intGroupingBy(n -> n % 3, PrimitiveCollectors.Aggregate.SUM)
+                .collect(IntStream.rangeClosed(1, 10));
+        IntLongHashMap maxes = PrimitiveCollectors.intGroupingBy(n -> n % 3, PrimitiveCollectors.Aggregate.MAX)
+                .collect(IntStream.rangeClosed(1, 10).parallel());
+        IntLongHashMap counts = PrimitiveCollectors.intGroupingBy(n -> n % 3, PrimitiveCollectors.Aggregate.COUNT)
+                .collect(IntStream.rangeClosed(1, 10));
+        log.info("Primitive groupingBy sum: {}, max: {}, count: {}", sums, maxes, counts);
+    }
+
+    /**
+     * Example of collecting an int property of objects into an int[] without going through Integer.
+     * Input: Strings ["a", "bb", "ccc"]
+     * Output: Array of lengths [1, 2, 3]
+     */
+    public static void primitiveToArrayExample() {
+        int[] lengths = java.util.stream.Stream.of("a", "bb", "ccc")
+                .collect(PrimitiveCollectors.toIntArray(String::length));
+        log.info("Primitive toIntArray result: {}", Arrays.toString(lengths));
+    }
 }
@@ -0,0 +1,236 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+NOTE:
+1) KLL answers quantile queries (median, p99, ...) over a stream of doubles with memory that grows only with k and log(n).
+The rank error is about 1.7 / k, so k = 200 gives quantiles within roughly 1% of the true rank.
+2) The sketch is a stack of compactors. Level h holds items that each stand for 2^h original values. When a level is full it is
+sorted and every other item (randomly the odd or the even ones) moves up one level, with doubled weight.
+3) Lower levels get smaller capacities (k * (2/3)^depth), which is what keeps the total size near 3k.
+4) Two sketches merge by concatenating level by level and compacting again, so parallel streams can build one per thread.
+ */
+public class KllSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int k;
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private long randomState = 0x2545F4914F6CDD1DL;
+
+    public KllSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8: " + k);
+        }
+        this.k = k;
+        addLevel();
+    }
+
+    public KllSketch() {
+        this(200);
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        compressWhileOverCapacity();
+    }
+
+    public KllSketch merge(KllSketch other) {
+        if (other.count == 0) {
+            return this;
+        }
+        for (int h = 0; h < other.levels.size(); h++) {
+            while (levels.size() <= h) {
+                addLevel();
+            }
+            double[] items = other.levels.get(h);
+            for (int i = 0; i < other.sizes.get(h); i++) {
+                append(h, items[i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compressWhileOverCapacity();
+        return this;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Approximate value at the given quantile, e.g. 0.5 for the median or 0.99 for p99. Returns NaN for an empty sketch.
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be between 0 and 1: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+        double[][] weighted = sortedWeightedItems();
+        long totalWeight = 0;
+        for (double[] item : weighted) {
+            totalWeight += (long) item[1];
+        }
+        double target = q * totalWeight;
+        long cumulative = 0;
+        for (double[] item : weighted) {
+            cumulative += (long) item[1];
+            if (cumulative >= target) {
+                return item[0];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Approximate fraction of values that are less than or equal to value.
+     */
+    public double rank(double value) {
+        long below = 0;
+        long totalWeight = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] items = levels.get(h);
+            long weight = 1L << h;
+            for (int i = 0; i < sizes.get(h); i++) {
+                totalWeight += weight;
+                if (items[i] <= value) {
+                    below += weight;
+                }
+            }
+        }
+        return totalWeight == 0 ? Double.NaN : (double) below / totalWeight;
+    }
+
+    /**
+     * Number of items retained by the sketch, as opposed to count(), the number of values added.
+     */
+    public int retainedItems() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    private double[][] sortedWeightedItems() {
+        double[][] result = new double[retainedItems()][];
+        int n = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            double[] items = levels.get(h);
+            for (int i = 0; i < sizes.get(h); i++) {
+                result[n++] = new double[]{items[i], 1L << h};
+            }
+        }
+        Arrays.sort(result, (a, b) -> Double.compare(a[0], b[0]));
+        return result;
+    }
+
+    private void compressWhileOverCapacity() {
+        while (retainedItems() > totalCapacity()) {
+            compressOneLevel();
+        }
+    }
+
+    private void compressOneLevel() {
+        for (int h = 0; h < levels.size(); h++) {
+            if (sizes.get(h) >= capacity(h)) {
+                if (h + 1 == levels.size()) {
+                    addLevel();
+                }
+                double[] items = levels.get(h);
+                int size = sizes.get(h);
+                Arrays.sort(items, 0, size);
+                // An odd item out stays on this level, so the total weight is preserved exactly.
+                int pairs = size / 2 * 2;
+                int offset = nextCoin();
+                for (int i = offset; i < pairs; i += 2) {
+                    append(h + 1, items[i]);
+                }
+                if (pairs < size) {
+                    items[0] = items[size - 1];
+                    sizes.set(h, 1);
+                } else {
+                    sizes.set(h, 0);
+                }
+                return;
+            }
+        }
+    }
+
+    private int capacity(int level) {
+        int depth = levels.size() - 1 - level;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels.get(level);
+        int size = sizes.get(level);
+        if (size == items.length) {
+            items = Arrays.copyOf(items, Math.max(8, size * 2));
+            levels.set(level, items);
+        }
+        items[size] = value;
+        sizes.set(level, size + 1);
+    }
+
+    private void addLevel() {
+        levels.add(new double[8]);
+        sizes.add(0);
+    }
+
+    private int nextCoin() {
+        // xorshift64, good enough for a fair coin and, unlike SplittableRandom, serializable as a plain long
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState & 1);
+    }
+
+    @Override
+    public String toString() {
+        return "KllSketch{k=" + k + ", count=" + count + ", retained=" + retainedItems() + ", min=" + min + ", max=" + max + '}';
+    }
+}
@@ -0,0 +1,72 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+
+/**
+ * long values, 8 bytes per row. A null row stores 0.
+ */
+public final class LongColumn extends Column {
+    long[] values = new long[16];
+
+    LongColumn(String name) {
+        super(name);
+    }
+
+    public long getLong(int row) {
+        checkRow(row);
+        return values[row];
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    /**
+     * Rows with min <= value <= max.
+     */
+    public Selection between(long min, long max) {
+        long[] bits = new long[Selection.words(size)];
+        ArrayKernels.inRange(values, size, min, max, bits);
+        return withoutNulls(bits);
+    }
+
+    public Selection equalTo(long value) {
+        return between(value, value);
+    }
+
+    public Selection greaterThan(long value) {
+        return value == Long.MAX_VALUE ? Selection.none(size) : between(value + 1, Long.MAX_VALUE);
+    }
+
+    public Selection lessThan(long value) {
+        return value == Long.MIN_VALUE ? Selection.none(size) : between(Long.MIN_VALUE, value - 1);
+    }
+
+    void append(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+    }
+
+    @Override
+    void appendNull() {
+        markNull(size);
+        append(0);
+    }
+
+    @Override
+    void reserve(int capacity) {
+        if (values.length < capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    @Override
+    void trimToSize() {
+        if (values.length != size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -46,6 +46,7 @@ public class LongStreamExamples {
         findAnyExample();
         asDoubleStreamExample();
         boxedExample();
+        primitiveGroupingByComparison();
     }
 
     /**
@@ -429,4 +430,25 @@ public class LongStreamExamples {
                 .collect(Collectors.toList());
         System.out.println("Boxed result: " + result);
     }
+
+    /**
+     * Compares boxed groupingBy + summingLong with PrimitiveCollectors.longGroupingBy on the same LongStream.
+     * Input: 10,000,000 longs grouped into 1,000 buckets by value % 1000
+     * Output: Prints the elapsed time of both versions and whether their sums are equal
+     */
+    public static void primitiveGroupingByComparison() {
+        long start = System.nanoTime();
+        Map<Integer, Long> boxed = LongStream.range(0, 10_000_000)
+                .boxed()
+                .collect(Collectors.groupingBy(n -> (int) (n % 1000), Collectors.summingLong(n -> n)));
+        long boxedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        IntLongHashMap primitive = PrimitiveCollectors.longGroupingBy(n -> (int) (n % 1000), PrimitiveCollectors.Aggregate.SUM)
+                .collect(LongStream.range(0, 10_000_000));
+        long primitiveMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("Boxed groupingBy: " + boxedMillis + " ms, primitive groupingBy: " + primitiveMillis
+                + " ms, same result: " + primitive.toMap().equals(new TreeMap<>(boxed)));
+    }
 }
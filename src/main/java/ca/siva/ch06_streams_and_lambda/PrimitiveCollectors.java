@@ -0,0 +1,160 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/*
+NOTE:
+1) IntStream and LongStream have no collect(Collector), only collect(Supplier, ObjIntConsumer, BiConsumer). IntCollector and
+LongCollector bundle those three functions so a primitive "collector" can be reused like a regular Collector:
+    IntLongHashMap sums = PrimitiveCollectors.intGroupingBy(n -> n % 10, Aggregate.SUM).collect(intStream);
+2) For Stream<T>, groupingByInt and toIntArray are regular Collectors. Only the key/value extractors are called per element
+and both return primitives, so nothing is boxed between the source object and the result map/array.
+3) All of these are safe with parallel streams: every thread accumulates into its own container and the combiner merges them.
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() {
+    }
+
+    /**
+     * Per-key aggregation. value() turns an element into the value stored for a new key and operator() combines two values.
+     */
+    public enum Aggregate {
+        SUM(Long::sum),
+        MIN(Math::min),
+        MAX(Math::max),
+        COUNT(Long::sum) {
+            @Override
+            long value(long element) {
+                return 1;
+            }
+        };
+
+        private final LongBinaryOperator operator;
+
+        Aggregate(LongBinaryOperator operator) {
+            this.operator = operator;
+        }
+
+        long value(long element) {
+            return element;
+        }
+
+        public LongBinaryOperator operator() {
+            return operator;
+        }
+    }
+
+    /**
+     * Supplier/accumulator/combiner triple for IntStream.collect.
+     */
+    public record IntCollector<R>(Supplier<R> supplier, ObjIntConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+        public R collect(IntStream stream) {
+            return stream.collect(supplier, accumulator, combiner);
+        }
+    }
+
+    /**
+     * Supplier/accumulator/combiner triple for LongStream.collect.
+     */
+    public record LongCollector<R>(Supplier<R> supplier, ObjLongConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+        public R collect(LongStream stream) {
+            return stream.collect(supplier, accumulator, combiner);
+        }
+    }
+
+    /**
+     * Groups the elements of an IntStream by classifier(element) and aggregates the elements of each group.
+     */
+    public static IntCollector<IntLongHashMap> intGroupingBy(IntUnaryOperator classifier, Aggregate aggregate) {
+        LongBinaryOperator operator = aggregate.operator();
+        return new IntCollector<>(
+                IntLongHashMap::new,
+                (map, element) -> map.merge(classifier.applyAsInt(element), aggregate.value(element), operator),
+                (left, right) -> left.mergeAll(right, operator)
+        );
+    }
+
+    /**
+     * Groups the elements of a LongStream by classifier(element) and aggregates the elements of each group.
+     */
+    public static LongCollector<IntLongHashMap> longGroupingBy(LongToIntFunction classifier, Aggregate aggregate) {
+        LongBinaryOperator operator = aggregate.operator();
+        return new LongCollector<>(
+                IntLongHashMap::new,
+                (map, element) -> map.merge(classifier.applyAsInt(element), aggregate.value(element), operator),
+                (left, right) -> left.mergeAll(right, operator)
+        );
+    }
+
+    /**
+     * Primitive replacement for groupingBy(classifier, summingInt/minBy/maxBy/counting) when the key is an int (or char).
+     */
+    public static <T> Collector<T, IntLongHashMap, IntLongHashMap> groupingByInt(ToIntFunction<? super T> classifier,
+                                                                                ToLongFunction<? super T> valueMapper,
+                                                                                Aggregate aggregate) {
+        LongBinaryOperator operator = aggregate.operator();
+        return Collector.of(
+                IntLongHashMap::new,
+                (map, element) -> map.merge(classifier.applyAsInt(element),
+                        aggregate.value(valueMapper.applyAsLong(element)), operator),
+                (left, right) -> left.mergeAll(right, operator),
+                Collector.Characteristics.IDENTITY_FINISH
+        );
+    }
+
+    /**
+     * Collects an int property of every element into an int[], in encounter order.
+     */
+    public static <T> Collector<T, IntArrayBuilder, int[]> toIntArray(ToIntFunction<? super T> mapper) {
+        return Collector.of(
+                IntArrayBuilder::new,
+                (builder, element) -> builder.add(mapper.applyAsInt(element)),
+                IntArrayBuilder::addAll,
+                IntArrayBuilder::toArray
+        );
+    }
+
+    /**
+     * IntStream counterpart of toIntArray, for pipelines that need an int[] out of a custom collect step.
+     */
+    public static IntCollector<IntArrayBuilder> intArrayBuilder() {
+        return new IntCollector<>(IntArrayBuilder::new, IntArrayBuilder::add, IntArrayBuilder::addAll);
+    }
+
+    /**
+     * Growable int[]; grows by 1.5x like ArrayList.
+     */
+    public static final class IntArrayBuilder {
+        private int[] elements = new int[16];
+        private int size;
+
+        public void add(int value) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size + (size >> 1));
+            }
+            elements[size++] = value;
+        }
+
+        public IntArrayBuilder addAll(IntArrayBuilder other) {
+            if (size + other.size > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(size + other.size, size + (size >> 1)));
+            }
+            System.arraycopy(other.elements, 0, elements, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+    }
+}
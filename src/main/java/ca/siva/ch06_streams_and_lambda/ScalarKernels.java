@@ -0,0 +1,155 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+
+/**
+ * Plain loops behind ArrayKernels when the Vector API is not available. mismatch delegates to Arrays.mismatch, which
+ * the JDK already implements with SIMD intrinsics.
+ */
+final class ScalarKernels {
+
+    private ScalarKernels() {
+    }
+
+    static int sum(int[] array) {
+        int sum = 0;
+        for (int value : array) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    static float sum(float[] array) {
+        float sum = 0;
+        for (float value : array) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    static int min(int[] array) {
+        int min = array[0];
+        for (int value : array) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    static int max(int[] array) {
+        int max = array[0];
+        for (int value : array) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    static float min(float[] array) {
+        float min = array[0];
+        for (float value : array) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    static float max(float[] array) {
+        float max = array[0];
+        for (float value : array) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    static int filterGreaterThan(int[] source, int threshold, int[] destination) {
+        int count = 0;
+        for (int value : source) {
+            if (value > threshold) {
+                destination[count++] = value;
+            }
+        }
+        return count;
+    }
+
+    static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static int mismatch(int[] a, int[] b) {
+        return Arrays.mismatch(a, b);
+    }
+
+    static int mismatch(byte[] a, byte[] b) {
+        return Arrays.mismatch(a, b);
+    }
+
+    static int indexOf(byte[] array, byte value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static void inRange(int[] values, int length, int min, int max, long[] bits) {
+        for (int word = 0; word << 6 < length; word++) {
+            inRangeWord(values, word, length, min, max, bits);
+        }
+    }
+
+    static void inRange(long[] values, int length, long min, long max, long[] bits) {
+        for (int word = 0; word << 6 < length; word++) {
+            inRangeWord(values, word, length, min, max, bits);
+        }
+    }
+
+    static void inRange(double[] values, int length, double min, double max, long[] bits) {
+        for (int word = 0; word << 6 < length; word++) {
+            inRangeWord(values, word, length, min, max, bits);
+        }
+    }
+
+    /*
+     * One word of bits, for rows word * 64 up to length. Branch-free, so unsorted data causes no mispredictions. For ints
+     * and longs, min <= value <= max is a single unsigned comparison: value - min <= max - min.
+     */
+    static void inRangeWord(int[] values, int word, int length, int min, int max, long[] bits) {
+        int base = word << 6;
+        int end = Math.min(64, length - base);
+        long result = 0;
+        if (min <= max) {
+            int span = max - min;
+            for (int j = 0; j < end; j++) {
+                result |= (Integer.compareUnsigned(values[base + j] - min, span) <= 0 ? 1L : 0L) << j;
+            }
+        }
+        bits[word] = result;
+    }
+
+    static void inRangeWord(long[] values, int word, int length, long min, long max, long[] bits) {
+        int base = word << 6;
+        int end = Math.min(64, length - base);
+        long result = 0;
+        if (min <= max) {
+            long span = max - min;
+            for (int j = 0; j < end; j++) {
+                result |= (Long.compareUnsigned(values[base + j] - min, span) <= 0 ? 1L : 0L) << j;
+            }
+        }
+        bits[word] = result;
+    }
+
+    static void inRangeWord(double[] values, int word, int length, double min, double max, long[] bits) {
+        int base = word << 6;
+        int end = Math.min(64, length - base);
+        long result = 0;
+        for (int j = 0; j < end; j++) {
+            double value = values[base + j];
+            result |= (value >= min & value <= max ? 1L : 0L) << j;
+        }
+        bits[word] = result;
+    }
+}
@@ -0,0 +1,152 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The rows of a ColumnTable that pass a filter, as one bit per row. Filters on different columns are combined with
+ * and/or/not, 64 rows per operation, instead of evaluating a Predicate per row object. Immutable: every operation returns a
+ * new Selection.
+ */
+public final class Selection {
+    final long[] bits;
+    private final int size;
+
+    Selection(long[] bits, int size) {
+        this.bits = bits;
+        this.size = size;
+    }
+
+    public static Selection all(int size) {
+        long[] bits = new long[words(size)];
+        Arrays.fill(bits, -1L);
+        return new Selection(bits, size).clearTail();
+    }
+
+    public static Selection none(int size) {
+        return new Selection(new long[words(size)], size);
+    }
+
+    /**
+     * Number of rows of the table the selection belongs to (not the number of selected rows, see count()).
+     */
+    public int size() {
+        return size;
+    }
+
+    public int count() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean contains(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + size);
+        }
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    public Selection and(Selection other) {
+        requireSameSize(other);
+        long[] result = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            result[i] = bits[i] & other.bits[i];
+        }
+        return new Selection(result, size);
+    }
+
+    public Selection or(Selection other) {
+        requireSameSize(other);
+        long[] result = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            result[i] = bits[i] | other.bits[i];
+        }
+        return new Selection(result, size);
+    }
+
+    public Selection andNot(Selection other) {
+        requireSameSize(other);
+        long[] result = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            result[i] = bits[i] & ~other.bits[i];
+        }
+        return new Selection(result, size);
+    }
+
+    public Selection not() {
+        long[] result = new long[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            result[i] = ~bits[i];
+        }
+        return new Selection(result, size).clearTail();
+    }
+
+    /**
+     * Calls action with every selected row, in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < bits.length; i++) {
+            for (long word = bits[i]; word != 0; word &= word - 1) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    public int[] toArray() {
+        int[] rows = new int[count()];
+        int[] next = {0};
+        forEach(row -> rows[next[0]++] = row);
+        return rows;
+    }
+
+    /**
+     * Copies up to rows.length selected rows, starting at row from, into rows. Returns how many were copied and leaves the
+     * row to continue from in rows[rows.length - 1] + 1, so callers can process a large selection in fixed-size batches.
+     */
+    int nextBatch(int from, int[] rows) {
+        int count = 0;
+        int word = from >>> 6;
+        if (word >= bits.length) {
+            return 0;
+        }
+        long bitsLeft = bits[word] & (-1L << from);
+        while (true) {
+            while (bitsLeft != 0) {
+                if (count == rows.length) {
+                    return count;
+                }
+                rows[count++] = (word << 6) + Long.numberOfTrailingZeros(bitsLeft);
+                bitsLeft &= bitsLeft - 1;
+            }
+            if (++word == bits.length) {
+                return count;
+            }
+            bitsLeft = bits[word];
+        }
+    }
+
+    static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    private Selection clearTail() {
+        if ((size & 63) != 0) {
+            bits[bits.length - 1] &= (1L << size) - 1;
+        }
+        return this;
+    }
+
+    private void requireSameSize(Selection other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Selections of different tables: " + size + " and " + other.size + " rows");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Selection{" + count() + " of " + size + " rows}";
+    }
+}
@@ -0,0 +1,178 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/*
+NOTE:
+1) groupingByConcurrent shares one ConcurrentHashMap between all threads. When a few keys are hot, every thread updates
+the same bins and the same downstream containers, so adding threads adds contention instead of throughput.
+2) The collectors here are CONCURRENT, so the stream hands the same container to every thread and never merges per split.
+The container gives each thread its own plain HashMap (a shard) through a ThreadLocal. Accumulation touches only the
+calling thread's shard, and the shards are merged exactly once, in the finisher, after all threads are done.
+3) The merge costs O(threads * distinct keys), paid once. The regular (non-concurrent) groupingBy merges at every level of the
+split tree instead.
+4) Results are UNORDERED, like groupingByConcurrent. Use these when the key count is small compared to the element count.
+5) The ThreadLocal of a finished collect() is only referenced by the container; once the container is gone the entries left in
+pool threads are stale and cleared by ThreadLocal's normal expunging.
+ */
+public final class ShardedCollectors {
+
+    private ShardedCollectors() {
+    }
+
+    /**
+     * Per-thread containers. get() returns the calling thread's shard, creating it on first use.
+     */
+    static final class Shards<A> {
+        private final Queue<A> all = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<A> local;
+
+        Shards(Supplier<A> supplier) {
+            this.local = ThreadLocal.withInitial(() -> {
+                A shard = supplier.get();
+                all.add(shard);
+                return shard;
+            });
+        }
+
+        A get() {
+            return local.get();
+        }
+
+        Collection<A> all() {
+            return all;
+        }
+
+        /**
+         * A parallel CONCURRENT + UNORDERED collect shares one container and never calls this. It is only reached if
+         * the stream decides to use several containers anyway, in which case keeping every shard is enough.
+         */
+        Shards<A> combine(Shards<A> other) {
+            if (other != this) {
+                all.addAll(other.all);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Sharded replacement for Collectors.groupingByConcurrent(classifier, downstream).
+     */
+    public static <T, K, A, D> Collector<T, ?, Map<K, D>> groupingBy(Function<? super T, ? extends K> classifier,
+                                                                   Collector<? super T, A, D> downstream) {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        Function<A, D> downstreamFinisher = downstream.finisher();
+
+        return Collector.<T, Shards<Map<K, A>>, Map<K, D>>of(
+                () -> new Shards<>(HashMap::new),
+                (shards, element) -> downstreamAccumulator.accept(
+                        shards.get().computeIfAbsent(classifier.apply(element), k -> downstreamSupplier.get()), element),
+                Shards::combine,
+                shards -> {
+                    Map<K, A> merged = new HashMap<>();
+                    for (Map<K, A> shard : shards.all()) {
+                        shard.forEach((key, container) -> merged.merge(key, container, downstreamCombiner));
+                    }
+                    Map<K, D> result = new HashMap<>(merged.size() * 2);
+                    merged.forEach((key, container) -> result.put(key, downstreamFinisher.apply(container)));
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED
+        );
+    }
+
+    /**
+     * Sharded replacement for groupingByConcurrent(classifier, counting()). Counters are long[1] cells, so incrementing
+     * an existing key does not allocate.
+     */
+    public static <T, K> Collector<T, ?, Map<K, Long>> countingBy(Function<? super T, ? extends K> classifier) {
+        return Collector.<T, Shards<Map<K, long[]>>, Map<K, Long>>of(
+                () -> new Shards<>(HashMap::new),
+                (shards, element) -> shards.get().computeIfAbsent(classifier.apply(element), k -> new long[1])[0]++,
+                Shards::combine,
+                ShardedCollectors::mergeCounts,
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED
+        );
+    }
+
+    /**
+     * The k greatest elements according to comparator, greatest first. Each shard keeps a bounded min-heap of size k.
+     */
+    public static <T> Collector<T, ?, List<T>> topK(int k, Comparator<? super T> comparator) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        return Collector.<T, Shards<PriorityQueue<T>>, List<T>>of(
+                () -> new Shards<>(() -> new PriorityQueue<>(k + 1, comparator)),
+                (shards, element) -> offerBounded(shards.get(), element, k, comparator),
+                Shards::combine,
+                shards -> {
+                    PriorityQueue<T> merged = new PriorityQueue<>(k + 1, comparator);
+                    for (PriorityQueue<T> shard : shards.all()) {
+                        for (T element : shard) {
+                            offerBounded(merged, element, k, comparator);
+                        }
+                    }
+                    List<T> result = new ArrayList<>(merged);
+                    result.sort(comparator.reversed());
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED
+        );
+    }
+
+    /**
+     * The k most frequent keys and their counts, most frequent first (heavy hitters).
+     */
+    public static <T, K> Collector<T, ?, List<Map.Entry<K, Long>>> mostFrequent(Function<? super T, ? extends K> classifier, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        return Collector.<T, Shards<Map<K, long[]>>, List<Map.Entry<K, Long>>>of(
+                () -> new Shards<>(HashMap::new),
+                (shards, element) -> shards.get().computeIfAbsent(classifier.apply(element), key -> new long[1])[0]++,
+                Shards::combine,
+                shards -> {
+                    Comparator<Map.Entry<K, Long>> byCount = Map.Entry.comparingByValue();
+                    PriorityQueue<Map.Entry<K, Long>> heap = new PriorityQueue<>(k + 1, byCount);
+                    for (Map.Entry<K, Long> entry : mergeCounts(shards).entrySet()) {
+                        offerBounded(heap, entry, k, byCount);
+                    }
+                    List<Map.Entry<K, Long>> result = new ArrayList<>(heap);
+                    result.sort(byCount.reversed());
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED
+        );
+    }
+
+    private static <K> Map<K, Long> mergeCounts(Shards<Map<K, long[]>> shards) {
+        Map<K, Long> result = new HashMap<>();
+        for (Map<K, long[]> shard : shards.all()) {
+            shard.forEach((key, cell) -> result.merge(key, cell[0], Long::sum));
+        }
+        return result;
+    }
+
+    private static <T> void offerBounded(PriorityQueue<T> heap, T element, int k, Comparator<? super T> comparator) {
+        if (heap.size() < k) {
+            heap.add(element);
+        } else if (comparator.compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+}
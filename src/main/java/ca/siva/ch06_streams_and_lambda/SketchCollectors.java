@@ -0,0 +1,98 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/*
+NOTE:
+1) Collectors that aggregate into fixed size sketches instead of exact maps, for streams too large for
+groupingBy(..., counting()) or a Set of distinct values:
+    distinct count -> HyperLogLog     (about 1.04 / sqrt(2^precision) relative error)
+    heavy hitters  -> HeavyHitters    (Count-Min counts, over-estimate by at most epsilon * n with probability 1 - delta)
+    quantiles      -> KllSketch       (rank error about 1.7 / k)
+2) Every sketch has a merge(), which is the combiner, so the collectors work with parallel streams. The sketches are
+Serializable, so partial results can be written with ObjectOutputStream and merged later by another job.
+3) The collectors are UNORDERED: the result does not depend on encounter order.
+ */
+public final class SketchCollectors {
+
+    private SketchCollectors() {
+    }
+
+    public static <T> Collector<T, HyperLogLog, HyperLogLog> toHyperLogLog(int precision) {
+        return Collector.of(
+                () -> new HyperLogLog(precision),
+                HyperLogLog::add,
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH
+        );
+    }
+
+    /**
+     * HyperLogLog fed with a caller supplied 64-bit hash, for data sets with more distinct values than hashCode() can tell apart.
+     */
+    public static <T> Collector<T, HyperLogLog, HyperLogLog> toHyperLogLog(int precision, ToLongFunction<? super T> hasher) {
+        return Collector.of(
+                () -> new HyperLogLog(precision),
+                (sketch, element) -> sketch.addHash(Hashing.mix64(hasher.applyAsLong(element))),
+                HyperLogLog::merge,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH
+        );
+    }
+
+    /**
+     * Approximate replacement for collect(Collectors.toSet()).size().
+     */
+    public static <T> Collector<T, HyperLogLog, Long> approximateDistinctCount(int precision) {
+        return Collector.of(
+                () -> new HyperLogLog(precision),
+                HyperLogLog::add,
+                HyperLogLog::merge,
+                HyperLogLog::estimate,
+                Collector.Characteristics.UNORDERED
+        );
+    }
+
+    public static <T> Collector<T, HeavyHitters<T>, HeavyHitters<T>> heavyHitters(int k, double epsilon, double delta) {
+        return Collector.of(
+                () -> new HeavyHitters<>(k, epsilon, delta),
+                HeavyHitters::add,
+                HeavyHitters::merge,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH
+        );
+    }
+
+    public static <T> Collector<T, KllSketch, KllSketch> toKllSketch(ToDoubleFunction<? super T> mapper, int k) {
+        return Collector.of(
+                () -> new KllSketch(k),
+                (sketch, element) -> sketch.add(mapper.applyAsDouble(element)),
+                KllSketch::merge,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH
+        );
+    }
+
+    /**
+     * Approximate values at the given quantiles, e.g. quantiles(Order::amount, 0.5, 0.9, 0.99).
+     */
+    public static <T> Collector<T, KllSketch, double[]> quantiles(ToDoubleFunction<? super T> mapper, double... qs) {
+        double[] fractions = qs.clone();
+        return Collector.of(
+                KllSketch::new,
+                (sketch, element) -> sketch.add(mapper.applyAsDouble(element)),
+                KllSketch::merge,
+                sketch -> {
+                    double[] result = new double[fractions.length];
+                    for (int i = 0; i < fractions.length; i++) {
+                        result[i] = sketch.quantile(fractions[i]);
+                    }
+                    return result;
+                },
+                Collector.Characteristics.UNORDERED
+        );
+    }
+}
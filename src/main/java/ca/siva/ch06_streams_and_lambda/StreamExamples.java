@@ -428,6 +428,71 @@ public class StreamExamples {
         }
     }
 
+    /**
+     * Example of CustomSpliterators.balanced on a LinkedList.
+     * Input: LinkedList of names ["Alice", "Bob", "Charlie", "David"]
+     * Output: Logs both halves; unlike LinkedList.spliterator(), the split is exactly in the middle and both halves are SIZED
+     */
+    public static void balancedSpliteratorExample() {
+        LinkedList<String> names = new LinkedList<>(Arrays.asList("Alice", "Bob", "Charlie", "David"));
+
+        Spliterator<String> spliterator = CustomSpliterators.balanced(names);
+        Spliterator<String> firstHalf = spliterator.trySplit();
+
+        log.info("First half size: {}, second half size: {}, SUBSIZED: {}", firstHalf.estimateSize(),
+                spliterator.estimateSize(), spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+        firstHalf.forEachRemaining(name -> log.info("First half: {}", name));
+        spliterator.forEachRemaining(name -> log.info("Second half: {}", name));
+    }
+
+    /**
+     * Example of range and indexed spliterators, both SIZED and SUBSIZED.
+     * Input: Range [0, 10) and an indexed view over the squares of [0, 5)
+     * Output: Sum of the range 45 and the list of squares [0, 1, 4, 9, 16]
+     */
+    public static void rangeSpliteratorExample() {
+        int sum = StreamSupport.intStream(CustomSpliterators.range(0, 10), true).sum();
+        List<Integer> squares = StreamSupport.stream(CustomSpliterators.indexed(0, 5, i -> i * i), true)
+                .collect(Collectors.toList());
+        log.info("Range sum: {}, squares: {}", sum, squares);
+    }
+
+    /**
+     * Compares parallel streams over a LinkedList with three different spliterators.
+     * Input: LinkedList of 2,000,000 integers and a CPU bound map step
+     * Output: Logs the elapsed time of a sequential run and the parallel runs using LinkedList.spliterator(),
+     * Spliterators.spliteratorUnknownSize and CustomSpliterators.balanced
+     */
+    public static void spliteratorSpeedupComparison() {
+        LinkedList<Integer> numbers = IntStream.range(0, 2_000_000).boxed()
+                .collect(Collectors.toCollection(LinkedList::new));
+
+        time("sequential", () -> sumOfWork(numbers.stream()));
+        time("LinkedList.spliterator()", () -> sumOfWork(numbers.parallelStream()));
+        time("spliteratorUnknownSize", () -> sumOfWork(StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(numbers.iterator(), Spliterator.ORDERED), true)));
+        time("CustomSpliterators.balanced", () -> sumOfWork(StreamSupport.stream(
+                CustomSpliterators.balanced(numbers), true)));
+    }
+
+    private static long sumOfWork(Stream<Integer> stream) {
+        // Enough work per element for the split quality to matter
+        return stream.mapToLong(n -> {
+            long x = n;
+            for (int i = 0; i < 50; i++) {
+                x = x * 6364136223846793005L + 1442695040888963407L;
+            }
+            return x & 0xFF;
+        }).sum();
+    }
+
+    private static void time(String label, java.util.function.LongSupplier task) {
+        task.getAsLong(); // Warm up
+        long start = System.nanoTime();
+        long result = task.getAsLong();
+        log.info("{}: {} ms (result {})", label, (System.nanoTime() - start) / 1_000_000, result);
+    }
+
     /**
      * Example of IntSummaryStatistics.
      * Input: List of integers [3, 5, 7, 9, 11]
@@ -485,6 +550,9 @@ public class StreamExamples {
         findAnyExample();
         concatExample();
         spliteratorExample();
+        balancedSpliteratorExample();
+        rangeSpliteratorExample();
+        spliteratorSpeedupComparison();
         intSummaryStatisticsExample();
     }
 }
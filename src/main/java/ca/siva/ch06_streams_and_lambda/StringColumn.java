@@ -0,0 +1,111 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Dictionary-encoded strings: every distinct value is stored once and each row holds its int code (-1 for null).
+ * A department or gender column of 30M rows is then a 120 MB int array plus a handful of strings, equality is an int
+ * comparison, and group-by can use the code directly as the group index.
+ */
+public final class StringColumn extends Column {
+    int[] codes = new int[16];
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> codesByValue = new HashMap<>();
+
+    StringColumn(String name) {
+        super(name);
+    }
+
+    public String getString(int row) {
+        checkRow(row);
+        int code = codes[row];
+        return code < 0 ? null : dictionary.get(code);
+    }
+
+    @Override
+    public Object get(int row) {
+        return getString(row);
+    }
+
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    public String dictionaryValue(int code) {
+        return dictionary.get(code);
+    }
+
+    public Selection equalTo(String value) {
+        Integer code = codesByValue.get(Objects.requireNonNull(value, "value; use isNull() for null rows"));
+        if (code == null) {
+            return Selection.none(size);
+        }
+        long[] bits = new long[Selection.words(size)];
+        ArrayKernels.inRange(codes, size, code, code, bits);
+        return new Selection(bits, size);
+    }
+
+    public Selection in(Collection<String> values) {
+        return matching(values::contains);
+    }
+
+    /**
+     * Rows whose value matches the predicate. The predicate is evaluated once per distinct value, not once per row.
+     */
+    public Selection matching(Predicate<String> predicate) {
+        boolean[] matches = new boolean[dictionary.size()];
+        for (int code = 0; code < matches.length; code++) {
+            matches[code] = predicate.test(dictionary.get(code));
+        }
+        long[] bits = new long[Selection.words(size)];
+        for (int row = 0; row < size; row++) {
+            int code = codes[row];
+            if (code >= 0 && matches[code]) {
+                bits[row >>> 6] |= 1L << row;
+            }
+        }
+        return new Selection(bits, size);
+    }
+
+    void append(String value) {
+        if (value == null) {
+            appendNull();
+            return;
+        }
+        Integer code = codesByValue.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codesByValue.put(value, code);
+        }
+        appendCode(code);
+    }
+
+    @Override
+    void appendNull() {
+        markNull(size);
+        appendCode(-1);
+    }
+
+    private void appendCode(int code) {
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, grow(size));
+        }
+        codes[size++] = code;
+    }
+
+    @Override
+    void reserve(int capacity) {
+        if (codes.length < capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+        }
+    }
+
+    @Override
+    void trimToSize() {
+        if (codes.length != size) {
+            codes = Arrays.copyOf(codes, size);
+        }
+    }
+}
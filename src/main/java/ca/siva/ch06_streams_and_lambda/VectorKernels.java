@@ -0,0 +1,292 @@
+package ca.siva.ch06_streams_and_lambda;
+
+import jdk.incubator.vector.*;
+
+/**
+ * Vector API implementations behind ArrayKernels. Only loaded when jdk.incubator.vector is in the boot layer.
+ * Every method runs whole vectors up to species.loopBound(length) and finishes the remaining elements with a scalar loop.
+ * The float reductions keep four accumulators so consecutive adds do not wait on each other's latency.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    static int sum(int[] array) {
+        IntVector sums = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = INTS.loopBound(array.length); i < bound; i += INTS.length()) {
+            sums = sums.add(IntVector.fromArray(INTS, array, i));
+        }
+        int sum = sums.reduceLanes(VectorOperators.ADD);
+        for (; i < array.length; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    static float sum(float[] array) {
+        int lanes = FLOATS.length();
+        FloatVector sum0 = FloatVector.zero(FLOATS);
+        FloatVector sum1 = sum0;
+        FloatVector sum2 = sum0;
+        FloatVector sum3 = sum0;
+        int i = 0;
+        for (int bound = array.length - 4 * lanes; i <= bound; i += 4 * lanes) {
+            sum0 = sum0.add(FloatVector.fromArray(FLOATS, array, i));
+            sum1 = sum1.add(FloatVector.fromArray(FLOATS, array, i + lanes));
+            sum2 = sum2.add(FloatVector.fromArray(FLOATS, array, i + 2 * lanes));
+            sum3 = sum3.add(FloatVector.fromArray(FLOATS, array, i + 3 * lanes));
+        }
+        for (int bound = FLOATS.loopBound(array.length); i < bound; i += lanes) {
+            sum0 = sum0.add(FloatVector.fromArray(FLOATS, array, i));
+        }
+        float sum = sum0.add(sum1).add(sum2.add(sum3)).reduceLanes(VectorOperators.ADD);
+        for (; i < array.length; i++) {
+            sum += array[i];
+        }
+        return sum;
+    }
+
+    // min() and max() rather than lanewise(op) with op a parameter: the JIT only intrinsifies a constant operator
+    static int min(int[] array) {
+        IntVector result = IntVector.broadcast(INTS, Integer.MAX_VALUE);
+        int i = 0;
+        for (int bound = INTS.loopBound(array.length); i < bound; i += INTS.length()) {
+            result = result.min(IntVector.fromArray(INTS, array, i));
+        }
+        int min = result.reduceLanes(VectorOperators.MIN);
+        for (; i < array.length; i++) {
+            min = Math.min(min, array[i]);
+        }
+        return min;
+    }
+
+    static int max(int[] array) {
+        IntVector result = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        int i = 0;
+        for (int bound = INTS.loopBound(array.length); i < bound; i += INTS.length()) {
+            result = result.max(IntVector.fromArray(INTS, array, i));
+        }
+        int max = result.reduceLanes(VectorOperators.MAX);
+        for (; i < array.length; i++) {
+            max = Math.max(max, array[i]);
+        }
+        return max;
+    }
+
+    static float min(float[] array) {
+        FloatVector result = FloatVector.broadcast(FLOATS, Float.POSITIVE_INFINITY);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(array.length); i < bound; i += FLOATS.length()) {
+            result = result.min(FloatVector.fromArray(FLOATS, array, i));
+        }
+        float min = result.reduceLanes(VectorOperators.MIN);
+        for (; i < array.length; i++) {
+            min = Math.min(min, array[i]);
+        }
+        return min;
+    }
+
+    static float max(float[] array) {
+        FloatVector result = FloatVector.broadcast(FLOATS, Float.NEGATIVE_INFINITY);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(array.length); i < bound; i += FLOATS.length()) {
+            result = result.max(FloatVector.fromArray(FLOATS, array, i));
+        }
+        float max = result.reduceLanes(VectorOperators.MAX);
+        for (; i < array.length; i++) {
+            max = Math.max(max, array[i]);
+        }
+        return max;
+    }
+
+    // JDK 17 has no compress(), so a vector whose lanes all pass is stored whole and a mixed one is copied lane by lane
+    static int filterGreaterThan(int[] source, int threshold, int[] destination) {
+        IntVector zero = IntVector.zero(INTS);
+        int count = 0;
+        int i = 0;
+        for (int bound = INTS.loopBound(source.length); i < bound; i += INTS.length()) {
+            IntVector vector = IntVector.fromArray(INTS, source, i);
+            VectorMask<Integer> greater = vector.compare(VectorOperators.GT, threshold);
+            if (greater.allTrue()) {
+                vector.intoArray(destination, count);
+                count += INTS.length();
+            } else if (greater.anyTrue()) {
+                // Not greater.toLong(), see INT_LANE_BITS
+                int lanes = zero.blend(INT_LANE_BITS, greater).reduceLanes(VectorOperators.OR);
+                for (; lanes != 0; lanes &= lanes - 1) {
+                    destination[count++] = source[i + Integer.numberOfTrailingZeros(lanes)];
+                }
+            }
+        }
+        for (; i < source.length; i++) {
+            if (source[i] > threshold) {
+                destination[count++] = source[i];
+            }
+        }
+        return count;
+    }
+
+    static float dot(float[] a, float[] b) {
+        int lanes = FLOATS.length();
+        FloatVector sum0 = FloatVector.zero(FLOATS);
+        FloatVector sum1 = sum0;
+        FloatVector sum2 = sum0;
+        FloatVector sum3 = sum0;
+        int i = 0;
+        for (int bound = a.length - 4 * lanes; i <= bound; i += 4 * lanes) {
+            sum0 = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum0);
+            sum1 = FloatVector.fromArray(FLOATS, a, i + lanes).fma(FloatVector.fromArray(FLOATS, b, i + lanes), sum1);
+            sum2 = FloatVector.fromArray(FLOATS, a, i + 2 * lanes).fma(FloatVector.fromArray(FLOATS, b, i + 2 * lanes), sum2);
+            sum3 = FloatVector.fromArray(FLOATS, a, i + 3 * lanes).fma(FloatVector.fromArray(FLOATS, b, i + 3 * lanes), sum3);
+        }
+        for (int bound = FLOATS.loopBound(a.length); i < bound; i += lanes) {
+            sum0 = FloatVector.fromArray(FLOATS, a, i).fma(FloatVector.fromArray(FLOATS, b, i), sum0);
+        }
+        float sum = sum0.add(sum1).add(sum2.add(sum3)).reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static int mismatch(int[] a, int[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        for (int bound = INTS.loopBound(length); i < bound; i += INTS.length()) {
+            VectorMask<Integer> different = IntVector.fromArray(INTS, a, i)
+                    .compare(VectorOperators.NE, IntVector.fromArray(INTS, b, i));
+            if (different.anyTrue()) {
+                return i + different.firstTrue();
+            }
+        }
+        for (; i < length; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    static int mismatch(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        for (int bound = BYTES.loopBound(length); i < bound; i += BYTES.length()) {
+            VectorMask<Byte> different = ByteVector.fromArray(BYTES, a, i)
+                    .compare(VectorOperators.NE, ByteVector.fromArray(BYTES, b, i));
+            if (different.anyTrue()) {
+                return i + different.firstTrue();
+            }
+        }
+        for (; i < length; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return a.length == b.length ? -1 : length;
+    }
+
+    static int indexOf(byte[] array, byte value) {
+        int i = 0;
+        for (int bound = BYTES.loopBound(array.length); i < bound; i += BYTES.length()) {
+            VectorMask<Byte> equal = ByteVector.fromArray(BYTES, array, i).compare(VectorOperators.EQ, value);
+            if (equal.anyTrue()) {
+                return i + equal.firstTrue();
+            }
+        }
+        for (; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Each 64-bit word is built from 64 / lanes comparison masks; lane counts are powers of two of at most 64. JDK 17 does
+     * not intrinsify VectorMask.toLong(), so the mask selects each lane's bit (1 << lane) and an OR reduction collects
+     * them, which is more than twice as fast.
+     */
+    private static final IntVector INT_LANE_BITS = IntVector.fromArray(INTS, laneBits(INTS.length()), 0);
+    private static final LongVector LONG_LANE_BITS = LongVector.fromArray(LONGS, laneBitsLong(LONGS.length()), 0);
+
+    private static int[] laneBits(int lanes) {
+        int[] bits = new int[lanes];
+        for (int i = 0; i < lanes; i++) {
+            bits[i] = 1 << i;
+        }
+        return bits;
+    }
+
+    private static long[] laneBitsLong(int lanes) {
+        long[] bits = new long[lanes];
+        for (int i = 0; i < lanes; i++) {
+            bits[i] = 1L << i;
+        }
+        return bits;
+    }
+
+    static void inRange(int[] values, int length, int min, int max, long[] bits) {
+        int lanes = INTS.length();
+        IntVector zero = IntVector.zero(INTS);
+        int fullWords = length >>> 6;
+        for (int word = 0; word < fullWords; word++) {
+            int base = word << 6;
+            long result = 0;
+            for (int j = 0; j < 64; j += lanes) {
+                IntVector vector = IntVector.fromArray(INTS, values, base + j);
+                VectorMask<Integer> inRange = vector.compare(VectorOperators.GE, min).and(vector.compare(VectorOperators.LE, max));
+                result |= (zero.blend(INT_LANE_BITS, inRange).reduceLanes(VectorOperators.OR) & 0xFFFFFFFFL) << j;
+            }
+            bits[word] = result;
+        }
+        if (fullWords << 6 < length) {
+            ScalarKernels.inRangeWord(values, fullWords, length, min, max, bits);
+        }
+    }
+
+    static void inRange(long[] values, int length, long min, long max, long[] bits) {
+        int lanes = LONGS.length();
+        LongVector zero = LongVector.zero(LONGS);
+        int fullWords = length >>> 6;
+        for (int word = 0; word < fullWords; word++) {
+            int base = word << 6;
+            long result = 0;
+            for (int j = 0; j < 64; j += lanes) {
+                LongVector vector = LongVector.fromArray(LONGS, values, base + j);
+                VectorMask<Long> inRange = vector.compare(VectorOperators.GE, min).and(vector.compare(VectorOperators.LE, max));
+                result |= zero.blend(LONG_LANE_BITS, inRange).reduceLanes(VectorOperators.OR) << j;
+            }
+            bits[word] = result;
+        }
+        if (fullWords << 6 < length) {
+            ScalarKernels.inRangeWord(values, fullWords, length, min, max, bits);
+        }
+    }
+
+    static void inRange(double[] values, int length, double min, double max, long[] bits) {
+        int lanes = DOUBLES.length();
+        LongVector zero = LongVector.zero(LONGS);
+        int fullWords = length >>> 6;
+        for (int word = 0; word < fullWords; word++) {
+            int base = word << 6;
+            long result = 0;
+            for (int j = 0; j < 64; j += lanes) {
+                DoubleVector vector = DoubleVector.fromArray(DOUBLES, values, base + j);
+                VectorMask<Long> inRange = vector.compare(VectorOperators.GE, min)
+                        .and(vector.compare(VectorOperators.LE, max)).cast(LONGS);
+                result |= zero.blend(LONG_LANE_BITS, inRange).reduceLanes(VectorOperators.OR) << j;
+            }
+            bits[word] = result;
+        }
+        if (fullWords << 6 < length) {
+            ScalarKernels.inRangeWord(values, fullWords, length, min, max, bits);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+
+/**
+ * Storage, sizing and the blocking put/take shared by the ring buffer implementations.
+ */
+abstract class AbstractRingBuffer<E> implements RingBuffer<E> {
+
+    static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    final Object[] elements;
+    final int mask;
+    final WaitStrategy waitStrategy;
+
+    AbstractRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.elements = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy");
+    }
+
+    @Override
+    public void put(E element) throws InterruptedException {
+        int attempt = 0;
+        while (!offer(element)) {
+            waitStrategy.idle(attempt++);
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        int attempt = 0;
+        E element;
+        while ((element = poll()) == null) {
+            waitStrategy.idle(attempt++);
+        }
+        return element;
+    }
+
+    @Override
+    public int capacity() {
+        return elements.length;
+    }
+
+    static void checkNotNull(Object element) {
+        if (element == null) {
+            throw new NullPointerException("Ring buffers do not accept null elements");
+        }
+    }
+}
@@ -3,9 +3,12 @@ package ca.siva.ch08_threads_and_concurrency;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.lang.management.ManagementFactory;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /*
 NOTE:
@@ -13,6 +16,9 @@ NOTE:
 Therefore, the iterator continues to iterate over the old copy, while any modifications affect the new copy.
 2) CopyOnWriteArrayList is thread-safe and does not throw ConcurrentModificationException.
 3) It is efficient for scenarios with a large number of reads and fewer writes, as writes cause array copying.
+4) For large lists with frequent small updates the full copy per write (O(n) time and garbage) dominates. Persistent
+collections (PersistentVector, PersistentHashMap, PersistentSortedMap) keep the same snapshot semantics but an update
+copies only O(log n) small nodes. Publish the current version through an AtomicReference: readers get a wait-free snapshot.
  */
 
 @Slf4j
@@ -25,6 +31,9 @@ public class CopyOnWriteArrayListExamples {
         exampleSafeIterationDuringModification();
         exampleConcurrentAccess();
         exampleIterationWithIterator();
+        examplePersistentVectorConcurrentAccess();
+        examplePersistentRoutingTable();
+        exampleCopyOnWriteVsPersistentVectorBenchmark();
     }
 
     // Example 1: Basic Usage of CopyOnWriteArrayList
@@ -141,4 +150,124 @@ public class CopyOnWriteArrayListExamples {
         // After iteration, the new item is added to the list
         log.info("Iterator - Updated List after iteration: {}", copyOnWriteList);
     }
+
+    // Example 5: Same scenario as Example 3 with a PersistentVector published through an AtomicReference
+    public static void examplePersistentVectorConcurrentAccess() {
+        AtomicReference<PersistentVector<String>> current = new AtomicReference<>(PersistentVector.of("Item1", "Item2", "Item3"));
+
+        log.info("Persistent Access - Initial List: {}", current.get());
+
+        Thread writerThread = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                String item = "WriterItem" + i;
+                // Lock-free: retried only if another writer published a version in between
+                current.updateAndGet(vector -> vector.plus(item));
+                log.info("Writer Thread added {}", item);
+                try {
+                    Thread.sleep(500); // Simulate some work
+                } catch (InterruptedException e) {
+                    log.error("Writer Thread interrupted", e);
+                }
+            }
+        });
+
+        Thread readerThread = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                // A single volatile read gives a consistent snapshot that no writer can change afterwards
+                PersistentVector<String> snapshot = current.get();
+                log.info("Reader Thread - snapshot of size {}: {}", snapshot.size(), snapshot);
+                try {
+                    Thread.sleep(500); // Simulate some work
+                } catch (InterruptedException e) {
+                    log.error("Reader Thread interrupted", e);
+                }
+            }
+        });
+
+        writerThread.start();
+        readerThread.start();
+
+        try {
+            writerThread.join();
+            readerThread.join();
+        } catch (InterruptedException e) {
+            log.error("Main thread interrupted", e);
+        }
+
+        log.info("Persistent Access - Final List: {}", current.get());
+    }
+
+    // Example 6: A 100k-entry routing table with small updates; old versions stay valid for readers still using them
+    public static void examplePersistentRoutingTable() {
+        PersistentHashMap<String, String> routes = PersistentHashMap.empty();
+        for (int i = 0; i < 100_000; i++) {
+            routes = routes.plus("/api/v1/resource/" + i, "backend-" + (i % 8));
+        }
+        AtomicReference<PersistentHashMap<String, String>> table = new AtomicReference<>(routes);
+
+        PersistentHashMap<String, String> before = table.get();
+        table.updateAndGet(current -> current.plus("/api/v1/resource/42", "backend-canary").minus("/api/v1/resource/7"));
+        PersistentHashMap<String, String> after = table.get();
+
+        log.info("Routing table - before: size {}, /42 -> {}, /7 -> {}", before.size(),
+                before.get("/api/v1/resource/42"), before.get("/api/v1/resource/7"));
+        log.info("Routing table - after: size {}, /42 -> {}, /7 -> {}", after.size(),
+                after.get("/api/v1/resource/42"), after.get("/api/v1/resource/7"));
+
+        // Sorted variant, e.g. effective-from timestamps of configuration versions
+        PersistentSortedMap<Long, String> configVersions = PersistentSortedMap.<Long, String>empty()
+                .plus(1_000L, "v1")
+                .plus(2_000L, "v2")
+                .plus(3_000L, "v3");
+        PersistentSortedMap<Long, String> withV4 = configVersions.plus(4_000L, "v4");
+        log.info("Config in effect at 2500: {}, versions before update: {}, after: {}",
+                withV4.floorEntry(2_500L), configVersions, withV4.descendingMap());
+    }
+
+    // Example 7: Time and garbage per update for CopyOnWriteArrayList.set and PersistentVector.with as the list grows
+    // Output (varies by machine): CopyOnWriteArrayList allocates about 4 * size bytes per update, PersistentVector a few hundred
+    public static void exampleCopyOnWriteVsPersistentVectorBenchmark() {
+        int updates = 2_000;
+        for (int size : new int[]{1_000, 10_000, 100_000}) {
+            Random random = new Random(size);
+            List<Integer> copyOnWriteList = new CopyOnWriteArrayList<>();
+            PersistentVector<Integer> vector = PersistentVector.empty();
+            for (int i = 0; i < size; i++) {
+                copyOnWriteList.add(i);
+                vector = vector.plus(i);
+            }
+            AtomicReference<PersistentVector<Integer>> current = new AtomicReference<>(vector);
+
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                copyOnWriteList.set(random.nextInt(size), i);
+            }
+            long copyOnWriteNanos = System.nanoTime() - start;
+            long copyOnWriteBytes = allocatedBytes() - bytes;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                int index = random.nextInt(size);
+                int value = i;
+                current.updateAndGet(v -> v.with(index, value));
+            }
+            long persistentNanos = System.nanoTime() - start;
+            long persistentBytes = allocatedBytes() - bytes;
+
+            log.info("size {}: CopyOnWriteArrayList {} ns/update, {} bytes/update; PersistentVector {} ns/update, {} bytes/update",
+                    size, copyOnWriteNanos / updates, copyOnWriteBytes / updates,
+                    persistentNanos / updates, persistentBytes / updates);
+        }
+    }
+
+    // Bytes allocated so far by the current thread, or 0 when the JVM does not support the measurement
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()) {
+            return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
 }
@@ -0,0 +1,158 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+NOTE:
+1) Many producers, many consumers, based on Dmitry Vyukov's bounded MPMC queue. Every slot has its own sequence number:
+   sequence == position      -> the slot is free for the producer that claims this position
+   sequence == position + 1  -> the slot holds the element for the consumer that claims this position
+   After a consumer empties the slot it sets sequence = position + capacity, i.e. free for the next lap.
+2) Producers CAS the tail, consumers CAS the head. Threads on different sides never write the same index, and the per-slot
+sequence (release store, acquire load) is what publishes the element.
+3) drain/fill claim several positions with one CAS when the slots are ready, which cuts the CAS count for batched hand-offs.
+ */
+public class MpmcRingBuffer<E> extends AbstractRingBuffer<E> {
+
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] sequences;
+    private final PaddedSequence tail = new PaddedSequence(0);
+    private final PaddedSequence head = new PaddedSequence(0);
+
+    public MpmcRingBuffer(int capacity) {
+        this(capacity, WaitStrategy.yielding());
+    }
+
+    public MpmcRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+        this.sequences = new long[elements.length];
+        for (int i = 0; i < sequences.length; i++) {
+            SEQUENCES.setRelease(sequences, i, (long) i);
+        }
+    }
+
+    @Override
+    public boolean offer(E element) {
+        checkNotNull(element);
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequence(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    SEQUENCES.setRelease(sequences, index, position + 1);
+                    waitStrategy.signal();
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // The slot still holds the element from the previous lap: full
+            } else {
+                position = tail.get(); // Another producer took this position, retry with the new tail
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequence(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) elements[index];
+                    elements[index] = null;
+                    SEQUENCES.setRelease(sequences, index, position + elements.length);
+                    waitStrategy.signal();
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null; // Not published yet: empty
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> consumer, int limit) {
+        int total = 0;
+        while (total < limit) {
+            long position = head.get();
+            // Count how many consecutive slots are already published, then claim them all with one CAS.
+            int ready = 0;
+            while (total + ready < limit && ready < elements.length
+                    && sequence((int) (position + ready) & mask) == position + ready + 1) {
+                ready++;
+            }
+            if (ready == 0) {
+                break;
+            }
+            if (!head.compareAndSet(position, position + ready)) {
+                continue;
+            }
+            for (int i = 0; i < ready; i++) {
+                int index = (int) (position + i) & mask;
+                E element = (E) elements[index];
+                elements[index] = null;
+                SEQUENCES.setRelease(sequences, index, position + i + elements.length);
+                consumer.accept(element);
+            }
+            total += ready;
+        }
+        if (total > 0) {
+            waitStrategy.signal();
+        }
+        return total;
+    }
+
+    @Override
+    public int fill(Supplier<? extends E> supplier, int limit) {
+        int total = 0;
+        while (total < limit) {
+            long position = tail.get();
+            int free = 0;
+            while (total + free < limit && free < elements.length
+                    && sequence((int) (position + free) & mask) == position + free) {
+                free++;
+            }
+            if (free == 0) {
+                break;
+            }
+            if (!tail.compareAndSet(position, position + free)) {
+                continue;
+            }
+            for (int i = 0; i < free; i++) {
+                E element = supplier.get();
+                int index = (int) (position + i) & mask;
+                elements[index] = element;
+                SEQUENCES.setRelease(sequences, index, position + i + 1);
+            }
+            total += free;
+        }
+        if (total > 0) {
+            waitStrategy.signal();
+        }
+        return total;
+    }
+
+    @Override
+    public int size() {
+        long h = head.get();
+        long t = tail.get();
+        return (int) Math.max(0, Math.min(elements.length, t - h));
+    }
+
+    private long sequence(int index) {
+        return (long) SEQUENCES.getAcquire(sequences, index);
+    }
+}
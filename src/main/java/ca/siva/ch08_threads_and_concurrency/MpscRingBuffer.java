@@ -0,0 +1,113 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+NOTE:
+1) Many producers, one consumer. Producers claim a slot with a CAS on the producer index, then publish the element with a
+release store into the slot itself. The consumer is the only writer of the consumer index, so it needs no CAS.
+2) A claimed slot can still be null for a moment (the producer won the CAS but has not stored yet). poll() and drain() treat
+that slot as the end of the queue instead of spinning on it, so a producer that gets descheduled right after its CAS never
+stalls the consumer; take() simply retries through the WaitStrategy.
+ */
+public class MpscRingBuffer<E> extends AbstractRingBuffer<E> {
+
+    private final PaddedSequence producerIndex = new PaddedSequence(0);
+    private final PaddedSequence consumerIndex = new PaddedSequence(0);
+
+    public MpscRingBuffer(int capacity) {
+        this(capacity, WaitStrategy.yielding());
+    }
+
+    public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        checkNotNull(element);
+        long producer;
+        do {
+            producer = producerIndex.get();
+            if (producer - consumerIndex.get() >= elements.length) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(producer, producer + 1));
+
+        ELEMENTS.setRelease(elements, (int) producer & mask, element);
+        waitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long consumer = consumerIndex.getPlain();
+        int index = (int) consumer & mask;
+        Object element = ELEMENTS.getAcquire(elements, index);
+        if (element == null) {
+            // Either empty, or claimed but not yet published (the producer is between its CAS and its store).
+            return null;
+        }
+        elements[index] = null;
+        consumerIndex.setRelease(consumer + 1);
+        waitStrategy.signal();
+        return (E) element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> consumer, int limit) {
+        long start = consumerIndex.getPlain();
+        int count = 0;
+        while (count < limit) {
+            int index = (int) (start + count) & mask;
+            Object element = ELEMENTS.getAcquire(elements, index);
+            if (element == null) {
+                break;
+            }
+            elements[index] = null;
+            consumer.accept((E) element);
+            count++;
+        }
+        if (count > 0) {
+            consumerIndex.setRelease(start + count);
+            waitStrategy.signal();
+        }
+        return count;
+    }
+
+    @Override
+    public int fill(Supplier<? extends E> supplier, int limit) {
+        int count = 0;
+        while (count < limit) {
+            long producer = producerIndex.get();
+            long free = elements.length - (producer - consumerIndex.get());
+            if (free <= 0) {
+                break;
+            }
+            // Claim as many slots as possible with one CAS, then publish them one by one.
+            int batch = (int) Math.min(free, limit - count);
+            if (!producerIndex.compareAndSet(producer, producer + batch)) {
+                continue;
+            }
+            for (int i = 0; i < batch; i++) {
+                E element = supplier.get();
+                ELEMENTS.setRelease(elements, (int) (producer + i) & mask, element);
+            }
+            count += batch;
+        }
+        if (count > 0) {
+            waitStrategy.signal();
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        long consumer = consumerIndex.get();
+        long producer = producerIndex.get();
+        return (int) Math.max(0, Math.min(elements.length, producer - consumer));
+    }
+}
@@ -0,0 +1,78 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/*
+NOTE:
+1) A long counter surrounded by 7 longs of padding on each side, so it sits alone on its 64-byte cache line. Without the
+padding a producer index and a consumer index usually share a line, and every write by one thread invalidates the line in
+the other thread's cache (false sharing).
+2) The JVM may reorder fields within a class but never moves them across the class hierarchy, which is why the padding is
+spread over three classes instead of declared next to the value. @Contended would do the same but needs -XX:-RestrictContended.
+3) cached is a plain field for the owner thread only, e.g. the producer's last seen consumer index. Keeping it on the owner's
+line avoids reading the other side's (contended) line on every operation.
+ */
+public final class PaddedSequence extends PaddedSequenceRhs {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(PaddedSequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public PaddedSequence(long initialValue) {
+        VALUE.setRelease(this, initialValue);
+    }
+
+    public long get() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /**
+     * Plain read, only valid for the single thread that writes this sequence.
+     */
+    public long getPlain() {
+        return (long) VALUE.get(this);
+    }
+
+    public void setRelease(long newValue) {
+        VALUE.setRelease(this, newValue);
+    }
+
+    public boolean compareAndSet(long expected, long newValue) {
+        return VALUE.compareAndSet(this, expected, newValue);
+    }
+
+    long cached() {
+        return cached;
+    }
+
+    void cached(long value) {
+        cached = value;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
+
+@SuppressWarnings("unused")
+abstract class PaddedSequenceLhs {
+    long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class PaddedSequenceValue extends PaddedSequenceLhs {
+    volatile long value;
+    long cached;
+}
+
+@SuppressWarnings("unused")
+abstract class PaddedSequenceRhs extends PaddedSequenceValue {
+    long p11, p12, p13, p14, p15, p16, p17;
+}
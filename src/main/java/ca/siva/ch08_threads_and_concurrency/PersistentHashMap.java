@@ -0,0 +1,496 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.util.*;
+
+/*
+NOTE:
+1) Immutable hash map where plus(key, value) and minus(key) return a new map that shares all unchanged nodes with the old one.
+It is a hash array mapped trie (HAMT) in the CHAMP layout: each node covers 5 bits of the hash and has up to 32 slots.
+2) A node stores two 32-bit bitmaps instead of 32 slots: one says which slots hold an entry, the other which hold a child node.
+The array only has room for the used slots, found with Integer.bitCount(bitmap & (bit - 1)). Entries come first, child nodes
+last, so iteration reads the entries of a node together.
+3) An update copies one small array per level, log32(n) levels: 4 levels for 1M entries. A 100k-entry routing table
+therefore allocates a few hundred bytes per change instead of copying the whole table.
+4) minus() keeps the trie canonical: a child left with a single entry is inlined into its parent, so the shape of the trie
+only depends on its contents and never degrades after many removals.
+5) Keys whose 32-bit hashes are identical end up in a collision node, a plain array searched with equals().
+6) Null keys are not allowed, null values are. As with PersistentVector, share a version between threads through an
+AtomicReference: reads are wait-free, writers use updateAndGet.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int HASH_LENGTH = 32;
+    private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> PersistentHashMap<K, V> from(Map<? extends K, ? extends V> map) {
+        PersistentHashMap<K, V> result = empty();
+        return result.plusAll(map);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V) root.find(Objects.requireNonNull(key), hash(key), 0, null);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root.find(Objects.requireNonNull(key), hash(key), 0, Node.NOT_FOUND) != Node.NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(Object key, V defaultValue) {
+        return (V) root.find(Objects.requireNonNull(key), hash(key), 0, defaultValue);
+    }
+
+    /**
+     * New map with key mapped to value. Returns this map if it already holds exactly that mapping.
+     */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        Change change = new Change();
+        Node newRoot = root.put(Objects.requireNonNull(key), value, hash(key), 0, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, change.added ? size + 1 : size);
+    }
+
+    public PersistentHashMap<K, V> plusAll(Map<? extends K, ? extends V> map) {
+        PersistentHashMap<K, V> result = this;
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * New map without key. Returns this map if the key is not present.
+     */
+    public PersistentHashMap<K, V> minus(Object key) {
+        Change change = new Change();
+        Node newRoot = root.remove(Objects.requireNonNull(key), hash(key), 0, change);
+        if (!change.removed) {
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, size - 1);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry<?, ?> entry) || entry.getKey() == null) {
+                    return false;
+                }
+                Object value = root.find(entry.getKey(), hash(entry.getKey()), 0, Node.NOT_FOUND);
+                return value != Node.NOT_FOUND && Objects.equals(value, entry.getValue());
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        // Same spreading as HashMap: mixes the high bits into the low bits the first trie levels use.
+        return h ^ (h >>> 16);
+    }
+
+    private static int mask(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    private static int bit(int mask) {
+        return 1 << mask;
+    }
+
+    private static final class Change {
+        boolean added;
+        boolean removed;
+    }
+
+    private abstract static class Node {
+        static final Object NOT_FOUND = new Object();
+
+        abstract Object find(Object key, int hash, int shift, Object notFound);
+
+        abstract Node put(Object key, Object value, int hash, int shift, Change change);
+
+        abstract Node remove(Object key, int hash, int shift, Change change);
+
+        abstract int payloadArity();
+
+        abstract int nodeArity();
+
+        abstract Object keyAt(int index);
+
+        abstract Object valueAt(int index);
+
+        abstract Node nodeAt(int index);
+
+        boolean hasSinglePayload() {
+            return nodeArity() == 0 && payloadArity() == 1;
+        }
+    }
+
+    // content = [key0, value0, key1, value1, ..., nodeN, ..., node1, node0]: entries from the front, child nodes from the back.
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+        final int dataMap;
+        final int nodeMap;
+        final Object[] content;
+
+        BitmapNode(int dataMap, int nodeMap, Object[] content) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        private int dataIndex(int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        private int nodeIndex(int bit) {
+            return Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        private Node childAt(int bit) {
+            return (Node) content[content.length - 1 - nodeIndex(bit)];
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift, Object notFound) {
+            int bit = bit(mask(hash, shift));
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                return key.equals(content[2 * index]) ? content[2 * index + 1] : notFound;
+            }
+            if ((nodeMap & bit) != 0) {
+                return childAt(bit).find(key, hash, shift + BITS, notFound);
+            }
+            return notFound;
+        }
+
+        @Override
+        Node put(Object key, Object value, int hash, int shift, Change change) {
+            int bit = bit(mask(hash, shift));
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                Object currentKey = content[2 * index];
+                if (key.equals(currentKey)) {
+                    if (Objects.equals(value, content[2 * index + 1])) {
+                        return this;
+                    }
+                    Object[] copy = content.clone();
+                    copy[2 * index + 1] = value;
+                    return new BitmapNode(dataMap, nodeMap, copy);
+                }
+                // Two keys share this slot: push both one level down.
+                Node child = mergeTwo(currentKey, content[2 * index + 1], hash(currentKey), key, value, hash, shift + BITS);
+                change.added = true;
+                return copyAndMigrateToNode(bit, child);
+            }
+            if ((nodeMap & bit) != 0) {
+                Node child = childAt(bit);
+                Node newChild = child.put(key, value, hash, shift + BITS, change);
+                return newChild == child ? this : copyAndSetNode(bit, newChild);
+            }
+            change.added = true;
+            int index = 2 * dataIndex(bit);
+            Object[] copy = new Object[content.length + 2];
+            System.arraycopy(content, 0, copy, 0, index);
+            copy[index] = key;
+            copy[index + 1] = value;
+            System.arraycopy(content, index, copy, index + 2, content.length - index);
+            return new BitmapNode(dataMap | bit, nodeMap, copy);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift, Change change) {
+            int bit = bit(mask(hash, shift));
+            if ((dataMap & bit) != 0) {
+                int index = dataIndex(bit);
+                if (!key.equals(content[2 * index])) {
+                    return this;
+                }
+                change.removed = true;
+                if (payloadArity() == 2 && nodeArity() == 0) {
+                    // One entry left. Below the root this node is about to be inlined into its parent; at the root it
+                    // stays, so its bitmap is computed for level 0 (all keys of this node share those hash bits).
+                    int remaining = 1 - index;
+                    int newDataMap = shift == 0 ? dataMap ^ bit : bit(mask(hash, 0));
+                    return new BitmapNode(newDataMap, 0, new Object[]{content[2 * remaining], content[2 * remaining + 1]});
+                }
+                int at = 2 * index;
+                Object[] copy = new Object[content.length - 2];
+                System.arraycopy(content, 0, copy, 0, at);
+                System.arraycopy(content, at + 2, copy, at, content.length - at - 2);
+                return new BitmapNode(dataMap ^ bit, nodeMap, copy);
+            }
+            if ((nodeMap & bit) != 0) {
+                Node child = childAt(bit);
+                Node newChild = child.remove(key, hash, shift + BITS, change);
+                if (!change.removed) {
+                    return this;
+                }
+                if (newChild.hasSinglePayload()) {
+                    if (payloadArity() == 0 && nodeArity() == 1) {
+                        // This node would only hold a one-entry child: let the parent inline it instead.
+                        return newChild;
+                    }
+                    return copyAndMigrateToInline(bit, newChild);
+                }
+                return copyAndSetNode(bit, newChild);
+            }
+            return this;
+        }
+
+        private Node copyAndSetNode(int bit, Node child) {
+            Object[] copy = content.clone();
+            copy[content.length - 1 - nodeIndex(bit)] = child;
+            return new BitmapNode(dataMap, nodeMap, copy);
+        }
+
+        private Node copyAndMigrateToNode(int bit, Node child) {
+            int oldIndex = 2 * dataIndex(bit);
+            int newIndex = content.length - 2 - nodeIndex(bit);
+            Object[] copy = new Object[content.length - 1];
+            System.arraycopy(content, 0, copy, 0, oldIndex);
+            System.arraycopy(content, oldIndex + 2, copy, oldIndex, newIndex - oldIndex);
+            copy[newIndex] = child;
+            System.arraycopy(content, newIndex + 2, copy, newIndex + 1, content.length - newIndex - 2);
+            return new BitmapNode(dataMap ^ bit, nodeMap | bit, copy);
+        }
+
+        private Node copyAndMigrateToInline(int bit, Node child) {
+            int oldIndex = content.length - 1 - nodeIndex(bit);
+            int newIndex = 2 * dataIndex(bit);
+            Object[] copy = new Object[content.length + 1];
+            System.arraycopy(content, 0, copy, 0, newIndex);
+            copy[newIndex] = child.keyAt(0);
+            copy[newIndex + 1] = child.valueAt(0);
+            System.arraycopy(content, newIndex, copy, newIndex + 2, oldIndex - newIndex);
+            System.arraycopy(content, oldIndex + 1, copy, oldIndex + 2, content.length - oldIndex - 1);
+            return new BitmapNode(dataMap | bit, nodeMap ^ bit, copy);
+        }
+
+        @Override
+        int payloadArity() {
+            return Integer.bitCount(dataMap);
+        }
+
+        @Override
+        int nodeArity() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        @Override
+        Object keyAt(int index) {
+            return content[2 * index];
+        }
+
+        @Override
+        Object valueAt(int index) {
+            return content[2 * index + 1];
+        }
+
+        @Override
+        Node nodeAt(int index) {
+            return (Node) content[content.length - 1 - index];
+        }
+    }
+
+    private static Node mergeTwo(Object key0, Object value0, int hash0, Object key1, Object value1, int hash1, int shift) {
+        if (shift >= HASH_LENGTH) {
+            return new CollisionNode(hash0, new Object[]{key0, key1}, new Object[]{value0, value1});
+        }
+        int mask0 = mask(hash0, shift);
+        int mask1 = mask(hash1, shift);
+        if (mask0 != mask1) {
+            Object[] content = mask0 < mask1
+                    ? new Object[]{key0, value0, key1, value1}
+                    : new Object[]{key1, value1, key0, value0};
+            return new BitmapNode(bit(mask0) | bit(mask1), 0, content);
+        }
+        Node child = mergeTwo(key0, value0, hash0, key1, value1, hash1, shift + BITS);
+        return new BitmapNode(0, bit(mask0), new Object[]{child});
+    }
+
+    private static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] keys;
+        final Object[] values;
+
+        CollisionNode(int hash, Object[] keys, Object[] values) {
+            this.hash = hash;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (key.equals(keys[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(Object key, int hash, int shift, Object notFound) {
+            int index = this.hash == hash ? indexOf(key) : -1;
+            return index < 0 ? notFound : values[index];
+        }
+
+        @Override
+        Node put(Object key, Object value, int hash, int shift, Change change) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (Objects.equals(value, values[index])) {
+                    return this;
+                }
+                Object[] newValues = values.clone();
+                newValues[index] = value;
+                return new CollisionNode(hash, keys, newValues);
+            }
+            change.added = true;
+            Object[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+            Object[] newValues = Arrays.copyOf(values, values.length + 1);
+            newKeys[keys.length] = key;
+            newValues[values.length] = value;
+            return new CollisionNode(hash, newKeys, newValues);
+        }
+
+        @Override
+        Node remove(Object key, int hash, int shift, Change change) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            change.removed = true;
+            if (keys.length == 2) {
+                // Same trick as BitmapNode.remove: a single-entry node, about to be inlined by the parent.
+                int remaining = 1 - index;
+                return new BitmapNode(bit(mask(hash, 0)), 0, new Object[]{keys[remaining], values[remaining]});
+            }
+            Object[] newKeys = new Object[keys.length - 1];
+            Object[] newValues = new Object[values.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+            return new CollisionNode(hash, newKeys, newValues);
+        }
+
+        @Override
+        int payloadArity() {
+            return keys.length;
+        }
+
+        @Override
+        int nodeArity() {
+            return 0;
+        }
+
+        @Override
+        Object keyAt(int index) {
+            return keys[index];
+        }
+
+        @Override
+        Object valueAt(int index) {
+            return values[index];
+        }
+
+        @Override
+        Node nodeAt(int index) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Depth-first walk with an explicit stack; the trie is at most 8 levels deep (7 bitmap levels and a collision level).
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+        private final Node[] nodes = new Node[HASH_LENGTH / BITS + 2];
+        private final int[] nextChild = new int[nodes.length];
+        private int depth;
+        private Node current;
+        private int payloadIndex;
+
+        EntryIterator(Node root) {
+            nodes[0] = root;
+            current = root;
+            advance();
+        }
+
+        private void advance() {
+            while (current != null && payloadIndex >= current.payloadArity()) {
+                // Payload of this node is done: descend into the next child, or pop back up.
+                Node node = nodes[depth];
+                if (nextChild[depth] < node.nodeArity()) {
+                    Node child = node.nodeAt(nextChild[depth]++);
+                    depth++;
+                    nodes[depth] = child;
+                    nextChild[depth] = 0;
+                    current = child;
+                    payloadIndex = 0;
+                } else if (depth > 0) {
+                    nodes[depth] = null;
+                    depth--;
+                    current = nodes[depth];
+                    payloadIndex = Integer.MAX_VALUE;
+                } else {
+                    current = null;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> next() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> entry = new SimpleImmutableEntry<>((K) current.keyAt(payloadIndex), (V) current.valueAt(payloadIndex));
+            payloadIndex++;
+            advance();
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import ca.siva.ch05_collections.AbstractNavigableMap;
+
+import java.util.*;
+
+/*
+NOTE:
+1) Immutable NavigableMap: plus(key, value) and minus(key) return a new map, all the navigation methods and views
+(floorKey, subMap, descendingMap, ...) work like TreeMap's on one fixed version. The mutators of Map throw
+UnsupportedOperationException.
+2) It is an AVL tree with path copying: an update creates new nodes only along the path from the root to the changed key
+(about 1.44 * log2(n) nodes, 25 for 100k entries) and shares every other node with the previous version.
+3) Ordered data can not be spread over a hash trie, hence a binary tree here and the 32-way tries in PersistentVector and
+PersistentHashMap.
+4) Like the other persistent collections, publish a version through an AtomicReference for wait-free snapshot reads.
+ */
+public final class PersistentSortedMap<K, V> extends AbstractNavigableMap<K, V> {
+    private final Node<K, V> root;
+    private final int size;
+
+    private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root, int size) {
+        super(comparator);
+        this.root = root;
+        this.size = size;
+    }
+
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return new PersistentSortedMap<>(null, null, 0);
+    }
+
+    public static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentSortedMap<>(comparator, null, 0);
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != null;
+    }
+
+    /**
+     * New map with key mapped to value. Returns this map if it already holds exactly that mapping.
+     */
+    public PersistentSortedMap<K, V> plus(K key, V value) {
+        Objects.requireNonNull(key);
+        int[] added = new int[1];
+        Node<K, V> newRoot = insert(root, key, value, added);
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator(), newRoot, size + added[0]);
+    }
+
+    public PersistentSortedMap<K, V> plusAll(Map<? extends K, ? extends V> map) {
+        PersistentSortedMap<K, V> result = this;
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * New map without key. Returns this map if the key is not present.
+     */
+    public PersistentSortedMap<K, V> minus(Object key) {
+        Objects.requireNonNull(key);
+        Node<K, V> newRoot = delete(root, key);
+        return newRoot == root ? this : new PersistentSortedMap<>(comparator(), newRoot, size - 1);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException("Immutable map, use plus(key, value)");
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException("Immutable map, use minus(key)");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Immutable map");
+    }
+
+    @Override
+    public Entry<K, V> firstEntry() {
+        Node<K, V> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.left != null) {
+            node = node.left;
+        }
+        return snapshot(node.key, node.value);
+    }
+
+    @Override
+    public Entry<K, V> lastEntry() {
+        Node<K, V> node = root;
+        if (node == null) {
+            return null;
+        }
+        while (node.right != null) {
+            node = node.right;
+        }
+        return snapshot(node.key, node.value);
+    }
+
+    @Override
+    protected Entry<K, V> findEntry(K key, Relation relation) {
+        Objects.requireNonNull(key);
+        Node<K, V> best = null;
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = compare(key, node.key);
+            if (c == 0 && (relation == Relation.FLOOR || relation == Relation.CEILING)) {
+                return snapshot(node.key, node.value);
+            }
+            boolean goLeft = relation == Relation.LOWER || relation == Relation.FLOOR ? c <= 0 : c < 0;
+            if (goLeft) {
+                if (relation == Relation.CEILING || relation == Relation.HIGHER) {
+                    best = node;
+                }
+                node = node.left;
+            } else {
+                if (relation == Relation.LOWER || relation == Relation.FLOOR) {
+                    best = node;
+                }
+                node = node.right;
+            }
+        }
+        return best == null ? null : snapshot(best.key, best.value);
+    }
+
+    @Override
+    protected Iterator<Entry<K, V>> entryIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+        return new PathIterator(first, descending, fence, fenceInclusive);
+    }
+
+    private Node<K, V> find(Object key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = compare(key, node.key);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    private Node<K, V> insert(Node<K, V> node, K key, V value, int[] added) {
+        if (node == null) {
+            added[0] = 1;
+            return new Node<>(key, value, null, null);
+        }
+        int c = compare(key, node.key);
+        if (c == 0) {
+            return Objects.equals(value, node.value) ? node : new Node<>(node.key, value, node.left, node.right);
+        }
+        if (c < 0) {
+            Node<K, V> left = insert(node.left, key, value, added);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        Node<K, V> right = insert(node.right, key, value, added);
+        return right == node.right ? node : balance(node.key, node.value, node.left, right);
+    }
+
+    private Node<K, V> delete(Node<K, V> node, Object key) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(key, node.key);
+        if (c < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : balance(node.key, node.value, left, node.right);
+        }
+        if (c > 0) {
+            Node<K, V> right = delete(node.right, key);
+            return right == node.right ? node : balance(node.key, node.value, node.left, right);
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        // Two children: the successor takes this node's place.
+        Node<K, V> successor = node.right;
+        while (successor.left != null) {
+            successor = successor.left;
+        }
+        return balance(successor.key, successor.value, node.left, deleteMin(node.right));
+    }
+
+    private Node<K, V> deleteMin(Node<K, V> node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return balance(node.key, node.value, deleteMin(node.left), node.right);
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node<>(left.key, left.value, left.left, new Node<>(key, value, left.right, right));
+            }
+            Node<K, V> pivot = left.right;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(left.key, left.value, left.left, pivot.left),
+                    new Node<>(key, value, pivot.right, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node<>(right.key, right.value, new Node<>(key, value, left, right.left), right.right);
+            }
+            Node<K, V> pivot = right.left;
+            return new Node<>(pivot.key, pivot.value,
+                    new Node<>(key, value, left, pivot.left),
+                    new Node<>(right.key, right.value, pivot.right, right.right));
+        }
+        return new Node<>(key, value, left, right);
+    }
+
+    /**
+     * In-order walk with an explicit stack of the nodes still to visit; O(1) amortized per step and nothing to invalidate,
+     * since the tree never changes.
+     */
+    private final class PathIterator implements Iterator<Entry<K, V>> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+        private final boolean descending;
+        private final K fence;
+        private final boolean fenceInclusive;
+
+        PathIterator(Entry<K, V> first, boolean descending, K fence, boolean fenceInclusive) {
+            this.descending = descending;
+            this.fence = fence;
+            this.fenceInclusive = fenceInclusive;
+            if (first != null) {
+                // Push the ancestors that come at or after first in iteration order, ending with first itself.
+                Node<K, V> node = root;
+                while (node != null) {
+                    int c = compare(first.getKey(), node.key);
+                    if (descending ? c >= 0 : c <= 0) {
+                        stack.push(node);
+                        if (c == 0) {
+                            break;
+                        }
+                        node = descending ? node.right : node.left;
+                    } else {
+                        node = descending ? node.left : node.right;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty() && !beyond(stack.peek().key, fence, fenceInclusive, descending);
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = stack.pop();
+            for (Node<K, V> next = descending ? node.left : node.right; next != null; next = descending ? next.right : next.left) {
+                stack.push(next);
+            }
+            return snapshot(node.key, node.value);
+        }
+    }
+}
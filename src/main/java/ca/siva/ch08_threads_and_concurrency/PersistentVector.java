@@ -0,0 +1,303 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.util.*;
+
+/*
+NOTE:
+1) Immutable list where every "modification" returns a new vector and leaves the old one untouched. Unlike
+CopyOnWriteArrayList, the new version does not copy the whole array: it shares everything except the path that changed.
+2) Elements live in a tree of 32-wide arrays (a radix-balanced trie). get(i) uses 5 bits of i per level, so a vector of 1M
+elements is 4 levels deep and an update copies 4 small arrays (about 4 * 32 references) instead of 1M references.
+3) The last (up to) 32 elements are kept outside the tree in a "tail" array, so plus() usually copies just that array.
+4) Because versions are immutable, readers need no locks: publish the current version through an AtomicReference (or a
+volatile field) and every get() is a wait-free snapshot read. Writers update with AtomicReference.updateAndGet.
+5) plus/with/minusLast are O(log32 n). Inserting or removing in the middle (plus(int, E), minus(int)) rebuilds the vector
+and costs O(n), like CopyOnWriteArrayList. Prefer with(index, value) or removing from the end.
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    @SafeVarargs
+    public static <E> PersistentVector<E> of(E... elements) {
+        // Read element by element: the varargs array never escapes, which is what makes @SafeVarargs hold
+        List<E> list = new ArrayList<>(elements.length);
+        for (E element : elements) {
+            list.add(element);
+        }
+        return from(list);
+    }
+
+    /**
+     * Builds a vector from the elements in one pass, without creating the intermediate versions plus() would.
+     */
+    public static <E> PersistentVector<E> from(Iterable<? extends E> elements) {
+        List<Object[]> level = new ArrayList<>();
+        Object[] chunk = new Object[WIDTH];
+        int filled = 0;
+        int size = 0;
+        for (E element : elements) {
+            if (filled == WIDTH) {
+                level.add(chunk);
+                chunk = new Object[WIDTH];
+                filled = 0;
+            }
+            chunk[filled++] = element;
+            size++;
+        }
+        if (size == 0) {
+            return empty();
+        }
+        Object[] tail = Arrays.copyOf(chunk, filled);
+        // Full leaves go into the tree, bottom-up, 32 children per parent.
+        int shift = BITS;
+        while (level.size() > WIDTH) {
+            List<Object[]> parents = new ArrayList<>((level.size() + MASK) / WIDTH);
+            for (int i = 0; i < level.size(); i += WIDTH) {
+                Object[] parent = new Object[WIDTH];
+                for (int j = 0; j < WIDTH && i + j < level.size(); j++) {
+                    parent[j] = level.get(i + j);
+                }
+                parents.add(parent);
+            }
+            level = parents;
+            shift += BITS;
+        }
+        Object[] root = new Object[WIDTH];
+        for (int i = 0; i < level.size(); i++) {
+            root[i] = level.get(i);
+        }
+        return new PersistentVector<>(size, shift, root, tail);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        Objects.checkIndex(index, size);
+        return (E) arrayFor(index)[index & MASK];
+    }
+
+    /**
+     * New vector with element appended.
+     */
+    public PersistentVector<E> plus(E element) {
+        if (size - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new PersistentVector<>(size + 1, shift, root, newTail);
+        }
+        // The tail is full: push it into the tree as a leaf and start a new tail.
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        return new PersistentVector<>(size + 1, newShift, newRoot, new Object[]{element});
+    }
+
+    public PersistentVector<E> plusAll(Iterable<? extends E> elements) {
+        PersistentVector<E> result = this;
+        for (E element : elements) {
+            result = result.plus(element);
+        }
+        return result;
+    }
+
+    /**
+     * New vector with the element at index replaced.
+     */
+    public PersistentVector<E> with(int index, E element) {
+        Objects.checkIndex(index, size);
+        if (index >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = element;
+            return new PersistentVector<>(size, shift, root, newTail);
+        }
+        return new PersistentVector<>(size, shift, assoc(shift, root, index, element), tail);
+    }
+
+    /**
+     * New vector without the last element.
+     */
+    public PersistentVector<E> minusLast() {
+        if (size == 0) {
+            throw new IllegalStateException("Vector is empty");
+        }
+        if (size == 1) {
+            return empty();
+        }
+        if (size - tailOffset() > 1) {
+            return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+        // The tail becomes empty: the last leaf of the tree becomes the new tail.
+        Object[] newTail = arrayFor(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+    }
+
+    /**
+     * New vector with element inserted at index. O(n) unless index == size().
+     */
+    public PersistentVector<E> plus(int index, E element) {
+        Objects.checkIndex(index, size + 1);
+        if (index == size) {
+            return plus(element);
+        }
+        List<E> copy = new ArrayList<>(this);
+        copy.add(index, element);
+        return from(copy);
+    }
+
+    /**
+     * New vector without the element at index. O(n) unless it is the last element.
+     */
+    public PersistentVector<E> minus(int index) {
+        Objects.checkIndex(index, size);
+        if (index == size - 1) {
+            return minusLast();
+        }
+        List<E> copy = new ArrayList<>(this);
+        copy.remove(index);
+        return from(copy);
+    }
+
+    /**
+     * New vector without the first occurrence of element, or this vector if it does not contain it.
+     */
+    public PersistentVector<E> minus(Object element) {
+        int index = indexOf(element);
+        return index < 0 ? this : minus(index);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private int index;
+            private Object[] leaf = size == 0 ? null : arrayFor(0);
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                // One tree descent per 32 elements instead of per element.
+                if (index > 0 && (index & MASK) == 0) {
+                    leaf = arrayFor(index);
+                }
+                return (E) leaf[index++ & MASK];
+            }
+        };
+    }
+
+    private int tailOffset() {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] arrayFor(int index) {
+        if (index >= tailOffset()) {
+            return tail;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] result = parent.clone();
+        Object[] inserted;
+        if (level == BITS) {
+            inserted = tailNode;
+        } else {
+            Object[] child = (Object[]) parent[subIndex];
+            inserted = child != null ? pushTail(level - BITS, child, tailNode) : newPath(level - BITS, tailNode);
+        }
+        result[subIndex] = inserted;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) {
+            return node;
+        }
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+
+    private static Object[] assoc(int level, Object[] node, int index, Object element) {
+        Object[] result = node.clone();
+        if (level == 0) {
+            result[index & MASK] = element;
+        } else {
+            int subIndex = (index >>> level) & MASK;
+            result[subIndex] = assoc(level - BITS, (Object[]) node[subIndex], index, element);
+        }
+        return result;
+    }
+
+    private Object[] popTail(int level, Object[] node) {
+        int subIndex = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[]) node[subIndex]);
+            if (newChild == null && subIndex == 0) {
+                return null;
+            }
+            Object[] result = node.clone();
+            result[subIndex] = newChild;
+            return result;
+        }
+        if (subIndex == 0) {
+            return null;
+        }
+        Object[] result = node.clone();
+        result[subIndex] = null;
+        return result;
+    }
+}
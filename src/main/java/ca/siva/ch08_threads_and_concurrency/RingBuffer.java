@@ -0,0 +1,62 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+NOTE:
+1) Bounded, array based hand-off queues. Unlike LinkedBlockingQueue they allocate nothing per element, and unlike
+ArrayBlockingQueue they use no lock on the fast path.
+2) Pick the implementation by the number of threads on each side; the fewer guarantees, the cheaper every operation:
+   SpscRingBuffer -> one producer thread, one consumer thread
+   MpscRingBuffer -> many producers, one consumer
+   MpmcRingBuffer -> many producers, many consumers
+   Using an SPSC/MPSC buffer from more threads than it allows silently corrupts it.
+3) drain/fill move up to limit elements in one call. The SPSC buffer publishes a whole batch with a single release store.
+4) Capacity is rounded up to a power of two so the slot index is (sequence & mask) instead of a modulo.
+5) null elements are not allowed, null from poll() means empty.
+ */
+public interface RingBuffer<E> {
+
+    /**
+     * Adds the element if there is room. Returns false when the buffer is full.
+     */
+    boolean offer(E element);
+
+    /**
+     * Removes the oldest element, or returns null when the buffer is empty.
+     */
+    E poll();
+
+    /**
+     * Passes up to limit elements to consumer and returns how many were drained.
+     */
+    int drain(Consumer<? super E> consumer, int limit);
+
+    /**
+     * Offers up to limit elements taken from supplier and returns how many were added. Stops early when the buffer is full.
+     * The multi-producer buffers call the supplier after the slots are claimed, so it must not return null or throw.
+     */
+    int fill(Supplier<? extends E> supplier, int limit);
+
+    /**
+     * Adds the element, waiting with the buffer's WaitStrategy while it is full.
+     */
+    void put(E element) throws InterruptedException;
+
+    /**
+     * Removes the oldest element, waiting with the buffer's WaitStrategy while it is empty.
+     */
+    E take() throws InterruptedException;
+
+    /**
+     * Approximate number of elements; exact only when no other thread is using the buffer.
+     */
+    int size();
+
+    int capacity();
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,120 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+NOTE:
+1) Single producer, single consumer. Each index has exactly one writer, so there is no CAS at all: the producer publishes with
+a release store of its index and the consumer reads it with an acquire load (and the other way round for free slots).
+2) Each side caches the last index it saw from the other side and only re-reads the shared one when the cached value says the
+buffer is full/empty. In steady state that means no cross-core cache traffic on most operations.
+ */
+public class SpscRingBuffer<E> extends AbstractRingBuffer<E> {
+
+    // producerIndex.cached() is the producer's copy of consumerIndex, consumerIndex.cached() the consumer's copy of producerIndex.
+    private final PaddedSequence producerIndex = new PaddedSequence(0);
+    private final PaddedSequence consumerIndex = new PaddedSequence(0);
+
+    public SpscRingBuffer(int capacity) {
+        this(capacity, WaitStrategy.yielding());
+    }
+
+    public SpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+    }
+
+    @Override
+    public boolean offer(E element) {
+        checkNotNull(element);
+        long producer = producerIndex.getPlain();
+        if (!hasRoom(producer, 1)) {
+            return false;
+        }
+        elements[(int) producer & mask] = element;
+        producerIndex.setRelease(producer + 1);
+        waitStrategy.signal();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long consumer = consumerIndex.getPlain();
+        if (available(consumer) == 0) {
+            return null;
+        }
+        int index = (int) consumer & mask;
+        E element = (E) elements[index];
+        elements[index] = null;
+        consumerIndex.setRelease(consumer + 1);
+        waitStrategy.signal();
+        return element;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> consumer, int limit) {
+        long start = consumerIndex.getPlain();
+        int count = (int) Math.min(limit, available(start));
+        if (count <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int index = (int) (start + i) & mask;
+            E element = (E) elements[index];
+            elements[index] = null;
+            consumer.accept(element);
+        }
+        // One release store frees the whole batch for the producer.
+        consumerIndex.setRelease(start + count);
+        waitStrategy.signal();
+        return count;
+    }
+
+    @Override
+    public int fill(Supplier<? extends E> supplier, int limit) {
+        long start = producerIndex.getPlain();
+        long free = elements.length - (start - producerIndex.cached());
+        if (free < limit) {
+            producerIndex.cached(consumerIndex.get());
+            free = elements.length - (start - producerIndex.cached());
+        }
+        int count = (int) Math.min(limit, free);
+        if (count <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < count; i++) {
+            E element = supplier.get();
+            checkNotNull(element);
+            elements[(int) (start + i) & mask] = element;
+        }
+        producerIndex.setRelease(start + count);
+        waitStrategy.signal();
+        return count;
+    }
+
+    @Override
+    public int size() {
+        long consumer = consumerIndex.get();
+        long producer = producerIndex.get();
+        return (int) Math.max(0, Math.min(elements.length, producer - consumer));
+    }
+
+    private boolean hasRoom(long producer, int needed) {
+        if (producer - producerIndex.cached() + needed <= elements.length) {
+            return true;
+        }
+        producerIndex.cached(consumerIndex.get());
+        return producer - producerIndex.cached() + needed <= elements.length;
+    }
+
+    private long available(long consumer) {
+        long available = consumerIndex.cached() - consumer;
+        if (available > 0) {
+            return available;
+        }
+        consumerIndex.cached(producerIndex.get());
+        return consumerIndex.cached() - consumer;
+    }
+}
@@ -0,0 +1,93 @@
+package ca.siva.ch08_threads_and_concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+NOTE:
+1) What a thread does while a ring buffer is full (producer) or empty (consumer):
+   spinning() -> Thread.onSpinWait() in a loop. Lowest latency, burns a full core while waiting.
+   yielding() -> spins for a while, then Thread.yield(). Low latency, gives the core away when others need it.
+   blocking() -> parks on a Condition. Highest latency, no CPU while idle. The only one to use when threads outnumber cores.
+2) signal() is called after every successful offer/poll. Only the blocking strategy does anything there, and it takes the
+lock only if a thread is actually waiting.
+3) The blocking wait is bounded (1 ms), because the empty/full check happens outside the lock and a signal can slip in between.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called by a thread that could not make progress; attempt counts the consecutive failures.
+     */
+    void idle(int attempt) throws InterruptedException;
+
+    /**
+     * Called after a successful offer or poll, so blocked threads on the other side can retry.
+     */
+    default void signal() {
+    }
+
+    static WaitStrategy spinning() {
+        return attempt -> {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Thread.onSpinWait();
+        };
+    }
+
+    static WaitStrategy yielding() {
+        return attempt -> {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        };
+    }
+
+    static WaitStrategy blocking() {
+        return new BlockingWaitStrategy();
+    }
+
+    final class BlockingWaitStrategy implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void idle(int attempt) throws InterruptedException {
+            if (attempt < 10) {
+                Thread.onSpinWait();
+                return;
+            }
+            waiters.incrementAndGet();
+            try {
+                lock.lockInterruptibly();
+                try {
+                    changed.await(1, TimeUnit.MILLISECONDS);
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void signal() {
+            if (waiters.get() > 0) {
+                lock.lock();
+                try {
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
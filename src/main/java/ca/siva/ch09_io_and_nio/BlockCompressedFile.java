@@ -0,0 +1,211 @@
+package ca.siva.ch09_io_and_nio;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static ca.siva.ch09_io_and_nio.ParallelBlockCompressedOutputStream.*;
+
+/*
+NOTE:
+1) Reader for files written by ParallelBlockCompressedOutputStream. Only the trailer and the block index are read when the file is
+opened, the blocks themselves are inflated on demand.
+2) read(position, ...) works like RandomAccessFile.seek + read on the uncompressed data. A binary search over the index finds the
+first block, so reading from the middle of a large archive costs one block inflate instead of inflating everything before it.
+3) FileChannel.read(ByteBuffer, long) does not move the channel position, so different threads can read different blocks at the same time.
+ */
+public class BlockCompressedFile implements Closeable {
+
+    private final FileChannel channel;
+    private final int blockSize;
+    private final long[] compressedOffsets;
+    private final int[] compressedLengths;
+    private final int[] crcs;
+    // uncompressedOffsets[i] is where block i starts in the uncompressed data; the last slot holds the total length.
+    private final long[] uncompressedOffsets;
+
+    public BlockCompressedFile(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_LENGTH + TRAILER_LENGTH) {
+                throw new IOException("Not a block compressed file: " + path);
+            }
+            ByteBuffer header = readFully(0, HEADER_LENGTH);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Bad header magic: " + path);
+            }
+            this.blockSize = header.getInt();
+
+            ByteBuffer trailer = readFully(size - TRAILER_LENGTH, TRAILER_LENGTH);
+            int blockCount = trailer.getInt();
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException("Bad trailer magic, the file may be truncated: " + path);
+            }
+
+            this.compressedOffsets = new long[blockCount];
+            this.compressedLengths = new int[blockCount];
+            this.crcs = new int[blockCount];
+            this.uncompressedOffsets = new long[blockCount + 1];
+            ByteBuffer index = readFully(indexOffset, blockCount * INDEX_ENTRY_LENGTH);
+            for (int i = 0; i < blockCount; i++) {
+                compressedOffsets[i] = index.getLong();
+                compressedLengths[i] = index.getInt();
+                uncompressedOffsets[i + 1] = uncompressedOffsets[i] + index.getInt();
+                crcs[i] = index.getInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int blockCount() {
+        return compressedOffsets.length;
+    }
+
+    public int blockSize() {
+        return blockSize;
+    }
+
+    public long uncompressedLength() {
+        return uncompressedOffsets[compressedOffsets.length];
+    }
+
+    /**
+     * Inflates a single block and verifies its checksum.
+     */
+    public byte[] readBlock(int block) throws IOException {
+        Objects.checkIndex(block, compressedOffsets.length);
+        ByteBuffer compressed = readFully(compressedOffsets[block], compressedLengths[block]);
+        byte[] result = new byte[(int) (uncompressedOffsets[block + 1] - uncompressedOffsets[block])];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int read = 0;
+            while (read < result.length) {
+                int n = inflater.inflate(result, read, result.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("Block " + block + " is shorter than its index entry");
+                }
+                read += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + block + " is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(result);
+        if ((int) crc.getValue() != crcs[block]) {
+            throw new IOException("Checksum mismatch in block " + block);
+        }
+        return result;
+    }
+
+    /**
+     * Reads up to len uncompressed bytes starting at the given uncompressed position.
+     * Returns -1 when position is at or past the end of the data.
+     *
+     * @throws IllegalArgumentException if position is negative
+     */
+    public int read(long position, byte[] dst, int off, int len) throws IOException {
+        if (position < 0) {
+            throw new IllegalArgumentException("position must not be negative: " + position);
+        }
+        Objects.checkFromIndexSize(off, len, dst.length);
+        if (position >= uncompressedLength()) {
+            return -1;
+        }
+        int block = blockAt(position);
+        int total = 0;
+        while (total < len && block < compressedOffsets.length) {
+            byte[] data = readBlock(block);
+            int from = (int) (position + total - uncompressedOffsets[block]);
+            int n = Math.min(len - total, data.length - from);
+            System.arraycopy(data, from, dst, off + total, n);
+            total += n;
+            block++;
+        }
+        return total;
+    }
+
+    /**
+     * Sequential view over the uncompressed data, inflating one block at a time.
+     */
+    public InputStream openStream() {
+        return new InputStream() {
+            private int nextBlock;
+            private byte[] current = new byte[0];
+            private int pos;
+
+            @Override
+            public int read() throws IOException {
+                if (!fill()) {
+                    return -1;
+                }
+                return current[pos++] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                Objects.checkFromIndexSize(off, len, b.length);
+                if (len == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(current, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+
+            private boolean fill() throws IOException {
+                while (pos == current.length) {
+                    if (nextBlock == compressedOffsets.length) {
+                        return false;
+                    }
+                    current = readBlock(nextBlock++);
+                    pos = 0;
+                }
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int blockAt(long position) {
+        int found = Arrays.binarySearch(uncompressedOffsets, 0, compressedOffsets.length, position);
+        // Not an exact block start: binarySearch returns -(insertionPoint) - 1 and the block is the one before the insertion point.
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -3,6 +3,8 @@ package ca.siva.ch09_io_and_nio;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
 
 /*
 NOTE:
@@ -369,6 +371,96 @@ public class InputStreamAndOutputStreamExample {
 
 
 
+    /**
+     * About: Writes a file with ParallelBlockCompressedOutputStream, which deflates fixed size blocks in parallel on a ForkJoinPool.
+     * Input: A file path to write to, e.g., "/path/to/output.blkz", and some repetitive text to compress.
+     * Output: Writes the compressed file and logs the uncompressed and compressed sizes.
+     */
+    public static void writeFileWithParallelBlockCompression() {
+        String filePath = "/path/to/output.blkz";
+        byte[] line = "This is an example of writing to a file using ParallelBlockCompressedOutputStream.\n".getBytes();
+
+        try (OutputStream outputStream = new ParallelBlockCompressedOutputStream(new BufferedOutputStream(new FileOutputStream(filePath)))) {
+            for (int i = 0; i < 100_000; i++) {
+                outputStream.write(line);
+            }
+        } catch (IOException e) {
+            log.error("An error occurred while writing the compressed file", e);
+            return;
+        }
+        // After close(), which compresses the last block and writes the index
+        log.info("Uncompressed bytes: {}, compressed file size: {}", (long) line.length * 100_000, new File(filePath).length());
+    }
+
+    /**
+     * About: Reads a file written by ParallelBlockCompressedOutputStream, both sequentially and from the middle using the block index.
+     * Input: A file path to read from, e.g., "/path/to/output.blkz".
+     * Output: Logs the block count, the total number of bytes read sequentially and 40 bytes read at position 1,000,000.
+     */
+    public static void readFileWithBlockIndex() {
+        String filePath = "/path/to/output.blkz";
+        try (BlockCompressedFile compressedFile = new BlockCompressedFile(new File(filePath).toPath())) {
+            log.info("Blocks: {}, uncompressed length: {}", compressedFile.blockCount(), compressedFile.uncompressedLength());
+
+            // Sequential read, one block is inflated at a time
+            long total = 0;
+            try (InputStream inputStream = compressedFile.openStream()) {
+                byte[] buffer = new byte[8192];
+                int bytesRead;
+                while ((bytesRead = inputStream.read(buffer)) != -1) {
+                    total += bytesRead;
+                }
+            }
+            log.info("Bytes read sequentially: {}", total);
+
+            // Random access, only the block that holds position 1,000,000 is inflated
+            byte[] slice = new byte[40];
+            int read = compressedFile.read(1_000_000, slice, 0, slice.length);
+            log.info("Read {} bytes at position 1000000: {}", read, new String(slice, 0, Math.max(read, 0)));
+        } catch (IOException e) {
+            log.error("An error occurred while reading the compressed file", e);
+        }
+    }
+
+    /**
+     * About: Compares the time taken by GZIPOutputStream and ParallelBlockCompressedOutputStream to compress the same data.
+     * Input: 64 MB of generated, moderately compressible data written to temporary files.
+     * Output: Logs the elapsed time, throughput and compressed size of both streams.
+     */
+    public static void compareGzipAndParallelBlockCompression() {
+        byte[] data = new byte[64 * 1024 * 1024];
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(16));  // Small alphabet, so deflate has something to do
+        }
+
+        try {
+            File gzipFile = File.createTempFile("gzip", ".gz");
+            File blockFile = File.createTempFile("block", ".blkz");
+            gzipFile.deleteOnExit();
+            blockFile.deleteOnExit();
+
+            long start = System.nanoTime();
+            try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(gzipFile), 64 * 1024)) {
+                outputStream.write(data);
+            }
+            long gzipNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (OutputStream outputStream = new ParallelBlockCompressedOutputStream(new FileOutputStream(blockFile))) {
+                outputStream.write(data);
+            }
+            long blockNanos = System.nanoTime() - start;
+
+            log.info("GZIPOutputStream: {} ms, {} MB/s, {} bytes", gzipNanos / 1_000_000,
+                    data.length / Math.max(1, gzipNanos / 1000), gzipFile.length());
+            log.info("ParallelBlockCompressedOutputStream: {} ms, {} MB/s, {} bytes", blockNanos / 1_000_000,
+                    data.length / Math.max(1, blockNanos / 1000), blockFile.length());
+        } catch (IOException e) {
+            log.error("An error occurred while comparing compression streams", e);
+        }
+    }
+
     public static void main(String[] args) {
         readFileWithFileInputStream();
         writeFileWithFileOutputStream();
@@ -386,6 +478,10 @@ public class InputStreamAndOutputStreamExample {
         demonstrateFormattedOutput();
         readAndWriteOneByteAtATime();
         demonstrateRandomAccessFile();
+        // Compressed stream examples
+        writeFileWithParallelBlockCompression();
+        readFileWithBlockIndex();
+        compareGzipAndParallelBlockCompression();
     }
 
     static class ExampleObject implements Serializable {
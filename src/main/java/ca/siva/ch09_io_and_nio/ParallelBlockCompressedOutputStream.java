@@ -0,0 +1,202 @@
+package ca.siva.ch09_io_and_nio;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/*
+NOTE:
+1) The input is cut into fixed size blocks. Every block is deflated independently on a ForkJoinPool, so N cores can
+compress N blocks at the same time. GZIPOutputStream uses one Deflater for the whole stream and is limited to one core.
+2) Blocks are always written in the order they were submitted. At most (2 * parallelism) blocks are in flight, which bounds
+the memory to roughly 2 * parallelism * blockSize bytes.
+3) Since each block is compressed on its own, a reader can inflate any block without touching the ones before it.
+The block index written at the end of the file is what makes this random access possible (see BlockCompressedFile).
+4) File layout:
+   header  : int MAGIC, int blockSize
+   blocks  : raw deflate data, one after the other
+   index   : per block -> long offset, int compressedLength, int uncompressedLength, int crc32
+   trailer : int blockCount, long indexOffset, int MAGIC
+ */
+public class ParallelBlockCompressedOutputStream extends FilterOutputStream {
+
+    static final int MAGIC = 0x424C4B5A; // "BLKZ"
+    static final int HEADER_LENGTH = Integer.BYTES * 2;
+    static final int INDEX_ENTRY_LENGTH = Long.BYTES + Integer.BYTES * 3;
+    static final int TRAILER_LENGTH = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private final DataOutputStream dataOut;
+    private final ForkJoinPool pool;
+    private final int blockSize;
+    private final int level;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<CompressedBlock>> inFlight = new ArrayDeque<>();
+    private final List<long[]> index = new ArrayList<>();
+
+    private byte[] buffer;
+    private int count;
+    private long position;
+    private boolean closed;
+
+    public ParallelBlockCompressedOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool());
+    }
+
+    public ParallelBlockCompressedOutputStream(OutputStream out, int blockSize, int level, ForkJoinPool pool) throws IOException {
+        super(out);
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.dataOut = new DataOutputStream(out);
+        this.pool = pool;
+        this.blockSize = blockSize;
+        this.level = level;
+        this.maxInFlight = Math.max(2, pool.getParallelism() * 2);
+        this.buffer = new byte[blockSize];
+
+        this.dataOut.writeInt(MAGIC);
+        this.dataOut.writeInt(blockSize);
+        this.position = HEADER_LENGTH;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int chunk = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, buffer, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+            if (count == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Submits the partially filled block (if any) and waits until every pending block has reached the underlying stream.
+     * Calling flush often produces small blocks and hurts the compression ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            submitBlock();
+        }
+        while (!inFlight.isEmpty()) {
+            writeOldestBlock();
+        }
+        dataOut.flush();
+    }
+
+    /**
+     * Writes the remaining blocks, the block index and the trailer, then closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            long indexOffset = position;
+            for (long[] entry : index) {
+                dataOut.writeLong(entry[0]);
+                dataOut.writeInt((int) entry[1]);
+                dataOut.writeInt((int) entry[2]);
+                dataOut.writeInt((int) entry[3]);
+            }
+            dataOut.writeInt(index.size());
+            dataOut.writeLong(indexOffset);
+            dataOut.writeInt(MAGIC);
+            dataOut.flush();
+        } finally {
+            closed = true;
+            buffer = null;
+            inFlight.forEach(future -> future.cancel(true));
+            dataOut.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] block = buffer;
+        int length = count;
+        inFlight.addLast(pool.submit(() -> compress(block, length, level)));
+
+        // The filled buffer now belongs to the task, so we need a fresh one for the next block.
+        buffer = new byte[blockSize];
+        count = 0;
+        while (inFlight.size() >= maxInFlight) {
+            writeOldestBlock();
+        }
+    }
+
+    private void writeOldestBlock() throws IOException {
+        CompressedBlock block;
+        try {
+            block = inFlight.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing a block", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Block compression failed", e.getCause());
+        }
+        dataOut.write(block.data, 0, block.compressedLength);
+        index.add(new long[]{position, block.compressedLength, block.uncompressedLength, block.crc});
+        position += block.compressedLength;
+    }
+
+    private static CompressedBlock compress(byte[] data, int length, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            // Incompressible input can grow slightly, so leave some headroom on top of the raw length.
+            byte[] compressed = new byte[length + (length >> 6) + 64];
+            int written = 0;
+            while (!deflater.finished()) {
+                if (written == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                written += deflater.deflate(compressed, written, compressed.length - written);
+            }
+            return new CompressedBlock(compressed, written, length, (int) crc.getValue());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private record CompressedBlock(byte[] data, int compressedLength, int uncompressedLength, int crc) {
+    }
+}
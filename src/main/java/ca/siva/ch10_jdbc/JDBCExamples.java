@@ -2,7 +2,24 @@ package ca.siva.ch10_jdbc;
 
 import lombok.extern.slf4j.Slf4j;
 
+import ca.siva.ch05_collections.BoundedCache;
+import ca.siva.ch06_streams_and_lambda.Aggregation;
+import ca.siva.ch06_streams_and_lambda.BlockedBloomFilter;
+import ca.siva.ch06_streams_and_lambda.ColumnTable;
+import ca.siva.ch06_streams_and_lambda.CustomSpliterators;
+import ca.siva.chapter01.Interner;
+import ca.siva.chapter01.InternerStats;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.StreamSupport;
 
 /*
 NOTE:
@@ -14,11 +31,34 @@ For all these interfaces, implementation should be provided by the driver.
 5) This is true because you don't have to write any SQL query in Java code. You just use the name of the stored procedure.
 The queries are already there inside the stored procedure, which exists in the Database and not in JDBC code.
 6) Once a Connection object is closed, you cannot access any of the subsequent objects such as Statement and ResultSet that are retrieved from that Connection.
+7) Lookups by primary key that repeat a lot (names, reference data) can go through a read-through BoundedCache: a hit costs no
+round trip, a miss runs the query once even when several threads ask for the same id. Code that updates a row invalidates its key.
+8) When most lookups are for keys that do not exist, a Bloom filter of the existing keys answers those in memory: a
+"definitely absent" skips the round trip, and only about fpp of the misses still reach the database. The filter has to be
+rebuilt (or the new key added to it) when rows are inserted, otherwise it would report existing keys as absent.
+9) ColumnTable.fromResultSet copies a ResultSet into primitive columns once; after that, many reports (filters, group-by)
+run in memory without another query. It is a snapshot: rows changed in the database afterwards are not seen.
+10) getString() returns a new String for every row, so a column with few distinct values (department, country, status)
+loaded into objects keeps one copy per row. Passing such columns through an Interner while mapping the row keeps one copy
+per distinct value; the weak interner lets a value go once no loaded row uses it any more.
 */
 
 @Slf4j
 public class JDBCExamples {
 
+    // Read-through cache of employee names by id; entries are reloaded in the background a minute after they were loaded
+    private static final BoundedCache<Integer, String> EMPLOYEE_NAMES = BoundedCache.<Integer, String>builder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .refreshAfterWrite(Duration.ofMinutes(1))
+            .build(JDBCExamples::loadEmployeeName);
+
+    // Canonical copies of low-cardinality column values (departments) shared by all rows mapped from a ResultSet
+    private static final Interner REFERENCE_STRINGS = Interner.weak();
+
+    private record Employee(int id, String name, String department) {
+    }
+
     /**
      * Establishes a connection to the database using DriverManager.
      * @return Connection object.
@@ -252,6 +292,7 @@ public class JDBCExamples {
                     // Update the name in the ResultSet (this will update the database too)
                     resultSet.updateString("name", originalName + " Updated");
                     resultSet.updateRow();
+                    EMPLOYEE_NAMES.invalidate(id); // the cached name is stale now
 
                     // Scroll back to the first row to verify the update
                     resultSet.beforeFirst();
@@ -265,6 +306,179 @@ public class JDBCExamples {
             log.error("Error working with scrollable and updatable ResultSet", e);
         }
     }
+
+    /**
+     * Example of processing a ResultSet with a parallel stream using CustomSpliterators.resultSetBatches.
+     * Input: Selects id and name of every employee; rows are read in batches of 500 and mapped in parallel.
+     * Output: Logs the number of employees whose name is longer than 10 characters.
+     */
+    public static void parallelStreamOverResultSet() {
+        String query = "SELECT id, name FROM employees";
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setFetchSize(500); // Match the batch size, so one batch is one round trip
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                long longNames = StreamSupport.stream(CustomSpliterators.resultSetBatches(resultSet,
+                                rs -> rs.getString("name"), 500), true)
+                        .filter(name -> name != null && name.length() > 10)
+                        .count();
+                log.info("Employees with a long name: {}", longNames);
+            }
+        } catch (SQLException e) {
+            log.error("Error streaming the ResultSet", e);
+        }
+    }
+
+    /**
+     * Loader of EMPLOYEE_NAMES: runs only on a cache miss or a refresh.
+     * Input: Employee ID.
+     * Output: The employee's name, or null if there is no such employee (nothing is cached then).
+     */
+    private static String loadEmployeeName(Integer id) throws SQLException {
+        String query = "SELECT name FROM employees WHERE id = ?";
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setInt(1, id);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString("name") : null;
+            }
+        }
+    }
+
+    /**
+     * Example of reading through the EMPLOYEE_NAMES cache instead of querying for every lookup.
+     * Input: Looks up employee IDs 1, 2, 1, 1, 3, 2.
+     * Output: Logs each name and the cache stats: 3 misses (one query per distinct ID) and 3 hits. An SQLException from the
+     * loader arrives wrapped in a CompletionException.
+     */
+    public static void readThroughCache() {
+        try {
+            for (int id : new int[]{1, 2, 1, 1, 3, 2}) {
+                log.info("Employee ID: {}, Name: {}", id, EMPLOYEE_NAMES.get(id));
+            }
+        } catch (CompletionException e) {
+            log.error("Error loading employee name", e.getCause());
+        }
+        log.info("Employee name cache: {}", EMPLOYEE_NAMES.stats());
+    }
+
+    /**
+     * Loads the Bloom filter of departments that have employees from a file, or builds it with one query and saves it.
+     * Input: The filter file path and an open connection.
+     * Output: The filter; 1% of the departments without employees still pass it.
+     */
+    private static BlockedBloomFilter departmentFilter(Path filterFile, Connection connection) throws SQLException, IOException {
+        if (Files.exists(filterFile)) {
+            return BlockedBloomFilter.readFrom(filterFile);
+        }
+        BlockedBloomFilter departments = BlockedBloomFilter.create(10_000, 0.01);
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT DISTINCT department FROM employees")) {
+            while (resultSet.next()) {
+                String department = resultSet.getString(1);
+                if (department != null) {
+                    departments.put(department);
+                }
+            }
+        }
+        departments.writeTo(filterFile);
+        return departments;
+    }
+
+    /**
+     * Example of the executeSimpleQuery lookup guarded by a Bloom filter of the existing departments.
+     * Input: Looks up the departments "Sales", "Aerospace", "Legal", "Mining" and "Engineering"; the filter is read from
+     * "/path/to/departments.bloom" or built and saved there on the first run.
+     * Output: Logs the employees of the existing departments; departments without employees are answered by the filter
+     * without a query, and the number of skipped queries is logged.
+     */
+    public static void executeSimpleQueryWithBloomFilter() {
+        String query = "SELECT id, name FROM employees WHERE department = ?";
+        Path filterFile = Paths.get("/path/to/departments.bloom");
+        try (Connection connection = getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            BlockedBloomFilter departments = departmentFilter(filterFile, connection);
+            int skipped = 0;
+            for (String department : new String[]{"Sales", "Aerospace", "Legal", "Mining", "Engineering"}) {
+                if (!departments.mightContain(department)) {
+                    skipped++;
+                    continue;
+                }
+                preparedStatement.setString(1, department);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        log.info("Department: {}, Employee ID: {}, Name: {}", department, resultSet.getInt("id"),
+                                resultSet.getString("name"));
+                    }
+                }
+            }
+            log.info("Queries skipped by the department filter: {}", skipped);
+        } catch (SQLException e) {
+            log.error("Error executing query", e);
+        } catch (IOException e) {
+            log.error("Error reading or writing the department filter", e);
+        }
+    }
+
+    /**
+     * Example of loading a query result into a ColumnTable and reporting on it in memory.
+     * Input: Reads id, name, department and salary of all employees.
+     * Output: Logs one row per department with the number of employees and their total and average salary, and then
+     * the same for employees earning more than 50000.
+     */
+    public static void columnarDepartmentReport() {
+        String query = "SELECT id, name, department, salary FROM employees";
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+
+            ColumnTable employees = ColumnTable.fromResultSet(resultSet);
+            log.info("Loaded {} employees", employees.rowCount());
+            Aggregation[] report = {Aggregation.count("employees"), Aggregation.sum("salary", "total_salary"),
+                    Aggregation.avg("salary", "average_salary")};
+            log.info("All employees:\n{}", employees.groupBy("department", employees.all(), report).format(20));
+            log.info("Salary above 50000:\n{}", employees.groupBy("department",
+                    employees.doubleColumn("salary").greaterThan(50000), report).format(20));
+        } catch (SQLException e) {
+            log.error("Error executing query", e);
+        }
+    }
+
+    /**
+     * Row mapper for Employee: the department goes through REFERENCE_STRINGS, the name (mostly unique) does not.
+     */
+    private static Employee mapEmployee(ResultSet resultSet) throws SQLException {
+        return new Employee(resultSet.getInt("id"), resultSet.getString("name"),
+                REFERENCE_STRINGS.intern(resultSet.getString("department")));
+    }
+
+    /**
+     * Example of mapping rows to records while interning a column that repeats.
+     * Input: Reads id, name and department of all employees.
+     * Output: Logs the number of employees loaded and the interner stats: one miss per distinct department, every other
+     * row is a hit and shares the department String of the first row with that department.
+     */
+    public static void loadEmployeesWithInternedDepartments() {
+        String query = "SELECT id, name, department FROM employees";
+        try (Connection connection = getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+
+            List<Employee> employees = new ArrayList<>();
+            while (resultSet.next()) {
+                employees.add(mapEmployee(resultSet));
+            }
+            InternerStats stats = REFERENCE_STRINGS.stats();
+            log.info("Loaded {} employees; departments interned: {} misses, {} hits (hit rate {})", employees.size(),
+                    stats.missCount(), stats.hitCount(), String.format("%.2f", stats.hitRate()));
+        } catch (SQLException e) {
+            log.error("Error executing query", e);
+        }
+    }
+
     public static void main(String[] args) {
         executeSimpleQuery();
         insertData();
@@ -274,5 +488,10 @@ public class JDBCExamples {
         executeExample();
         transactionWithSavepoint();
         scrollableAndUpdatableResultSet();
+        parallelStreamOverResultSet();
+        readThroughCache();
+        executeSimpleQueryWithBloomFilter();
+        columnarDepartmentReport();
+        loadEmployeesWithInternedDepartments();
     }
 }
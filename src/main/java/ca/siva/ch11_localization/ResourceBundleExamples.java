@@ -1,11 +1,11 @@
 package ca.siva.ch11_localization;
 
+import ca.siva.chapter01.Interner;
+import ca.siva.chapter01.InternerStats;
 import lombok.extern.slf4j.Slf4j;
 
 import java.text.NumberFormat;
-import java.util.Enumeration;
-import java.util.Locale;
-import java.util.ResourceBundle;
+import java.util.*;
 
 /*
 NOTE:
@@ -15,6 +15,9 @@ NOTE:
     Search for rb with passed locale to getBundle(xx) method, if not found, use name.properties else throw error even the property is not found at runtime.
 3) ResourceBundle.getKeys() will return keys from all resource bundle files in the inheritance chain,
 not just from a single file.
+4) Every bundle that is loaded has its own copy of each key (and of values that repeat between bundles), because
+Properties creates a new String per line. An application that keeps many bundles (one per locale and per module) in memory
+can share one copy of each through an Interner.
 
  */
 @Slf4j
@@ -150,6 +153,29 @@ public class ResourceBundleExamples {
         }
     }
 
+    /**
+     * Example of copying the messages of several locales into maps whose keys and values go through an Interner.
+     * Input: The "messages" bundles for en_US, fr_FR and de_DE.
+     * Output: Logs the messages per locale and the interner stats: the keys "greeting" and "farewell" are stored once
+     * for all three locales (8 misses for 2 keys and 6 values, 4 hits for the repeated keys).
+     */
+    public static void loadResourceBundlesWithInterner() {
+        Interner interner = Interner.weak();
+        Map<Locale, Map<String, String>> messages = new LinkedHashMap<>();
+        for (Locale locale : new Locale[]{Locale.US, Locale.FRANCE, Locale.GERMANY}) {
+            ResourceBundle bundle = ResourceBundle.getBundle("messages", locale);
+            Map<String, String> values = new HashMap<>();
+            for (String key : bundle.keySet()) {
+                values.put(interner.intern(key), interner.intern(bundle.getString(key)));
+            }
+            messages.put(locale, values);
+        }
+        messages.forEach((locale, values) -> log.info("{}: {}", locale, values));
+        InternerStats stats = interner.stats();
+        log.info("Interned strings: {}, hits: {}, misses: {}", stats.size(), stats.hitCount(), stats.missCount());
+        // Expected output: Interned strings: 8, hits: 4, misses: 8
+    }
+
     public static void main(String[] args) {
         loadDefaultResourceBundle();  // Load the default (en_US) resource bundle
         loadFrenchResourceBundle();  // Load the French (fr_FR) resource bundle
@@ -158,5 +184,6 @@ public class ResourceBundleExamples {
         loadResourceBundleUsingDisplayCategory();  // Load bundle using DISPLAY category locale
         mixedLocaleScenario();  // Run the mixed locale scenario
         loadResourceBundleAndPrintKeys(); // Load resource bundle and print all keys and values
+        loadResourceBundlesWithInterner(); // Share one copy of repeated keys and values between bundles
     }
 }
@@ -0,0 +1,21 @@
+package ca.siva.chapter01;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocation measurement shared by the benchmarks of this package.
+ */
+final class Allocations {
+
+    private Allocations() {
+    }
+
+    // Bytes allocated so far by the current thread, or 0 when the JVM does not support the measurement
+    static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()) {
+            return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,143 @@
+package ca.siva.chapter01;
+
+/*
+NOTE:
+1) Helpers built from the operators in BitwiseOperatorExamples. Long.bitCount, Long.numberOfTrailingZeros and
+Long.numberOfLeadingZeros are intrinsics: each compiles to a single instruction (POPCNT, TZCNT, LZCNT) on current CPUs.
+2) A Morton (Z-order) code interleaves the bits of the coordinates: x0 y0 x1 y1 ... Points that are close in 2D or 3D are
+mostly close in the code too, so sorting by it keeps neighbours together in memory, in a file or in a B+tree index, and a
+rectangle query touches few ranges of codes.
+ */
+public final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * A long with the lowest bits set, e.g. lowMask(5) is 0b11111. lowMask(64) is -1.
+     */
+    public static long lowMask(int bits) {
+        if (bits < 0 || bits > 64) {
+            throw new IllegalArgumentException("bits must be between 0 and 64: " + bits);
+        }
+        return bits == 0 ? 0 : -1L >>> (64 - bits);
+    }
+
+    /**
+     * Number of bits needed to store values from 0 to maxValue (at least 1).
+     */
+    public static int bitsRequired(long maxValue) {
+        if (maxValue < 0) {
+            throw new IllegalArgumentException("maxValue must not be negative: " + maxValue);
+        }
+        return Math.max(1, 64 - Long.numberOfLeadingZeros(maxValue));
+    }
+
+    /**
+     * Position (0-63) of the set bit of word with the given rank (0 for the lowest set bit), or -1 if word has fewer
+     * than rank + 1 set bits.
+     */
+    public static int select(long word, int rank) {
+        if (rank < 0 || rank >= Long.bitCount(word)) {
+            return -1;
+        }
+        // Narrow down by halves using popcounts, then clear the lowest set bits of the last byte
+        int position = 0;
+        for (int width = 32; width >= 8; width >>>= 1) {
+            int count = Long.bitCount(word & ((1L << width) - 1));
+            if (rank >= count) {
+                rank -= count;
+                word >>>= width;
+                position += width;
+            }
+        }
+        for (int i = 0; i < rank; i++) {
+            word &= word - 1;
+        }
+        return position + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Z-order code of (x, y): bit i of x goes to bit 2i, bit i of y to bit 2i + 1.
+     */
+    public static long mortonEncode(int x, int y) {
+        return spreadBy1(x & 0xFFFFFFFFL) | spreadBy1(y & 0xFFFFFFFFL) << 1;
+    }
+
+    public static int mortonDecodeX(long code) {
+        return (int) compactBy1(code);
+    }
+
+    public static int mortonDecodeY(long code) {
+        return (int) compactBy1(code >>> 1);
+    }
+
+    /**
+     * Z-order code of (x, y, z) for coordinates from 0 to 2^21 - 1: bit i of x, y and z goes to bits 3i, 3i + 1, 3i + 2.
+     */
+    public static long mortonEncode(int x, int y, int z) {
+        checkCoordinate21(x);
+        checkCoordinate21(y);
+        checkCoordinate21(z);
+        return spreadBy2(x) | spreadBy2(y) << 1 | spreadBy2(z) << 2;
+    }
+
+    public static int mortonDecode3X(long code) {
+        return (int) compactBy2(code);
+    }
+
+    public static int mortonDecode3Y(long code) {
+        return (int) compactBy2(code >>> 1);
+    }
+
+    public static int mortonDecode3Z(long code) {
+        return (int) compactBy2(code >>> 2);
+    }
+
+    // Moves bit i of the low 32 bits to bit 2i ("magic numbers" method: 5 shift/mask steps instead of a loop over 32 bits)
+    static long spreadBy1(long value) {
+        value = (value | value << 16) & 0x0000FFFF0000FFFFL;
+        value = (value | value << 8) & 0x00FF00FF00FF00FFL;
+        value = (value | value << 4) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | value << 2) & 0x3333333333333333L;
+        value = (value | value << 1) & 0x5555555555555555L;
+        return value;
+    }
+
+    static long compactBy1(long value) {
+        value &= 0x5555555555555555L;
+        value = (value | value >>> 1) & 0x3333333333333333L;
+        value = (value | value >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value | value >>> 4) & 0x00FF00FF00FF00FFL;
+        value = (value | value >>> 8) & 0x0000FFFF0000FFFFL;
+        value = (value | value >>> 16) & 0x00000000FFFFFFFFL;
+        return value;
+    }
+
+    // Moves bit i of the low 21 bits to bit 3i
+    static long spreadBy2(long value) {
+        value &= 0x1FFFFFL;
+        value = (value | value << 32) & 0x001F00000000FFFFL;
+        value = (value | value << 16) & 0x001F0000FF0000FFL;
+        value = (value | value << 8) & 0x100F00F00F00F00FL;
+        value = (value | value << 4) & 0x10C30C30C30C30C3L;
+        value = (value | value << 2) & 0x1249249249249249L;
+        return value;
+    }
+
+    static long compactBy2(long value) {
+        value &= 0x1249249249249249L;
+        value = (value | value >>> 2) & 0x10C30C30C30C30C3L;
+        value = (value | value >>> 4) & 0x100F00F00F00F00FL;
+        value = (value | value >>> 8) & 0x001F0000FF0000FFL;
+        value = (value | value >>> 16) & 0x001F00000000FFFFL;
+        value = (value | value >>> 32) & 0x00000000001FFFFFL;
+        return value;
+    }
+
+    private static void checkCoordinate21(int coordinate) {
+        if (coordinate < 0 || coordinate > 0x1FFFFF) {
+            throw new IllegalArgumentException("3D coordinates must be between 0 and 2097151: " + coordinate);
+        }
+    }
+}
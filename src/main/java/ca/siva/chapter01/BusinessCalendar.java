@@ -0,0 +1,151 @@
+package ca.siva.chapter01;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/*
+NOTE:
+1) Counting business days by walking from one date to the other with plusDays() and checking each day is O(days) and
+allocates a LocalDate per step. BusinessCalendar counts them in O(log holidays): the workdays of each full week, a
+7 x 7 table for the remaining days, minus the holidays in the range found by two binary searches in a sorted int[].
+2) Dates are epoch days (see EpochDays). Holidays on weekend days are ignored: they are not business days anyway.
+3) The weekend is Saturday and Sunday by default; other work weeks (Friday and Saturday, or Sunday only) are supported.
+4) Immutable and thread-safe.
+ */
+public final class BusinessCalendar {
+    private final boolean[] workday = new boolean[7];
+    private final int workdaysPerWeek;
+    // workdaysAfter[d][n]: number of workdays among the n days starting on ISO day d + 1
+    private final int[][] workdaysAfter = new int[7][8];
+    // Holidays that fall on a workday, sorted, no duplicates
+    private final int[] holidays;
+
+    private BusinessCalendar(Set<DayOfWeek> weekend, int[] holidays) {
+        int count = 0;
+        for (DayOfWeek day : DayOfWeek.values()) {
+            workday[day.ordinal()] = !weekend.contains(day);
+            count += workday[day.ordinal()] ? 1 : 0;
+        }
+        if (count == 0) {
+            throw new IllegalArgumentException("a week must have at least one workday");
+        }
+        this.workdaysPerWeek = count;
+        for (int start = 0; start < 7; start++) {
+            for (int n = 1; n <= 7; n++) {
+                workdaysAfter[start][n] = workdaysAfter[start][n - 1] + (workday[(start + n - 1) % 7] ? 1 : 0);
+            }
+        }
+        this.holidays = Arrays.stream(holidays).filter(this::isWorkday).sorted().distinct().toArray();
+    }
+
+    /**
+     * A calendar with Saturday and Sunday as weekend and the given holidays.
+     */
+    public static BusinessCalendar of(Collection<LocalDate> holidays) {
+        return of(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), holidays);
+    }
+
+    public static BusinessCalendar of(Set<DayOfWeek> weekend, Collection<LocalDate> holidays) {
+        return new BusinessCalendar(weekend, holidays.stream().mapToInt(EpochDays::of).toArray());
+    }
+
+    /**
+     * Same with the holidays as epoch days.
+     */
+    public static BusinessCalendar ofEpochDays(Set<DayOfWeek> weekend, int... holidays) {
+        for (int holiday : holidays) {
+            EpochDays.checkRange(holiday);
+        }
+        return new BusinessCalendar(weekend, holidays);
+    }
+
+    public boolean isBusinessDay(int epochDay) {
+        return isWorkday(epochDay) && Arrays.binarySearch(holidays, epochDay) < 0;
+    }
+
+    /**
+     * Number of business days from start (inclusive) to end (exclusive), negative if end is before start, like
+     * ChronoUnit.DAYS.between but counting business days only.
+     */
+    public int businessDaysBetween(int start, int end) {
+        if (end < start) {
+            return -businessDaysBetween(end, start);
+        }
+        EpochDays.checkRange(start);
+        EpochDays.checkRange(end);
+        int days = end - start;
+        int workdays = days / 7 * workdaysPerWeek + workdaysAfter[EpochDays.dayOfWeek(start) - 1][days % 7];
+        return workdays - holidaysBetween(start, end);
+    }
+
+    /**
+     * The business day that is days business days after epochDay (before it if days is negative), like a T+2
+     * settlement date. A start that is not a business day first moves to the next business day in the same direction, so
+     * plusBusinessDays(day, 0) is the next business day on or after day.
+     */
+    public int plusBusinessDays(int epochDay, int days) {
+        int step = days >= 0 ? 1 : -1;
+        int date = epochDay;
+        while (!isBusinessDay(date)) {
+            date += step;
+            EpochDays.checkRange(date);
+        }
+        int remaining = Math.abs(days);
+        while (remaining > 0) {
+            // Whole weeks hold at most remaining business days (fewer with holidays), so a jump never overshoots; the
+            // last few are single steps
+            int weeks = remaining / workdaysPerWeek;
+            int next = date + step * (weeks > 0 ? 7 * weeks : 1);
+            EpochDays.checkRange(next);
+            remaining -= step > 0 ? businessDaysBetween(date + 1, next + 1) : businessDaysBetween(next, date);
+            date = next;
+        }
+        // A week jump can end on a holiday after its last business day: go back to that business day
+        while (!isBusinessDay(date)) {
+            date -= step;
+        }
+        return date;
+    }
+
+    /**
+     * out[i] = businessDaysBetween(start[i], end[i]).
+     */
+    public void businessDaysBetween(int[] start, int[] end, int[] out) {
+        EpochDays.checkLengths(start.length, end.length);
+        EpochDays.checkLengths(start.length, out.length);
+        for (int i = 0; i < start.length; i++) {
+            out[i] = businessDaysBetween(start[i], end[i]);
+        }
+    }
+
+    public void isBusinessDay(int[] epochDays, boolean[] out) {
+        EpochDays.checkLengths(epochDays.length, out.length);
+        for (int i = 0; i < epochDays.length; i++) {
+            out[i] = isBusinessDay(epochDays[i]);
+        }
+    }
+
+    private boolean isWorkday(int epochDay) {
+        return workday[EpochDays.dayOfWeek(epochDay) - 1];
+    }
+
+    // Holidays in [start, end)
+    private int holidaysBetween(int start, int end) {
+        return lowerBound(end) - lowerBound(start);
+    }
+
+    // Index of the first holiday >= day
+    private int lowerBound(int day) {
+        int index = Arrays.binarySearch(holidays, day);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "BusinessCalendar{" + workdaysPerWeek + " workdays per week, " + holidays.length + " holidays}";
+    }
+}
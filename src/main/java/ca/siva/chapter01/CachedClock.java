@@ -0,0 +1,117 @@
+package ca.siva.chapter01;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+NOTE:
+1) Instant.now() reads the clock with nanosecond precision and allocates an Instant; System.currentTimeMillis() does not
+allocate but still asks the OS (vDSO on Linux, about 20 ns). For log lines and metrics a timestamp that is a millisecond or
+two old is good enough: CachedClock keeps currentTimeMillis() in a volatile field that a daemon "ticker" thread refreshes
+every tick, so reading it is a plain memory read that every thread can do millions of times per second.
+2) millis() is the cheap call. instant() creates an Instant only when one is really needed (to format or store it).
+3) It is a java.time.Clock, so it can be passed to LocalDateTime.now(clock), ZonedDateTime.now(clock) and any code that
+takes a Clock. withZone() returns a clock that shares the same ticker.
+4) It follows the wall clock, including its jumps: measure durations with Stopwatch (System.nanoTime()), not with the
+difference of two timestamps.
+5) The ticker wakes up every tick whether or not anyone reads the time (1000 times per second for 1 ms). close() stops it;
+after that millis() keeps returning the last value.
+ */
+public final class CachedClock extends Clock implements AutoCloseable {
+    private final Ticker ticker;
+    private final ZoneId zone;
+
+    private CachedClock(Ticker ticker, ZoneId zone) {
+        this.ticker = ticker;
+        this.zone = zone;
+    }
+
+    /**
+     * Starts a ticker thread that refreshes the time every tick; the clock is in UTC.
+     */
+    public static CachedClock start(Duration tick) {
+        Objects.requireNonNull(tick);
+        if (tick.isNegative() || tick.isZero()) {
+            throw new IllegalArgumentException("tick must be positive: " + tick);
+        }
+        Ticker ticker = new Ticker(tick.toNanos());
+        ticker.start();
+        return new CachedClock(ticker, ZoneOffset.UTC);
+    }
+
+    /**
+     * Milliseconds since the epoch as of the last tick: at most about one tick behind System.currentTimeMillis().
+     */
+    @Override
+    public long millis() {
+        return ticker.millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(ticker.millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public CachedClock withZone(ZoneId zone) {
+        return zone.equals(this.zone) ? this : new CachedClock(ticker, zone);
+    }
+
+    public Duration tick() {
+        return Duration.ofNanos(ticker.tickNanos);
+    }
+
+    /**
+     * Stops the ticker thread of this clock and of every clock derived from it with withZone().
+     */
+    @Override
+    public void close() {
+        ticker.stopped = true;
+        LockSupport.unpark(ticker);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CachedClock other && ticker == other.ticker && zone.equals(other.zone);
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(ticker) * 31 + zone.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CachedClock[" + zone + ", tick " + tick() + ']';
+    }
+
+    private static final class Ticker extends Thread {
+        private final long tickNanos;
+        private volatile long millis = System.currentTimeMillis();
+        private volatile boolean stopped;
+
+        Ticker(long tickNanos) {
+            super("cached-clock-ticker");
+            setDaemon(true);
+            this.tickNanos = tickNanos;
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                millis = System.currentTimeMillis();
+                LockSupport.parkNanos(this, tickNanos);
+            }
+        }
+    }
+}
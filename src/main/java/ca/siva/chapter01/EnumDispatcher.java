@@ -0,0 +1,84 @@
+package ca.siva.chapter01;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/*
+NOTE:
+1) The strategy pattern keyed by an enum: one handler per constant, chosen at run time from the constant (a message type,
+an order side, a state). A Map<String, Function> keyed by name hashes a string per call; a HashMap keyed by the enum calls
+hashCode() (the identity hash) and walks a bucket.
+2) An EnumDispatcher is built from an EnumMap (an array indexed by ordinal) and keeps the handlers in a plain array: a
+dispatch is an array read and the call. Unlike a switch, the handlers can be assembled at run time (from configuration,
+plugins, tests).
+3) Every constant must have a handler, or the fallback handles the missing ones: a new constant cannot be silently
+ignored.
+4) Immutable and thread-safe if the handlers are.
+ */
+public final class EnumDispatcher<E extends Enum<E>, T, R> {
+    private final Class<E> type;
+    private final Function<? super T, ? extends R>[] handlers;
+
+    private EnumDispatcher(Class<E> type, EnumMap<E, Function<? super T, ? extends R>> handlers,
+                           Function<? super T, ? extends R> fallback) {
+        this.type = type;
+        @SuppressWarnings("unchecked")
+        Function<? super T, ? extends R>[] array =
+                (Function<? super T, ? extends R>[]) new Function<?, ?>[Enums.values(type).size()];
+        this.handlers = array;
+        StringBuilder missing = new StringBuilder();
+        for (E constant : Enums.values(type)) {
+            Function<? super T, ? extends R> handler = handlers.getOrDefault(constant, fallback);
+            if (handler == null) {
+                missing.append(missing.length() == 0 ? "" : ", ").append(constant);
+            }
+            this.handlers[constant.ordinal()] = handler;
+        }
+        if (missing.length() > 0) {
+            throw new IllegalArgumentException("no handler for " + type.getSimpleName() + " " + missing);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a constant has no handler
+     */
+    public static <E extends Enum<E>, T, R> EnumDispatcher<E, T, R> of(
+            Class<E> type, Map<E, ? extends Function<? super T, ? extends R>> handlers) {
+        return new EnumDispatcher<>(type, copy(type, handlers), null);
+    }
+
+    /**
+     * The constants without a handler use fallback.
+     */
+    public static <E extends Enum<E>, T, R> EnumDispatcher<E, T, R> of(
+            Class<E> type, Map<E, ? extends Function<? super T, ? extends R>> handlers,
+            Function<? super T, ? extends R> fallback) {
+        return new EnumDispatcher<>(type, copy(type, handlers), Objects.requireNonNull(fallback));
+    }
+
+    public R apply(E key, T input) {
+        return handlers[key.ordinal()].apply(input);
+    }
+
+    public Function<? super T, ? extends R> handler(E key) {
+        return handlers[key.ordinal()];
+    }
+
+    public Class<E> type() {
+        return type;
+    }
+
+    private static <E extends Enum<E>, T, R> EnumMap<E, Function<? super T, ? extends R>> copy(
+            Class<E> type, Map<E, ? extends Function<? super T, ? extends R>> handlers) {
+        EnumMap<E, Function<? super T, ? extends R>> copy = new EnumMap<>(type);
+        handlers.forEach((key, handler) -> copy.put(key, Objects.requireNonNull(handler, () -> "handler of " + key)));
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "EnumDispatcher{" + type.getSimpleName() + ", " + handlers.length + " handlers}";
+    }
+}
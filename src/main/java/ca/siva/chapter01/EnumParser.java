@@ -0,0 +1,119 @@
+package ca.siva.chapter01;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.Function;
+
+/*
+NOTE:
+1) Enum.valueOf(name) looks the name up in a HashMap<String, E>, so a name read from a message (a slice of a char buffer or
+of the bytes of a network packet) first has to become a String: one or two allocations and a copy per field, before the
+lookup hashes every character again.
+2) An EnumParser looks the characters or the UTF-8 bytes up where they are, in a PerfectHash of the keys built once per
+enum: one hash, one slot and one comparison with the key in that slot, hit or miss.
+3) find() returns null for an unknown key, parse() throws IllegalArgumentException like Enum.valueOf.
+4) Keys are the constant names (Enums.parser caches one parser per enum) or any other unique strings, such as wire codes.
+5) Immutable and thread-safe.
+ */
+public final class EnumParser<E extends Enum<E>> {
+    private final Class<E> type;
+    private final E[] constants;
+    private final PerfectHash keys;
+
+    private EnumParser(Class<E> type, Function<? super E, String> key) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        String[] names = new String[constants.length];
+        for (int i = 0; i < constants.length; i++) {
+            names[i] = Objects.requireNonNull(key.apply(constants[i]), "key");
+            for (int j = 0; j < i; j++) {
+                if (names[i].equals(names[j])) {
+                    throw new IllegalArgumentException("duplicate key " + names[i] + " for " + constants[j] + " and "
+                            + constants[i]);
+                }
+            }
+        }
+        this.keys = PerfectHash.of(names);
+    }
+
+    /**
+     * Parses the constant names; Enums.parser(type) returns a cached one.
+     */
+    public static <E extends Enum<E>> EnumParser<E> of(Class<E> type) {
+        return new EnumParser<>(type, Enum::name);
+    }
+
+    /**
+     * Parses the given keys, one per constant, e.g. the codes of a wire format.
+     */
+    public static <E extends Enum<E>> EnumParser<E> of(Class<E> type, Function<? super E, String> key) {
+        return new EnumParser<>(type, Objects.requireNonNull(key));
+    }
+
+    public Class<E> type() {
+        return type;
+    }
+
+    public String key(E constant) {
+        return keys.key(constant.ordinal());
+    }
+
+    public E find(CharSequence chars) {
+        // Not find(chars, 0, length): a whole String takes the String.equals fast path of PerfectHash
+        int index = keys.indexOf(chars);
+        return index >= 0 ? constants[index] : null;
+    }
+
+    /**
+     * The constant whose key is chars[start, end), or null.
+     */
+    public E find(CharSequence chars, int start, int end) {
+        int index = keys.indexOf(chars, start, end);
+        return index >= 0 ? constants[index] : null;
+    }
+
+    /**
+     * The constant whose key, encoded in UTF-8, is bytes[offset, offset + length), or null.
+     */
+    public E find(byte[] bytes, int offset, int length) {
+        int index = keys.indexOf(bytes, offset, length);
+        return index >= 0 ? constants[index] : null;
+    }
+
+    /**
+     * Same as find, but an unknown key throws IllegalArgumentException with the message of Enum.valueOf.
+     */
+    public E parse(CharSequence chars) {
+        Objects.requireNonNull(chars, "Name is null");
+        E constant = find(chars);
+        if (constant == null) {
+            throw noConstant(chars);
+        }
+        return constant;
+    }
+
+    public E parse(CharSequence chars, int start, int end) {
+        E constant = find(chars, start, end);
+        if (constant == null) {
+            throw noConstant(chars.subSequence(start, end));
+        }
+        return constant;
+    }
+
+    public E parse(byte[] bytes, int offset, int length) {
+        E constant = find(bytes, offset, length);
+        if (constant == null) {
+            throw noConstant(new String(bytes, offset, length, StandardCharsets.UTF_8));
+        }
+        return constant;
+    }
+
+    private IllegalArgumentException noConstant(CharSequence key) {
+        return new IllegalArgumentException("No enum constant " + type.getCanonicalName() + "." + key);
+    }
+
+    @Override
+    public String toString() {
+        return "EnumParser{" + type.getSimpleName() + ", " + keys + "}";
+    }
+}
@@ -2,12 +2,18 @@ package ca.siva.chapter01;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
+
 /*
  NOTE:
  1) valueOf method will throw IllegalArgumentException when an invalid value is passed.
  2) If enum contains an abstract method, then every enum has to override that method.
  3) Enum constructors are implicitly private and cannot be declared public or protected.
  4) Enum constructors can only be private or package-private (default access). This is because enum types are intended to be instantiated only within the enum type itself,
+ 5) Constants with a body (WINTER { ... }) are instances of anonymous subclasses: use getDeclaringClass(), not getClass(),
+ to get the enum type. EnumSet, EnumMap, Enums and EnumParser all work with the enum type.
+ 6) For input that is often invalid, Enums.parser(type).find() returns null instead of throwing: creating an exception
+ (with its stack trace) costs far more than the lookup.
  */
 enum Season {
     WINTER("Cold season", 0) {
@@ -63,7 +69,7 @@ public class EnumWithValuesExample {
 
     // Example of accessing custom values in an enum
     public static void accessEnumValues() {
-        for (Season season : Season.values()) {
+        for (Season season : Enums.values(Season.class)) {
             log.info("Season: " + season);
             log.info("Description: " + season.getDescription());
             log.info("Average Temperature: " + season.getAverageTemperature() + "°C");
@@ -98,6 +104,16 @@ public class EnumWithValuesExample {
         } catch (NullPointerException e) {
             log.error("Null season string: " + e.getMessage());
         }
+
+        // Without an exception for the invalid string, and without creating a String from the bytes
+        byte[] input = "SUMMER,RAIN".getBytes(StandardCharsets.UTF_8);
+        EnumParser<Season> seasons = Enums.parser(Season.class);
+        log.info("Season from parser: " + seasons.find(input, 0, 6) + ", invalid: " + seasons.find(input, 7, 4));
+        log.info("Declaring class of WINTER: " + Season.WINTER.getDeclaringClass().getSimpleName()
+                + ", getClass(): " + Season.WINTER.getClass().getName());
+        // Output:
+        // Season from parser: SUMMER, invalid: null
+        // Declaring class of WINTER: Season, getClass(): ca.siva.chapter01.Season$1
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,132 @@
+package ca.siva.chapter01;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+NOTE:
+1) values() returns a new copy of the constants array on every call (arrays are mutable, so the enum cannot hand out its
+own), and Class.getEnumConstants() copies it as well. Enums.values(type) returns an immutable List created once per enum
+type and cached in a ClassValue, so a loop over the constants, or byOrdinal() decoding a number from a message, allocates
+nothing.
+2) parser(type) is the cached EnumParser of the constant names: valueOf from a CharSequence or from UTF-8 bytes without
+creating a String.
+3) An EnumSet of an enum with at most 64 constants is a bit mask internally (RegularEnumSet). toBits/fromBits expose it as
+a long, bit i for the constant of ordinal i: 8 bytes in a message or a database column instead of a list of names.
+toWords/fromWords do the same with a long[] for larger enums. The bits depend on the order of the constants: add new
+constants at the end.
+ */
+public final class Enums {
+    private static final ClassValue<List<?>> VALUES = new ClassValue<>() {
+        @Override
+        protected List<?> computeValue(Class<?> type) {
+            return List.of(type.getEnumConstants());
+        }
+    };
+    private static final ClassValue<EnumParser<?>> PARSERS = new ClassValue<>() {
+        @Override
+        protected EnumParser<?> computeValue(Class<?> type) {
+            return newParser(type);
+        }
+    };
+
+    private Enums() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> List<E> values(Class<E> type) {
+        return (List<E>) VALUES.get(type);
+    }
+
+    /**
+     * The constant with the given ordinal, without copying values().
+     */
+    public static <E extends Enum<E>> E byOrdinal(Class<E> type, int ordinal) {
+        List<E> values = values(type);
+        if (ordinal < 0 || ordinal >= values.size()) {
+            throw new IllegalArgumentException("No " + type.getSimpleName() + " constant with ordinal " + ordinal);
+        }
+        return values.get(ordinal);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> EnumParser<E> parser(Class<E> type) {
+        return (EnumParser<E>) PARSERS.get(type);
+    }
+
+    /**
+     * The set as a bit mask: bit i is set if the constant with ordinal i is in the set.
+     *
+     * @throws IllegalArgumentException if type has more than 64 constants
+     */
+    public static <E extends Enum<E>> long toBits(Class<E> type, Set<E> set) {
+        checkAtMost64(type);
+        long bits = 0;
+        for (E constant : set) {
+            bits |= 1L << constant.ordinal();
+        }
+        return bits;
+    }
+
+    /**
+     * @throws IllegalArgumentException if type has more than 64 constants or a bit has no constant
+     */
+    public static <E extends Enum<E>> EnumSet<E> fromBits(Class<E> type, long bits) {
+        checkAtMost64(type);
+        List<E> values = values(type);
+        if (values.size() < 64 && bits >>> values.size() != 0) {
+            throw new IllegalArgumentException("bits " + Long.toHexString(bits) + " have no " + type.getSimpleName()
+                    + " constant beyond ordinal " + (values.size() - 1));
+        }
+        EnumSet<E> set = EnumSet.noneOf(type);
+        for (; bits != 0; bits &= bits - 1) {
+            set.add(values.get(Long.numberOfTrailingZeros(bits)));
+        }
+        return set;
+    }
+
+    /**
+     * The set as (number of constants + 63) / 64 words: bit i % 64 of word i / 64 is set if the constant with ordinal
+     * i is in the set.
+     */
+    public static <E extends Enum<E>> long[] toWords(Class<E> type, Set<E> set) {
+        long[] words = new long[(values(type).size() + 63) >>> 6];
+        for (E constant : set) {
+            words[constant.ordinal() >>> 6] |= 1L << constant.ordinal();
+        }
+        return words;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a bit has no constant
+     */
+    public static <E extends Enum<E>> EnumSet<E> fromWords(Class<E> type, long[] words) {
+        List<E> values = values(type);
+        EnumSet<E> set = EnumSet.noneOf(type);
+        for (int w = 0; w < words.length; w++) {
+            for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                int ordinal = w * 64 + Long.numberOfTrailingZeros(bits);
+                if (ordinal >= values.size()) {
+                    throw new IllegalArgumentException("bit " + ordinal + " has no " + type.getSimpleName() + " constant");
+                }
+                set.add(values.get(ordinal));
+            }
+        }
+        return set;
+    }
+
+    private static void checkAtMost64(Class<?> type) {
+        int count = VALUES.get(type).size();
+        if (count > 64) {
+            throw new IllegalArgumentException(type.getSimpleName() + " has " + count + " constants, use toWords/fromWords");
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static EnumParser<?> newParser(Class<?> type) {
+        Objects.requireNonNull(type.getEnumConstants(), () -> type + " is not an enum");
+        return EnumParser.of((Class) type);
+    }
+}
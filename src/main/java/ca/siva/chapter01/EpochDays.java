@@ -0,0 +1,271 @@
+package ca.siva.chapter01;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalUnit;
+
+/*
+NOTE:
+1) A LocalDate is an object of 24 bytes around three fields; LocalDate.toEpochDay() turns it into one int (days since
+1970-01-01) and LocalDate.ofEpochDay() back. A date column stored as int[] epoch days takes 4 bytes per row, and comparing,
+sorting or subtracting dates is plain int arithmetic.
+2) The methods here do on epoch days what LocalDate does on objects (of, plusMonths, plus(Period), getDayOfWeek,
+with(firstDayOfMonth()), ...) with the same results, and the array versions do it for a whole column without creating a
+LocalDate per element. Year, month and day come from Neri and Schneider's algorithm: a few multiplications and shifts.
+3) Supported dates go from 0000-03-01 (MIN) to 9999-12-31 (MAX); other epoch days are rejected with an
+IllegalArgumentException, as are results outside that range.
+4) The array methods write into an output array of the same length, which may be the input array.
+ */
+public final class EpochDays {
+    public static final int MIN = -719_468;
+    public static final int MAX = 2_932_896;
+
+    private EpochDays() {
+    }
+
+    public static int of(int year, int month, int dayOfMonth) {
+        if (month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > lengthOfMonth(year, month)) {
+            throw new IllegalArgumentException("invalid date: " + year + "-" + month + "-" + dayOfMonth);
+        }
+        long epochDay = epochDay(year, month, dayOfMonth);
+        checkRange(epochDay);
+        return (int) epochDay;
+    }
+
+    public static int of(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        checkRange(epochDay);
+        return (int) epochDay;
+    }
+
+    public static LocalDate toLocalDate(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * The date as yyyymmdd, e.g. 20240522 for 2024-05-22.
+     */
+    public static int yyyymmdd(long epochDay) {
+        checkRange(epochDay);
+        // Neri and Schneider's Euclidean affine functions: days since 0000-03-01 in a calendar whose years start on
+        // March 1st (so February is last), mostly multiplications and shifts where the textbook algorithm divides
+        int n = (int) epochDay - MIN;
+        int n1 = 4 * n + 3;
+        int century = n1 / 146_097;
+        int n2 = (n1 % 146_097) | 3;
+        long p2 = 2_939_745L * n2;
+        int yearOfCentury = (int) (p2 >>> 32);
+        int dayOfYear = (int) ((p2 & 0xFFFFFFFFL) / 2_939_745 / 4);
+        int n3 = 2141 * dayOfYear + 197_913;
+        int month = n3 >>> 16;
+        int dayOfMonth = (n3 & 0xFFFF) / 2141 + 1;
+        int year = 100 * century + yearOfCentury;
+        if (dayOfYear >= 306) {
+            // January and February belong to the next year
+            year++;
+            month -= 12;
+        }
+        return year * 10_000 + month * 100 + dayOfMonth;
+    }
+
+    public static int year(int epochDay) {
+        return yyyymmdd(epochDay) / 10_000;
+    }
+
+    public static int month(int epochDay) {
+        return yyyymmdd(epochDay) / 100 % 100;
+    }
+
+    public static int dayOfMonth(int epochDay) {
+        return yyyymmdd(epochDay) % 100;
+    }
+
+    /**
+     * ISO day of the week: 1 for Monday to 7 for Sunday, as DayOfWeek.getValue().
+     */
+    public static int dayOfWeek(int epochDay) {
+        checkRange(epochDay);
+        // MIN, 0000-03-01, was a Wednesday (3); counting from it keeps the dividend positive
+        return (epochDay - MIN + 2) % 7 + 1;
+    }
+
+    /**
+     * Months since January 1970 (negative before): consecutive months get consecutive numbers, a bucket key for
+     * grouping by month.
+     */
+    public static int monthsSinceEpoch(int epochDay) {
+        int date = yyyymmdd(epochDay);
+        return (date / 10_000 - 1970) * 12 + date / 100 % 100 - 1;
+    }
+
+    public static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Same as LocalDate.plusMonths: the day of month is kept, or reduced to the last day of a shorter month.
+     */
+    public static int plusMonths(int epochDay, long months) {
+        int date = yyyymmdd(epochDay);
+        long totalMonths = (date / 10_000) * 12L + date / 100 % 100 - 1 + months;
+        if (totalMonths < 0 || totalMonths > 9999 * 12 + 11) {
+            throw new IllegalArgumentException("result out of range: " + toLocalDate(epochDay) + " plus " + months + " months");
+        }
+        long result = addMonths(date, totalMonths);
+        checkRange(result);
+        return (int) result;
+    }
+
+    /**
+     * Same as LocalDate.plus(period): years and months first, then days. Only the final date has to be in range, as with
+     * LocalDate: 0000-03-15 plus one month less and 30 days more is 0000-03-16, although 0000-02-15 is before MIN.
+     */
+    public static int plus(int epochDay, Period period) {
+        long result = epochDay;
+        if ((period.getYears() | period.getMonths()) != 0) {
+            int date = yyyymmdd(epochDay);
+            long totalMonths = (date / 10_000) * 12L + date / 100 % 100 - 1 + period.toTotalMonths();
+            // An int number of days moves a date by less than 6 million years
+            if (Math.abs(totalMonths) > 12L * 10_000_000) {
+                throw new IllegalArgumentException("result out of range: " + toLocalDate(epochDay) + " plus " + period);
+            }
+            result = addMonths(date, totalMonths);
+        }
+        result += period.getDays();
+        checkRange(result);
+        return (int) result;
+    }
+
+    // Epoch day of the month totalMonths (year * 12 + month - 1, any year) with the day of month of date, or the last day
+    // of that month if it is shorter
+    private static long addMonths(int date, long totalMonths) {
+        int year = (int) Math.floorDiv(totalMonths, 12);
+        int month = (int) Math.floorMod(totalMonths, 12) + 1;
+        return epochDay(year, month, Math.min(date % 100, lengthOfMonth(year, month)));
+    }
+
+    /**
+     * First day of the unit containing the date, with IsoFields.QUARTER_YEARS and ChronoUnit DAYS, WEEKS (starting on
+     * Monday), MONTHS, YEARS, DECADES, CENTURIES and MILLENNIA (starting at years divisible by 10, 100 and 1000).
+     *
+     * @throws IllegalArgumentException if that first day is before MIN, which happens for the dates of the years 0 to 9
+     * with DECADES, 0 to 99 with CENTURIES, 0 to 999 with MILLENNIA, of year 0 with YEARS, 0000-03-01 to 0000-03-31 with
+     * QUARTER_YEARS and 0000-03-01 to 0000-03-05 with WEEKS
+     */
+    public static int truncate(int epochDay, TemporalUnit unit) {
+        if (unit == ChronoUnit.DAYS) {
+            checkRange(epochDay);
+            return epochDay;
+        }
+        if (unit == ChronoUnit.WEEKS) {
+            // The Monday before 0000-03-01 to 0000-03-05 is before MIN
+            int start = epochDay - dayOfWeek(epochDay) + 1;
+            checkRange(start);
+            return start;
+        }
+        int date = yyyymmdd(epochDay);
+        int year = date / 10_000;
+        int month = date / 100 % 100;
+        if (unit == ChronoUnit.MONTHS) {
+            return epochDay - date % 100 + 1;
+        }
+        if (unit == IsoFields.QUARTER_YEARS) {
+            return of(year, month - (month - 1) % 3, 1);
+        }
+        int years = unit == ChronoUnit.YEARS ? 1 : unit == ChronoUnit.DECADES ? 10 : unit == ChronoUnit.CENTURIES ? 100
+                : unit == ChronoUnit.MILLENNIA ? 1000 : 0;
+        if (years == 0) {
+            throw new IllegalArgumentException("unsupported unit: " + unit);
+        }
+        // January of year 0 is before MIN, so of() rejects every date whose unit starts in year 0
+        return of(year - year % years, 1, 1);
+    }
+
+    public static void plusDays(int[] epochDays, int days, int[] out) {
+        checkLengths(epochDays.length, out.length);
+        for (int i = 0; i < epochDays.length; i++) {
+            long result = (long) epochDays[i] + days;
+            checkRange(result);
+            out[i] = (int) result;
+        }
+    }
+
+    public static void plus(int[] epochDays, Period period, int[] out) {
+        checkLengths(epochDays.length, out.length);
+        if ((period.getYears() | period.getMonths()) == 0) {
+            plusDays(epochDays, period.getDays(), out);
+            return;
+        }
+        for (int i = 0; i < epochDays.length; i++) {
+            out[i] = plus(epochDays[i], period);
+        }
+    }
+
+    public static void truncate(int[] epochDays, TemporalUnit unit, int[] out) {
+        checkLengths(epochDays.length, out.length);
+        if (unit == ChronoUnit.MONTHS) {
+            // The common case, inlined: the day of month is the last two digits of yyyymmdd
+            for (int i = 0; i < epochDays.length; i++) {
+                out[i] = epochDays[i] - yyyymmdd(epochDays[i]) % 100 + 1;
+            }
+            return;
+        }
+        for (int i = 0; i < epochDays.length; i++) {
+            out[i] = truncate(epochDays[i], unit);
+        }
+    }
+
+    public static void dayOfWeek(int[] epochDays, int[] out) {
+        checkLengths(epochDays.length, out.length);
+        for (int i = 0; i < epochDays.length; i++) {
+            out[i] = dayOfWeek(epochDays[i]);
+        }
+    }
+
+    public static void yyyymmdd(int[] epochDays, int[] out) {
+        checkLengths(epochDays.length, out.length);
+        for (int i = 0; i < epochDays.length; i++) {
+            out[i] = yyyymmdd(epochDays[i]);
+        }
+    }
+
+    public static void monthsSinceEpoch(int[] epochDays, int[] out) {
+        checkLengths(epochDays.length, out.length);
+        for (int i = 0; i < epochDays.length; i++) {
+            out[i] = monthsSinceEpoch(epochDays[i]);
+        }
+    }
+
+    // days_from_civil (Howard Hinnant), valid for any year; the callers check the range of the result
+    static long epochDay(long year, int month, int dayOfMonth) {
+        year -= month <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+
+    static void checkRange(long epochDay) {
+        if (epochDay < MIN || epochDay > MAX) {
+            throw new IllegalArgumentException("epoch day must be between " + MIN + " (0000-03-01) and " + MAX
+                    + " (9999-12-31): " + epochDay);
+        }
+    }
+
+    static void checkLengths(int inputLength, int outputLength) {
+        if (inputLength != outputLength) {
+            throw new IllegalArgumentException("arrays have different lengths: " + inputLength + ", " + outputLength);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ca.siva.chapter01;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalUnit;
+
+/*
+NOTE:
+1) The date-time counterpart of EpochDays: a LocalDateTime (48 bytes across three objects) stored as one long, the
+microseconds since 1970-01-01T00:00. Like LocalDateTime it has no time zone (ZoneConverter produces such local values from
+UTC timestamps, in milliseconds: multiply by 1000). Microseconds are what most databases store; nanoseconds are dropped.
+2) The date part is floorDiv(micros, MICROS_PER_DAY), an epoch day, and every EpochDays operation applies to it.
+3) Supported date-times are those whose date is supported by EpochDays (0000-03-01 to 9999-12-31).
+ */
+public final class EpochMicros {
+    public static final long MICROS_PER_DAY = 86_400_000_000L;
+
+    private EpochMicros() {
+    }
+
+    /**
+     * Microseconds since 1970-01-01T00:00 of dateTime; the nanoseconds below a microsecond are dropped.
+     */
+    public static long of(LocalDateTime dateTime) {
+        return EpochDays.of(dateTime.toLocalDate()) * MICROS_PER_DAY + dateTime.toLocalTime().toNanoOfDay() / 1000;
+    }
+
+    public static LocalDateTime toLocalDateTime(long micros) {
+        return LocalDateTime.of(EpochDays.toLocalDate(epochDay(micros)), LocalTime.ofNanoOfDay(microOfDay(micros) * 1000));
+    }
+
+    public static int epochDay(long micros) {
+        long epochDay = Math.floorDiv(micros, MICROS_PER_DAY);
+        EpochDays.checkRange(epochDay);
+        return (int) epochDay;
+    }
+
+    public static long microOfDay(long micros) {
+        return Math.floorMod(micros, MICROS_PER_DAY);
+    }
+
+    /**
+     * Start of the unit containing micros: time units from MICROS to DAYS (HOURS truncates to the hour, like
+     * LocalDateTime.truncatedTo), and the calendar units of EpochDays.truncate (WEEKS, MONTHS, QUARTER_YEARS, YEARS...).
+     */
+    public static long truncate(long micros, TemporalUnit unit) {
+        long unitMicros = unitMicros(unit);
+        if (unitMicros > 0) {
+            epochDay(micros);
+            return Math.floorDiv(micros, unitMicros) * unitMicros;
+        }
+        return EpochDays.truncate(epochDay(micros), unit) * MICROS_PER_DAY;
+    }
+
+    /**
+     * Same as LocalDateTime.plus(period): the date moves as with LocalDate.plus(period), the time of day stays.
+     */
+    public static long plus(long micros, Period period) {
+        return EpochDays.plus(epochDay(micros), period) * MICROS_PER_DAY + microOfDay(micros);
+    }
+
+    public static void toEpochDays(long[] micros, int[] out) {
+        EpochDays.checkLengths(micros.length, out.length);
+        for (int i = 0; i < micros.length; i++) {
+            out[i] = epochDay(micros[i]);
+        }
+    }
+
+    public static void truncate(long[] micros, TemporalUnit unit, long[] out) {
+        EpochDays.checkLengths(micros.length, out.length);
+        long unitMicros = unitMicros(unit);
+        if (unitMicros > 0) {
+            for (int i = 0; i < micros.length; i++) {
+                epochDay(micros[i]);
+                out[i] = Math.floorDiv(micros[i], unitMicros) * unitMicros;
+            }
+            return;
+        }
+        for (int i = 0; i < micros.length; i++) {
+            out[i] = EpochDays.truncate(epochDay(micros[i]), unit) * MICROS_PER_DAY;
+        }
+    }
+
+    public static void plus(long[] micros, Duration duration, long[] out) {
+        EpochDays.checkLengths(micros.length, out.length);
+        long durationMicros = duration.toNanos() / 1000;
+        for (int i = 0; i < micros.length; i++) {
+            long result = micros[i] + durationMicros;
+            epochDay(result);
+            out[i] = result;
+        }
+    }
+
+    public static void plus(long[] micros, Period period, long[] out) {
+        EpochDays.checkLengths(micros.length, out.length);
+        for (int i = 0; i < micros.length; i++) {
+            out[i] = plus(micros[i], period);
+        }
+    }
+
+    // Length of a time unit in microseconds, or 0 for the calendar units
+    private static long unitMicros(TemporalUnit unit) {
+        if (!(unit instanceof ChronoUnit chronoUnit)) {
+            return 0;
+        }
+        return switch (chronoUnit) {
+            case MICROS -> 1;
+            case MILLIS -> 1000;
+            case SECONDS -> 1_000_000;
+            case MINUTES -> 60_000_000;
+            case HOURS -> 3_600_000_000L;
+            case HALF_DAYS -> MICROS_PER_DAY / 2;
+            case DAYS -> MICROS_PER_DAY;
+            default -> 0;
+        };
+    }
+}
@@ -0,0 +1,473 @@
+package ca.siva.chapter01;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+NOTE:
+1) String.intern() puts strings in the JVM's string pool (NOTE 1 of StringMethodsExample). That table is shared by the whole
+JVM, has a fixed number of buckets (-XX:StringTableSize) and cannot be bounded or measured from the application. An Interner
+is an application-level pool: values read from a database, a file or a ResourceBundle that repeat (department names, country
+codes, status values) are replaced by one canonical String, so the duplicates can be garbage collected.
+2) weak() keeps its strings through weak references: a String that is no longer used anywhere else disappears from the
+table at the next GC. lru(maxSize) keeps strong references to at most maxSize strings and evicts the least recently used
+one when it is full; weak(maxSize) does both.
+3) The table is split into stripes, each with its own lock and its own share of maxSize, so threads interning different
+strings rarely wait for each other. Eviction is LRU within a stripe, which is close to a global LRU when strings spread
+evenly over the stripes.
+4) intern(CharSequence) and intern(byte[], ...) look the characters up without creating a String; a String is only created
+on a miss. For bytes this works for UTF-8, ISO-8859-1 and US-ASCII; other charsets are decoded into a String first.
+5) stats() reports hits, misses and evictions, so the hit rate shows whether interning a field is worth it.
+ */
+public final class Interner {
+    private static final int CHARS = 0;
+    private static final int LATIN1 = 1;
+    private static final int UTF8 = 2;
+    private static final long MALFORMED = Long.MIN_VALUE;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    private Interner(boolean weak, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        int count = Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors() * 4));
+        count = Math.max(1, Math.min(count, Integer.highestOneBit(Math.max(1, maxSize / 64))));
+        stripes = new Stripe[count];
+        int perStripe = maxSize == Integer.MAX_VALUE ? Integer.MAX_VALUE : (maxSize + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(weak, perStripe);
+        }
+        stripeShift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    /**
+     * Unbounded; a String is dropped once nothing else references it.
+     */
+    public static Interner weak() {
+        return new Interner(true, Integer.MAX_VALUE);
+    }
+
+    /**
+     * At most maxSize strings, evicted in LRU order, and dropped earlier once nothing else references them.
+     */
+    public static Interner weak(int maxSize) {
+        return new Interner(true, maxSize);
+    }
+
+    /**
+     * At most maxSize strings, held strongly and evicted in LRU order.
+     */
+    public static Interner lru(int maxSize) {
+        return new Interner(false, maxSize);
+    }
+
+    /**
+     * Returns the canonical String equal to value; value itself becomes the canonical one if none is in the table.
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        return stripe(hash).intern(hash, value, 0, value.length(), CHARS);
+    }
+
+    public String intern(CharSequence chars) {
+        return chars == null ? null : intern(chars, 0, chars.length());
+    }
+
+    /**
+     * Returns the canonical String with the characters chars[start, end), creating one only if it is not in the table.
+     */
+    public String intern(CharSequence chars, int start, int end) {
+        Objects.checkFromToIndex(start, end, chars.length());
+        if (chars instanceof String string && start == 0 && end == string.length()) {
+            return intern(string);
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        return stripe(hash).intern(hash, chars, start, end, CHARS);
+    }
+
+    /**
+     * Returns the canonical String for bytes[offset, offset + length) decoded with the charset (see NOTE 4). Malformed
+     * UTF-8 is decoded like new String(bytes, offset, length, charset), with U+FFFD for the bad bytes.
+     */
+    public String intern(byte[] bytes, int offset, int length, Charset charset) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        int end = offset + length;
+        long hash;
+        int kind;
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            hash = utf8Hash(bytes, offset, end);
+            kind = UTF8;
+        } else if (charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII) && isAscii(bytes, offset, end)) {
+            hash = latin1Hash(bytes, offset, end);
+            kind = LATIN1;
+        } else {
+            hash = MALFORMED;
+            kind = -1;
+        }
+        if (hash == MALFORMED) {
+            return intern(new String(bytes, offset, length, charset));
+        }
+        return stripe((int) hash).intern((int) hash, bytes, offset, end, kind);
+    }
+
+    public InternerStats stats() {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                hits += stripe.hits;
+                misses += stripe.misses;
+                evictions += stripe.evictions;
+                size += stripe.size;
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return new InternerStats(hits, misses, evictions, size);
+    }
+
+    /**
+     * Number of strings in the table; with weak references this includes strings collected since they were last seen.
+     */
+    public int size() {
+        return stats().size();
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    private Stripe stripe(int hash) {
+        return stripes[((hash * 0x9E3779B9) >>> stripeShift) & (stripes.length - 1)];
+    }
+
+    private static final class Node {
+        final int hash;
+        final Object value;
+        Node next;
+        Node before;
+        Node after;
+
+        Node(int hash, Object value) {
+            this.hash = hash;
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        String get() {
+            return value instanceof String string ? string : ((WeakReference<String>) value).get();
+        }
+    }
+
+    private static final class Stripe extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean weak;
+        private final int maxSize;
+        // LRU order: head.after is the least recently used; only maintained when the stripe is bounded
+        private final Node head = new Node(0, null);
+        private Node[] table = new Node[16];
+        private int size;
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Stripe(boolean weak, int maxSize) {
+            this.weak = weak;
+            this.maxSize = maxSize;
+            head.before = head;
+            head.after = head;
+        }
+
+        private boolean bounded() {
+            return maxSize != Integer.MAX_VALUE;
+        }
+
+        String intern(int hash, Object key, int start, int end, int kind) {
+            lock();
+            try {
+                int index = spread(hash) & (table.length - 1);
+                Node previous = null;
+                Node node = table[index];
+                while (node != null) {
+                    String value = node.get();
+                    Node next = node.next;
+                    if (value == null) {
+                        unlink(index, previous, node);
+                    } else if (node.hash == hash && matches(value, key, start, end, kind)) {
+                        hits++;
+                        if (bounded()) {
+                            unlinkLru(node);
+                            linkLast(node);
+                        }
+                        return value;
+                    } else {
+                        previous = node;
+                    }
+                    node = next;
+                }
+                misses++;
+                String value = create(key, start, end, kind);
+                add(hash, value);
+                return value;
+            } finally {
+                unlock();
+            }
+        }
+
+        private void add(int hash, String value) {
+            if (size >= maxSize) {
+                if (weak) {
+                    expungeCollected();
+                }
+                while (size >= maxSize) {
+                    Node eldest = head.after;
+                    remove(eldest);
+                }
+            }
+            if (size >= table.length - (table.length >>> 2)) {
+                if (weak) {
+                    expungeCollected();
+                }
+                if (size >= table.length >>> 1) {
+                    resize();
+                }
+            }
+            Node node = new Node(hash, weak ? new WeakReference<>(value) : value);
+            int index = spread(hash) & (table.length - 1);
+            node.next = table[index];
+            table[index] = node;
+            if (bounded()) {
+                linkLast(node);
+            }
+            size++;
+        }
+
+        private void resize() {
+            Node[] old = table;
+            table = new Node[old.length * 2];
+            for (Node bucket : old) {
+                for (Node node = bucket; node != null; ) {
+                    Node next = node.next;
+                    int index = spread(node.hash) & (table.length - 1);
+                    node.next = table[index];
+                    table[index] = node;
+                    node = next;
+                }
+            }
+        }
+
+        // Removes every entry whose String was garbage collected
+        private void expungeCollected() {
+            for (int index = 0; index < table.length; index++) {
+                Node previous = null;
+                for (Node node = table[index]; node != null; node = node.next) {
+                    if (node.get() == null) {
+                        unlink(index, previous, node);
+                    } else {
+                        previous = node;
+                    }
+                }
+            }
+        }
+
+        private void remove(Node target) {
+            int index = spread(target.hash) & (table.length - 1);
+            Node previous = null;
+            for (Node node = table[index]; node != null; node = node.next) {
+                if (node == target) {
+                    unlink(index, previous, node);
+                    return;
+                }
+                previous = node;
+            }
+        }
+
+        private void unlink(int index, Node previous, Node node) {
+            if (previous == null) {
+                table[index] = node.next;
+            } else {
+                previous.next = node.next;
+            }
+            if (bounded()) {
+                unlinkLru(node);
+            }
+            size--;
+            evictions++;
+        }
+
+        private void linkLast(Node node) {
+            node.before = head.before;
+            node.after = head;
+            head.before.after = node;
+            head.before = node;
+        }
+
+        private void unlinkLru(Node node) {
+            node.before.after = node.after;
+            node.after.before = node.before;
+        }
+
+        void clear() {
+            table = new Node[16];
+            head.before = head;
+            head.after = head;
+            size = 0;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    private static boolean matches(String value, Object key, int start, int end, int kind) {
+        if (kind == CHARS) {
+            CharSequence chars = (CharSequence) key;
+            if (value.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (value.charAt(i - start) != chars.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        byte[] bytes = (byte[]) key;
+        if (kind == LATIN1) {
+            if (value.length() != end - start) {
+                return false;
+            }
+            for (int i = start; i < end; i++) {
+                if (value.charAt(i - start) != (char) (bytes[i] & 0xFF)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int length = value.length();
+        int j = 0;
+        for (int i = start; i < end; ) {
+            long decoded = decodeUtf8(bytes, i, end);
+            int codePoint = (int) (decoded >>> 32);
+            i = (int) decoded;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (j == length || value.charAt(j++) != codePoint) {
+                    return false;
+                }
+            } else if (j + 1 >= length || value.charAt(j++) != Character.highSurrogate(codePoint)
+                    || value.charAt(j++) != Character.lowSurrogate(codePoint)) {
+                return false;
+            }
+        }
+        return j == length;
+    }
+
+    private static String create(Object key, int start, int end, int kind) {
+        return switch (kind) {
+            case CHARS -> ((CharSequence) key).subSequence(start, end).toString();
+            case LATIN1 -> new String((byte[]) key, start, end - start, StandardCharsets.ISO_8859_1);
+            default -> new String((byte[]) key, start, end - start, StandardCharsets.UTF_8);
+        };
+    }
+
+    private static boolean isAscii(byte[] bytes, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long latin1Hash(byte[] bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + (bytes[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    // Same value as String.hashCode() of the decoded string, or MALFORMED
+    private static long utf8Hash(byte[] bytes, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; ) {
+            long decoded = decodeUtf8(bytes, i, end);
+            if (decoded < 0) {
+                return MALFORMED;
+            }
+            int codePoint = (int) (decoded >>> 32);
+            i = (int) decoded;
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                hash = 31 * hash + codePoint;
+            } else {
+                hash = 31 * (31 * hash + Character.highSurrogate(codePoint)) + Character.lowSurrogate(codePoint);
+            }
+        }
+        return hash;
+    }
+
+    // Decodes the code point starting at bytes[i]: codePoint << 32 | index of the next one, or -1 if the bytes are not
+    // well-formed UTF-8 (truncated, overlong, a surrogate or above U+10FFFF)
+    static long decodeUtf8(byte[] bytes, int i, int end) {
+        int b0 = bytes[i];
+        if (b0 >= 0) {
+            return (long) b0 << 32 | (i + 1);
+        }
+        int codePoint;
+        int length;
+        int min;
+        if ((b0 & 0xE0) == 0xC0) {
+            codePoint = b0 & 0x1F;
+            length = 2;
+            min = 0x80;
+        } else if ((b0 & 0xF0) == 0xE0) {
+            codePoint = b0 & 0x0F;
+            length = 3;
+            min = 0x800;
+        } else if ((b0 & 0xF8) == 0xF0) {
+            codePoint = b0 & 0x07;
+            length = 4;
+            min = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        } else {
+            return -1;
+        }
+        if (i + length > end) {
+            return -1;
+        }
+        for (int k = 1; k < length; k++) {
+            int b = bytes[i + k];
+            if ((b & 0xC0) != 0x80) {
+                return -1;
+            }
+            codePoint = codePoint << 6 | (b & 0x3F);
+        }
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            return -1;
+        }
+        return (long) codePoint << 32 | (i + length);
+    }
+}
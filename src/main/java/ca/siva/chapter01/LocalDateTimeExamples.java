@@ -10,11 +10,15 @@ import java.time.temporal.ChronoUnit;
 import java.time.format.DateTimeFormatter;
 import java.time.Period;
 import java.time.Duration;
+import java.time.temporal.IsoFields;
+import java.util.Arrays;
 
 /*
 NOTE:
 1) In DateTimeFormatter pattern, to Escape " ' ", you need to escape with 2 quotes " '' ".
 2) Locale format is defined with lowercase lang and upper case country separated by underscore.
+3) For columns of date-times (events, ticks, log lines) EpochMicros stores each one as a long of microseconds since
+1970-01-01T00:00 and truncates or adds periods to a whole long[] at once, with the results of truncatedTo and plus.
  */
 @Slf4j
 public class LocalDateTimeExamples {
@@ -187,6 +191,25 @@ public class LocalDateTimeExamples {
         log.info("Parsed DateTime with Escaped Quotes: " + parsedDateTime);
     }
 
+    // Bucketing a column of date-times stored as epoch microseconds
+    public static void epochMicrosExample() {
+        long[] events = {
+                EpochMicros.of(LocalDateTime.of(2024, 5, 22, 14, 30, 15)),
+                EpochMicros.of(LocalDateTime.of(2024, 5, 22, 14, 59, 59)),
+                EpochMicros.of(LocalDateTime.of(2024, 8, 1, 0, 0))};
+        long[] buckets = new long[events.length];
+        EpochMicros.truncate(events, ChronoUnit.HOURS, buckets);
+        log.info("Hours: " + Arrays.stream(buckets).mapToObj(EpochMicros::toLocalDateTime).toList());
+        EpochMicros.truncate(events, IsoFields.QUARTER_YEARS, buckets);
+        log.info("Quarters: " + Arrays.stream(buckets).mapToObj(EpochMicros::toLocalDateTime).toList());
+        EpochMicros.plus(events, Period.ofMonths(1), buckets);
+        log.info("One month later: " + Arrays.stream(buckets).mapToObj(EpochMicros::toLocalDateTime).toList());
+        // Output:
+        // Hours: [2024-05-22T14:00, 2024-05-22T14:00, 2024-08-01T00:00]
+        // Quarters: [2024-04-01T00:00, 2024-04-01T00:00, 2024-07-01T00:00]
+        // One month later: [2024-06-22T14:30:15, 2024-06-22T14:59:59, 2024-09-01T00:00]
+    }
+
     public static void main(String[] args) {
         currentDateTime();
         createDateTime();
@@ -208,5 +231,6 @@ public class LocalDateTimeExamples {
         subtractDurationFromInstant();
         differenceBetweenInstants();
         formatAndParseDateTimeWithEscapedQuotes();
+        epochMicrosExample();
     }
 }
@@ -0,0 +1,343 @@
+package ca.siva.chapter01;
+
+import java.util.Arrays;
+
+/*
+NOTE:
+1) java.util.BitSet is indexed by int, so it holds at most 2^31 bits, and it grows on demand: every set() checks the
+capacity and keeps wordsInUse up to date. LongBitSet has a fixed number of bits given to the constructor, indexed by long
+(up to about 137 billion bits, 16 GB), and no bookkeeping beyond the long[] itself.
+2) and/or/xor/andNot work on whole words: 64 bits per operation, in loops the JIT unrolls and vectorizes.
+3) rankSelect() builds a small index (one long per 512 bits, 1.6% of the bitset) that answers rank(i) (set bits before i)
+in constant time and select(k) (position of the k-th set bit) with a binary search over the blocks. That turns a bitset into
+a compact map from positions to dense ids, e.g. the row number of a non-null value. The index is a snapshot: build it after
+the last change to the bits.
+4) Not thread-safe.
+ */
+public final class LongBitSet {
+    private final long[] words;
+    private final long size;
+
+    /**
+     * @param size number of bits, all clear
+     */
+    public LongBitSet(long size) {
+        if (size < 0 || size > (long) (Integer.MAX_VALUE - 8) << 6) {
+            throw new IllegalArgumentException("size must be between 0 and " + ((long) (Integer.MAX_VALUE - 8) << 6) + ": " + size);
+        }
+        this.size = size;
+        this.words = new long[(int) ((size + 63) >>> 6)];
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean get(long index) {
+        checkIndex(index);
+        return (words[(int) (index >>> 6)] & 1L << index) != 0;
+    }
+
+    public void set(long index) {
+        checkIndex(index);
+        words[(int) (index >>> 6)] |= 1L << index;
+    }
+
+    public void clear(long index) {
+        checkIndex(index);
+        words[(int) (index >>> 6)] &= ~(1L << index);
+    }
+
+    public void flip(long index) {
+        checkIndex(index);
+        words[(int) (index >>> 6)] ^= 1L << index;
+    }
+
+    /**
+     * Sets the bit and returns whether it was clear before.
+     */
+    public boolean add(long index) {
+        checkIndex(index);
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        boolean wasClear = (words[word] & mask) == 0;
+        words[word] |= mask;
+        return wasClear;
+    }
+
+    /**
+     * Sets the bits from fromIndex (inclusive) to toIndex (exclusive), a word at a time.
+     */
+    public void set(long fromIndex, long toIndex) {
+        checkRange(fromIndex, toIndex);
+        if (fromIndex == toIndex) {
+            return;
+        }
+        int first = (int) (fromIndex >>> 6);
+        int last = (int) ((toIndex - 1) >>> 6);
+        long firstMask = -1L << fromIndex;
+        long lastMask = -1L >>> -toIndex;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        Arrays.fill(words, first + 1, last, -1L);
+        words[last] |= lastMask;
+    }
+
+    public void clearAll() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * Number of set bits.
+     */
+    public long cardinality() {
+        long count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Index of the first set bit at or after fromIndex, or -1 if there is none.
+     */
+    public long nextSetBit(long fromIndex) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        }
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int i = (int) (fromIndex >>> 6);
+        long word = words[i] & -1L << fromIndex;
+        while (word == 0) {
+            if (++i == words.length) {
+                return -1;
+            }
+            word = words[i];
+        }
+        return ((long) i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Index of the first clear bit at or after fromIndex, or size() if there is none.
+     */
+    public long nextClearBit(long fromIndex) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException("fromIndex < 0: " + fromIndex);
+        }
+        if (fromIndex >= size) {
+            return size;
+        }
+        int i = (int) (fromIndex >>> 6);
+        long word = ~words[i] & -1L << fromIndex;
+        while (word == 0) {
+            if (++i == words.length) {
+                return size;
+            }
+            word = ~words[i];
+        }
+        return Math.min(size, ((long) i << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Index of the last set bit at or before fromIndex, or -1 if there is none.
+     */
+    public long previousSetBit(long fromIndex) {
+        if (fromIndex < 0) {
+            return -1;
+        }
+        if (fromIndex >= size) {
+            fromIndex = size - 1;
+            if (fromIndex < 0) {
+                return -1;
+            }
+        }
+        int i = (int) (fromIndex >>> 6);
+        long word = words[i] & -1L >>> ~fromIndex;
+        while (word == 0) {
+            if (--i < 0) {
+                return -1;
+            }
+            word = words[i];
+        }
+        return ((long) i << 6) + 63 - Long.numberOfLeadingZeros(word);
+    }
+
+    public void and(LongBitSet other) {
+        checkSameSize(other);
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= otherWords[i];
+        }
+    }
+
+    public void or(LongBitSet other) {
+        checkSameSize(other);
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] |= otherWords[i];
+        }
+    }
+
+    public void xor(LongBitSet other) {
+        checkSameSize(other);
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] ^= otherWords[i];
+        }
+    }
+
+    public void andNot(LongBitSet other) {
+        checkSameSize(other);
+        long[] otherWords = other.words;
+        for (int i = 0; i < words.length; i++) {
+            words[i] &= ~otherWords[i];
+        }
+    }
+
+    /**
+     * Number of bits set in both bitsets, without modifying either.
+     */
+    public long intersectionCount(LongBitSet other) {
+        checkSameSize(other);
+        long[] otherWords = other.words;
+        long count = 0;
+        for (int i = 0; i < words.length; i++) {
+            count += Long.bitCount(words[i] & otherWords[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Builds the rank/select index over the current bits (see NOTE 3).
+     */
+    public RankSelect rankSelect() {
+        return new RankSelect(words, size);
+    }
+
+    public long memoryBytes() {
+        return 16 + 8L * words.length;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + size);
+        }
+    }
+
+    private void checkRange(long fromIndex, long toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("range [" + fromIndex + ", " + toIndex + ") of " + size);
+        }
+    }
+
+    private void checkSameSize(LongBitSet other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("bitsets differ in size: " + size + " and " + other.size);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LongBitSet other && size == other.size && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size) * 31 + Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return "LongBitSet{size=" + size + ", cardinality=" + cardinality() + '}';
+    }
+
+    /**
+     * Rank/select index over the bits of a LongBitSet at the time it was built.
+     */
+    public static final class RankSelect {
+        // Blocks of 8 words (512 bits); blockRanks[b] is the number of set bits before block b
+        private static final int WORDS_PER_BLOCK = 8;
+
+        private final long[] words;
+        private final long size;
+        private final long[] blockRanks;
+        private final long cardinality;
+
+        private RankSelect(long[] words, long size) {
+            this.words = words;
+            this.size = size;
+            this.blockRanks = new long[(words.length + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK + 1];
+            long rank = 0;
+            for (int i = 0; i < words.length; i++) {
+                if (i % WORDS_PER_BLOCK == 0) {
+                    blockRanks[i / WORDS_PER_BLOCK] = rank;
+                }
+                rank += Long.bitCount(words[i]);
+            }
+            blockRanks[blockRanks.length - 1] = rank;
+            this.cardinality = rank;
+        }
+
+        /**
+         * Number of set bits.
+         */
+        public long cardinality() {
+            return cardinality;
+        }
+
+        /**
+         * Number of set bits at positions before index (0 <= index <= size).
+         */
+        public long rank(long index) {
+            if (index < 0 || index > size) {
+                throw new IndexOutOfBoundsException("index " + index + " of " + size);
+            }
+            if (index == size) {
+                return cardinality;
+            }
+            int word = (int) (index >>> 6);
+            int block = word / WORDS_PER_BLOCK;
+            long rank = blockRanks[block];
+            for (int i = block * WORDS_PER_BLOCK; i < word; i++) {
+                rank += Long.bitCount(words[i]);
+            }
+            return rank + Long.bitCount(words[word] & ~(-1L << index));
+        }
+
+        /**
+         * Position of the set bit with the given rank (0 for the first set bit), or -1 if rank >= cardinality().
+         */
+        public long select(long rank) {
+            if (rank < 0) {
+                throw new IllegalArgumentException("rank must not be negative: " + rank);
+            }
+            if (rank >= cardinality) {
+                return -1;
+            }
+            // Last block whose rank is <= the wanted rank
+            int low = 0;
+            int high = blockRanks.length - 2;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (blockRanks[middle] <= rank) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            long remaining = rank - blockRanks[low];
+            for (int i = low * WORDS_PER_BLOCK; ; i++) {
+                int count = Long.bitCount(words[i]);
+                if (remaining < count) {
+                    return ((long) i << 6) + Bits.select(words[i], (int) remaining);
+                }
+                remaining -= count;
+            }
+        }
+    }
+}
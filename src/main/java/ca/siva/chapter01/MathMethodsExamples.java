@@ -2,6 +2,22 @@ package ca.siva.chapter01;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.DoubleUnaryOperator;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+/*
+NOTE:
+1) Math.exp and Math.log cost 4-6 ns each. MathKernels computes them over a whole double[] with SIMD instructions, about
+1 ns per element at the same accuracy (1 ulp); fastExp and fastLog trade up to 4 ulp for code that vectorizes on every CPU.
+2) Math.fma(a, b, c) rounds a * b + c once instead of twice, see fmaExample and MathKernels.polynomial.
+3) Math.random() and a shared java.util.Random serialize threads on one AtomicLong seed. Give each parallel task its own
+generator: ThreadLocalRandom when results need not be reproducible, Xoshiro256.jumps(n) when they must be.
+ */
 @Slf4j
 public class MathMethodsExamples {
 
@@ -156,5 +172,184 @@ public class MathMethodsExamples {
         log.info("getExponent(1024.0f): " + examples.exampleGetExponentFloat(1024.0f));
         log.info("toDegrees(Math.PI): " + examples.exampleToDegrees(Math.PI));
         log.info("toRadians(180): " + examples.exampleToRadians(180));
+
+        mathKernelsExample();
+        mathKernelsBenchmark();
+        fmaExample();
+        monteCarloExample();
+    }
+
+    private static void mathKernelsExample() {
+        double[] values = {0.0, 1.0, 2.0, 10.0};
+        double[] result = new double[values.length];
+        MathKernels.exp(values, result);
+        log.info("exp: " + Arrays.toString(result));
+        MathKernels.log(result, result);
+        log.info("log(exp): " + Arrays.toString(result));
+        MathKernels.pow(values, 0.5, result);
+        log.info("pow(x, 0.5): " + Arrays.toString(result));
+        // Output:
+        // exp: [1.0, 2.718281828459045, 7.38905609893065, 22026.465794806718]
+        // log(exp): [0.0, 1.0, 2.0, 10.0]
+        // pow(x, 0.5): [0.0, 1.0, 1.4142135623730951, 3.1622776601683795]
+    }
+
+    /*
+    1M arguments (exp: uniform in [-10, 10], log and pow: in [0.01, 100]), best of 7 runs, and the largest error against
+    StrictMath (the exact result correctly rounded, in practice) over the same arguments.
+    Output (JDK 17, AVX-512):
+    exp: Math loop 3.8 ns, kernel 0.7 ns (max 1 ulp), fastExp 0.9 ns (max 4 ulp)
+    log: Math loop 5.5 ns, kernel 0.9 ns (max 1 ulp), fastLog 1.4 ns (max 2 ulp)
+    pow: Math loop 10.2 ns, kernel 2.4 ns (max 1 ulp)
+    With -Dca.siva.kernels.scalar=true all kernels run at the speed of the Math loop.
+     */
+    private static void mathKernelsBenchmark() {
+        int n = 1 << 20;
+        Random random = new Random(42);
+        double[] expArguments = new double[n];
+        double[] logArguments = new double[n];
+        for (int i = 0; i < n; i++) {
+            expArguments[i] = random.nextDouble() * 20 - 10;
+            logArguments[i] = 0.01 + random.nextDouble() * 100;
+        }
+        double[] out = new double[n];
+
+        double loop = nanosPerElement(expArguments, out, (in, result) -> {
+            for (int i = 0; i < in.length; i++) {
+                result[i] = Math.exp(in[i]);
+            }
+        });
+        double kernel = nanosPerElement(expArguments, out, MathKernels::exp);
+        long kernelUlps = maxUlps(expArguments, out, StrictMath::exp);
+        double fast = nanosPerElement(expArguments, out, MathKernels::fastExp);
+        long fastUlps = maxUlps(expArguments, out, StrictMath::exp);
+        log.info(String.format("exp: Math loop %.1f ns, kernel %.1f ns (max %d ulp), fastExp %.1f ns (max %d ulp)",
+                loop, kernel, kernelUlps, fast, fastUlps));
+
+        loop = nanosPerElement(logArguments, out, (in, result) -> {
+            for (int i = 0; i < in.length; i++) {
+                result[i] = Math.log(in[i]);
+            }
+        });
+        kernel = nanosPerElement(logArguments, out, MathKernels::log);
+        kernelUlps = maxUlps(logArguments, out, StrictMath::log);
+        fast = nanosPerElement(logArguments, out, MathKernels::fastLog);
+        fastUlps = maxUlps(logArguments, out, StrictMath::log);
+        log.info(String.format("log: Math loop %.1f ns, kernel %.1f ns (max %d ulp), fastLog %.1f ns (max %d ulp)",
+                loop, kernel, kernelUlps, fast, fastUlps));
+
+        loop = nanosPerElement(logArguments, out, (in, result) -> {
+            for (int i = 0; i < in.length; i++) {
+                result[i] = Math.pow(in[i], 1.7);
+            }
+        });
+        kernel = nanosPerElement(logArguments, out, (in, result) -> MathKernels.pow(in, 1.7, result));
+        kernelUlps = maxUlps(logArguments, out, x -> StrictMath.pow(x, 1.7));
+        log.info(String.format("pow: Math loop %.1f ns, kernel %.1f ns (max %d ulp)", loop, kernel, kernelUlps));
+    }
+
+    private static double nanosPerElement(double[] in, double[] out, BiConsumer<double[], double[]> kernel) {
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 7; run++) {
+            long start = System.nanoTime();
+            for (int repeat = 0; repeat < 20; repeat++) {
+                kernel.accept(in, out);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 20.0 / in.length;
+    }
+
+    private static long maxUlps(double[] in, double[] out, DoubleUnaryOperator exact) {
+        long max = 0;
+        for (int i = 0; i < in.length; i++) {
+            max = Math.max(max, MathKernels.ulpDistance(out[i], exact.applyAsDouble(in[i])));
+        }
+        return max;
+    }
+
+    private static void fmaExample() {
+        // 0.1 is slightly more than 1/10: a * b rounds that error away before the subtraction, fma keeps it
+        log.info("0.1 * 10 - 1 = " + (0.1 * 10 - 1) + ", fma(0.1, 10, -1) = " + Math.fma(0.1, 10, -1));
+        // 1 + 2x + 3x^2 at x = 2
+        log.info("polynomial(2, 1, 2, 3) = " + MathKernels.polynomial(2, 1, 2, 3));
+        // Output:
+        // 0.1 * 10 - 1 = 0.0, fma(0.1, 10, -1) = 5.551115123125783E-17
+        // polynomial(2, 1, 2, 3) = 17.0
+    }
+
+    /*
+    Prices a European call option (spot 100, strike 105, 20% volatility, 5% rate, 1 year) from 8M simulated paths in 8
+    parallel tasks: with one shared java.util.Random, with ThreadLocalRandom and with a Xoshiro256 per task taken from
+    jumps(), which draws the normals in bulk and calls MathKernels.exp on 4096 paths at a time. Best of 3 runs.
+    Output (JDK 17, 1 CPU, so the shared Random is not even contended here; with more cores it gets slower, not faster):
+    Shared Random 473 ms, price 8.02; ThreadLocalRandom 308 ms, price 8.03; Xoshiro256 + MathKernels 48 ms, price 8.03
+    Only the Xoshiro256 price is guaranteed to be the same on every run, whatever the number of threads.
+     */
+    private static void monteCarloExample() {
+        int tasks = 8;
+        int pathsPerTask = 1 << 20;
+        double spot = 100;
+        double strike = 105;
+        double volatility = 0.2;
+        double rate = 0.05;
+        double drift = rate - volatility * volatility / 2;
+        double discount = Math.exp(-rate);
+
+        long sharedMillis = Long.MAX_VALUE;
+        long threadLocalMillis = Long.MAX_VALUE;
+        long xoshiroMillis = Long.MAX_VALUE;
+        double sharedPrice = 0;
+        double threadLocalPrice = 0;
+        double xoshiroPrice = 0;
+        for (int run = 0; run < 3; run++) {
+            Random shared = new Random(42);
+            long start = System.nanoTime();
+            double sum = IntStream.range(0, tasks).parallel().mapToDouble(task -> {
+                double payoffs = 0;
+                for (int i = 0; i < pathsPerTask; i++) {
+                    payoffs += Math.max(spot * Math.exp(drift + volatility * shared.nextGaussian()) - strike, 0);
+                }
+                return payoffs;
+            }).sum();
+            sharedMillis = Math.min(sharedMillis, (System.nanoTime() - start) / 1_000_000);
+            sharedPrice = discount * sum / ((double) tasks * pathsPerTask);
+
+            start = System.nanoTime();
+            sum = IntStream.range(0, tasks).parallel().mapToDouble(task -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                double payoffs = 0;
+                for (int i = 0; i < pathsPerTask; i++) {
+                    payoffs += Math.max(spot * Math.exp(drift + volatility * random.nextGaussian()) - strike, 0);
+                }
+                return payoffs;
+            }).sum();
+            threadLocalMillis = Math.min(threadLocalMillis, (System.nanoTime() - start) / 1_000_000);
+            threadLocalPrice = discount * sum / ((double) tasks * pathsPerTask);
+
+            start = System.nanoTime();
+            RandomGenerator[] generators = new Xoshiro256(42).jumps(tasks).toArray(RandomGenerator[]::new);
+            sum = IntStream.range(0, tasks).parallel().mapToDouble(task -> {
+                Xoshiro256 random = (Xoshiro256) generators[task];
+                double[] batch = new double[4096];
+                double payoffs = 0;
+                for (int done = 0; done < pathsPerTask; done += batch.length) {
+                    random.nextGaussians(batch);
+                    for (int i = 0; i < batch.length; i++) {
+                        batch[i] = Math.fma(volatility, batch[i], drift);
+                    }
+                    MathKernels.exp(batch, batch);
+                    for (double growth : batch) {
+                        payoffs += Math.max(spot * growth - strike, 0);
+                    }
+                }
+                return payoffs;
+            }).sum();
+            xoshiroMillis = Math.min(xoshiroMillis, (System.nanoTime() - start) / 1_000_000);
+            xoshiroPrice = discount * sum / ((double) tasks * pathsPerTask);
+        }
+        log.info(String.format("Shared Random %d ms, price %.2f; ThreadLocalRandom %d ms, price %.2f; "
+                        + "Xoshiro256 + MathKernels %d ms, price %.2f", sharedMillis, sharedPrice, threadLocalMillis,
+                threadLocalPrice, xoshiroMillis, xoshiroPrice));
     }
 }
@@ -0,0 +1,121 @@
+package ca.siva.chapter01;
+
+/*
+NOTE:
+1) A byte[] spends 8 bits on a value that needs 5, an int[] 32. PackedIntArray stores every value in exactly
+bitsPerValue bits, back to back in a long[]: 1 billion 5-bit codes take 625 MB instead of 1 GB as byte[] or 4 GB as int[].
+2) A value may straddle two longs; get() then combines the high bits of one word with the low bits of the next. Both
+cases are a few shifts and masks, no loop.
+3) Values are unsigned: set() rejects values that do not fit in bitsPerValue bits (use Bits.bitsRequired(maxValue) to size
+the array).
+4) Not thread-safe: set() is a read-modify-write of the word that also holds neighbouring values.
+ */
+public final class PackedIntArray {
+    private final long[] words;
+    private final long size;
+    private final int bitsPerValue;
+    private final long mask;
+
+    /**
+     * @param size         number of values, all 0
+     * @param bitsPerValue bits per value, from 1 to 64
+     */
+    public PackedIntArray(long size, int bitsPerValue) {
+        if (bitsPerValue < 1 || bitsPerValue > 64) {
+            throw new IllegalArgumentException("bitsPerValue must be between 1 and 64: " + bitsPerValue);
+        }
+        long bits = size * bitsPerValue;
+        if (size < 0 || bits / bitsPerValue != size || (bits + 63) >>> 6 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("size must be between 0 and " + ((long) (Integer.MAX_VALUE - 8) << 6) / bitsPerValue
+                    + " for " + bitsPerValue + " bits per value: " + size);
+        }
+        this.size = size;
+        this.bitsPerValue = bitsPerValue;
+        this.mask = Bits.lowMask(bitsPerValue);
+        this.words = new long[(int) ((bits + 63) >>> 6)];
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int bitsPerValue() {
+        return bitsPerValue;
+    }
+
+    public long get(long index) {
+        checkIndex(index);
+        long bit = index * bitsPerValue;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = words[word] >>> shift;
+        if (shift + bitsPerValue > 64) {
+            value |= words[word + 1] << (64 - shift);
+        }
+        return value & mask;
+    }
+
+    public void set(long index, long value) {
+        checkIndex(index);
+        if ((value & ~mask) != 0) {
+            throw new IllegalArgumentException(value + " does not fit in " + bitsPerValue + " bits");
+        }
+        long bit = index * bitsPerValue;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        words[word] = words[word] & ~(mask << shift) | value << shift;
+        if (shift + bitsPerValue > 64) {
+            int written = 64 - shift;
+            words[word + 1] = words[word + 1] & ~(mask >>> written) | value >>> written;
+        }
+    }
+
+    /**
+     * Copies count values starting at index into destination[offset...]; faster than count calls to get().
+     */
+    public void get(long index, long[] destination, int offset, int count) {
+        if (count < 0 || index < 0 || index > size - count) {
+            throw new IndexOutOfBoundsException("range [" + index + ", " + (index + count) + ") of " + size);
+        }
+        if (count == 0) {
+            return;
+        }
+        long bit = index * bitsPerValue;
+        int word = (int) (bit >>> 6);
+        if (bitsPerValue == 64) {
+            System.arraycopy(words, word, destination, offset, count);
+            return;
+        }
+        // buffer holds the next "available" unread bits of the current word in its low bits
+        int shift = (int) (bit & 63);
+        long buffer = words[word] >>> shift;
+        int available = 64 - shift;
+        for (int i = 0; i < count; i++) {
+            if (available >= bitsPerValue) {
+                destination[offset + i] = buffer & mask;
+                buffer >>>= bitsPerValue;
+                available -= bitsPerValue;
+            } else {
+                long next = words[++word];
+                destination[offset + i] = (buffer | next << available) & mask;
+                buffer = next >>> (bitsPerValue - available);
+                available += 64 - bitsPerValue;
+            }
+        }
+    }
+
+    public long memoryBytes() {
+        return 16 + 8L * words.length;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " of " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PackedIntArray{size=" + size + ", bitsPerValue=" + bitsPerValue + '}';
+    }
+}
@@ -0,0 +1,295 @@
+package ca.siva.chapter01;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/*
+NOTE:
+1) A perfect hash maps a fixed set of keys to distinct slots, so a lookup is one hash, one slot and one comparison with the
+key in that slot, hit or miss: no bucket to walk and no probing. It suits key sets known up front and read many times,
+such as enum names, message types or column names.
+2) The table is built with hash and displace: a first hash splits the keys into buckets of about four, and each bucket
+gets a displacement under which all its keys land in free slots. The hash first uses only the length and three
+characters (first, middle and last), which separates most small key sets; if two keys share them it hashes every
+character.
+3) indexOf takes a CharSequence slice or UTF-8 bytes, so keys read from a buffer or a network packet are looked up without
+creating a String. It returns the index of the key in the list given to of(), or -1.
+4) Immutable and thread-safe.
+ */
+public final class PerfectHash {
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final String[] keys;
+    private final byte[][] utf8Keys;
+    private final Table charTable;
+    private final Table byteTable;
+
+    private PerfectHash(String[] keys) {
+        this.keys = keys;
+        this.utf8Keys = new byte[keys.length][];
+        int[][] chars = new int[keys.length][];
+        int[][] bytes = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            utf8Keys[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+            chars[i] = keys[i].chars().toArray();
+            bytes[i] = new int[utf8Keys[i].length];
+            for (int j = 0; j < bytes[i].length; j++) {
+                bytes[i][j] = utf8Keys[i][j] & 0xFF;
+            }
+        }
+        this.charTable = Table.build(chars);
+        this.byteTable = Table.build(bytes);
+    }
+
+    public static PerfectHash of(String... keys) {
+        return of(Arrays.asList(keys));
+    }
+
+    /**
+     * @throws IllegalArgumentException if a key appears twice
+     */
+    public static PerfectHash of(Collection<String> keys) {
+        String[] array = keys.toArray(new String[0]);
+        Set<String> seen = new HashSet<>();
+        for (String key : array) {
+            if (!seen.add(Objects.requireNonNull(key, "key"))) {
+                throw new IllegalArgumentException("duplicate key: " + key);
+            }
+        }
+        return new PerfectHash(array);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public String key(int index) {
+        return keys[index];
+    }
+
+    public List<String> keys() {
+        return List.of(keys);
+    }
+
+    public int indexOf(CharSequence chars) {
+        if (chars instanceof String string) {
+            return indexOf(string);
+        }
+        return indexOf(chars, 0, chars.length());
+    }
+
+    // A whole String: String.charAt and String.equals (an intrinsic) instead of the CharSequence calls
+    private int indexOf(String string) {
+        Table table = charTable;
+        int length = string.length();
+        long hash;
+        if (table.sampled) {
+            hash = length == 0 ? 0
+                    : Table.sample(length, string.charAt(0), string.charAt(length >> 1), string.charAt(length - 1));
+        } else {
+            hash = table.basis + length;
+            for (int i = 0; i < length; i++) {
+                hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+            }
+        }
+        int k = table.slots[table.slot(hash)] - 1;
+        return k >= 0 && keys[k].equals(string) ? k : -1;
+    }
+
+    /**
+     * Index of the key equal to chars[start, end), or -1.
+     */
+    public int indexOf(CharSequence chars, int start, int end) {
+        Objects.checkFromToIndex(start, end, chars.length());
+        Table table = charTable;
+        int length = end - start;
+        long hash;
+        if (table.sampled) {
+            hash = length == 0 ? 0
+                    : Table.sample(length, chars.charAt(start), chars.charAt(start + (length >> 1)), chars.charAt(end - 1));
+        } else {
+            hash = table.basis + length;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ chars.charAt(i)) * FNV_PRIME;
+            }
+        }
+        int k = table.slots[table.slot(hash)] - 1;
+        return k >= 0 && matches(keys[k], chars, start, end) ? k : -1;
+    }
+
+    /**
+     * Index of the key whose UTF-8 encoding is bytes[offset, offset + length), or -1.
+     */
+    public int indexOf(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        Table table = byteTable;
+        int end = offset + length;
+        long hash;
+        if (table.sampled) {
+            hash = length == 0 ? 0
+                    : Table.sample(length, bytes[offset] & 0xFF, bytes[offset + (length >> 1)] & 0xFF, bytes[end - 1] & 0xFF);
+        } else {
+            hash = table.basis + length;
+            for (int i = offset; i < end; i++) {
+                hash = (hash ^ (bytes[i] & 0xFF)) * FNV_PRIME;
+            }
+        }
+        int k = table.slots[table.slot(hash)] - 1;
+        if (k < 0) {
+            return -1;
+        }
+        byte[] key = utf8Keys[k];
+        if (key.length != length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != bytes[offset + i]) {
+                return -1;
+            }
+        }
+        return k;
+    }
+
+    private static boolean matches(String key, CharSequence chars, int start, int end) {
+        int length = end - start;
+        if (key.length() != length) {
+            return false;
+        }
+        if (chars instanceof String string) {
+            return string.regionMatches(start, key, 0, length);
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "PerfectHash{" + keys.length + " keys, " + charTable + "}";
+    }
+
+    // Hash and displace: a first multiplier splits the keys into buckets, and each bucket has a displacement that picks a
+    // second multiplier under which its keys land in free slots. Every key then has its own slot (key index + 1, 0 is
+    // empty), found with two multiplications and one array read of displacements.
+    private static final class Table {
+        private static final long SLOT_MULTIPLIER = 0x9E3779B97F4A7C15L;
+        private static final int MAX_DISPLACEMENT = 1 << 16;
+        private static final int MAX_ATTEMPTS = 64;
+
+        final boolean sampled;
+        final long basis;
+        final long seed;
+        final int bucketShift;
+        final int shift;
+        final int[] displacements;
+        final int[] slots;
+
+        private Table(boolean sampled, long basis, long seed, int bucketBits, int bits) {
+            this.sampled = sampled;
+            this.basis = basis;
+            this.seed = seed;
+            this.bucketShift = 64 - bucketBits;
+            this.shift = 64 - bits;
+            this.displacements = new int[1 << bucketBits];
+            this.slots = new int[1 << bits];
+        }
+
+        // At least twice as many slots as keys and about four keys per bucket; the sampled hash is tried first, then the
+        // hash of every unit with new seeds until every bucket fits
+        static Table build(int[][] keys) {
+            int log2 = 32 - Integer.numberOfLeadingZeros(Math.max(1, keys.length - 1));
+            int bucketBits = Math.max(1, log2 - 2);
+            SplittableRandom random = new SplittableRandom(0x2545F4914F6CDD1DL);
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                Table table = new Table(attempt == 0, random.nextLong(), random.nextLong() | 1, bucketBits,
+                        log2 + 1 + attempt / 8);
+                if (table.place(keys)) {
+                    return table;
+                }
+            }
+            throw new IllegalStateException("no perfect hash found for " + keys.length + " keys");
+        }
+
+        private boolean place(int[][] keys) {
+            long[] hashes = new long[keys.length];
+            Integer[] order = new Integer[keys.length];
+            int[] bucketSizes = new int[displacements.length];
+            for (int k = 0; k < keys.length; k++) {
+                hashes[k] = hash(keys[k]);
+                bucketSizes[bucket(hashes[k])]++;
+                order[k] = k;
+            }
+            // Largest buckets first, while most slots are free; the keys of a bucket are consecutive in order
+            Arrays.sort(order, (a, b) -> {
+                int bucketA = bucket(hashes[a]);
+                int bucketB = bucket(hashes[b]);
+                int bySize = Integer.compare(bucketSizes[bucketB], bucketSizes[bucketA]);
+                return bySize != 0 ? bySize : Integer.compare(bucketA, bucketB);
+            });
+            int[] placed = new int[keys.length];
+            for (int first = 0, end; first < keys.length; first = end) {
+                int bucket = bucket(hashes[order[first]]);
+                end = first + bucketSizes[bucket];
+                boolean fits = false;
+                for (int d = 0; d < MAX_DISPLACEMENT && !fits; d++) {
+                    displacements[bucket] = d;
+                    fits = true;
+                    for (int i = first; i < end && fits; i++) {
+                        placed[i] = slot(hashes[order[i]]);
+                        fits = slots[placed[i]] == 0;
+                        if (fits) {
+                            slots[placed[i]] = order[i] + 1;
+                        } else {
+                            for (int j = first; j < i; j++) {
+                                slots[placed[j]] = 0;
+                            }
+                        }
+                    }
+                }
+                if (!fits) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static long sample(int length, int first, int middle, int last) {
+            return ((long) length << 48) | ((long) first << 32) | ((long) middle << 16) | last;
+        }
+
+        private long hash(int[] units) {
+            int length = units.length;
+            if (sampled) {
+                return length == 0 ? 0 : sample(length, units[0], units[length >> 1], units[length - 1]);
+            }
+            long hash = basis + length;
+            for (int unit : units) {
+                hash = (hash ^ unit) * FNV_PRIME;
+            }
+            return hash;
+        }
+
+        private int bucket(long hash) {
+            return (int) ((hash * seed) >>> bucketShift);
+        }
+
+        int slot(long hash) {
+            int displacement = displacements[(int) ((hash * seed) >>> bucketShift)];
+            return (int) ((hash * (SLOT_MULTIPLIER + 2L * displacement)) >>> shift);
+        }
+
+        @Override
+        public String toString() {
+            return (sampled ? "sampled" : "full") + " hash, " + slots.length + " slots";
+        }
+    }
+}
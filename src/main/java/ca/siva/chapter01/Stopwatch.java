@@ -0,0 +1,117 @@
+package ca.siva.chapter01;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+NOTE:
+1) Instant.now() reads the wall clock, which NTP or an administrator can move backwards or forwards, so
+Duration.between(start, end) can be negative or far too large; it also allocates two Instants and a Duration per
+measurement. System.nanoTime() is monotonic (it only ever moves forward, at a steady rate) and returns a primitive.
+Its value means nothing on its own: only the difference between two calls is a time.
+2) A Stopwatch is a nanoTime() difference with start/stop bookkeeping: start(), stop() and elapsedNanos() allocate
+nothing, so one instance can time millions of operations. elapsed() creates a Duration only when it is asked for.
+3) Not thread-safe: one Stopwatch per thread or per measurement.
+ */
+public final class Stopwatch {
+    private final LongSupplier ticker;
+    private boolean running;
+    private long startTick;
+    private long elapsedNanos;
+
+    private Stopwatch(LongSupplier ticker) {
+        this.ticker = Objects.requireNonNull(ticker);
+    }
+
+    public static Stopwatch createUnstarted() {
+        return new Stopwatch(System::nanoTime);
+    }
+
+    public static Stopwatch createStarted() {
+        return createUnstarted().start();
+    }
+
+    /**
+     * A stopwatch that reads nanoseconds from ticker instead of System::nanoTime; a manual ticker makes timing testable.
+     */
+    public static Stopwatch createUnstarted(LongSupplier ticker) {
+        return new Stopwatch(ticker);
+    }
+
+    public Stopwatch start() {
+        if (running) {
+            throw new IllegalStateException("stopwatch is already running");
+        }
+        running = true;
+        startTick = ticker.getAsLong();
+        return this;
+    }
+
+    /**
+     * Stops the stopwatch; the elapsed time stays and start() adds to it.
+     */
+    public Stopwatch stop() {
+        long tick = ticker.getAsLong();
+        if (!running) {
+            throw new IllegalStateException("stopwatch is already stopped");
+        }
+        running = false;
+        elapsedNanos += tick - startTick;
+        return this;
+    }
+
+    /**
+     * Sets the elapsed time to 0 and stops the stopwatch.
+     */
+    public Stopwatch reset() {
+        running = false;
+        elapsedNanos = 0;
+        return this;
+    }
+
+    /**
+     * Sets the elapsed time to 0 and starts the stopwatch, e.g. between two measurements.
+     */
+    public Stopwatch restart() {
+        elapsedNanos = 0;
+        running = true;
+        startTick = ticker.getAsLong();
+        return this;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long elapsedNanos() {
+        return running ? elapsedNanos + ticker.getAsLong() - startTick : elapsedNanos;
+    }
+
+    /**
+     * Elapsed time in the given unit, truncated.
+     */
+    public long elapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public Duration elapsed() {
+        return Duration.ofNanos(elapsedNanos());
+    }
+
+    /**
+     * Elapsed time with 4 significant digits in the largest fitting unit, e.g. "1.234 ms".
+     */
+    @Override
+    public String toString() {
+        long nanos = elapsedNanos();
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        }
+        TimeUnit unit = nanos < 1_000_000 ? TimeUnit.MICROSECONDS
+                : nanos < 1_000_000_000 ? TimeUnit.MILLISECONDS : TimeUnit.SECONDS;
+        String symbol = unit == TimeUnit.MICROSECONDS ? "μs" : unit == TimeUnit.MILLISECONDS ? "ms" : "s";
+        return String.format("%.4g %s", (double) nanos / unit.toNanos(1), symbol);
+    }
+}
@@ -0,0 +1,438 @@
+package ca.siva.chapter01;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/*
+NOTE:
+1) A StringBuilder keeps its characters in one array; when it is full the array is replaced by one twice as large and
+everything is copied (see capacityAndLengthExample in StringBuilderExamples). TextBuilder keeps a list of chunks instead:
+when the last chunk is full a new one is added (twice as large as the previous one, up to 32K chars) and nothing written
+so far is copied again.
+2) acquire() hands out a builder from a small per-thread pool and close() returns it, so code that renders a log line or a
+JSON document per request reuses the same chunks instead of allocating a new builder every time. On close() chunks beyond
+the retained capacity (64K chars, or the system property ca.siva.textbuilder.maxRetainedChars) are dropped, so one huge
+document does not pin its memory in the pool forever. Use it in try-with-resources and do not keep a reference after close().
+3) appendInt and appendLong write the digits directly into the builder; StringBuilder.append(int) does too, but
+String.valueOf(n) or "" + n in front of it creates a temporary String.
+4) encodeUtf8(ByteBuffer) writes the characters as UTF-8 straight into a (direct or heap) buffer, for example one that is
+then written to a channel, without the intermediate String and byte[] of toString().getBytes(UTF_8).
+5) Not thread-safe, like StringBuilder.
+ */
+public final class TextBuilder implements Appendable, CharSequence, AutoCloseable {
+    private static final int FIRST_CHUNK = 256;
+    private static final int MAX_CHUNK = 32 * 1024;
+    private static final int POOL_SIZE = 4;
+    private static final int MAX_RETAINED_CHARS = Integer.getInteger("ca.siva.textbuilder.maxRetainedChars", 64 * 1024);
+    private static final char[] DIGIT_PAIRS = new char[200];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[i * 2] = (char) ('0' + i / 10);
+            DIGIT_PAIRS[i * 2 + 1] = (char) ('0' + i % 10);
+        }
+    }
+
+    // Up to POOL_SIZE idle builders per thread; a stack, so nested acquire() calls each get their own builder
+    private static final ThreadLocal<TextBuilder[]> POOL = ThreadLocal.withInitial(() -> new TextBuilder[POOL_SIZE]);
+
+    private char[][] chunks = new char[4][];
+    // chunks[0, allocated) exist; appends go to chunks[current], the chunks before it are full
+    private int allocated;
+    private int current;
+    // Chars in the chunks before the current one, and in the current one
+    private int completedLength;
+    private int used;
+    private final char[] digits = new char[20];
+    // views[i] wraps chunks[i], so encodeUtf8 can hand the chunks to the encoder without copying them
+    private CharBuffer[] views = new CharBuffer[4];
+    private CharsetEncoder encoder;
+    private final char[] pair = new char[2];
+    private CharBuffer pairView;
+    private final boolean pooled;
+    private boolean inUse;
+
+    public TextBuilder() {
+        this(false);
+    }
+
+    private TextBuilder(boolean pooled) {
+        this.pooled = pooled;
+        chunks[0] = new char[FIRST_CHUNK];
+        views[0] = CharBuffer.wrap(chunks[0]);
+        allocated = 1;
+    }
+
+    /**
+     * An empty builder from this thread's pool, or a new one if the pool is empty. close() gives it back.
+     */
+    public static TextBuilder acquire() {
+        TextBuilder[] pool = POOL.get();
+        for (int i = pool.length - 1; i >= 0; i--) {
+            TextBuilder builder = pool[i];
+            if (builder != null) {
+                pool[i] = null;
+                builder.inUse = true;
+                return builder;
+            }
+        }
+        TextBuilder builder = new TextBuilder(true);
+        builder.inUse = true;
+        return builder;
+    }
+
+    /**
+     * Returns a builder obtained from acquire() to this thread's pool; for a builder created with new it only clears it.
+     */
+    @Override
+    public void close() {
+        if (!pooled) {
+            setLength(0);
+            return;
+        }
+        if (!inUse) {
+            throw new IllegalStateException("TextBuilder closed twice");
+        }
+        inUse = false;
+        setLength(0);
+        trimChunks();
+        TextBuilder[] pool = POOL.get();
+        for (int i = 0; i < pool.length; i++) {
+            if (pool[i] == null) {
+                pool[i] = this;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int length() {
+        return completedLength + used;
+    }
+
+    /**
+     * Chars the builder can hold before it adds a chunk.
+     */
+    public int capacity() {
+        int capacity = 0;
+        for (int i = 0; i < allocated; i++) {
+            capacity += chunks[i].length;
+        }
+        return capacity;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Objects.checkIndex(index, length());
+        for (int i = 0; ; i++) {
+            char[] chunk = chunks[i];
+            if (index < chunk.length) {
+                return chunk[index];
+            }
+            index -= chunk.length;
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length());
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            sb.append(charAt(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Truncates to newLength chars; only shrinking is supported. The chunks are kept for reuse.
+     */
+    public TextBuilder setLength(int newLength) {
+        int length = length();
+        if (newLength < 0 || newLength > length) {
+            throw new IllegalArgumentException("newLength must be between 0 and " + length + ": " + newLength);
+        }
+        int offset = 0;
+        int chunk = 0;
+        while (chunk < current && newLength - offset > chunks[chunk].length) {
+            offset += chunks[chunk].length;
+            chunk++;
+        }
+        // Chunks after the new current one stay allocated and are reused by later appends
+        current = chunk;
+        completedLength = offset;
+        used = newLength - offset;
+        return this;
+    }
+
+    @Override
+    public TextBuilder append(char c) {
+        char[] chunk = chunks[current];
+        if (used == chunk.length) {
+            chunk = nextChunk();
+        }
+        chunk[used++] = c;
+        return this;
+    }
+
+    @Override
+    public TextBuilder append(CharSequence chars) {
+        if (chars == null) {
+            return append("null");
+        }
+        return append(chars, 0, chars.length());
+    }
+
+    @Override
+    public TextBuilder append(CharSequence chars, int start, int end) {
+        if (chars == null) {
+            return append((CharSequence) "null", start, end);
+        }
+        Objects.checkFromToIndex(start, end, chars.length());
+        if (chars instanceof String string) {
+            return append(string, start, end);
+        }
+        for (int i = start; i < end; i++) {
+            append(chars.charAt(i));
+        }
+        return this;
+    }
+
+    public TextBuilder append(String string) {
+        if (string == null) {
+            string = "null";
+        }
+        return append(string, 0, string.length());
+    }
+
+    private TextBuilder append(String string, int start, int end) {
+        while (start < end) {
+            char[] chunk = chunks[current];
+            if (used == chunk.length) {
+                chunk = nextChunk();
+            }
+            int count = Math.min(end - start, chunk.length - used);
+            string.getChars(start, start + count, chunk, used);
+            used += count;
+            start += count;
+        }
+        return this;
+    }
+
+    public TextBuilder append(char[] chars, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, chars.length);
+        int end = offset + length;
+        while (offset < end) {
+            char[] chunk = chunks[current];
+            if (used == chunk.length) {
+                chunk = nextChunk();
+            }
+            int count = Math.min(end - offset, chunk.length - used);
+            System.arraycopy(chars, offset, chunk, used, count);
+            used += count;
+            offset += count;
+        }
+        return this;
+    }
+
+    public TextBuilder append(boolean value) {
+        return append(value ? "true" : "false");
+    }
+
+    /**
+     * Appends the decimal digits of value, like StringBuilder.append(int), without creating a String.
+     */
+    public TextBuilder appendInt(int value) {
+        return appendLong(value);
+    }
+
+    /**
+     * Appends the decimal digits of value, like StringBuilder.append(long), without creating a String.
+     */
+    public TextBuilder appendLong(long value) {
+        // Work with the negative value, so Long.MIN_VALUE needs no special case
+        long negative = value < 0 ? value : -value;
+        int size = 1;
+        for (long bound = -10; size < 19 && negative <= bound; bound *= 10) {
+            size++;
+        }
+        if (value < 0) {
+            size++;
+        }
+        char[] chunk = chunks[current];
+        if (chunk.length - used >= size) {
+            writeDigits(negative, value < 0, chunk, used + size);
+            used += size;
+            return this;
+        }
+        writeDigits(negative, value < 0, digits, digits.length);
+        return append(digits, digits.length - size, size);
+    }
+
+    // Writes the digits of -negative (and a '-' if the value was negative) so that the last digit is at target[end - 1]
+    private static void writeDigits(long negative, boolean sign, char[] target, int end) {
+        int position = end;
+        while (negative <= -100) {
+            long quotient = negative / 100;
+            int pair = (int) (quotient * 100 - negative) * 2;
+            target[--position] = DIGIT_PAIRS[pair + 1];
+            target[--position] = DIGIT_PAIRS[pair];
+            negative = quotient;
+        }
+        int last = (int) -negative;
+        target[--position] = DIGIT_PAIRS[last * 2 + 1];
+        if (last >= 10) {
+            target[--position] = DIGIT_PAIRS[last * 2];
+        }
+        if (sign) {
+            target[--position] = '-';
+        }
+    }
+
+    /**
+     * Number of bytes encodeUtf8 will write. An unpaired surrogate counts as one byte, since it is written as '?'.
+     */
+    public int utf8Length() {
+        int bytes = 0;
+        char pendingHigh = 0;
+        for (int i = 0; i <= current; i++) {
+            char[] chunk = chunks[i];
+            int end = i == current ? used : chunk.length;
+            for (int j = 0; j < end; j++) {
+                char c = chunk[j];
+                if (pendingHigh != 0) {
+                    pendingHigh = 0;
+                    if (Character.isLowSurrogate(c)) {
+                        bytes += 4;
+                        continue;
+                    }
+                    bytes++;
+                }
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    pendingHigh = c;
+                } else if (Character.isLowSurrogate(c)) {
+                    bytes++;
+                } else {
+                    bytes += 3;
+                }
+            }
+        }
+        return pendingHigh != 0 ? bytes + 1 : bytes;
+    }
+
+    /**
+     * Writes the characters as UTF-8 at the buffer's position and advances it. Unpaired surrogates are written as '?',
+     * like String.getBytes(UTF_8) does. The chunks are encoded in place by a CharsetEncoder that the builder keeps, which
+     * has a fast path for runs of ASCII.
+     *
+     * @return the number of bytes written
+     * @throws BufferOverflowException if the buffer has fewer than utf8Length() bytes remaining; its position is
+     *                                 unchanged then
+     */
+    public int encodeUtf8(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (encoder == null) {
+            encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            pairView = CharBuffer.wrap(pair);
+        }
+        encoder.reset();
+        // An empty current chunk is skipped, so the last chunk encoded always ends the input
+        int last = used == 0 && current > 0 ? current - 1 : current;
+        int from = 0;
+        for (int i = 0; i <= last; i++) {
+            CharBuffer chars = views[i];
+            chars.limit(i == current ? used : chunks[i].length).position(from);
+            check(encoder.encode(chars, buffer, i == last), buffer, start);
+            from = 0;
+            if (chars.hasRemaining()) {
+                // A high surrogate at the end of a chunk: encode it together with the first char of the next chunk
+                pair[0] = chars.get();
+                pair[1] = chunks[i + 1][0];
+                pairView.clear();
+                check(encoder.encode(pairView, buffer, i + 1 == last && lengthOf(i + 1) == 1), buffer, start);
+                // If the second char is a high surrogate too, it is encoded again with the rest of its chunk
+                from = pairView.hasRemaining() ? 0 : 1;
+            }
+        }
+        check(encoder.flush(buffer), buffer, start);
+        return buffer.position() - start;
+    }
+
+    private static void check(CoderResult result, ByteBuffer buffer, int start) {
+        if (result.isOverflow()) {
+            buffer.position(start);
+            throw new BufferOverflowException();
+        }
+    }
+
+    private int lengthOf(int chunk) {
+        return chunk == current ? used : chunks[chunk].length;
+    }
+
+    /**
+     * Writes the characters to the writer chunk by chunk, without creating a String.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        for (int i = 0; i <= current; i++) {
+            writer.write(chunks[i], 0, i == current ? used : chunks[i].length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (current == 0) {
+            return new String(chunks[0], 0, used);
+        }
+        char[] all = new char[length()];
+        int offset = 0;
+        for (int i = 0; i <= current; i++) {
+            int count = i == current ? used : chunks[i].length;
+            System.arraycopy(chunks[i], 0, all, offset, count);
+            offset += count;
+        }
+        return new String(all);
+    }
+
+    private char[] nextChunk() {
+        completedLength += chunks[current].length;
+        current++;
+        used = 0;
+        if (current == allocated) {
+            if (allocated == chunks.length) {
+                chunks = Arrays.copyOf(chunks, allocated * 2);
+                views = Arrays.copyOf(views, allocated * 2);
+            }
+            chunks[allocated] = new char[Math.min(MAX_CHUNK, chunks[current - 1].length * 2)];
+            views[allocated] = CharBuffer.wrap(chunks[allocated]);
+            allocated++;
+        }
+        return chunks[current];
+    }
+
+    // Called on an empty builder: keeps the first chunks up to the retained capacity (at least the first chunk)
+    private void trimChunks() {
+        int retained = chunks[0].length;
+        int keep = 1;
+        while (keep < allocated && retained + chunks[keep].length <= MAX_RETAINED_CHARS) {
+            retained += chunks[keep].length;
+            keep++;
+        }
+        Arrays.fill(chunks, keep, allocated, null);
+        Arrays.fill(views, keep, allocated, null);
+        allocated = keep;
+    }
+}
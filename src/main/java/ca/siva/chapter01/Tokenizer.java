@@ -0,0 +1,331 @@
+package ca.siva.chapter01;
+
+import java.util.NoSuchElementException;
+
+/*
+NOTE:
+1) String.split(",") allocates a String[] and one String per token (and, for delimiters that are regex metacharacters or
+longer than one char, compiles a Pattern on every call). A Tokenizer is created once and reset() for every line: next()
+moves to the next token and token() returns a CharSequence view of it in the input, so tokens that are only compared,
+parsed or looked up (CompactStringMap.get accepts a CharSequence) never become Strings.
+2) The view returned by token() is reused: it is only valid until the next call to next() or reset(). Call toString() on it
+to keep the value.
+3) Unlike String.split, empty tokens are kept, trailing ones included: "a,,b," gives "a", "", "b", "". With onWhitespace()
+runs of whitespace are one delimiter and leading/trailing whitespace is ignored, like strip().split("\\s+").
+4) withQuote('"') handles CSV quoting: a token that starts with the quote character ends at the next quote, delimiters
+inside it are literal and a doubled quote stands for one quote. The quotes are not part of the token. Only a token with
+doubled quotes is copied (into a buffer that is reused); all other tokens are views of the input.
+5) parseInt() and parseLong() parse the current token in place with Integer.parseInt(CharSequence, int, int, int), so
+numbers in a line are read without creating a String for them.
+6) Not thread-safe; use one Tokenizer per thread.
+ */
+public final class Tokenizer {
+    private final String delimiter;
+    private final boolean whitespace;
+    private boolean quoting;
+    private char quote;
+
+    private CharSequence input;
+    private int position;
+    private boolean done = true;
+    private final Slice token = new Slice();
+    private final StringBuilder unescaped = new StringBuilder();
+
+    private Tokenizer(String delimiter, boolean whitespace) {
+        this.delimiter = delimiter;
+        this.whitespace = whitespace;
+    }
+
+    public static Tokenizer on(char delimiter) {
+        return new Tokenizer(String.valueOf(delimiter), false);
+    }
+
+    /**
+     * Splits on the exact delimiter string; it is not a regex, so "|" and "." need no escaping.
+     */
+    public static Tokenizer on(String delimiter) {
+        if (delimiter.isEmpty()) {
+            throw new IllegalArgumentException("delimiter must not be empty");
+        }
+        return new Tokenizer(delimiter, false);
+    }
+
+    /**
+     * Splits on runs of whitespace (Character.isWhitespace) and skips leading and trailing whitespace.
+     */
+    public static Tokenizer onWhitespace() {
+        return new Tokenizer(null, true);
+    }
+
+    /**
+     * Enables quoted tokens, see NOTE 4. Returns this tokenizer.
+     */
+    public Tokenizer withQuote(char quote) {
+        if (whitespace ? Character.isWhitespace(quote) : delimiter.indexOf(quote) >= 0) {
+            throw new IllegalArgumentException("quote must not be part of the delimiter: '" + quote + "'");
+        }
+        this.quote = quote;
+        this.quoting = true;
+        return this;
+    }
+
+    /**
+     * Starts tokenizing the input; the input must not change until the last token has been read.
+     */
+    public Tokenizer reset(CharSequence input) {
+        this.input = input;
+        this.position = 0;
+        this.done = false;
+        token.set(null, 0, 0);
+        if (whitespace) {
+            position = skipWhitespace(0);
+            done = position == input.length();
+        }
+        return this;
+    }
+
+    /**
+     * Moves to the next token. Returns false when there are no more tokens.
+     *
+     * @throws IllegalArgumentException if a quoted token is not closed or is followed by something other than a delimiter
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+        int length = input.length();
+        int start = position;
+        int end;
+        if (quoting && start < length && input.charAt(start) == quote) {
+            end = readQuoted(start);
+        } else {
+            end = findDelimiter(start);
+            token.set(input, start, end);
+        }
+        if (end == length) {
+            done = true;
+            position = length;
+        } else if (whitespace) {
+            position = skipWhitespace(end);
+            done = position == length;
+        } else {
+            position = end + delimiter.length();
+        }
+        return true;
+    }
+
+    /**
+     * The current token as a view of the input (see NOTE 2).
+     */
+    public CharSequence token() {
+        checkToken();
+        return token;
+    }
+
+    /**
+     * True if the current token has the same characters as the given sequence.
+     */
+    public boolean tokenEquals(CharSequence chars) {
+        checkToken();
+        int length = token.length();
+        if (chars.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (token.charAt(i) != chars.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the current token as a decimal int without creating a String.
+     *
+     * @throws NumberFormatException if the token is not an int
+     */
+    public int parseInt() {
+        checkToken();
+        return Integer.parseInt(token.source, token.start, token.end, 10);
+    }
+
+    /**
+     * Parses the current token as a decimal long without creating a String.
+     *
+     * @throws NumberFormatException if the token is not a long
+     */
+    public long parseLong() {
+        checkToken();
+        return Long.parseLong(token.source, token.start, token.end, 10);
+    }
+
+    /**
+     * Moves to the next token and parses it as an int.
+     *
+     * @throws NoSuchElementException if there is no next token
+     */
+    public int nextInt() {
+        if (!next()) {
+            throw new NoSuchElementException("no more tokens");
+        }
+        return parseInt();
+    }
+
+    /**
+     * Moves to the next token and parses it as a long.
+     *
+     * @throws NoSuchElementException if there is no next token
+     */
+    public long nextLong() {
+        if (!next()) {
+            throw new NoSuchElementException("no more tokens");
+        }
+        return parseLong();
+    }
+
+    /**
+     * Skips the given number of tokens. Returns false if the input ran out first.
+     */
+    public boolean skip(int tokens) {
+        for (int i = 0; i < tokens; i++) {
+            if (!next()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int findDelimiter(int from) {
+        int length = input.length();
+        if (whitespace) {
+            while (from < length && !Character.isWhitespace(input.charAt(from))) {
+                from++;
+            }
+            return from;
+        }
+        if (input instanceof String string) {
+            // String.indexOf is an intrinsic; the generic loop below is for StringBuilder, CharBuffer and others
+            int index = delimiter.length() == 1 ? string.indexOf(delimiter.charAt(0), from) : string.indexOf(delimiter, from);
+            return index < 0 ? length : index;
+        }
+        char first = delimiter.charAt(0);
+        int last = length - delimiter.length();
+        for (int i = from; i <= last; i++) {
+            if (input.charAt(i) == first && regionMatchesDelimiter(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private boolean regionMatchesDelimiter(int offset) {
+        for (int j = 1; j < delimiter.length(); j++) {
+            if (input.charAt(offset + j) != delimiter.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Reads "..." starting at the opening quote and returns the index just after the closing quote
+    private int readQuoted(int openingQuote) {
+        int length = input.length();
+        int from = openingQuote + 1;
+        int i = from;
+        boolean copying = false;
+        while (true) {
+            if (i == length) {
+                throw new IllegalArgumentException("Unclosed quote starting at index " + openingQuote);
+            }
+            char c = input.charAt(i);
+            if (c == quote) {
+                if (i + 1 < length && input.charAt(i + 1) == quote) {
+                    if (!copying) {
+                        unescaped.setLength(0);
+                        unescaped.append(input, from, i);
+                        copying = true;
+                    }
+                    unescaped.append(quote);
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            if (copying) {
+                unescaped.append(c);
+            }
+            i++;
+        }
+        if (copying) {
+            token.set(unescaped, 0, unescaped.length());
+        } else {
+            token.set(input, from, i);
+        }
+        int end = i + 1;
+        if (end < length && !isDelimiterAt(end)) {
+            throw new IllegalArgumentException("Expected a delimiter after the closing quote at index " + i);
+        }
+        return end;
+    }
+
+    private boolean isDelimiterAt(int index) {
+        if (whitespace) {
+            return Character.isWhitespace(input.charAt(index));
+        }
+        return index + delimiter.length() <= input.length() && input.charAt(index) == delimiter.charAt(0)
+                && regionMatchesDelimiter(index);
+    }
+
+    private int skipWhitespace(int from) {
+        int length = input.length();
+        while (from < length && Character.isWhitespace(input.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private void checkToken() {
+        if (token.source == null) {
+            throw new IllegalStateException("next() has not returned a token yet");
+        }
+    }
+
+    // The current token: characters [start, end) of the input, or of the unescape buffer for a token with doubled quotes
+    private static final class Slice implements CharSequence {
+        private CharSequence source;
+        private int start;
+        private int end;
+
+        void set(CharSequence source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("index " + index + " of " + (end - start));
+            }
+            return source.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || to > end - start || from > to) {
+                throw new IndexOutOfBoundsException("subSequence(" + from + ", " + to + ") of " + (end - start));
+            }
+            return source.subSequence(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return source.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ca.siva.chapter01;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementations behind MathKernels. Only loaded when jdk.incubator.vector is in the boot layer.
+ * Every method runs whole vectors up to species.loopBound(length) and finishes the remaining elements with Math.
+ */
+final class VectorMathKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+    // ln(2) split in a high part with 21 trailing zero bits (so k * LN2_HI is exact for |k| < 2^21) and the remainder
+    private static final double LN2_HI = 0x1.62e42fee00000p-1;
+    private static final double LN2_LO = 0x1.a39ef35793c76p-33;
+    private static final double LOG2_E = 0x1.71547652b82fep0;
+    // Adding 1.5 * 2^52 rounds to an integer and leaves it in the low bits of the double: round and convert in one add
+    private static final double ROUND_MAGIC = 0x1.8p52;
+    private static final long ROUND_MAGIC_BITS = Double.doubleToRawLongBits(ROUND_MAGIC);
+    // Beyond these exp overflows or its result is subnormal
+    private static final double EXP_MIN = -708.0;
+    private static final double EXP_MAX = 709.0;
+    private static final double SQRT_2 = 0x1.6a09e667f3bcdp0;
+    private static final DoubleVector LN2_HI_LANES = DoubleVector.broadcast(DOUBLES, LN2_HI);
+    private static final DoubleVector LN2_LO_LANES = DoubleVector.broadcast(DOUBLES, LN2_LO);
+
+    // Taylor coefficients 1/n! up to n = 12: the error on |r| <= ln(2) / 2 is below 2^-53
+    private static final double[] EXP_COEFFICIENTS = {
+            1.0, 1.0, 1.0 / 2, 1.0 / 6, 1.0 / 24, 1.0 / 120, 1.0 / 720, 1.0 / 5040, 1.0 / 40320, 1.0 / 362880,
+            1.0 / 3628800, 1.0 / 39916800, 1.0 / 479001600};
+    // 2 / (2n + 1) for n = 1 to 10, see fastLog
+    private static final double[] LOG_COEFFICIENTS = {
+            2.0 / 3, 2.0 / 5, 2.0 / 7, 2.0 / 9, 2.0 / 11, 2.0 / 13, 2.0 / 15, 2.0 / 17, 2.0 / 19, 2.0 / 21};
+
+    private VectorMathKernels() {
+    }
+
+    static void exp(double[] in, double[] out) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(in.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, in, i).lanewise(VectorOperators.EXP).intoArray(out, i);
+        }
+        for (; i < in.length; i++) {
+            out[i] = Math.exp(in[i]);
+        }
+    }
+
+    static void log(double[] in, double[] out) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(in.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, in, i).lanewise(VectorOperators.LOG).intoArray(out, i);
+        }
+        for (; i < in.length; i++) {
+            out[i] = Math.log(in[i]);
+        }
+    }
+
+    static void sqrt(double[] in, double[] out) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(in.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, in, i).lanewise(VectorOperators.SQRT).intoArray(out, i);
+        }
+        for (; i < in.length; i++) {
+            out[i] = Math.sqrt(in[i]);
+        }
+    }
+
+    static void pow(double[] base, double exponent, double[] out) {
+        DoubleVector exponents = DoubleVector.broadcast(DOUBLES, exponent);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(base.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, base, i).lanewise(VectorOperators.POW, exponents).intoArray(out, i);
+        }
+        for (; i < base.length; i++) {
+            out[i] = Math.pow(base[i], exponent);
+        }
+    }
+
+    static void polynomial(double[] in, double[] coefficients, double[] out) {
+        int last = coefficients.length - 1;
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(in.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, in, i);
+            DoubleVector result = DoubleVector.broadcast(DOUBLES, coefficients[last]);
+            for (int c = last - 1; c >= 0; c--) {
+                result = result.fma(x, DoubleVector.broadcast(DOUBLES, coefficients[c]));
+            }
+            result.intoArray(out, i);
+        }
+        for (; i < in.length; i++) {
+            out[i] = MathKernels.polynomial(in[i], coefficients);
+        }
+    }
+
+    /*
+    exp(x) = 2^k * exp(r) with k = round(x / ln 2) and r = x - k * ln 2, |r| <= ln(2) / 2. exp(r) is a degree 12
+    polynomial evaluated with Estrin's scheme (independent fmas instead of one chain of 12), 2^k is built from its bits.
+     */
+    static void fastExp(double[] in, double[] out) {
+        double[] c = EXP_COEFFICIENTS;
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(in.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, in, i);
+            VectorMask<Double> special = x.compare(VectorOperators.GE, EXP_MIN)
+                    .and(x.compare(VectorOperators.LE, EXP_MAX)).not();
+
+            DoubleVector shifted = x.fma(LOG2_E, ROUND_MAGIC);
+            DoubleVector k = shifted.sub(ROUND_MAGIC);
+            LongVector exponent = shifted.reinterpretAsLongs().sub(ROUND_MAGIC_BITS).add(1023)
+                    .lanewise(VectorOperators.LSHL, 52);
+            DoubleVector r = k.neg().fma(LN2_HI_LANES, x);
+            r = k.neg().fma(LN2_LO_LANES, r);
+
+            DoubleVector r2 = r.mul(r);
+            DoubleVector r4 = r2.mul(r2);
+            DoubleVector r8 = r4.mul(r4);
+            DoubleVector p01 = r.fma(c[1], c[0]);
+            DoubleVector p23 = r.fma(c[3], c[2]);
+            DoubleVector p45 = r.fma(c[5], c[4]);
+            DoubleVector p67 = r.fma(c[7], c[6]);
+            DoubleVector p89 = r.fma(c[9], c[8]);
+            DoubleVector p1011 = r.fma(c[11], c[10]);
+            DoubleVector p03 = r2.fma(p23, p01);
+            DoubleVector p47 = r2.fma(p67, p45);
+            DoubleVector p811 = r2.fma(p1011, p89);
+            DoubleVector p812 = r4.fma(DoubleVector.broadcast(DOUBLES, c[12]), p811);
+            DoubleVector p = r8.fma(p812, r4.fma(p47, p03));
+
+            p.mul(exponent.reinterpretAsDoubles()).intoArray(out, i);
+            if (special.anyTrue()) {
+                finishSpecialLanes(x, special, out, i, true);
+            }
+        }
+        for (; i < in.length; i++) {
+            out[i] = Math.exp(in[i]);
+        }
+    }
+
+    /*
+    log(x) = e * ln 2 + log(m) with x = 2^e * m and sqrt(1/2) <= m < sqrt(2). With s = (m - 1) / (m + 1), |s| < 0.172,
+    log(m) = 2 * atanh(s) = 2s + 2s * (s^2/3 + s^4/5 + ... + s^20/21); the first omitted term is below 2^-60 * log(m).
+     */
+    static void fastLog(double[] in, double[] out) {
+        double[] c = LOG_COEFFICIENTS;
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(in.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, in, i);
+            VectorMask<Double> special = x.compare(VectorOperators.GE, Double.MIN_NORMAL)
+                    .and(x.compare(VectorOperators.LE, Double.MAX_VALUE)).not();
+
+            LongVector bits = x.reinterpretAsLongs();
+            DoubleVector m = bits.and(0x000FFFFFFFFFFFFFL).or(0x3FF0000000000000L).reinterpretAsDoubles();
+            LongVector e = bits.lanewise(VectorOperators.LSHR, 52).sub(1023);
+            VectorMask<Double> high = m.compare(VectorOperators.GT, SQRT_2);
+            m = m.blend(m.mul(0.5), high);
+            e = e.blend(e.add(1), high.cast(e.species()));
+            // e converted to double with the same trick as in fastExp, in reverse
+            DoubleVector ed = e.add(ROUND_MAGIC_BITS).reinterpretAsDoubles().sub(ROUND_MAGIC);
+
+            DoubleVector s = m.sub(1.0).div(m.add(1.0));
+            DoubleVector z = s.mul(s);
+            DoubleVector z2 = z.mul(z);
+            DoubleVector z4 = z2.mul(z2);
+            DoubleVector z8 = z4.mul(z4);
+            DoubleVector q01 = z.fma(c[1], c[0]);
+            DoubleVector q23 = z.fma(c[3], c[2]);
+            DoubleVector q45 = z.fma(c[5], c[4]);
+            DoubleVector q67 = z.fma(c[7], c[6]);
+            DoubleVector q89 = z.fma(c[9], c[8]);
+            DoubleVector q = z8.fma(q89, z4.fma(z2.fma(q67, q45), z2.fma(q23, q01)));
+            DoubleVector logM = s.mul(z).fma(q, s.add(s));
+
+            ed.fma(LN2_HI_LANES, ed.fma(LN2_LO_LANES, logM)).intoArray(out, i);
+            if (special.anyTrue()) {
+                finishSpecialLanes(x, special, out, i, false);
+            }
+        }
+        for (; i < in.length; i++) {
+            out[i] = Math.log(in[i]);
+        }
+    }
+
+    // Reads the arguments from x rather than from the input array, which may be out
+    private static void finishSpecialLanes(DoubleVector x, VectorMask<Double> special, double[] out, int offset, boolean exp) {
+        for (int lane = special.firstTrue(); lane < DOUBLES.length(); lane++) {
+            if (special.laneIsSet(lane)) {
+                double argument = x.lane(lane);
+                out[offset + lane] = exp ? Math.exp(argument) : Math.log(argument);
+            }
+        }
+    }
+}
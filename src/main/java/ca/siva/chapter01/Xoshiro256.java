@@ -0,0 +1,133 @@
+package ca.siva.chapter01;
+
+import java.util.random.RandomGenerator;
+
+/*
+NOTE:
+1) java.util.Random keeps its seed in an AtomicLong: every nextDouble() is a compare-and-set, and threads sharing one
+instance (Math.random() shares a static one) retry on each other's updates. ThreadLocalRandom avoids the contention but
+cannot be seeded, so a Monte Carlo run cannot be reproduced.
+2) xoshiro256++ (Blackman and Vigna) keeps 256 bits of state in four longs and produces a long with a few adds, xors,
+shifts and rotations: no atomics, no allocation, period 2^256 - 1, and it passes BigCrush. Same algorithm, seeding and
+output as RandomGenerator.of("Xoshiro256PlusPlus"), but a final class, so the JIT inlines the calls in bulk loops.
+3) For parallel work, do not seed each task with seed + taskId: the streams may overlap. jump() advances the state by
+2^128 steps in about 1000 operations, so jumps(n) (or copyAndJump() in a loop) gives n generators whose streams can never
+overlap, and task i always gets the same numbers whatever thread runs it.
+4) Not thread-safe: one generator per task or thread.
+ */
+public final class Xoshiro256 implements RandomGenerator.JumpableGenerator {
+    private static final long GOLDEN_RATIO_64 = 0x9e3779b97f4a7c15L;
+    private static final long SILVER_RATIO_64 = 0x6a09e667f3bcc909L;
+    // Jump polynomial for 2^128 steps, from the reference implementation
+    private static final long[] JUMP = {0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    /**
+     * The state is four SplitMix64 outputs derived from seed, so nearby seeds give unrelated streams.
+     */
+    public Xoshiro256(long seed) {
+        seed ^= SILVER_RATIO_64;
+        this.s0 = mix(seed);
+        this.s1 = mix(seed += GOLDEN_RATIO_64);
+        this.s2 = mix(seed += GOLDEN_RATIO_64);
+        this.s3 = mix(seed + GOLDEN_RATIO_64);
+        if ((s0 | s1 | s2 | s3) == 0) {
+            // The all-zero state only ever produces zeros
+            s0 = GOLDEN_RATIO_64;
+            s1 = SILVER_RATIO_64;
+        }
+    }
+
+    private Xoshiro256(long s0, long s1, long s2, long s3) {
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s0 + s3, 23) + s0;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Fills values with uniform doubles in [0, 1), the same as calling nextDouble() for each element.
+     */
+    public void nextDoubles(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (nextLong() >>> 11) * 0x1.0p-53;
+        }
+    }
+
+    /**
+     * Fills values with standard normal doubles (mean 0, standard deviation 1), the same as calling nextGaussian() for
+     * each element.
+     */
+    public void nextGaussians(double[] values) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = nextGaussian();
+        }
+    }
+
+    @Override
+    public Xoshiro256 copy() {
+        return new Xoshiro256(s0, s1, s2, s3);
+    }
+
+    @Override
+    public Xoshiro256 copyAndJump() {
+        Xoshiro256 copy = copy();
+        jump();
+        return copy;
+    }
+
+    /**
+     * Advances the state by 2^128 calls to nextLong().
+     */
+    @Override
+    public void jump() {
+        long t0 = 0;
+        long t1 = 0;
+        long t2 = 0;
+        long t3 = 0;
+        for (long word : JUMP) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((word & 1L << bit) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    @Override
+    public double jumpDistance() {
+        return 0x1.0p128;
+    }
+
+    // Stafford's variant 13 of the MurmurHash3 finalizer, as in SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,186 @@
+package ca.siva.chapter01;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+NOTE:
+1) ZoneId.of("America/New_York") parses and validates the id and looks the rules up in the provider on every call, and
+Instant.ofEpochMilli(millis).atZone(zone) then allocates an Instant, a LocalDateTime, a LocalDate, a LocalTime and a
+ZonedDateTime, and binary-searches the zone's transitions, to find one number: the UTC offset at that instant.
+2) A ZoneConverter is built once per zone and year range (of() caches them). It stores the offset in effect at the start of
+every UTC day of the range in an int[]: converting a timestamp is a division, an array read and an addition. The few days
+that contain a transition (two per year where daylight saving time applies) are marked and looked up in the zone's
+transitions instead. Timestamps outside the range fall back to ZoneRules.
+3) The bulk methods convert a long[] of epoch milliseconds into local values (local epoch millis, local epoch days, or the
+date as yyyymmdd plus the millisecond of the day) without creating any object per element.
+4) Immutable and thread-safe.
+ */
+public final class ZoneConverter {
+    static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int DEFAULT_FROM_YEAR = 1970;
+    private static final int DEFAULT_TO_YEAR = 2070;
+    // Marks a day of the table in which the offset changes
+    private static final int TRANSITION_DAY = Integer.MIN_VALUE;
+
+    private static final ConcurrentHashMap<String, ZoneConverter> CONVERTERS = new ConcurrentHashMap<>();
+
+    private final ZoneId zone;
+    private final ZoneRules rules;
+    private final long firstEpochDay;
+    private final int[] offsetMillisByDay;
+    // Transitions inside the range: instant and offset from then on
+    private final long[] transitionMillis;
+    private final int[] offsetMillisAfter;
+
+    private ZoneConverter(ZoneId zone, int fromYear, int toYear) {
+        this.zone = zone;
+        this.rules = zone.getRules();
+        this.firstEpochDay = EpochDays.epochDay(fromYear, 1, 1);
+        int days = Math.toIntExact(EpochDays.epochDay(toYear, 1, 1) - firstEpochDay);
+        this.offsetMillisByDay = new int[days];
+
+        long rangeStart = firstEpochDay * MILLIS_PER_DAY;
+        long rangeEnd = (firstEpochDay + days) * MILLIS_PER_DAY;
+        int count = 0;
+        for (ZoneOffsetTransition t = rules.nextTransition(Instant.ofEpochMilli(rangeStart - 1));
+             t != null && t.toEpochSecond() * 1000 < rangeEnd; t = rules.nextTransition(t.getInstant())) {
+            count++;
+        }
+        this.transitionMillis = new long[count];
+        this.offsetMillisAfter = new int[count];
+        int i = 0;
+        for (ZoneOffsetTransition t = rules.nextTransition(Instant.ofEpochMilli(rangeStart - 1));
+             i < count; t = rules.nextTransition(t.getInstant())) {
+            transitionMillis[i] = t.toEpochSecond() * 1000;
+            offsetMillisAfter[i++] = t.getOffsetAfter().getTotalSeconds() * 1000;
+        }
+
+        int offset = rules.getOffset(Instant.ofEpochMilli(rangeStart)).getTotalSeconds() * 1000;
+        int next = 0;
+        for (int day = 0; day < days; day++) {
+            long dayEnd = rangeStart + (day + 1) * MILLIS_PER_DAY;
+            if (next < count && transitionMillis[next] < dayEnd) {
+                offsetMillisByDay[day] = TRANSITION_DAY;
+                while (next < count && transitionMillis[next] < dayEnd) {
+                    offset = offsetMillisAfter[next++];
+                }
+            } else {
+                offsetMillisByDay[day] = offset;
+            }
+        }
+    }
+
+    /**
+     * The cached converter for zoneId with tables for the years 1970 to 2069.
+     */
+    public static ZoneConverter of(String zoneId) {
+        return CONVERTERS.computeIfAbsent(zoneId, id -> new ZoneConverter(ZoneId.of(id), DEFAULT_FROM_YEAR, DEFAULT_TO_YEAR));
+    }
+
+    public static ZoneConverter of(ZoneId zone) {
+        return of(zone.getId());
+    }
+
+    /**
+     * A converter with tables for the years fromYear (inclusive) to toYear (exclusive), at most 1000 years at 4 bytes per
+     * day; not cached.
+     */
+    public static ZoneConverter of(ZoneId zone, int fromYear, int toYear) {
+        Objects.requireNonNull(zone);
+        if (fromYear > toYear || toYear - fromYear > 1000 || fromYear < -999_999 || toYear > 999_999) {
+            throw new IllegalArgumentException("year range must be at most 1000 years between -999999 and 999999: "
+                    + fromYear + " to " + toYear);
+        }
+        return new ZoneConverter(zone, fromYear, toYear);
+    }
+
+    public ZoneId zone() {
+        return zone;
+    }
+
+    public ZoneRules rules() {
+        return rules;
+    }
+
+    /**
+     * UTC offset in milliseconds at the given instant.
+     */
+    public int offsetMillis(long epochMillis) {
+        long day = Math.floorDiv(epochMillis, MILLIS_PER_DAY) - firstEpochDay;
+        if (day >= 0 && day < offsetMillisByDay.length) {
+            int offset = offsetMillisByDay[(int) day];
+            return offset != TRANSITION_DAY ? offset : transitionOffset(epochMillis);
+        }
+        return rules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000;
+    }
+
+    /**
+     * Local date-time of each instant, as milliseconds since 1970-01-01T00:00 local time.
+     */
+    public void toLocalEpochMillis(long[] epochMillis, long[] localEpochMillis) {
+        checkLengths(epochMillis.length, localEpochMillis.length);
+        for (int i = 0; i < epochMillis.length; i++) {
+            localEpochMillis[i] = epochMillis[i] + offsetMillis(epochMillis[i]);
+        }
+    }
+
+    /**
+     * Local date of each instant, as days since 1970-01-01 (LocalDate.ofEpochDay converts one back).
+     */
+    public void toLocalEpochDays(long[] epochMillis, int[] localEpochDays) {
+        checkLengths(epochMillis.length, localEpochDays.length);
+        for (int i = 0; i < epochMillis.length; i++) {
+            localEpochDays[i] = (int) Math.floorDiv(epochMillis[i] + offsetMillis(epochMillis[i]), MILLIS_PER_DAY);
+        }
+    }
+
+    /**
+     * Local date of each instant as yyyymmdd (20240522 for 2024-05-22) and local time as milliseconds since midnight.
+     *
+     * @throws IllegalArgumentException if a local date is outside the range of EpochDays
+     */
+    public void toLocalFields(long[] epochMillis, int[] yyyymmdd, int[] millisOfDay) {
+        checkLengths(epochMillis.length, yyyymmdd.length);
+        checkLengths(epochMillis.length, millisOfDay.length);
+        for (int i = 0; i < epochMillis.length; i++) {
+            long local = epochMillis[i] + offsetMillis(epochMillis[i]);
+            long day = Math.floorDiv(local, MILLIS_PER_DAY);
+            yyyymmdd[i] = EpochDays.yyyymmdd(day);
+            millisOfDay[i] = (int) (local - day * MILLIS_PER_DAY);
+        }
+    }
+
+    // Offset on a day that contains a transition: the offset after the last transition at or before epochMillis
+    private int transitionOffset(long epochMillis) {
+        int low = 0;
+        int high = transitionMillis.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (transitionMillis[middle] <= epochMillis) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (transitionMillis[low] <= epochMillis) {
+            return offsetMillisAfter[low];
+        }
+        return rules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000;
+    }
+
+    private static void checkLengths(int inputLength, int outputLength) {
+        if (inputLength != outputLength) {
+            throw new IllegalArgumentException("arrays have different lengths: " + inputLength + ", " + outputLength);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ZoneConverter{" + zone + ", " + offsetMillisByDay.length + " days, " + transitionMillis.length + " transitions}";
+    }
+}
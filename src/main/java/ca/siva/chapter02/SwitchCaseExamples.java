@@ -2,6 +2,14 @@ package ca.siva.chapter02;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
 @Slf4j
 public class SwitchCaseExamples {
 
@@ -10,6 +18,13 @@ public class SwitchCaseExamples {
      However, it does support byte, char, int, short, and their wrapper classes
      2) Traditional switch statements does support return
      3) Enum constant name should be used when defined switch case. ***Do not use <ClsName>.<Enum> in case expression
+     4) An enum switch is a tableswitch on the ordinal (through a lookup array the compiler generates): the same cost for 4
+     cases or 16. A String switch is a lookupswitch on hashCode() plus equals(). Dispatch through a Map or an EnumMap adds
+     a call to a handler that the JIT usually cannot inline (many handler classes at one call site).
+     5) Pattern matching for switch (case NewOrder n ->) is a preview feature in Java 17; on a sealed type the same
+     dispatch is an instanceof chain, which tests the types one after the other, or a method each record implements.
+     6) SwitchTable is the String switch built at run time (routes from configuration, keys read from a buffer); it picks
+     a linear scan or a perfect hash from the number of keys. See dispatchBenchmark for the numbers behind it.
      */
     public static void main(String[] args) {
         /*
@@ -35,6 +50,8 @@ Default Case: Can be omitted if it is guaranteed that all possible values are ex
         instanceofPatternMatchingWithOrExample("Hello, World!");  // New example method
         instanceofPatternMatchingWithOrExample(123);  // New example method
         instanceofPatternMatchingWithOrExample(3.14);  // New example method
+        switchTableExample();
+        dispatchBenchmark();
 
         enumWithDefaultCaseExample(DayOfWeek.MONDAY);
         enumWithDefaultCaseExample(DayOfWeek.SUNDAY);
@@ -294,4 +311,476 @@ Default Case: Can be omitted if it is guaranteed that all possible values are ex
         };
         log.info("Enum switch with default case type of day: " + ans);
     }
+
+    // Message types of a trading gateway, the keys of the dispatch examples
+    enum MessageType {
+        NEW_ORDER, CANCEL, REPLACE, EXECUTION, REJECT, ORDER_STATUS, HEARTBEAT, LOGON, LOGOUT, RESEND, SEQUENCE_RESET,
+        TEST_REQUEST, QUOTE, QUOTE_CANCEL, MARKET_DATA, SECURITY_LIST
+    }
+
+    // The same message types as a sealed hierarchy; each record handles itself
+    sealed interface Message {
+        int handle();
+    }
+
+    record NewOrder(int value) implements Message {
+        public int handle() { return value + 1; }
+    }
+
+    record Cancel(int value) implements Message {
+        public int handle() { return value + 2; }
+    }
+
+    record Replace(int value) implements Message {
+        public int handle() { return value + 3; }
+    }
+
+    record Execution(int value) implements Message {
+        public int handle() { return value + 4; }
+    }
+
+    record Reject(int value) implements Message {
+        public int handle() { return value + 5; }
+    }
+
+    record OrderStatus(int value) implements Message {
+        public int handle() { return value + 6; }
+    }
+
+    record Heartbeat(int value) implements Message {
+        public int handle() { return value + 7; }
+    }
+
+    record Logon(int value) implements Message {
+        public int handle() { return value + 8; }
+    }
+
+    record Logout(int value) implements Message {
+        public int handle() { return value + 9; }
+    }
+
+    record Resend(int value) implements Message {
+        public int handle() { return value + 10; }
+    }
+
+    record SequenceReset(int value) implements Message {
+        public int handle() { return value + 11; }
+    }
+
+    record TestRequest(int value) implements Message {
+        public int handle() { return value + 12; }
+    }
+
+    record Quote(int value) implements Message {
+        public int handle() { return value + 13; }
+    }
+
+    record QuoteCancel(int value) implements Message {
+        public int handle() { return value + 14; }
+    }
+
+    record MarketData(int value) implements Message {
+        public int handle() { return value + 15; }
+    }
+
+    record SecurityList(int value) implements Message {
+        public int handle() { return value + 16; }
+    }
+
+    // Routes built at run time, looked up from a String and from the bytes of a message
+    public static void switchTableExample() {
+        Map<String, IntUnaryOperator> routes = new LinkedHashMap<>();
+        routes.put("MARKET_DATA", value -> value * 2);
+        routes.put("NEW_ORDER", value -> value + 1);
+        routes.put("CANCEL", value -> -value);
+        SwitchTable<IntUnaryOperator> router = SwitchTable.of(routes);
+        log.info("Router: " + router + ", MARKET_DATA(21) = " + router.get("MARKET_DATA").applyAsInt(21));
+        byte[] message = "35=CANCEL|44=17".getBytes(StandardCharsets.US_ASCII);
+        log.info("CANCEL(17) from bytes = " + router.get(message, 3, 6).applyAsInt(17)
+                + ", unknown route: " + router.get("LOGON"));
+
+        Map<String, IntUnaryOperator> allRoutes = new LinkedHashMap<>(routes);
+        for (MessageType type : MessageType.values()) {
+            allRoutes.putIfAbsent(type.name(), value -> value);
+        }
+        log.info("Router: " + SwitchTable.of(allRoutes));
+        // Output:
+        // Router: SwitchTable{3 cases, LINEAR}, MARKET_DATA(21) = 42
+        // CANCEL(17) from bytes = -17, unknown route: null
+        // Router: SwitchTable{16 cases, PERFECT_HASH}
+    }
+
+    /*
+    Routing 4M messages to one of 4 or 16 handlers, best of 5 runs, in ns per message. Uniform: every type equally
+    frequent; skewed: 80% of the messages are of the last type (EXECUTION of 4, SECURITY_LIST of 16), the rest uniform.
+    The String rows route the same String objects again and again, so their hash codes are cached; the bytes rows start
+    from the message bytes, as a gateway does. The handler rows call an IntUnaryOperator from a table, the other rows
+    have the handling code in switch branches.
+    Output (JDK 17, x86-64):
+                                 4 uniform  4 skewed  16 uniform  16 skewed
+    switch (String)                    6.0       5.9        16.2        9.6
+    HashMap<String, handler>          16.5       7.6        19.3        9.7
+    SwitchTable.get + handler         13.5       9.1        27.2       16.8
+    bytes: new String + switch        23.9      18.2        34.4       27.6
+    bytes: LINEAR + switch (int)       9.7       8.0        15.3       16.9
+    bytes: PERFECT_HASH + switch      10.3       9.1        14.9       10.6
+    switch (enum)                      1.9       0.9        13.0        3.0
+    EnumMap<enum, handler>            18.7       5.6        22.1        6.6
+    instanceof chain (sealed)          1.2       0.9         7.3        6.2
+    virtual call (sealed)             12.0       3.9        18.0        4.3
+    - Once the type is an enum or a sealed type, a switch or an instanceof chain is the fastest dispatch by far; calling
+    a handler from a Map, an EnumMap or a virtual method costs 5 to 20 ns, mostly the call that cannot be inlined when
+    the types are mixed (uniform), less when one type dominates (skewed).
+    - From the bytes of a message, SwitchTable.indexOf + switch on int costs about half of new String + switch (String),
+    and nothing is allocated. A 16-way enum switch with uniform types costs more than a 4-way one: the branch is
+    mispredicted, not the table lookup.
+    - Hence for a router: parse the type once (SwitchTable or EnumParser from the bytes), then switch on the enum or the
+    case number, and keep handler tables for routes that really are configured at run time.
+     */
+    public static void dispatchBenchmark() {
+        String[] names = new String[]{"switch (String)", "HashMap<String, handler>", "SwitchTable.get + handler",
+                "bytes: new String + switch", "bytes: LINEAR + switch (int)", "bytes: PERFECT_HASH + switch", "switch (enum)",
+                "EnumMap<enum, handler>", "instanceof chain (sealed)", "virtual call (sealed)"};
+        double[][] nanos = new double[names.length][4];
+        int column = 0;
+        for (int arity : new int[]{4, 16}) {
+            for (boolean skewed : new boolean[]{false, true}) {
+                DispatchInput input = new DispatchInput(arity, skewed, 4096);
+                for (int strategy = 0; strategy < names.length; strategy++) {
+                    nanos[strategy][column] = input.nanosPerMessage(strategy, 1000);
+                }
+                column++;
+            }
+        }
+        log.info(String.format("%-29s %9s %9s %11s %10s", "", "4 uniform", "4 skewed", "16 uniform", "16 skewed"));
+        for (int strategy = 0; strategy < names.length; strategy++) {
+            log.info(String.format("%-29s %9.1f %9.1f %11.1f %10.1f", names[strategy], nanos[strategy][0],
+                    nanos[strategy][1], nanos[strategy][2], nanos[strategy][3]));
+        }
+    }
+
+    // The messages of one benchmark column in every representation, and one loop per strategy so that each loop's call
+    // sites only see their own strategy
+    private static final class DispatchInput {
+        private final int arity;
+        private final String[] keys;
+        private final byte[] wire;
+        private final int[] offsets;
+        private final MessageType[] types;
+        private final Message[] messages;
+        private final Map<String, IntUnaryOperator> hashMap = new HashMap<>();
+        private final EnumMap<MessageType, IntUnaryOperator> enumMap = new EnumMap<>(MessageType.class);
+        private final SwitchTable<IntUnaryOperator> linear;
+        private final SwitchTable<IntUnaryOperator> perfectHash;
+        private final SwitchTable<IntUnaryOperator> chosen;
+
+        DispatchInput(int arity, boolean skewed, int count) {
+            this.arity = arity;
+            this.keys = new String[count];
+            this.types = new MessageType[count];
+            this.messages = new Message[count];
+            this.offsets = new int[count + 1];
+            StringBuilder text = new StringBuilder();
+            Random random = new Random(42);
+            for (int i = 0; i < count; i++) {
+                int type = skewed && random.nextInt(100) < 80 ? arity - 1 : random.nextInt(arity);
+                types[i] = MessageType.values()[type];
+                keys[i] = new String(types[i].name().toCharArray());
+                messages[i] = message(type, i);
+                offsets[i] = text.length();
+                text.append(keys[i]);
+            }
+            offsets[count] = text.length();
+            this.wire = text.toString().getBytes(StandardCharsets.US_ASCII);
+            Map<String, IntUnaryOperator> routes = new LinkedHashMap<>();
+            for (int type = 0; type < arity; type++) {
+                IntUnaryOperator handler = handler(type);
+                routes.put(MessageType.values()[type].name(), handler);
+                hashMap.put(MessageType.values()[type].name(), handler);
+                enumMap.put(MessageType.values()[type], handler);
+            }
+            this.linear = SwitchTable.of(routes, SwitchTable.Strategy.LINEAR);
+            this.perfectHash = SwitchTable.of(routes, SwitchTable.Strategy.PERFECT_HASH);
+            this.chosen = SwitchTable.of(routes);
+        }
+
+        double nanosPerMessage(int strategy, int rounds) {
+            long best = Long.MAX_VALUE;
+            int sum = 0;
+            for (int run = 0; run < 5; run++) {
+                long start = System.nanoTime();
+                for (int round = 0; round < rounds; round++) {
+                    sum += switch (strategy) {
+                        case 0 -> stringSwitchLoop();
+                        case 1 -> hashMapLoop();
+                        case 2 -> switchTableLoop(chosen);
+                        case 3 -> decodeAndSwitchLoop();
+                        case 4 -> indexAndSwitchLoop(linear);
+                        case 5 -> indexAndSwitchLoop(perfectHash);
+                        case 6 -> enumSwitchLoop();
+                        case 7 -> enumMapLoop();
+                        case 8 -> instanceofLoop();
+                        default -> virtualLoop();
+                    };
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (sum == 42) {
+                log.info("unlikely");
+            }
+            return (double) best / rounds / keys.length;
+        }
+
+        private int stringSwitchLoop() {
+            int sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                sum += arity == 4 ? stringSwitch4(keys[i], i) : stringSwitch16(keys[i], i);
+            }
+            return sum;
+        }
+
+        private int hashMapLoop() {
+            int sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                sum += hashMap.get(keys[i]).applyAsInt(i);
+            }
+            return sum;
+        }
+
+        private int switchTableLoop(SwitchTable<IntUnaryOperator> table) {
+            int sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                sum += table.get(keys[i]).applyAsInt(i);
+            }
+            return sum;
+        }
+
+        private int decodeAndSwitchLoop() {
+            int sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                String key = new String(wire, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.US_ASCII);
+                sum += arity == 4 ? stringSwitch4(key, i) : stringSwitch16(key, i);
+            }
+            return sum;
+        }
+
+        private int indexAndSwitchLoop(SwitchTable<IntUnaryOperator> table) {
+            int sum = 0;
+            for (int i = 0; i < keys.length; i++) {
+                sum += intSwitch(table.indexOf(wire, offsets[i], offsets[i + 1] - offsets[i]), i);
+            }
+            return sum;
+        }
+
+        private int enumSwitchLoop() {
+            int sum = 0;
+            for (int i = 0; i < types.length; i++) {
+                sum += arity == 4 ? enumSwitch4(types[i], i) : enumSwitch16(types[i], i);
+            }
+            return sum;
+        }
+
+        private int enumMapLoop() {
+            int sum = 0;
+            for (int i = 0; i < types.length; i++) {
+                sum += enumMap.get(types[i]).applyAsInt(i);
+            }
+            return sum;
+        }
+
+        private int instanceofLoop() {
+            int sum = 0;
+            for (Message message : messages) {
+                sum += arity == 4 ? instanceofChain4(message) : instanceofChain16(message);
+            }
+            return sum;
+        }
+
+        private int virtualLoop() {
+            int sum = 0;
+            for (Message message : messages) {
+                sum += message.handle();
+            }
+            return sum;
+        }
+    }
+
+    private static IntUnaryOperator handler(int type) {
+        return switch (type) {
+            case 0 -> value -> value + 1;
+            case 1 -> value -> value + 2;
+            case 2 -> value -> value + 3;
+            case 3 -> value -> value + 4;
+            case 4 -> value -> value + 5;
+            case 5 -> value -> value + 6;
+            case 6 -> value -> value + 7;
+            case 7 -> value -> value + 8;
+            case 8 -> value -> value + 9;
+            case 9 -> value -> value + 10;
+            case 10 -> value -> value + 11;
+            case 11 -> value -> value + 12;
+            case 12 -> value -> value + 13;
+            case 13 -> value -> value + 14;
+            case 14 -> value -> value + 15;
+            default -> value -> value + 16;
+        };
+    }
+
+    private static Message message(int type, int value) {
+        return switch (type) {
+            case 0 -> new NewOrder(value);
+            case 1 -> new Cancel(value);
+            case 2 -> new Replace(value);
+            case 3 -> new Execution(value);
+            case 4 -> new Reject(value);
+            case 5 -> new OrderStatus(value);
+            case 6 -> new Heartbeat(value);
+            case 7 -> new Logon(value);
+            case 8 -> new Logout(value);
+            case 9 -> new Resend(value);
+            case 10 -> new SequenceReset(value);
+            case 11 -> new TestRequest(value);
+            case 12 -> new Quote(value);
+            case 13 -> new QuoteCancel(value);
+            case 14 -> new MarketData(value);
+            default -> new SecurityList(value);
+        };
+    }
+
+    private static int stringSwitch4(String type, int value) {
+        return switch (type) {
+            case "NEW_ORDER" -> value + 1;
+            case "CANCEL" -> value + 2;
+            case "REPLACE" -> value + 3;
+            case "EXECUTION" -> value + 4;
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    private static int stringSwitch16(String type, int value) {
+        return switch (type) {
+            case "NEW_ORDER" -> value + 1;
+            case "CANCEL" -> value + 2;
+            case "REPLACE" -> value + 3;
+            case "EXECUTION" -> value + 4;
+            case "REJECT" -> value + 5;
+            case "ORDER_STATUS" -> value + 6;
+            case "HEARTBEAT" -> value + 7;
+            case "LOGON" -> value + 8;
+            case "LOGOUT" -> value + 9;
+            case "RESEND" -> value + 10;
+            case "SEQUENCE_RESET" -> value + 11;
+            case "TEST_REQUEST" -> value + 12;
+            case "QUOTE" -> value + 13;
+            case "QUOTE_CANCEL" -> value + 14;
+            case "MARKET_DATA" -> value + 15;
+            case "SECURITY_LIST" -> value + 16;
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    // The handling code of the case numbers of a SwitchTable, as the branches of a tableswitch
+    private static int intSwitch(int type, int value) {
+        return switch (type) {
+            case 0 -> value + 1;
+            case 1 -> value + 2;
+            case 2 -> value + 3;
+            case 3 -> value + 4;
+            case 4 -> value + 5;
+            case 5 -> value + 6;
+            case 6 -> value + 7;
+            case 7 -> value + 8;
+            case 8 -> value + 9;
+            case 9 -> value + 10;
+            case 10 -> value + 11;
+            case 11 -> value + 12;
+            case 12 -> value + 13;
+            case 13 -> value + 14;
+            case 14 -> value + 15;
+            case 15 -> value + 16;
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    private static int enumSwitch4(MessageType type, int value) {
+        return switch (type) {
+            case NEW_ORDER -> value + 1;
+            case CANCEL -> value + 2;
+            case REPLACE -> value + 3;
+            case EXECUTION -> value + 4;
+            default -> throw new IllegalArgumentException("Unknown message type: " + type);
+        };
+    }
+
+    private static int enumSwitch16(MessageType type, int value) {
+        return switch (type) {
+            case NEW_ORDER -> value + 1;
+            case CANCEL -> value + 2;
+            case REPLACE -> value + 3;
+            case EXECUTION -> value + 4;
+            case REJECT -> value + 5;
+            case ORDER_STATUS -> value + 6;
+            case HEARTBEAT -> value + 7;
+            case LOGON -> value + 8;
+            case LOGOUT -> value + 9;
+            case RESEND -> value + 10;
+            case SEQUENCE_RESET -> value + 11;
+            case TEST_REQUEST -> value + 12;
+            case QUOTE -> value + 13;
+            case QUOTE_CANCEL -> value + 14;
+            case MARKET_DATA -> value + 15;
+            case SECURITY_LIST -> value + 16;
+        };
+    }
+
+    // What switch (message) { case NewOrder n -> ... } does on a sealed type, written with instanceof for Java 17
+    private static int instanceofChain4(Message message) {
+        if (message instanceof NewOrder m) {
+            return m.value() + 1;
+        } else if (message instanceof Cancel m) {
+            return m.value() + 2;
+        } else if (message instanceof Replace m) {
+            return m.value() + 3;
+        } else if (message instanceof Execution m) {
+            return m.value() + 4;
+        }
+        throw new IllegalArgumentException("Unknown message: " + message);
+    }
+
+    private static int instanceofChain16(Message message) {
+        if (message instanceof NewOrder m) {
+            return m.value() + 1;
+        } else if (message instanceof Cancel m) {
+            return m.value() + 2;
+        } else if (message instanceof Replace m) {
+            return m.value() + 3;
+        } else if (message instanceof Execution m) {
+            return m.value() + 4;
+        } else if (message instanceof Reject m) {
+            return m.value() + 5;
+        } else if (message instanceof OrderStatus m) {
+            return m.value() + 6;
+        } else if (message instanceof Heartbeat m) {
+            return m.value() + 7;
+        } else if (message instanceof Logon m) {
+            return m.value() + 8;
+        } else if (message instanceof Logout m) {
+            return m.value() + 9;
+        } else if (message instanceof Resend m) {
+            return m.value() + 10;
+        } else if (message instanceof SequenceReset m) {
+            return m.value() + 11;
+        } else if (message instanceof TestRequest m) {
+            return m.value() + 12;
+        } else if (message instanceof Quote m) {
+            return m.value() + 13;
+        } else if (message instanceof QuoteCancel m) {
+            return m.value() + 14;
+        } else if (message instanceof MarketData m) {
+            return m.value() + 15;
+        } else if (message instanceof SecurityList m) {
+            return m.value() + 16;
+        }
+        throw new IllegalArgumentException("Unknown message: " + message);
+    }
 }
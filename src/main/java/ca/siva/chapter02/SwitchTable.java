@@ -0,0 +1,175 @@
+package ca.siva.chapter02;
+
+import ca.siva.chapter01.PerfectHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+NOTE:
+1) A switch on a String compiles to a lookupswitch on hashCode() followed by equals(): fast, but the cases are fixed at
+compile time and the key must be a String. A message router whose routes come from configuration, or whose keys are read
+from a buffer, needs the same thing built at run time: a SwitchTable maps each key to its case (usually a handler).
+2) of() picks the strategy from the key set, following dispatchBenchmark in SwitchCaseExamples:
+   - LINEAR: compare the key with each case in order (length first, so most mismatches cost one comparison). As fast as
+     the perfect hash up to 4 keys, and faster for the first keys: list the frequent keys first (a LinkedHashMap in
+     frequency order).
+   - PERFECT_HASH: one hash of the length and three characters, one slot, one comparison (see PerfectHash), whatever the
+     number of keys and their distribution.
+3) get() accepts a CharSequence slice or UTF-8 bytes: no String is created for the lookup. It returns null for a key without
+a case, like Map.get.
+4) Calling a handler taken from a table is an indirect call that the JIT cannot inline once a call site sees many handler
+classes, and it can cost more than the lookup. indexOf() returns the case number instead, for a switch on int with the
+handling code in its branches: run-time keys with the dispatch cost of a compiled switch.
+5) Immutable and thread-safe if the values are.
+ */
+public final class SwitchTable<V> {
+    // Measured crossover: equal at 4 keys (about 10 ns from bytes), the perfect hash ahead from 6 keys on
+    static final int LINEAR_MAX_KEYS = 4;
+
+    public enum Strategy {
+        LINEAR, PERFECT_HASH
+    }
+
+    private final Strategy strategy;
+    private final String[] keys;
+    private final byte[][] utf8Keys;
+    private final Object[] values;
+    private final PerfectHash hash;
+
+    private SwitchTable(Map<String, ? extends V> cases, Strategy strategy) {
+        this.strategy = Objects.requireNonNull(strategy);
+        this.keys = new String[cases.size()];
+        this.utf8Keys = new byte[keys.length][];
+        this.values = new Object[keys.length];
+        int i = 0;
+        for (Map.Entry<String, ? extends V> entry : cases.entrySet()) {
+            keys[i] = Objects.requireNonNull(entry.getKey(), "key");
+            utf8Keys[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+            values[i++] = Objects.requireNonNull(entry.getValue(), () -> "value of " + entry.getKey());
+        }
+        this.hash = strategy == Strategy.PERFECT_HASH ? PerfectHash.of(keys) : null;
+    }
+
+    /**
+     * A table with the strategy that suits the number of cases. The iteration order of cases is the order of the linear
+     * scan: list the most frequent keys first.
+     */
+    public static <V> SwitchTable<V> of(Map<String, ? extends V> cases) {
+        return new SwitchTable<>(cases, cases.size() <= LINEAR_MAX_KEYS ? Strategy.LINEAR : Strategy.PERFECT_HASH);
+    }
+
+    public static <V> SwitchTable<V> of(Map<String, ? extends V> cases, Strategy strategy) {
+        return new SwitchTable<>(cases, strategy);
+    }
+
+    public Strategy strategy() {
+        return strategy;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public V get(CharSequence key) {
+        return valueAt(indexOf(key));
+    }
+
+    /**
+     * The case of the key chars[start, end), or null.
+     */
+    public V get(CharSequence chars, int start, int end) {
+        return valueAt(indexOf(chars, start, end));
+    }
+
+    /**
+     * The case of the key whose UTF-8 encoding is bytes[offset, offset + length), or null.
+     */
+    public V get(byte[] bytes, int offset, int length) {
+        return valueAt(indexOf(bytes, offset, length));
+    }
+
+    public V getOrDefault(CharSequence key, V defaultValue) {
+        V value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Position of the key in the iteration order of the cases given to of(), or -1: a case number for a switch on int
+     * whose branches the JIT can inline, where calling a handler from the table is an indirect call.
+     */
+    public int indexOf(CharSequence key) {
+        if (hash != null) {
+            return hash.indexOf(key);
+        }
+        if (key instanceof String string) {
+            // String.equals is an intrinsic that checks the length first
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(string)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        return indexOf(key, 0, key.length());
+    }
+
+    public int indexOf(CharSequence chars, int start, int end) {
+        Objects.checkFromToIndex(start, end, chars.length());
+        if (hash != null) {
+            return hash.indexOf(chars, start, end);
+        }
+        int length = end - start;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].length() == length && matches(keys[i], chars, start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int indexOf(byte[] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        if (hash != null) {
+            return hash.indexOf(bytes, offset, length);
+        }
+        for (int i = 0; i < utf8Keys.length; i++) {
+            if (utf8Keys[i].length == length && matches(utf8Keys[i], bytes, offset)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    private static boolean matches(String key, CharSequence chars, int start) {
+        if (chars instanceof String string) {
+            return string.regionMatches(start, key, 0, key.length());
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != chars.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] key, byte[] bytes, int offset) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SwitchTable{" + keys.length + " cases, " + strategy + "}";
+    }
+}
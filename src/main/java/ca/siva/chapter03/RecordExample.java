@@ -1,5 +1,7 @@
 package ca.siva.chapter03;
 
+import ca.siva.ch06_streams_and_lambda.Aggregation;
+import ca.siva.ch06_streams_and_lambda.ColumnTable;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
@@ -59,6 +61,7 @@ public class RecordExample {
         staticVariableExample();
         recordImplementingInterfaceExample();
         new RecordExample().sealedClassExample();
+        recordsToColumnTableExample();
     }
 
     // 1. Basic record example
@@ -145,6 +148,25 @@ public class RecordExample {
         log.info("Sealed class example: Micro instance created: {}", micro);
     }
 
+    // 9. Records loaded into a ColumnTable: one array per component instead of one object per row, then queried by column.
+    // Output: FEMALE 2 people, MALE 1, OTHER 1; average_age 3.00 in every group because the compact constructor sets age to 3
+    public static void recordsToColumnTableExample() {
+        List<Person> people = List.of(
+                new Person("Alice", 30, Gender.FEMALE),
+                new Person("Bob", 25, Gender.MALE),
+                new Person("Carol", 35, Gender.FEMALE),
+                new Person("Siva", 27, Gender.MALE),
+                new Person("Jane", 41));
+        ColumnTable table = ColumnTable.<Person>mapping()
+                .stringColumn("name", Person::name)
+                .intColumn("age", Person::age)
+                .stringColumn("gender", person -> person.gender().name())
+                .load(people);
+        ColumnTable byGender = table.groupBy("gender", table.stringColumn("name").matching(name -> !name.startsWith("S")),
+                Aggregation.count("people"), Aggregation.avg("age", "average_age"));
+        log.info("Records as a column table, people not named S* by gender:{}", byGender);
+    }
+
     // Interface definition
     public interface Greetable {
         void greet();